@@ -22,12 +22,13 @@ import org.yes.cart.shoppingcart.support.CartDetuplizationException;
 import org.yes.cart.shoppingcart.support.CartTuplizationException;
 import org.yes.cart.shoppingcart.support.CartTuplizer;
 import org.yes.cart.shoppingcart.support.impl.AbstractCryptedTuplizerImpl;
+import org.yes.cart.shoppingcart.support.tokendriven.ShoppingCartStateSerializer;
+import org.yes.cart.shoppingcart.support.tokendriven.impl.ShoppingCartStateSerializerSdkImpl;
 import org.yes.cart.util.ShopCodeContext;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -85,7 +86,35 @@ public class CookieTuplizerImpl extends AbstractCryptedTuplizerImpl implements C
                               final String cookiePath,
                               final int maxHeaderSizeInBytes) {
 
-        super(keyRingPassword, secretKeyFactoryName, cipherName);
+        this(keyRingPassword, chunkSize, secretKeyFactoryName, cipherName, cookieName, expirySeconds, cookiePath, maxHeaderSizeInBytes,
+                new ShoppingCartStateSerializerSdkImpl());
+
+    }
+
+    /**
+     * Constructor with custom payload serializer.
+     *
+     * @param keyRingPassword      key ring password to use.
+     * @param chunkSize            Base64 chunk size.
+     * @param secretKeyFactoryName Secret Key Factory Name.
+     * @param cipherName           Cipher name.
+     * @param cookieName           cookie prefix
+     * @param expirySeconds        seconds after which cookie expires
+     * @param cookiePath           path for which the cookie will be saved
+     * @param maxHeaderSizeInBytes maximum size of header in bytes
+     * @param payloadSerializer    cart serializer
+     */
+    public CookieTuplizerImpl(final String keyRingPassword,
+                              final int chunkSize,
+                              final String secretKeyFactoryName,
+                              final String cipherName,
+                              final String cookieName,
+                              final int expirySeconds,
+                              final String cookiePath,
+                              final int maxHeaderSizeInBytes,
+                              final ShoppingCartStateSerializer payloadSerializer) {
+
+        super(keyRingPassword, secretKeyFactoryName, cipherName, payloadSerializer);
 
         this.chunkSize = chunkSize;
         this.tuplizerSetting = new TuplizerSetting(cookieName, expirySeconds, cookiePath, maxHeaderSizeInBytes);
@@ -216,9 +245,9 @@ public class CookieTuplizerImpl extends AbstractCryptedTuplizerImpl implements C
 
     }
 
-    private Cookie[] toCookies(final Cookie[] oldCookies, final Serializable serializable) throws CartTuplizationException {
+    private Cookie[] toCookies(final Cookie[] oldCookies, final ShoppingCart shoppingCart) throws CartTuplizationException {
 
-        final String valueForCookies = toToken(serializable);
+        final String valueForCookies = toToken(shoppingCart);
         final int sizeInBytes = valueForCookies.getBytes().length;
         if (sizeInBytes > tuplizerSetting.header75) {
             // This block will be useful for monitoring issues when cart overflows header buffer,
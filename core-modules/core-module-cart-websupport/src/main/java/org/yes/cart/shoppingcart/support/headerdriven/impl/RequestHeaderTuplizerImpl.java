@@ -23,10 +23,11 @@ import org.yes.cart.shoppingcart.support.CartDetuplizationException;
 import org.yes.cart.shoppingcart.support.CartTuplizationException;
 import org.yes.cart.shoppingcart.support.CartTuplizer;
 import org.yes.cart.shoppingcart.support.impl.AbstractCryptedTuplizerImpl;
+import org.yes.cart.shoppingcart.support.tokendriven.ShoppingCartStateSerializer;
+import org.yes.cart.shoppingcart.support.tokendriven.impl.ShoppingCartStateSerializerSdkImpl;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.Serializable;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -78,7 +79,31 @@ public class RequestHeaderTuplizerImpl extends AbstractCryptedTuplizerImpl imple
                                      final String headerName,
                                      final int maxHeaderSizeInBytes) {
 
-        super(keyRingPassword, secretKeyFactoryName, cipherName);
+        this(keyRingPassword, chunkSize, secretKeyFactoryName, cipherName, headerName, maxHeaderSizeInBytes,
+                new ShoppingCartStateSerializerSdkImpl());
+
+    }
+
+    /**
+     * Constructor with custom payload serializer.
+     *
+     * @param keyRingPassword      key ring password to use.
+     * @param chunkSize            Base64 chunk size.
+     * @param secretKeyFactoryName Secret Key Factory Name.
+     * @param cipherName           Cipher name.
+     * @param headerName           header prefix
+     * @param maxHeaderSizeInBytes maximum size of header in bytes
+     * @param payloadSerializer    cart serializer
+     */
+    public RequestHeaderTuplizerImpl(final String keyRingPassword,
+                                     final int chunkSize,
+                                     final String secretKeyFactoryName,
+                                     final String cipherName,
+                                     final String headerName,
+                                     final int maxHeaderSizeInBytes,
+                                     final ShoppingCartStateSerializer payloadSerializer) {
+
+        super(keyRingPassword, secretKeyFactoryName, cipherName, payloadSerializer);
 
         this.chunkSize = chunkSize;
         this.tuplizerSetting = new TuplizerSetting(headerName, maxHeaderSizeInBytes);
@@ -167,9 +192,9 @@ public class RequestHeaderTuplizerImpl extends AbstractCryptedTuplizerImpl imple
 
     }
 
-    private Map<String, String> toHeaders(final Serializable serializable) throws CartTuplizationException {
+    private Map<String, String> toHeaders(final ShoppingCart shoppingCart) throws CartTuplizationException {
 
-        final String valueForCookies = toToken(serializable);
+        final String valueForCookies = toToken(shoppingCart);
         final int sizeInBytes = valueForCookies.getBytes().length;
         if (sizeInBytes > tuplizerSetting.header75) {
             // This block will be useful for monitoring issues when cart overflows header buffer,
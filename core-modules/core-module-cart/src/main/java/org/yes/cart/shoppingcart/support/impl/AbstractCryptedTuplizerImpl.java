@@ -16,18 +16,20 @@
 
 package org.yes.cart.shoppingcart.support.impl;
 
-import org.apache.commons.codec.binary.Base64InputStream;
-import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.codec.binary.Base64;
 import org.yes.cart.shoppingcart.ShoppingCart;
 import org.yes.cart.shoppingcart.support.CartDetuplizationException;
 import org.yes.cart.shoppingcart.support.CartTuplizationException;
+import org.yes.cart.shoppingcart.support.tokendriven.ShoppingCartStateSerializer;
+import org.yes.cart.shoppingcart.support.tokendriven.impl.ShoppingCartStateSerializerSdkImpl;
 import org.yes.cart.util.ShopCodeContext;
 
 import javax.crypto.*;
 import javax.crypto.spec.DESKeySpec;
-import java.io.*;
-import java.security.InvalidKeyException;
 import java.text.MessageFormat;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Default implementation of cookie tuplizer.
@@ -37,6 +39,12 @@ import java.text.MessageFormat;
  * bytes per cookie, so it allow to store 1228800 bytes aprox 1 Mb.
  * Base64 representation will be splited to chunks.
  * <p/>
+ * Cart is converted to bytes by pluggable {@link ShoppingCartStateSerializer} (Java serialisation
+ * by default, which is compatible with tokens produced by previous versions), which are then
+ * encrypted in a single pass and encoded to base64. Ciphers are not thread safe, so each
+ * encryption/decryption borrows a cipher from a lock free pool and returns it afterwards.
+ * Cipher that failed is discarded instead of being re-initialised.
+ * <p/>
  * User: dogma
  * Date: 2011-May-17
  * Time: 2:17:57 PM
@@ -45,10 +53,21 @@ public abstract class AbstractCryptedTuplizerImpl {
 
     private static final long serialVersionUID = 20100116L;
 
-    private final Cipher desCipher;
-    private final Cipher desUnCipher;
+    private final String cipherName;
+    private final SecretKey secretKey;
+
+    private final Queue<Cipher> cipherPool = new ConcurrentLinkedQueue<Cipher>();
+    private final Queue<Cipher> unCipherPool = new ConcurrentLinkedQueue<Cipher>();
 
-    private SecretKey secretKey;
+    private final ShoppingCartStateSerializer payloadSerializer;
+
+    private final AtomicLong cipherCount = new AtomicLong(0L);
+    private final AtomicLong tokenCount = new AtomicLong(0L);
+    private final AtomicLong tokenTimeNs = new AtomicLong(0L);
+    private final AtomicLong objectCount = new AtomicLong(0L);
+    private final AtomicLong objectTimeNs = new AtomicLong(0L);
+    private final AtomicLong failedCount = new AtomicLong(0L);
+    private final long startTime = System.currentTimeMillis();
 
     /**
      * Default Constructor.
@@ -60,6 +79,24 @@ public abstract class AbstractCryptedTuplizerImpl {
     public AbstractCryptedTuplizerImpl(final String keyRingPassword,
                                        final String secretKeyFactoryName,
                                        final String cipherName) {
+        this(keyRingPassword, secretKeyFactoryName, cipherName, new ShoppingCartStateSerializerSdkImpl());
+    }
+
+    /**
+     * Constructor with custom payload serializer.
+     *
+     * @param keyRingPassword      key ring password to use.
+     * @param secretKeyFactoryName Secret Key Factory Name.
+     * @param cipherName           Cipher name.
+     * @param payloadSerializer    serializer that converts cart to bytes before encryption.
+     */
+    public AbstractCryptedTuplizerImpl(final String keyRingPassword,
+                                       final String secretKeyFactoryName,
+                                       final String cipherName,
+                                       final ShoppingCartStateSerializer payloadSerializer) {
+
+        this.cipherName = cipherName;
+        this.payloadSerializer = payloadSerializer;
 
         try {
             final DESKeySpec desKeySpec = new DESKeySpec(keyRingPassword.getBytes());
@@ -67,13 +104,10 @@ public abstract class AbstractCryptedTuplizerImpl {
             SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(secretKeyFactoryName);
             secretKey = keyFactory.generateSecret(desKeySpec);
 
-            // Create Cipher
-            desCipher = Cipher.getInstance(cipherName);
-            desCipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            // Create Cipher and uncipher upfront, so that misconfiguration is detected on startup
+            cipherPool.offer(createCipher(Cipher.ENCRYPT_MODE));
+            unCipherPool.offer(createCipher(Cipher.DECRYPT_MODE));
 
-            // create uncipher
-            desUnCipher = Cipher.getInstance(cipherName);
-            desUnCipher.init(Cipher.DECRYPT_MODE, secretKey);
         } catch (Exception ike) {
             ShopCodeContext.getLog(this).error(ike.getMessage(), ike);
             throw new RuntimeException("Unable to load Cipher for CookieTuplizer", ike);
@@ -81,48 +115,61 @@ public abstract class AbstractCryptedTuplizerImpl {
 
     }
 
+    private Cipher createCipher(final int mode) throws Exception {
+        final Cipher cipher = Cipher.getInstance(cipherName);
+        cipher.init(mode, secretKey);
+        cipherCount.incrementAndGet();
+        return cipher;
+    }
+
+    private Cipher borrowCipher(final Queue<Cipher> pool, final int mode) throws Exception {
+        final Cipher cipher = pool.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        return createCipher(mode);
+    }
+
     /**
      * Converts cart object into a String tuple.
      *
-     * @param serializable cart
+     * @param shoppingCart cart
      *
      * @return string
      *
      * @throws CartTuplizationException when cannot convert to string tuple
      */
-    protected String toToken(final Serializable serializable) throws CartTuplizationException {
-
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        synchronized (desCipher) {
-            Base64OutputStream base64EncoderStream = new Base64OutputStream(byteArrayOutputStream, true, Integer.MAX_VALUE, null); //will be split manually
-            CipherOutputStream cipherOutputStream = new CipherOutputStream(base64EncoderStream, desCipher);
-            ObjectOutputStream objectOutputStream = null;
-            try {
-                objectOutputStream = new ObjectOutputStream(cipherOutputStream);
-                objectOutputStream.writeObject(serializable);
-                objectOutputStream.flush();
-                objectOutputStream.close();
-            } catch (Throwable ioe) {
-                ShopCodeContext.getLog(this).error(
-                        MessageFormat.format("Unable to serialize object {0}", serializable),
-                        ioe
-                );
-                throw new CartTuplizationException(ioe);
-            } finally {
-                try {
-                    if (objectOutputStream != null) {
-                        objectOutputStream.close();
-                    }
-                    cipherOutputStream.close();
-                    base64EncoderStream.close();
-                    byteArrayOutputStream.close();
-                } catch (IOException e) {
-                    ShopCodeContext.getLog(this).error("Can not close stream", e);
-                }
-            }
+    protected String toToken(final ShoppingCart shoppingCart) throws CartTuplizationException {
+
+        final long start = System.nanoTime();
+
+        final byte[] payload = payloadSerializer.saveState(shoppingCart);
+        if (payload == null) {
+            failedCount.incrementAndGet();
+            throw new CartTuplizationException(MessageFormat.format("Unable to serialize object {0}", shoppingCart));
+        }
+
+        final byte[] crypted;
+        try {
+            final Cipher cipher = borrowCipher(cipherPool, Cipher.ENCRYPT_MODE);
+            // doFinal resets cipher, so it is only returned to pool when successful
+            crypted = cipher.doFinal(payload);
+            cipherPool.offer(cipher);
+        } catch (Exception exp) {
+            failedCount.incrementAndGet();
+            ShopCodeContext.getLog(this).error(
+                    MessageFormat.format("Unable to encrypt object {0}", shoppingCart),
+                    exp
+            );
+            throw new CartTuplizationException(exp);
         }
 
-        return byteArrayOutputStream.toString();
+        final String token = Base64.encodeBase64String(crypted); // will be split manually
+
+        tokenCount.incrementAndGet();
+        tokenTimeNs.addAndGet(System.nanoTime() - start);
+
+        return token;
 
     }
 
@@ -140,36 +187,88 @@ public abstract class AbstractCryptedTuplizerImpl {
         if (tuple == null || tuple.length() == 0) {
             return null;
         }
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(tuple.getBytes());
-        final Base64InputStream base64DecoderStream = new Base64InputStream(byteArrayInputStream);
-        final CipherInputStream cipherInputStream = new CipherInputStream(base64DecoderStream, desUnCipher);
-        ObjectInputStream objectInputStream = null;
-        try {
-            objectInputStream = new ObjectInputStream(cipherInputStream);
-            return (ShoppingCart) objectInputStream.readObject();
 
+        final long start = System.nanoTime();
+
+        final byte[] payload;
+        try {
+            final Cipher unCipher = borrowCipher(unCipherPool, Cipher.DECRYPT_MODE);
+            // doFinal resets cipher, so it is only returned to pool when successful
+            payload = unCipher.doFinal(Base64.decodeBase64(tuple));
+            unCipherPool.offer(unCipher);
         } catch (Exception exception) {
-            try {
-                desUnCipher.init(Cipher.DECRYPT_MODE, secretKey); //reinit
-            } catch (InvalidKeyException e) {
-                ShopCodeContext.getLog(this).error("Cant reinit desUnCipher", exception);
-            }
+            failedCount.incrementAndGet();
             final String errMsg = "Unable to convert bytes assembled from tuple into object";
             ShopCodeContext.getLog(this).error(errMsg, exception);
             throw new CartDetuplizationException(errMsg, exception);
-        } finally {
-            try {
-                if (objectInputStream != null) {
-                    objectInputStream.close();
-                }
-                cipherInputStream.close();
-                base64DecoderStream.close();
-                byteArrayInputStream.close();
-            } catch (IOException ioe) { // leave this one silent as we have the object.
-                ShopCodeContext.getLog(this).error("Unable to close object stream", ioe);
-            }
+        }
+
+        final ShoppingCart cart = payloadSerializer.restoreState(payload);
+        if (cart == null) {
+            failedCount.incrementAndGet();
+            throw new CartDetuplizationException("Unable to convert bytes assembled from tuple into object");
+        }
+
+        objectCount.incrementAndGet();
+        objectTimeNs.addAndGet(System.nanoTime() - start);
+
+        return cart;
+
+    }
+
+    /**
+     * @return number of cipher instances created (both encrypt and decrypt)
+     */
+    public long getCipherCount() {
+        return cipherCount.get();
+    }
+
+    /**
+     * @return number of tokens created
+     */
+    public long getTokenCount() {
+        return tokenCount.get();
+    }
 
+    /**
+     * @return average time to create token in microseconds
+     */
+    public long getTokenAverageMicros() {
+        final long count = tokenCount.get();
+        return count == 0L ? 0L : tokenTimeNs.get() / count / 1000L;
+    }
+
+    /**
+     * @return number of objects restored from tokens
+     */
+    public long getObjectCount() {
+        return objectCount.get();
+    }
+
+    /**
+     * @return average time to restore object from token in microseconds
+     */
+    public long getObjectAverageMicros() {
+        final long count = objectCount.get();
+        return count == 0L ? 0L : objectTimeNs.get() / count / 1000L;
+    }
+
+    /**
+     * @return number of failed conversions (both directions)
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return average number of conversions (both directions) per second since this tuplizer was created
+     */
+    public double getThroughputPerSecond() {
+        final long elapsed = System.currentTimeMillis() - startTime;
+        if (elapsed <= 0L) {
+            return 0d;
         }
+        return (tokenCount.get() + objectCount.get()) * 1000d / elapsed;
     }
 
 }
@@ -43,6 +43,17 @@ public interface CartRepository {
      */
     String storeShoppingCart(ShoppingCart shoppingCart);
 
+    /**
+     * Store shopping cart and make sure that its state is persisted before this method
+     * returns (e.g. merge on login or before checkout) regardless of any deferred
+     * persistence configuration.
+     *
+     * @param shoppingCart shopping cart
+     *
+     * @return token for later retrieval
+     */
+    String flushShoppingCart(ShoppingCart shoppingCart);
+
     /**
      * Evict shopping cart.
      *
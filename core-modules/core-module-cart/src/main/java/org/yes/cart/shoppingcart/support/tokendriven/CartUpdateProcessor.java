@@ -18,6 +18,8 @@ package org.yes.cart.shoppingcart.support.tokendriven;
 
 import org.yes.cart.shoppingcart.ShoppingCart;
 
+import java.util.List;
+
 /**
  * User: denispavlov
  * Date: 22/08/2014
@@ -37,6 +39,15 @@ public interface CartUpdateProcessor {
      */
     void updateShoppingCart(ShoppingCart shoppingCart);
 
+    /**
+     * Same as {@link #updateShoppingCart(ShoppingCart)} but for a batch of carts in single
+     * transaction, so that existing states are looked up with one query and updates are
+     * sent in JDBC batch.
+     *
+     * @param shoppingCarts carts to merge (if required) and persist
+     */
+    void updateShoppingCarts(List<ShoppingCart> shoppingCarts);
+
     /**
      * Restore shopping cart from bytes as is.
      *
@@ -109,6 +109,37 @@ public class CartUpdateProcessorImpl implements CartUpdateProcessor {
 
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void updateShoppingCarts(final List<ShoppingCart> shoppingCarts) {
+
+        final List<String> guids = new ArrayList<String>(shoppingCarts.size());
+        for (final ShoppingCart shoppingCart : shoppingCarts) {
+            guids.add(shoppingCart.getGuid());
+        }
+
+        final Map<String, ShoppingCartState> dbStates = new HashMap<String, ShoppingCartState>();
+        for (final ShoppingCartState dbState : shoppingCartStateService.findByGuids(guids)) {
+            dbStates.put(dbState.getGuid(), dbState);
+        }
+
+        for (final ShoppingCart shoppingCart : shoppingCarts) {
+
+            final ShoppingCartState dbState = dbStates.get(shoppingCart.getGuid());
+            if (dbState == null ||
+                    (shoppingCart.getLogonState() == ShoppingCart.LOGGED_IN && StringUtils.isBlank(dbState.getCustomerEmail()))) {
+                // New state or login merge - full update
+                updateShoppingCart(shoppingCart);
+            } else {
+                dbState.setEmpty(shoppingCart.getCartItemsCount() == 0);
+                dbState.setState(saveState(shoppingCart));
+                shoppingCartStateService.update(dbState);
+            }
+
+        }
+
+    }
+
     private void mergeOrderInfo(final ShoppingCart shoppingCart, final ShoppingCart oldCart, final Map<String, Object> cmdParams) {
 
         final OrderInfo shoppingCartInfo = shoppingCart.getOrderInfo();
@@ -32,7 +32,28 @@ import org.yes.cart.util.ShopCodeContext;
 import org.yes.cart.shoppingcart.support.tokendriven.CartRepository;
 import org.yes.cart.shoppingcart.support.tokendriven.CartUpdateProcessor;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
+ * Cart repository that uses cache as first level storage and DB (via {@link ShoppingCartStateService})
+ * as persistent storage.
+ *
+ * In write behind mode (write behind interval is positive) modified carts are only put into cache and
+ * dirty set. Dirty set is flushed by background thread every interval or as soon as it reaches batch
+ * size. Several modifications of the same cart between flushes result in a single update. If batch
+ * update fails carts of this batch are updated one by one, so that single bad cart does not hold back
+ * the whole batch. Carts that fail are retried on next flush, up to max attempts after which they are
+ * dropped (cart remains in cache, but is not persisted until it is modified again).
+ *
+ * All writes to persistent storage (batch flush, immediate flush and eviction) are done under the same
+ * lock, so that older version of cart taken by background flush never overwrites newer one.
+ *
  * User: denispavlov
  * Date: 21/08/2014
  * Time: 20:11
@@ -47,20 +68,61 @@ public class ResilientCartRepositoryImpl implements CartRepository {
     private final CartUpdateProcessor cartUpdateProcessor;
     private final TaskExecutor taskExecutor;
 
+    private final ConcurrentMap<String, DirtyCart> dirty = new ConcurrentHashMap<String, DirtyCart>();
+    private final ScheduledExecutorService writeBehindExecutor;
+    private final int writeBehindBatchSize;
+    private int writeBehindMaxAttempts = 5;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+
+    private final AtomicLong flushedCount = new AtomicLong(0L);
+    private final AtomicLong flushFailedCount = new AtomicLong(0L);
+    private final AtomicLong flushDroppedCount = new AtomicLong(0L);
+    private final AtomicLong flushBatchCount = new AtomicLong(0L);
+    private volatile long lastFlushLag = 0L;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushRequested.set(false);
+            flushDirty();
+        }
+    };
+
     public ResilientCartRepositoryImpl(final ShoppingCartStateService shoppingCartStateService,
                                        final ShopService shopService,
                                        final CartUpdateProcessor cartUpdateProcessor,
                                        final int sessionExpiryInSeconds,
                                        final CacheManager cacheManager,
-                                       final TaskExecutor taskExecutor) {
+                                       final TaskExecutor taskExecutor,
+                                       final long writeBehindIntervalMs,
+                                       final int writeBehindBatchSize) {
 
         this.shoppingCartStateService = shoppingCartStateService;
         this.shopService = shopService;
         this.cartUpdateProcessor = cartUpdateProcessor;
         this.sessionExpiryInSeconds = sessionExpiryInSeconds;
         this.taskExecutor = taskExecutor;
+        this.writeBehindBatchSize = writeBehindBatchSize > 0 ? writeBehindBatchSize : 100;
         CART_CACHE = cacheManager.getCache("web.shoppingCart");
 
+        if (writeBehindIntervalMs > 0L) {
+            this.writeBehindExecutor = Executors.newSingleThreadScheduledExecutor();
+            this.writeBehindExecutor.scheduleWithFixedDelay(flushTask, writeBehindIntervalMs, writeBehindIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.writeBehindExecutor = null;
+        }
+
+    }
+
+    public ResilientCartRepositoryImpl(final ShoppingCartStateService shoppingCartStateService,
+                                       final ShopService shopService,
+                                       final CartUpdateProcessor cartUpdateProcessor,
+                                       final int sessionExpiryInSeconds,
+                                       final CacheManager cacheManager,
+                                       final TaskExecutor taskExecutor) {
+
+        this(shoppingCartStateService, shopService, cartUpdateProcessor, sessionExpiryInSeconds, cacheManager, taskExecutor, 0L, 0);
     }
 
     public ResilientCartRepositoryImpl(final ShoppingCartStateService shoppingCartStateService,
@@ -81,7 +143,7 @@ public class ResilientCartRepositoryImpl implements CartRepository {
         }
 
         // Try cache
-        final ShoppingCart cachedCart = getFromValueWrapper(CART_CACHE.get(token));
+        final ShoppingCart cachedCart = getFromCacheOrDirty(token);
         if (cachedCart != null) {
 
             final boolean invalidateLogin =
@@ -187,6 +249,20 @@ public class ResilientCartRepositoryImpl implements CartRepository {
     }
 
 
+    private ShoppingCart getFromCacheOrDirty(final String token) {
+
+        final ShoppingCart cachedCart = getFromValueWrapper(CART_CACHE.get(token));
+        if (cachedCart == null) {
+            // cache entry may have expired before dirty cart was flushed, dirty cart is still the latest
+            final DirtyCart dirtyCart = dirty.get(token);
+            if (dirtyCart != null) {
+                return dirtyCart.cart;
+            }
+        }
+        return cachedCart;
+
+    }
+
     private ShoppingCart getFromValueWrapper(final Cache.ValueWrapper wrapper) {
 
         if (wrapper != null) {
@@ -212,9 +288,29 @@ public class ResilientCartRepositoryImpl implements CartRepository {
 
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public String flushShoppingCart(final ShoppingCart shoppingCart) {
+
+        synchronized (flushLock) {
+
+            dirty.remove(shoppingCart.getGuid());
+
+            CART_CACHE.put(shoppingCart.getGuid(), shoppingCart);
+
+            createRunnable(shoppingCart, null, null).run();
+
+        }
+
+        return shoppingCart.getGuid();
+
+    }
+
     void storeAsynchronously(final ShoppingCart shoppingCart) {
 
-        if (taskExecutor == null) {
+        if (writeBehindExecutor != null) {
+            markDirty(shoppingCart);
+        } else if (taskExecutor == null) {
             createRunnable(shoppingCart, null, null).run();
         } else {
             taskExecutor.execute(createRunnable(shoppingCart,
@@ -250,16 +346,229 @@ public class ResilientCartRepositoryImpl implements CartRepository {
         };
     }
 
+    void markDirty(final ShoppingCart shoppingCart) {
+
+        final String guid = shoppingCart.getGuid();
+        while (true) {
+            final DirtyCart existing = dirty.putIfAbsent(guid, new DirtyCart(shoppingCart, System.currentTimeMillis(), 0));
+            if (existing == null || dirty.replace(guid, existing, new DirtyCart(shoppingCart, existing.since, 0))) {
+                break;
+            }
+        }
+
+        if (dirty.size() >= writeBehindBatchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                writeBehindExecutor.execute(flushTask);
+            } catch (RejectedExecutionException ree) {
+                // shutting down, remaining carts are flushed in destroy()
+                flushRequested.set(false);
+            }
+        }
+
+    }
+
+    /**
+     * Persist all dirty carts in batches of write behind batch size.
+     *
+     * @return number of carts persisted
+     */
+    int flushDirty() {
+
+        synchronized (flushLock) {
+
+            int flushed = 0;
+            long maxLag = 0L;
+            final List<DirtyCart> batch = new ArrayList<DirtyCart>(writeBehindBatchSize);
+            final Iterator<Map.Entry<String, DirtyCart>> it = dirty.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, DirtyCart> entry = it.next();
+                // only take this version, if cart was modified since we will get it on next flush
+                if (dirty.remove(entry.getKey(), entry.getValue())) {
+                    batch.add(entry.getValue());
+                }
+                if (batch.size() == writeBehindBatchSize || (!it.hasNext() && !batch.isEmpty())) {
+                    final long lag = flushBatch(batch);
+                    if (lag > maxLag) {
+                        maxLag = lag;
+                    }
+                    flushed += batch.size();
+                    batch.clear();
+                }
+            }
+            if (flushed > 0) {
+                lastFlushLag = maxLag;
+            }
+            return flushed;
+
+        }
+
+    }
+
+    private long flushBatch(final List<DirtyCart> batch) {
+
+        final List<ShoppingCart> carts = new ArrayList<ShoppingCart>(batch.size());
+        long oldest = Long.MAX_VALUE;
+        for (final DirtyCart dirtyCart : batch) {
+            carts.add(dirtyCart.cart);
+            if (dirtyCart.since < oldest) {
+                oldest = dirtyCart.since;
+            }
+        }
+
+        try {
+
+            // Update process potentially can merge the cart with other stored states (e.g. when user logs in)
+            cartUpdateProcessor.updateShoppingCarts(carts);
+            // So we re-save it in cache
+            for (final ShoppingCart cart : carts) {
+                CART_CACHE.put(cart.getGuid(), cart);
+            }
+            flushedCount.addAndGet(carts.size());
+
+        } catch (Exception exp) {
+
+            ShopCodeContext.getLog(this).error("Unable to flush " + carts.size() + " carts in batch, flushing one by one", exp);
+            for (final DirtyCart dirtyCart : batch) {
+                flushSingle(dirtyCart);
+            }
+
+        }
+
+        flushBatchCount.incrementAndGet();
+        return System.currentTimeMillis() - oldest;
+
+    }
+
+    private void flushSingle(final DirtyCart dirtyCart) {
+
+        try {
+
+            createRunnable(dirtyCart.cart, null, null).run();
+            flushedCount.incrementAndGet();
+
+        } catch (Exception exp) {
+
+            flushFailedCount.incrementAndGet();
+            final int attempts = dirtyCart.attempts + 1;
+            if (attempts < writeBehindMaxAttempts) {
+                ShopCodeContext.getLog(this).error("Unable to flush cart " + dirtyCart.cart.getGuid() + ", will retry on next flush", exp);
+                // only re-queue if there is no newer version
+                dirty.putIfAbsent(dirtyCart.cart.getGuid(), new DirtyCart(dirtyCart.cart, dirtyCart.since, attempts));
+            } else {
+                ShopCodeContext.getLog(this).error("Unable to flush cart " + dirtyCart.cart.getGuid() + " after "
+                        + attempts + " attempts, dropping it", exp);
+                flushDroppedCount.incrementAndGet();
+            }
+
+        }
+
+    }
+
+    /**
+     * Stop write behind and flush all dirty carts.
+     */
+    public void destroy() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.shutdown();
+            flushDirty();
+        }
+    }
+
+    /**
+     * @return number of carts waiting to be persisted
+     */
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * @return time in milliseconds since oldest dirty cart was modified
+     */
+    public long getFlushLagMs() {
+        long oldest = Long.MAX_VALUE;
+        for (final DirtyCart dirtyCart : dirty.values()) {
+            if (dirtyCart.since < oldest) {
+                oldest = dirtyCart.since;
+            }
+        }
+        return oldest == Long.MAX_VALUE ? 0L : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * @return max time in milliseconds cart waited to be persisted during last flush
+     */
+    public long getLastFlushLagMs() {
+        return lastFlushLag;
+    }
+
+    /**
+     * @return number of carts persisted by write behind
+     */
+    public long getFlushedCount() {
+        return flushedCount.get();
+    }
+
+    /**
+     * @return number of failed attempts to persist cart by write behind
+     */
+    public long getFlushFailedCount() {
+        return flushFailedCount.get();
+    }
+
+    /**
+     * @return number of carts that were dropped after max flush attempts
+     */
+    public long getFlushDroppedCount() {
+        return flushDroppedCount.get();
+    }
+
+    /**
+     * IoC. Max attempts to persist cart by write behind before it is dropped.
+     *
+     * @param writeBehindMaxAttempts max attempts
+     */
+    public void setWriteBehindMaxAttempts(final int writeBehindMaxAttempts) {
+        this.writeBehindMaxAttempts = writeBehindMaxAttempts;
+    }
+
+    /**
+     * @return number of write behind batches
+     */
+    public long getFlushBatchCount() {
+        return flushBatchCount.get();
+    }
+
     /** {@inheritDoc} */
     @Override
     public void evictShoppingCart(final ShoppingCart shoppingCart) {
 
-        CART_CACHE.evict(shoppingCart.getGuid());
-        final ShoppingCartState state = shoppingCartStateService.findByGuid(shoppingCart.getGuid());
-        if (state != null) {
-            shoppingCartStateService.delete(state);
+        synchronized (flushLock) {
+
+            dirty.remove(shoppingCart.getGuid());
+            CART_CACHE.evict(shoppingCart.getGuid());
+            final ShoppingCartState state = shoppingCartStateService.findByGuid(shoppingCart.getGuid());
+            if (state != null) {
+                shoppingCartStateService.delete(state);
+            }
+
         }
 
     }
 
+    /**
+     * Dirty cart entry with time of first modification since last flush and number of failed flush attempts.
+     */
+    private static class DirtyCart {
+
+        private final ShoppingCart cart;
+        private final long since;
+        private final int attempts;
+
+        private DirtyCart(final ShoppingCart cart, final long since, final int attempts) {
+            this.cart = cart;
+            this.since = since;
+            this.attempts = attempts;
+        }
+    }
+
 }
@@ -0,0 +1,607 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.shoppingcart.support.tokendriven.impl;
+
+import org.yes.cart.shoppingcart.*;
+import org.yes.cart.shoppingcart.impl.CartItemImpl;
+import org.yes.cart.shoppingcart.impl.ShoppingCartImpl;
+import org.yes.cart.shoppingcart.impl.TotalImpl;
+import org.yes.cart.shoppingcart.support.tokendriven.ShoppingCartStateSerializer;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.*;
+
+/**
+ * Compact binary cart state serializer.
+ *
+ * Format is a two byte magic header followed by format version and the cart body. Body uses:
+ * - varints (zig-zag for signed values) for all numbers;
+ * - string table, so that repeated values (SKU codes, promo codes, tax codes etc) are written once
+ *   and referenced by index afterwards;
+ * - unscaled long and scale for money amounts (falls back to big integer bytes for values that do
+ *   not fit into long);
+ * - bit flags for booleans.
+ *
+ * States written by {@link ShoppingCartStateSerializerSdkImpl} and {@link ShoppingCartStateSerializerJacksonImpl}
+ * are recognised by their header and restored using respective serializer, so this serializer can
+ * replace either of them without loosing persisted carts.
+ *
+ * Cart internals that do not have public mutators are accessed the same way as Jackson does, through
+ * fields (resolved once).
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 10:12
+ */
+public class ShoppingCartStateSerializerBinaryImpl implements ShoppingCartStateSerializer {
+
+    static final byte MAGIC_0 = (byte) 'Y';
+    static final byte MAGIC_1 = (byte) 'C';
+
+    /** Current format version. Readers for all previous versions must be kept. */
+    static final int VERSION_1 = 1;
+
+    private static final byte SDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte SDK_MAGIC_1 = (byte) 0xED;
+    private static final byte JSON_START = (byte) '{';
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int DECIMAL_NULL = 0;
+    private static final int DECIMAL_LONG = 1;
+    private static final int DECIMAL_BIG = 2;
+
+    private static final int ITEM_GIFT = 1;
+    private static final int ITEM_PROMO_APPLIED = 1 << 1;
+    private static final int ITEM_FIXED_PRICE = 1 << 2;
+    private static final int ITEM_TAX_EXCLUSIVE = 1 << 3;
+
+    private static final int CART_PROMOTIONS_DISABLED = 1;
+
+    private static final int ORDER_MULTIPLE_DELIVERY = 1;
+    private static final int ORDER_SEPARATE_BILLING = 1 << 1;
+    private static final int ORDER_BILLING_NOT_REQUIRED = 1 << 2;
+    private static final int ORDER_DELIVERY_NOT_REQUIRED = 1 << 3;
+    private static final int ORDER_HAS_CARRIER_SLA = 1 << 4;
+    private static final int ORDER_HAS_BILLING_ADDRESS = 1 << 5;
+    private static final int ORDER_HAS_DELIVERY_ADDRESS = 1 << 6;
+
+    private static final int TOTAL_PRESENT = 1;
+    private static final int TOTAL_ORDER_PROMO_APPLIED = 1 << 1;
+    private static final int TOTAL_DELIVERY_PROMO_APPLIED = 1 << 2;
+
+    private final Field cartGuid;
+    private final Field cartModifiedTimestamp;
+    private final Field cartProcessingStartTimestamp;
+    private final Field cartTotal;
+    private final Field cartItems;
+    private final Field cartGifts;
+    private final Field cartShipping;
+    private final Field cartCoupons;
+    private final Field itemSkuCode;
+    private final Field itemQuantity;
+
+    private final ShoppingCartStateSerializer sdkSerializer;
+    private final ShoppingCartStateSerializer jacksonSerializer;
+
+    public ShoppingCartStateSerializerBinaryImpl() {
+        this(new ShoppingCartStateSerializerSdkImpl(), new ShoppingCartStateSerializerJacksonImpl());
+    }
+
+    /**
+     * @param sdkSerializer     serializer for states in Java serialisation format
+     * @param jacksonSerializer serializer for states in JSON format
+     */
+    public ShoppingCartStateSerializerBinaryImpl(final ShoppingCartStateSerializer sdkSerializer,
+                                                 final ShoppingCartStateSerializer jacksonSerializer) {
+        this.sdkSerializer = sdkSerializer;
+        this.jacksonSerializer = jacksonSerializer;
+
+        cartGuid = field(ShoppingCartImpl.class, "guid");
+        cartModifiedTimestamp = field(ShoppingCartImpl.class, "modifiedTimestamp");
+        cartProcessingStartTimestamp = field(ShoppingCartImpl.class, "processingStartTimestamp");
+        cartTotal = field(ShoppingCartImpl.class, "total");
+        cartItems = field(ShoppingCartImpl.class, "items");
+        cartGifts = field(ShoppingCartImpl.class, "gifts");
+        cartShipping = field(ShoppingCartImpl.class, "shipping");
+        cartCoupons = field(ShoppingCartImpl.class, "coupons");
+        itemSkuCode = field(CartItemImpl.class, "productSkuCode");
+        itemQuantity = field(CartItemImpl.class, "quantity");
+    }
+
+    private static Field field(final Class<?> clazz, final String name) {
+        try {
+            final Field field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException nsfe) {
+            throw new IllegalStateException("Cart implementation is not compatible with binary serializer, missing field: "
+                    + clazz.getName() + "." + name, nsfe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ShoppingCart restoreState(final byte[] bytes) {
+
+        if (bytes == null || bytes.length < 2) {
+            return null;
+        }
+
+        if (bytes[0] == SDK_MAGIC_0 && bytes[1] == SDK_MAGIC_1) {
+            return sdkSerializer.restoreState(bytes);
+        } else if (bytes[0] == JSON_START) {
+            return jacksonSerializer.restoreState(bytes);
+        } else if (bytes[0] != MAGIC_0 || bytes[1] != MAGIC_1) {
+            ShopCodeContext.getLog(this).error("Unable to restore cart, unknown state format");
+            return null;
+        }
+
+        try {
+
+            final Input in = new Input(bytes, 2);
+            final int version = in.readVarInt();
+            switch (version) {
+                case VERSION_1:
+                    return readCartV1(in);
+                default:
+                    ShopCodeContext.getLog(this).error("Unable to restore cart, unsupported binary state version {}", version);
+                    return null;
+            }
+
+        } catch (Exception exception) {
+            final String errMsg = "Unable to convert bytes assembled from tuple into object";
+            ShopCodeContext.getLog(this).error(errMsg, exception);
+            return null;
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] saveState(final ShoppingCart shoppingCart) {
+
+        try {
+
+            final Output out = new Output(512);
+            out.writeByte(MAGIC_0);
+            out.writeByte(MAGIC_1);
+            out.writeVarInt(VERSION_1);
+            writeCartV1(out, (ShoppingCartImpl) shoppingCart);
+            return out.toByteArray();
+
+        } catch (Exception exp) {
+            ShopCodeContext.getLog(this).error(
+                    MessageFormat.format("Unable to serialize object {0}", shoppingCart),
+                    exp
+            );
+        }
+
+        return null;
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private void writeCartV1(final Output out, final ShoppingCartImpl cart) throws IllegalAccessException {
+
+        out.writeString((String) cartGuid.get(cart));
+        out.writeString(cart.getCurrentLocale());
+        out.writeString(cart.getCurrencyCode());
+        out.writeVarLong(cartModifiedTimestamp.getLong(cart));
+        out.writeVarLong(cartProcessingStartTimestamp.getLong(cart));
+        out.writeVarInt(cart.isPromotionsDisabled() ? CART_PROMOTIONS_DISABLED : 0);
+        out.writeString(cart.getOrdernum());
+
+        writeItems(out, (List<CartItemImpl>) cartItems.get(cart));
+        writeItems(out, (List<CartItemImpl>) cartGifts.get(cart));
+        writeItems(out, (List<CartItemImpl>) cartShipping.get(cart));
+        out.writeStrings((Collection<String>) cartCoupons.get(cart));
+
+        final ShoppingContext ctx = cart.getShoppingContext();
+        out.writeString(ctx.getCustomerName());
+        out.writeString(ctx.getCustomerEmail());
+        out.writeVarLong(ctx.getShopId());
+        out.writeString(ctx.getShopCode());
+        out.writeString(ctx.getCountryCode());
+        out.writeString(ctx.getStateCode());
+        out.writeStrings(ctx.getCustomerShops());
+        out.writeStrings(ctx.getLatestViewedSkus());
+        out.writeStrings(ctx.getLatestViewedCategories());
+        out.writeString(ctx.getResolvedIp());
+
+        final OrderInfo info = cart.getOrderInfo();
+        int flags = 0;
+        if (info.isMultipleDelivery()) { flags |= ORDER_MULTIPLE_DELIVERY; }
+        if (info.isSeparateBillingAddress()) { flags |= ORDER_SEPARATE_BILLING; }
+        if (info.isBillingAddressNotRequired()) { flags |= ORDER_BILLING_NOT_REQUIRED; }
+        if (info.isDeliveryAddressNotRequired()) { flags |= ORDER_DELIVERY_NOT_REQUIRED; }
+        if (info.getCarrierSlaId() != null) { flags |= ORDER_HAS_CARRIER_SLA; }
+        if (info.getBillingAddressId() != null) { flags |= ORDER_HAS_BILLING_ADDRESS; }
+        if (info.getDeliveryAddressId() != null) { flags |= ORDER_HAS_DELIVERY_ADDRESS; }
+        out.writeVarInt(flags);
+        if (info.getCarrierSlaId() != null) { out.writeVarLong(info.getCarrierSlaId()); }
+        if (info.getBillingAddressId() != null) { out.writeVarLong(info.getBillingAddressId()); }
+        if (info.getDeliveryAddressId() != null) { out.writeVarLong(info.getDeliveryAddressId()); }
+        out.writeString(info.getPaymentGatewayLabel());
+        out.writeString(info.getOrderMessage());
+
+        final Total total = (Total) cartTotal.get(cart);
+        if (total == null) {
+            out.writeVarInt(0);
+        } else {
+            out.writeVarInt(TOTAL_PRESENT
+                    | (total.isOrderPromoApplied() ? TOTAL_ORDER_PROMO_APPLIED : 0)
+                    | (total.isDeliveryPromoApplied() ? TOTAL_DELIVERY_PROMO_APPLIED : 0));
+            out.writeDecimal(total.getListSubTotal());
+            out.writeDecimal(total.getSaleSubTotal());
+            out.writeDecimal(total.getNonSaleSubTotal());
+            out.writeDecimal(total.getPriceSubTotal());
+            out.writeString(total.getAppliedOrderPromo());
+            out.writeDecimal(total.getSubTotal());
+            out.writeDecimal(total.getSubTotalTax());
+            out.writeDecimal(total.getSubTotalAmount());
+            out.writeDecimal(total.getDeliveryListCost());
+            out.writeDecimal(total.getDeliveryCost());
+            out.writeString(total.getAppliedDeliveryPromo());
+            out.writeDecimal(total.getDeliveryTax());
+            out.writeDecimal(total.getDeliveryCostAmount());
+            out.writeDecimal(total.getTotal());
+            out.writeDecimal(total.getTotalTax());
+            out.writeDecimal(total.getListTotalAmount());
+            out.writeDecimal(total.getTotalAmount());
+        }
+
+    }
+
+    private void writeItems(final Output out, final List<CartItemImpl> items) {
+
+        if (items == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(items.size());
+        for (final CartItemImpl item : items) {
+            int flags = 0;
+            if (item.isGift()) { flags |= ITEM_GIFT; }
+            if (item.isPromoApplied()) { flags |= ITEM_PROMO_APPLIED; }
+            if (item.isFixedPrice()) { flags |= ITEM_FIXED_PRICE; }
+            if (item.isTaxExclusiveOfPrice()) { flags |= ITEM_TAX_EXCLUSIVE; }
+            out.writeVarInt(flags);
+            out.writeString(item.getProductSkuCode());
+            out.writeDecimal(item.getQty());
+            out.writeDecimal(item.getPrice());
+            out.writeDecimal(item.getSalePrice());
+            out.writeDecimal(item.getListPrice());
+            out.writeDecimal(item.getNetPrice());
+            out.writeDecimal(item.getGrossPrice());
+            out.writeDecimal(item.getTaxRate());
+            out.writeString(item.getTaxCode());
+            out.writeString(item.getAppliedPromo());
+        }
+
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private ShoppingCart readCartV1(final Input in) throws IllegalAccessException {
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+
+        cartGuid.set(cart, in.readString());
+        cart.setCurrentLocale(in.readString());
+        cart.setCurrencyCode(in.readString());
+        cartModifiedTimestamp.setLong(cart, in.readVarLong());
+        cartProcessingStartTimestamp.setLong(cart, in.readVarLong());
+        cart.setPromotionsDisabled((in.readVarInt() & CART_PROMOTIONS_DISABLED) != 0);
+        cart.setOrdernum(in.readString());
+
+        readItems(in, (List<CartItemImpl>) cartItems.get(cart));
+        readItems(in, (List<CartItemImpl>) cartGifts.get(cart));
+        readItems(in, (List<CartItemImpl>) cartShipping.get(cart));
+        final List<String> coupons = in.readStrings();
+        if (coupons != null) {
+            ((Collection<String>) cartCoupons.get(cart)).addAll(coupons);
+        }
+
+        final MutableShoppingContext ctx = cart.getShoppingContext();
+        ctx.setCustomerName(in.readString());
+        ctx.setCustomerEmail(in.readString());
+        ctx.setShopId(in.readVarLong());
+        final String shopCode = in.readString();
+        if (shopCode != null) {
+            ctx.setShopCode(shopCode);
+        }
+        ctx.setCountryCode(in.readString());
+        ctx.setStateCode(in.readString());
+        ctx.setCustomerShops(in.readStrings());
+        ctx.setLatestViewedSkus(in.readStrings());
+        ctx.setLatestViewedCategories(in.readStrings());
+        ctx.setResolvedIp(in.readString());
+
+        final MutableOrderInfo info = cart.getOrderInfo();
+        final int flags = in.readVarInt();
+        info.setMultipleDelivery((flags & ORDER_MULTIPLE_DELIVERY) != 0);
+        info.setSeparateBillingAddress((flags & ORDER_SEPARATE_BILLING) != 0);
+        info.setBillingAddressNotRequired((flags & ORDER_BILLING_NOT_REQUIRED) != 0);
+        info.setDeliveryAddressNotRequired((flags & ORDER_DELIVERY_NOT_REQUIRED) != 0);
+        if ((flags & ORDER_HAS_CARRIER_SLA) != 0) { info.setCarrierSlaId(in.readVarLong()); }
+        if ((flags & ORDER_HAS_BILLING_ADDRESS) != 0) { info.setBillingAddressId(in.readVarLong()); }
+        if ((flags & ORDER_HAS_DELIVERY_ADDRESS) != 0) { info.setDeliveryAddressId(in.readVarLong()); }
+        info.setPaymentGatewayLabel(in.readString());
+        info.setOrderMessage(in.readString());
+
+        final int totalFlags = in.readVarInt();
+        if ((totalFlags & TOTAL_PRESENT) == 0) {
+            cartTotal.set(cart, null);
+        } else {
+            final BigDecimal listSubTotal = in.readDecimal();
+            final BigDecimal saleSubTotal = in.readDecimal();
+            final BigDecimal nonSaleSubTotal = in.readDecimal();
+            final BigDecimal priceSubTotal = in.readDecimal();
+            final String appliedOrderPromo = in.readString();
+            final BigDecimal subTotal = in.readDecimal();
+            final BigDecimal subTotalTax = in.readDecimal();
+            final BigDecimal subTotalAmount = in.readDecimal();
+            final BigDecimal deliveryListCost = in.readDecimal();
+            final BigDecimal deliveryCost = in.readDecimal();
+            final String appliedDeliveryPromo = in.readString();
+            final BigDecimal deliveryTax = in.readDecimal();
+            final BigDecimal deliveryCostAmount = in.readDecimal();
+            final BigDecimal total = in.readDecimal();
+            final BigDecimal totalTax = in.readDecimal();
+            final BigDecimal listTotalAmount = in.readDecimal();
+            final BigDecimal totalAmount = in.readDecimal();
+            cartTotal.set(cart, new TotalImpl(
+                    listSubTotal, saleSubTotal, nonSaleSubTotal, priceSubTotal,
+                    (totalFlags & TOTAL_ORDER_PROMO_APPLIED) != 0, appliedOrderPromo,
+                    subTotal, subTotalTax, subTotalAmount,
+                    deliveryListCost, deliveryCost,
+                    (totalFlags & TOTAL_DELIVERY_PROMO_APPLIED) != 0, appliedDeliveryPromo,
+                    deliveryTax, deliveryCostAmount,
+                    total, totalTax, listTotalAmount, totalAmount
+            ));
+        }
+
+        return cart;
+
+    }
+
+    private void readItems(final Input in, final List<CartItemImpl> items) throws IllegalAccessException {
+
+        final int size = in.readVarInt();
+        for (int i = 0; i < size; i++) {
+            final CartItemImpl item = new CartItemImpl();
+            final int flags = in.readVarInt();
+            item.setGift((flags & ITEM_GIFT) != 0);
+            item.setPromoApplied((flags & ITEM_PROMO_APPLIED) != 0);
+            item.setFixedPrice((flags & ITEM_FIXED_PRICE) != 0);
+            item.setTaxExclusiveOfPrice((flags & ITEM_TAX_EXCLUSIVE) != 0);
+            itemSkuCode.set(item, in.readString());
+            itemQuantity.set(item, in.readDecimal());
+            item.setPrice(in.readDecimal());
+            item.setSalePrice(in.readDecimal());
+            item.setListPrice(in.readDecimal());
+            item.setNetPrice(in.readDecimal());
+            item.setGrossPrice(in.readDecimal());
+            item.setTaxRate(in.readDecimal());
+            item.setTaxCode(in.readString());
+            item.setAppliedPromo(in.readString());
+            items.add(item);
+        }
+
+    }
+
+
+    /**
+     * Growable output buffer with string table.
+     */
+    static final class Output {
+
+        private byte[] buf;
+        private int pos = 0;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        Output(final int initialSize) {
+            buf = new byte[initialSize];
+        }
+
+        private void ensure(final int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + extra));
+            }
+        }
+
+        void writeByte(final byte value) {
+            ensure(1);
+            buf[pos++] = value;
+        }
+
+        void writeVarInt(final int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(final long value) {
+            ensure(10);
+            long v = value;
+            while ((v & ~0x7FL) != 0L) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeZigZag(final long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Strings are written as reference: 0 - null, 1 - new string (length and UTF-8 bytes follow),
+         * 2+ - index of previously written string.
+         */
+        void writeString(final String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            final Integer ref = strings.get(value);
+            if (ref != null) {
+                writeVarInt(ref + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            final byte[] utf = value.getBytes(UTF8);
+            writeVarInt(1);
+            writeVarInt(utf.length);
+            ensure(utf.length);
+            System.arraycopy(utf, 0, buf, pos, utf.length);
+            pos += utf.length;
+        }
+
+        /**
+         * Collections are written as size + 1 (0 for null) followed by string references.
+         */
+        void writeStrings(final Collection<String> values) {
+            if (values == null) {
+                writeVarInt(0);
+                return;
+            }
+            writeVarInt(values.size() + 1);
+            for (final String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * Decimals are written as header ((zig-zag scale << 2) | kind) followed by zig-zag unscaled long,
+         * or by length and bytes of big integer for values that do not fit into long.
+         */
+        void writeDecimal(final BigDecimal value) {
+            if (value == null) {
+                writeVarInt(DECIMAL_NULL);
+                return;
+            }
+            final int scale = value.scale();
+            final BigInteger unscaled = value.unscaledValue();
+            final long scaleHeader = ((long) scale << 1) ^ ((long) scale >> 63);
+            if (unscaled.bitLength() < 64) {
+                writeVarLong((scaleHeader << 2) | DECIMAL_LONG);
+                writeZigZag(unscaled.longValue());
+            } else {
+                writeVarLong((scaleHeader << 2) | DECIMAL_BIG);
+                final byte[] big = unscaled.toByteArray();
+                writeVarInt(big.length);
+                ensure(big.length);
+                System.arraycopy(big, 0, buf, pos, big.length);
+                pos += big.length;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+    }
+
+    /**
+     * Input reader counterpart of {@link Output}.
+     */
+    static final class Input {
+
+        private final byte[] buf;
+        private int pos;
+        private final List<String> strings = new ArrayList<String>();
+
+        Input(final byte[] buf, final int offset) {
+            this.buf = buf;
+            this.pos = offset;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long result = 0L;
+            int shift = 0;
+            while (shift < 64) {
+                final byte b = buf[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+            throw new IllegalStateException("Malformed varint at " + pos);
+        }
+
+        long readZigZag() {
+            final long v = readVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        String readString() {
+            final int ref = readVarInt();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref == 1) {
+                final int len = readVarInt();
+                final String value = new String(buf, pos, len, UTF8);
+                pos += len;
+                strings.add(value);
+                return value;
+            }
+            return strings.get(ref - 2);
+        }
+
+        List<String> readStrings() {
+            final int size = readVarInt();
+            if (size == 0) {
+                return null;
+            }
+            final List<String> values = new ArrayList<String>(size - 1);
+            for (int i = 1; i < size; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        BigDecimal readDecimal() {
+            final long header = readVarLong();
+            final int kind = (int) (header & 3);
+            if (kind == DECIMAL_NULL) {
+                return null;
+            }
+            final long zigZagScale = header >>> 2;
+            final int scale = (int) ((zigZagScale >>> 1) ^ -(zigZagScale & 1));
+            if (kind == DECIMAL_LONG) {
+                return BigDecimal.valueOf(readZigZag(), scale);
+            }
+            final int len = readVarInt();
+            final byte[] big = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return new BigDecimal(new BigInteger(big), scale);
+        }
+
+    }
+
+}
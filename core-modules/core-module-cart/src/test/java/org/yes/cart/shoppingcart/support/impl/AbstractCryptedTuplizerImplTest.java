@@ -1,12 +1,20 @@
 package org.yes.cart.shoppingcart.support.impl;
 
+import org.junit.Ignore;
 import org.junit.Test;
 import org.yes.cart.shoppingcart.ShoppingCart;
 import org.yes.cart.shoppingcart.impl.ShoppingCartImpl;
 import org.yes.cart.shoppingcart.support.CartDetuplizationException;
 import org.yes.cart.shoppingcart.support.CartTuplizationException;
+import org.yes.cart.shoppingcart.support.tokendriven.impl.ShoppingCartStateSerializerBinaryImpl;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -44,4 +52,128 @@ public class AbstractCryptedTuplizerImplTest {
 
     }
 
+    @Test
+    public void testCryptoCompatibleWithBinaryPayload() throws Exception {
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+
+        cart.addProductSkuToCart("SKU001", BigDecimal.ONE);
+        cart.setProductSkuPrice("SKU001", new BigDecimal("9.99"), new BigDecimal("9.99"));
+
+        final AbstractCryptedTuplizerImpl sdk = new AbstractCryptedTuplizerImpl(
+                "CHANGE_PASSWORD",
+                "DES",
+                "DES/ECB/PKCS5Padding"
+        ) {
+
+        };
+
+        final AbstractCryptedTuplizerImpl binary = new AbstractCryptedTuplizerImpl(
+                "CHANGE_PASSWORD",
+                "DES",
+                "DES/ECB/PKCS5Padding",
+                new ShoppingCartStateSerializerBinaryImpl()
+        ) {
+
+        };
+
+        final String sdkToken = sdk.toToken(cart);
+        final String binaryToken = binary.toToken(cart);
+        assertTrue(binaryToken.length() < sdkToken.length());
+
+        // binary tuplizer must accept tokens produced by Java serialisation
+        assertEquals(cart.getGuid(), binary.toObject(sdkToken).getGuid());
+        assertEquals(cart.getGuid(), binary.toObject(binaryToken).getGuid());
+
+        assertEquals(1L, binary.getTokenCount());
+        assertEquals(2L, binary.getObjectCount());
+        assertEquals(0L, binary.getFailedCount());
+
+    }
+
+    @Test
+    public void testCryptoInvalidTokenDoesNotBreakCipher() throws Exception {
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+
+        final AbstractCryptedTuplizerImpl tup = new AbstractCryptedTuplizerImpl(
+                "CHANGE_PASSWORD",
+                "DES",
+                "DES/ECB/PKCS5Padding"
+        ) {
+
+        };
+
+        final String base64 = tup.toToken(cart);
+
+        try {
+            tup.toObject(base64.substring(0, base64.length() - 8));
+            fail("Broken token must not be restored");
+        } catch (CartDetuplizationException cde) {
+            // expected
+        }
+
+        assertEquals(cart.getGuid(), tup.toObject(base64).getGuid());
+        assertEquals(1L, tup.getFailedCount());
+
+    }
+
+    /**
+     * Measures throughput of to and back conversion of 25 items cart with single tuplizer instance
+     * shared by 1 to 32 threads. Since ciphers are pooled throughput should scale with number of
+     * threads up to the number of available cores and stay flat afterwards.
+     *
+     * @throws Exception
+     */
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testCryptoPerformance() throws Exception {
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+        for (int i = 0; i < 25; i++) {
+            cart.addProductSkuToCart("SKU-" + i, BigDecimal.ONE);
+            cart.setProductSkuPrice("SKU-" + i, new BigDecimal("9.99"), new BigDecimal("9.99"));
+        }
+
+        final AbstractCryptedTuplizerImpl tup = new AbstractCryptedTuplizerImpl(
+                "CHANGE_PASSWORD",
+                "DES",
+                "DES/ECB/PKCS5Padding",
+                new ShoppingCartStateSerializerBinaryImpl()
+        ) {
+
+        };
+
+        final int iterations = 10000;
+
+        for (final int threads : new int[] { 1, 2, 4, 8, 16, 32 }) {
+
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < iterations; i++) {
+                            assertNotNull(tup.toObject(tup.toToken(cart)));
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            final long start = System.currentTimeMillis();
+            for (final Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            final long took = System.currentTimeMillis() - start;
+            executor.shutdown();
+
+            System.out.println("Threads: " + threads + ", to and back " + (threads * iterations) + " carts took ~" + took + "ms (~"
+                    + (threads * iterations * 1000L / Math.max(took, 1L)) + " ops/sec), ciphers: " + tup.getCipherCount());
+
+        }
+
+    }
+
 }
\ No newline at end of file
@@ -38,6 +38,7 @@ import org.yes.cart.shoppingcart.support.tokendriven.impl.ResilientCartRepositor
 import java.io.*;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -963,4 +964,94 @@ public class ResilientCartRepositoryImplTest {
 
     }
 
+    @Test
+    public void testWriteBehindCoalescesAndFlushesInBatch() throws Exception {
+
+        final ShoppingCartStateService shoppingCartStateService = context.mock(ShoppingCartStateService.class, "shoppingCartStateService");
+        final ShopService shopService = context.mock(ShopService.class, "shopService");
+        final CartUpdateProcessor cartUpdateProcessor = context.mock(CartUpdateProcessor.class, "cartUpdateProcessor");
+        final CacheManager cacheManager = context.mock(CacheManager.class, "cacheManager");
+        final Cache cartCache = context.mock(Cache.class, "cartCache");
+
+        final MutableShoppingCart cart1 = new ShoppingCartImpl();
+        final MutableShoppingCart cart2 = new ShoppingCartImpl();
+
+        context.checking(new Expectations() {{
+            one(cacheManager).getCache("web.shoppingCart"); will(returnValue(cartCache));
+            one(cartUpdateProcessor).updateShoppingCarts(with(any(List.class)));
+            one(cartCache).put(cart1.getGuid(), cart1);
+            one(cartCache).put(cart2.getGuid(), cart2);
+        }});
+
+        // large interval so that only explicit flush is tested
+        final ResilientCartRepositoryImpl repo = new ResilientCartRepositoryImpl(shoppingCartStateService, shopService, cartUpdateProcessor, 60, cacheManager, null, 600000L, 10);
+
+        repo.storeAsynchronously(cart1);
+        repo.storeAsynchronously(cart2);
+        repo.storeAsynchronously(cart1);
+
+        assertEquals(2, repo.getDirtyCount());
+
+        assertEquals(2, repo.flushDirty());
+
+        assertEquals(0, repo.getDirtyCount());
+        assertEquals(2L, repo.getFlushedCount());
+        assertEquals(1L, repo.getFlushBatchCount());
+        assertEquals(0L, repo.getFlushFailedCount());
+
+        repo.destroy();
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testWriteBehindFallsBackToSingleFlushAndDropsAfterMaxAttempts() throws Exception {
+
+        final ShoppingCartStateService shoppingCartStateService = context.mock(ShoppingCartStateService.class, "shoppingCartStateService");
+        final ShopService shopService = context.mock(ShopService.class, "shopService");
+        final CartUpdateProcessor cartUpdateProcessor = context.mock(CartUpdateProcessor.class, "cartUpdateProcessor");
+        final CacheManager cacheManager = context.mock(CacheManager.class, "cacheManager");
+        final Cache cartCache = context.mock(Cache.class, "cartCache");
+
+        final MutableShoppingCart cart1 = new ShoppingCartImpl();
+        final MutableShoppingCart cart2 = new ShoppingCartImpl();
+
+        context.checking(new Expectations() {{
+            one(cacheManager).getCache("web.shoppingCart"); will(returnValue(cartCache));
+            exactly(2).of(cartUpdateProcessor).updateShoppingCarts(with(any(List.class))); will(throwException(new RuntimeException("batch")));
+            one(cartUpdateProcessor).updateShoppingCart(cart1);
+            one(cartCache).put(cart1.getGuid(), cart1);
+            exactly(2).of(cartUpdateProcessor).updateShoppingCart(cart2); will(throwException(new RuntimeException("bad cart")));
+        }});
+
+        // large interval so that only explicit flush is tested
+        final ResilientCartRepositoryImpl repo = new ResilientCartRepositoryImpl(shoppingCartStateService, shopService, cartUpdateProcessor, 60, cacheManager, null, 600000L, 10);
+        repo.setWriteBehindMaxAttempts(2);
+
+        repo.storeAsynchronously(cart1);
+        repo.storeAsynchronously(cart2);
+
+        assertEquals(2, repo.flushDirty());
+
+        // good cart is flushed by itself, bad one is re-queued
+        assertEquals(1, repo.getDirtyCount());
+        assertEquals(1L, repo.getFlushedCount());
+        assertEquals(1L, repo.getFlushFailedCount());
+        assertEquals(0L, repo.getFlushDroppedCount());
+
+        assertEquals(1, repo.flushDirty());
+
+        // bad cart is dropped after max attempts
+        assertEquals(0, repo.getDirtyCount());
+        assertEquals(1L, repo.getFlushedCount());
+        assertEquals(2L, repo.getFlushFailedCount());
+        assertEquals(1L, repo.getFlushDroppedCount());
+
+        repo.destroy();
+
+        context.assertIsSatisfied();
+
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.shoppingcart.support.tokendriven.impl;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yes.cart.shoppingcart.ShoppingCart;
+import org.yes.cart.shoppingcart.impl.ShoppingCartImpl;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 11:05
+ */
+public class ShoppingCartStateSerializerBinaryImplTest extends AbstractShoppingCartStateSerializerTest {
+
+
+    @Test
+    public void testSaveRestore() throws Exception {
+
+        final ShoppingCartStateSerializerBinaryImpl serializer = new ShoppingCartStateSerializerBinaryImpl();
+
+        final ShoppingCart cart = createFilledCart();
+        assertFilledCart(cart, cart.getGuid());
+
+        byte[] data = serializer.saveState(cart);
+        assertEquals(ShoppingCartStateSerializerBinaryImpl.MAGIC_0, data[0]);
+        assertEquals(ShoppingCartStateSerializerBinaryImpl.MAGIC_1, data[1]);
+        assertEquals(ShoppingCartStateSerializerBinaryImpl.VERSION_1, data[2]);
+
+        final ShoppingCart restored = serializer.restoreState(data);
+
+        assertFilledCart(restored, cart.getGuid());
+        assertEquals(cart.getModifiedTimestamp(), restored.getModifiedTimestamp());
+        assertEquals(cart.getProcessingStartTimestamp(), restored.getProcessingStartTimestamp());
+        assertEquals(cart.getTotal().getListSubTotal(), restored.getTotal().getListSubTotal());
+        assertEquals(cart.getTotal().getAppliedOrderPromo(), restored.getTotal().getAppliedOrderPromo());
+        assertEquals(cart.getTotal().isDeliveryPromoApplied(), restored.getTotal().isDeliveryPromoApplied());
+        assertEquals(cart.getTotal().getTotalAmount(), restored.getTotal().getTotalAmount());
+
+    }
+
+    @Test
+    public void testSaveRestoreLargeAmounts() throws Exception {
+
+        final ShoppingCartStateSerializerBinaryImpl serializer = new ShoppingCartStateSerializerBinaryImpl();
+
+        final ShoppingCartImpl cart = new ShoppingCartImpl();
+        final BigDecimal huge = new BigDecimal("123456789012345678901234567890.12");
+        cart.addProductSkuToCart("ABC", BigDecimal.ONE);
+        cart.setProductSkuPrice("ABC", huge, new BigDecimal("-0.001"));
+
+        final ShoppingCart restored = serializer.restoreState(serializer.saveState(cart));
+
+        assertEquals(cart.getGuid(), restored.getGuid());
+        assertEquals(huge, restored.getCartItemList().get(0).getSalePrice());
+        assertEquals(new BigDecimal("-0.001"), restored.getCartItemList().get(0).getListPrice());
+        assertNull(restored.getShoppingContext().getShopCode());
+        assertNull(restored.getOrderInfo().getCarrierSlaId());
+
+    }
+
+    @Test
+    public void testRestoreSdkState() throws Exception {
+
+        final ShoppingCart cart = createFilledCart();
+
+        byte[] data = new ShoppingCartStateSerializerSdkImpl().saveState(cart);
+        final ShoppingCart restored = new ShoppingCartStateSerializerBinaryImpl().restoreState(data);
+
+        assertFilledCart(restored, cart.getGuid());
+
+    }
+
+    @Test
+    public void testRestoreJacksonState() throws Exception {
+
+        final ShoppingCart cart = createFilledCart();
+
+        byte[] data = new ShoppingCartStateSerializerJacksonImpl().saveState(cart);
+        final ShoppingCart restored = new ShoppingCartStateSerializerBinaryImpl().restoreState(data);
+
+        assertFilledCart(restored, cart.getGuid());
+
+    }
+
+    @Test
+    public void testRestoreUnsupported() throws Exception {
+
+        final ShoppingCartStateSerializerBinaryImpl serializer = new ShoppingCartStateSerializerBinaryImpl();
+
+        assertNull(serializer.restoreState(null));
+        assertNull(serializer.restoreState(new byte[] { 1, 2, 3 }));
+        assertNull(serializer.restoreState(new byte[] { ShoppingCartStateSerializerBinaryImpl.MAGIC_0, ShoppingCartStateSerializerBinaryImpl.MAGIC_1, 99 }));
+
+    }
+
+    @Test
+    public void testSizeComparedToOtherFormats() throws Exception {
+
+        final ShoppingCart cart = createRandomCart(100, 5, 5, 1);
+
+        final int binary = new ShoppingCartStateSerializerBinaryImpl().saveState(cart).length;
+        final int sdk = new ShoppingCartStateSerializerSdkImpl().saveState(cart).length;
+        final int jackson = new ShoppingCartStateSerializerJacksonImpl().saveState(cart).length;
+
+        assertTrue(binary < sdk);
+        assertTrue(binary < jackson);
+
+    }
+
+
+    /**
+     * Compares size, serialisation and deserialisation time with {@link ShoppingCartStateSerializerSdkImpl}
+     * and {@link ShoppingCartStateSerializerJacksonImpl} on the same sample (see {@link ShoppingCartStateSerializerSdkImplTest}
+     * and {@link ShoppingCartStateSerializerJacksonImplTest} for reference results).
+     *
+     * Each serializer is run twice and only second run should be considered, first one is JIT warm up.
+     *
+     * @throws Exception
+     */
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testSerializationPerformance() throws Exception {
+
+        for (int run = 0; run < 2; run++) {
+
+            System.out.println("== Binary implementation: ======================================");
+            serializationPerformanceRoutine(new ShoppingCartStateSerializerBinaryImpl(), 10000, 100, 5, 5);
+
+            System.out.println("== Jackson JSON implementation: ================================");
+            serializationPerformanceRoutine(new ShoppingCartStateSerializerJacksonImpl(), 10000, 100, 5, 5);
+
+            System.out.println("== Pure Java OOTB Serializable implementation: =================");
+            serializationPerformanceRoutine(new ShoppingCartStateSerializerSdkImpl(), 10000, 100, 5, 5);
+
+        }
+
+    }
+
+}
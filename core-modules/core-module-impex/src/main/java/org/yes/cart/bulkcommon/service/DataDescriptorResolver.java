@@ -20,6 +20,7 @@ import org.yes.cart.domain.entity.DataGroup;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * User: denispavlov
@@ -46,6 +47,16 @@ public interface DataDescriptorResolver<T> {
      */
     Map<String, T> getByGroup(String group);
 
+    /**
+     * Get dependencies between descriptors specified by group. Descriptors that do not
+     * depend on each other can be processed in parallel.
+     *
+     * @param group group name
+     *
+     * @return descriptor names mapped to names of descriptors they depend on
+     */
+    Map<String, Set<String>> getDependenciesByGroup(String group);
+
     /**
      * Get resolvable groups.
      *
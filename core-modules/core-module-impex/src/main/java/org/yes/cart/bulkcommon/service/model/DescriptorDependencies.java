@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkcommon.service.model;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.*;
+
+/**
+ * Parser for descriptors of a data group.
+ *
+ * Descriptors are comma separated names. By default each descriptor depends on the previous one,
+ * so they are processed in the order specified. Dependencies can be specified explicitly in brackets
+ * with space separated names, empty brackets mean that descriptor has no dependencies.
+ *
+ * E.g. "shop.xml, skuprices-shop1.xml(shop.xml), skuprices-shop2.xml(shop.xml), taxnames.xml()"
+ * means that prices for both shops can be processed in parallel after shops and taxes do not
+ * depend on anything.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:05
+ */
+public final class DescriptorDependencies {
+
+    private DescriptorDependencies() {
+        // no instance
+    }
+
+    /**
+     * @param descriptors descriptors specification from data group
+     *
+     * @return descriptor names in original order mapped to names of descriptors they depend on
+     *
+     * @throws IllegalArgumentException if specification is invalid or has cyclic dependencies
+     */
+    public static Map<String, Set<String>> parse(final String descriptors) throws IllegalArgumentException {
+
+        final Map<String, Set<String>> out = new LinkedHashMap<String, Set<String>>();
+        if (StringUtils.isBlank(descriptors)) {
+            return out;
+        }
+
+        String previous = null;
+        for (final String descriptor : StringUtils.split(descriptors, ',')) {
+
+            final String entry = descriptor.trim();
+            final int open = entry.indexOf('(');
+            final String name;
+            final Set<String> dependencies = new LinkedHashSet<String>();
+            if (open == -1) {
+                name = entry;
+                if (previous != null) {
+                    dependencies.add(previous);
+                }
+            } else {
+                if (!entry.endsWith(")")) {
+                    throw new IllegalArgumentException("Invalid dependencies for descriptor: " + entry);
+                }
+                name = entry.substring(0, open).trim();
+                dependencies.addAll(Arrays.asList(StringUtils.split(entry.substring(open + 1, entry.length() - 1))));
+            }
+            if (StringUtils.isBlank(name)) {
+                continue;
+            }
+            out.put(name, dependencies);
+            previous = name;
+
+        }
+
+        for (final Map.Entry<String, Set<String>> entry : out.entrySet()) {
+            for (final String dependency : entry.getValue()) {
+                if (!out.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Descriptor " + entry.getKey() + " depends on " + dependency + " which is not in the group");
+                }
+            }
+        }
+
+        final Set<String> resolved = new HashSet<String>();
+        boolean progress = true;
+        while (progress && resolved.size() < out.size()) {
+            progress = false;
+            for (final Map.Entry<String, Set<String>> entry : out.entrySet()) {
+                if (!resolved.contains(entry.getKey()) && resolved.containsAll(entry.getValue())) {
+                    resolved.add(entry.getKey());
+                    progress = true;
+                }
+            }
+        }
+        if (resolved.size() < out.size()) {
+            final Set<String> cyclic = new LinkedHashSet<String>(out.keySet());
+            cyclic.removeAll(resolved);
+            throw new IllegalArgumentException("Cyclic dependencies between descriptors: " + cyclic);
+        }
+
+        return out;
+    }
+
+}
@@ -33,15 +33,24 @@ import java.util.Map;
 public class JobContextDecoratorImpl implements JobContext {
 
     private final JobContext wrapped;
+    private final JobStatusListener listener;
     private final Map<String, Object> additionalAttributes = new HashMap<String, Object>();
 
     public JobContextDecoratorImpl(final JobContext wrapped, final Map<String, Object> additionalAttributes) {
+        this(wrapped, null, additionalAttributes);
+    }
+
+    public JobContextDecoratorImpl(final JobContext wrapped, final JobStatusListener listener, final Map<String, Object> additionalAttributes) {
         this.wrapped = wrapped;
+        this.listener = listener;
         this.additionalAttributes.putAll(additionalAttributes);
     }
 
     /** {@inheritDoc} */
     public JobStatusListener getListener() {
+        if (listener != null) {
+            return listener;
+        }
         return wrapped.getListener();
     }
 
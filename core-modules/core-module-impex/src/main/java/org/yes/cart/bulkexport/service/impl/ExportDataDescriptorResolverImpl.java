@@ -16,9 +16,9 @@
 
 package org.yes.cart.bulkexport.service.impl;
 
-import org.apache.commons.lang.StringUtils;
 import org.yes.cart.bulkcommon.service.DataDescriptorResolver;
 import org.yes.cart.bulkcommon.service.DataDescriptorTuplizer;
+import org.yes.cart.bulkcommon.service.model.DescriptorDependencies;
 import org.yes.cart.bulkexport.model.ExportDescriptor;
 import org.yes.cart.domain.entity.DataDescriptor;
 import org.yes.cart.domain.entity.DataGroup;
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * User: denispavlov
@@ -85,18 +86,32 @@ public class ExportDataDescriptorResolverImpl implements DataDescriptorResolver<
 
                 final Map<String, ExportDescriptor> out = new LinkedHashMap<String, ExportDescriptor>();
 
-                final String descriptors = dataGroup.getDescriptors();
-                if (StringUtils.isNotBlank(descriptors)) {
+                for (final String name : DescriptorDependencies.parse(dataGroup.getDescriptors()).keySet()) {
+                    out.put(name, getByName(name));
+                }
 
-                    for (final String descriptor : StringUtils.split(descriptors, ',')) {
+                return out;
+            }
 
-                        final String name = descriptor.trim();
-                        out.put(name, getByName(name));
-                    }
+            throw new RuntimeException("Group with name " + group + " is not of type: " + DataGroup.TYPE_EXPORT);
 
-                }
+        }
+
+        throw new RuntimeException("Group with name " + group + " cannot be resolved");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Set<String>> getDependenciesByGroup(final String group) {
+
+        final DataGroup dataGroup = dataGroupService.findByName(group);
+        if (dataGroup != null) {
+
+            if (DataGroup.TYPE_EXPORT.equals(dataGroup.getType())) {
+
+                return DescriptorDependencies.parse(dataGroup.getDescriptors());
 
-                return out;
             }
 
             throw new RuntimeException("Group with name " + group + " is not of type: " + DataGroup.TYPE_EXPORT);
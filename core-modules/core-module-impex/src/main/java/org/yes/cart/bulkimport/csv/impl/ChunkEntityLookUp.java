@@ -0,0 +1,364 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.csv.impl;
+
+import org.yes.cart.bulkcommon.service.support.LookUpQuery;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves look up queries for a chunk of tuples in bulk.
+ *
+ * Look up queries that are simple equality conditions, such as
+ * "select p from ProductEntity p where p.guid = ?1 and p.code = ?2", are rewritten to
+ * "select p, p.guid, p.code from ProductEntity p where p.guid in (?1) and p.code in (?2)"
+ * and executed once for all tuples in the chunk. Results are then matched to tuples
+ * by selected property values. All other queries are left to row by row look ups.
+ *
+ * Only string and numeric parameters are supported. Strings are matched ignoring case to
+ * play safe with case insensitive collations, if match is not exact the tuple falls back
+ * to row by row look up.
+ *
+ * This object is bound to current session and must be cleared after session is cleared.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:10
+ */
+public class ChunkEntityLookUp {
+
+    /**
+     * Marker for look up that was resolved by chunk query and has no matching entity.
+     */
+    public static final Object NONE = new Object();
+
+    private static final int MAX_IN_PARAMS = 500;
+
+    private static final Pattern SELECT = Pattern.compile(
+            "^\\s*select\\s+(\\w+)\\s+from\\s+(\\w+)\\s+(\\w+)\\s+where\\s+(.+?)\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern AND = Pattern.compile("\\s+and\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONDITION = Pattern.compile("^(\\w+)((\\.\\w+)+)\\s*=\\s*\\?(\\d+)$");
+
+    private final GenericDAO<Object, Long> genericDAO;
+
+    private final Map<String, String[]> paths = new HashMap<String, String[]>();
+    private final Map<String, String> entities = new HashMap<String, String>();
+    private final Set<String> unsupported = new HashSet<String>();
+
+    private final Map<List<Object>, List<Match>> resolved = new HashMap<List<Object>, List<Match>>();
+
+    private long queryCount = 0L;
+    private long hitCount = 0L;
+
+    /**
+     * @param genericDAO generic DAO
+     */
+    public ChunkEntityLookUp(final GenericDAO<Object, Long> genericDAO) {
+        this.genericDAO = genericDAO;
+    }
+
+    /**
+     * Resolve given queries in bulk. Queries that have been resolved already are skipped.
+     *
+     * @param queries look up queries for all tuples in chunk
+     */
+    public void prefetch(final Collection<LookUpQuery> queries) {
+
+        final Map<String, Map<List<Object>, Object[]>> byQuery = new LinkedHashMap<String, Map<List<Object>, Object[]>>();
+        for (final LookUpQuery query : queries) {
+            final List<Object> key = keyFor(query, true);
+            if (key != null && !resolved.containsKey(key)) {
+                Map<List<Object>, Object[]> params = byQuery.get(query.getQueryString());
+                if (params == null) {
+                    params = new LinkedHashMap<List<Object>, Object[]>();
+                    byQuery.put(query.getQueryString(), params);
+                }
+                params.put(key, query.getParameters());
+            }
+        }
+
+        for (final Map.Entry<String, Map<List<Object>, Object[]>> entry : byQuery.entrySet()) {
+            try {
+                prefetch(entry.getKey(), entry.getValue());
+            } catch (Exception exp) {
+                unsupported.add(entry.getKey());
+                ShopCodeContext.getLog(this).warn("Unable to resolve look ups in bulk for " + entry.getKey()
+                        + ", will use row by row look ups", exp);
+            }
+        }
+
+    }
+
+    private void prefetch(final String queryString, final Map<List<Object>, Object[]> requested) {
+
+        final String[] props = paths.get(queryString);
+
+        final List<Set<Object>> values = new ArrayList<Set<Object>>();
+        final boolean[] strings = new boolean[props.length];
+        final Object[] sample = requested.values().iterator().next();
+        for (int i = 0; i < props.length; i++) {
+            values.add(new LinkedHashSet<Object>());
+            strings[i] = sample[i] instanceof String;
+        }
+        for (final Object[] params : requested.values()) {
+            for (int i = 0; i < props.length; i++) {
+                if (strings[i] != params[i] instanceof String) {
+                    return; // mixed parameter types, leave it to row by row look ups
+                }
+                values.get(i).add(params[i]);
+            }
+        }
+        for (int i = 1; i < props.length; i++) {
+            if (values.get(i).size() > MAX_IN_PARAMS) {
+                return; // too many combinations, leave it to row by row look ups
+            }
+        }
+
+        final String alias = props[0].substring(0, props[0].indexOf('.'));
+        final StringBuilder select = new StringBuilder("select ").append(alias);
+        final StringBuilder where = new StringBuilder();
+        for (int i = 0; i < props.length; i++) {
+            select.append(", ").append(props[i]);
+            if (i > 0) {
+                where.append(" and ");
+            }
+            where.append(props[i]).append(" in (?").append(i + 1).append(')');
+        }
+        select.append(" from ").append(entities.get(queryString)).append(' ').append(alias)
+                .append(" where ").append(where);
+        final String hsql = select.toString();
+
+        final Map<List<Object>, List<Match>> found = new HashMap<List<Object>, List<Match>>();
+        final List<Object> first = new ArrayList<Object>(values.get(0));
+        for (int start = 0; start < first.size(); start += MAX_IN_PARAMS) {
+
+            final Object[] params = new Object[props.length];
+            params[0] = first.subList(start, Math.min(start + MAX_IN_PARAMS, first.size()));
+            for (int i = 1; i < props.length; i++) {
+                params[i] = values.get(i);
+            }
+
+            final List<Object> rows = genericDAO.findByQuery(hsql, params);
+            queryCount++;
+
+            for (final Object row : rows) {
+                final Object[] columns = (Object[]) row;
+                final Object[] rowValues = Arrays.copyOfRange(columns, 1, columns.length);
+                final List<Object> key = keyFor(queryString, rowValues, true);
+                if (key == null || !isSameType(strings, rowValues)) {
+                    unsupported.add(queryString); // property types are not comparable
+                    return;
+                }
+                List<Match> matches = found.get(key);
+                if (matches == null) {
+                    matches = new ArrayList<Match>(1);
+                    found.put(key, matches);
+                }
+                matches.add(new Match(keyFor(queryString, rowValues, false), columns[0]));
+            }
+        }
+
+        for (final List<Object> key : requested.keySet()) {
+            final List<Match> matches = found.get(key);
+            resolved.put(key, matches != null ? matches : new ArrayList<Match>(1));
+        }
+
+    }
+
+    /**
+     * Get entity resolved for given query.
+     *
+     * @param query look up query
+     *
+     * @return entity, {@link #NONE} if query was resolved and there is no such entity or null if
+     *         query could not be resolved and has to be executed
+     */
+    public Object get(final LookUpQuery query) {
+
+        final List<Object> key = keyFor(query, true);
+        if (key == null) {
+            return null;
+        }
+        final List<Match> matches = resolved.get(key);
+        if (matches == null) {
+            return null;
+        }
+        if (matches.isEmpty()) {
+            hitCount++;
+            return NONE;
+        }
+        if (matches.size() == 1 && matches.get(0).values.equals(keyFor(query, false))) {
+            hitCount++;
+            return matches.get(0).entity;
+        }
+        return null; // not exact match, let database decide
+
+    }
+
+    /**
+     * Register new entity created for given query, so that subsequent look ups in the same chunk
+     * resolve to it.
+     *
+     * @param query  look up query that has not found an entity
+     * @param entity new entity
+     */
+    public void register(final LookUpQuery query, final Object entity) {
+
+        final List<Object> key = keyFor(query, true);
+        if (key != null) {
+            List<Match> matches = resolved.get(key);
+            if (matches == null) {
+                matches = new ArrayList<Match>(1);
+                resolved.put(key, matches);
+            }
+            matches.add(new Match(keyFor(query, false), entity));
+        }
+
+    }
+
+    /**
+     * Clear all resolved entities (must be invoked when session is cleared).
+     */
+    public void clear() {
+        resolved.clear();
+    }
+
+    /**
+     * @return number of bulk queries executed
+     */
+    public long getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * @return number of look ups resolved without query
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    private List<Object> keyFor(final LookUpQuery query, final boolean ignoreCase) {
+        if (!LookUpQuery.HSQL.equals(query.getQueryType())) {
+            return null;
+        }
+        return keyFor(query.getQueryString(), query.getParameters(), ignoreCase);
+    }
+
+    private List<Object> keyFor(final String queryString, final Object[] params, final boolean ignoreCase) {
+
+        final String[] props = getPaths(queryString);
+        if (props == null || params == null || props.length != params.length) {
+            return null;
+        }
+        final List<Object> key = new ArrayList<Object>(params.length + 1);
+        key.add(queryString);
+        for (final Object param : params) {
+            final Object value = normalise(param, ignoreCase);
+            if (value == null) {
+                return null;
+            }
+            key.add(value);
+        }
+        return key;
+
+    }
+
+    private boolean isSameType(final boolean[] strings, final Object[] values) {
+        for (int i = 0; i < strings.length; i++) {
+            if (strings[i] != values[i] instanceof String) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object normalise(final Object value, final boolean ignoreCase) {
+
+        if (value instanceof String) {
+            return ignoreCase ? ((String) value).toLowerCase() : value;
+        } else if (value instanceof Number) {
+            final BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+            return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+        }
+        return null;
+
+    }
+
+    private String[] getPaths(final String queryString) {
+
+        if (queryString == null || unsupported.contains(queryString)) {
+            return null;
+        }
+        String[] props = paths.get(queryString);
+        if (props == null) {
+            props = parse(queryString);
+            if (props == null) {
+                unsupported.add(queryString);
+            } else {
+                paths.put(queryString, props);
+            }
+        }
+        return props;
+
+    }
+
+    private String[] parse(final String queryString) {
+
+        final Matcher select = SELECT.matcher(queryString);
+        if (!select.matches() || !select.group(1).equals(select.group(3))) {
+            return null;
+        }
+        final String alias = select.group(1);
+        final String[] conditions = AND.split(select.group(4));
+        final String[] props = new String[conditions.length];
+        for (final String condition : conditions) {
+            final Matcher property = CONDITION.matcher(condition.trim());
+            if (!property.matches() || !alias.equals(property.group(1))) {
+                return null;
+            }
+            final int index = Integer.valueOf(property.group(4)) - 1;
+            if (index < 0 || index >= props.length || props[index] != null) {
+                return null;
+            }
+            props[index] = alias + property.group(2);
+        }
+        entities.put(queryString, select.group(2));
+        return props;
+
+    }
+
+    /**
+     * Entity with exact values of look up properties.
+     */
+    private static final class Match {
+
+        private final List<Object> values;
+        private final Object entity;
+
+        private Match(final List<Object> values, final Object entity) {
+            this.values = values;
+            this.entity = entity;
+        }
+    }
+
+}
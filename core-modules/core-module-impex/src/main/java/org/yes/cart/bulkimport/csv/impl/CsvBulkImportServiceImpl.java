@@ -185,6 +185,17 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
             final String msgInfoImp = MessageFormat.format("import file : {0} in {1} mode", fileToImport.getAbsolutePath(), mode);
             statusListener.notifyMessage(msgInfoImp);
 
+            final int batchSize = csvImportDescriptor.getBatchSize();
+            final ChunkEntityLookUp lookUp;
+            final List<ImportTuple> chunk;
+            if (mode == ImportDescriptor.ImportMode.MERGE && batchSize > 1 && csvImportDescriptor.getInsertSql() == null) {
+                lookUp = new ChunkEntityLookUp(genericDAO);
+                chunk = new ArrayList<ImportTuple>(batchSize);
+            } else {
+                lookUp = null;
+                chunk = null;
+            }
+
             CsvFileReader csvFileReader = new CsvFileReaderImpl();
             try {
                 final String filename = fileToImport.getName();
@@ -197,18 +208,44 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                         csvImportDescriptor.getImportFileDescriptor().getFileEncoding(),
                         csvImportDescriptor.getImportFileDescriptor().isIgnoreFirstLine());
 
+                final long start = System.currentTimeMillis();
+
                 String[] line;
                 while ((line = csvFileReader.readLine()) != null) {
                     final CsvImportTuple tuple = new CsvImportTupleImpl(filename, lineNumber++, line);
                     if (mode == ImportDescriptor.ImportMode.DELETE) {
                         doImportDelete(statusListener, tuple, csvImportDescriptorName, csvImportDescriptor);
+                    } else if (lookUp != null) {
+                        chunk.add(tuple);
+                        if (chunk.size() == batchSize) {
+                            doImportMergeChunk(statusListener, chunk, csvImportDescriptorName, csvImportDescriptor, entityCache, lookUp);
+                            chunk.clear();
+                            statusListener.notifyPing(MessageFormat.format("Imported tuples: {0} ({1} rows/sec)",
+                                    lineNumber, getRowsPerSecond(lineNumber, start))); // make sure we do not time out
+                        }
                     } else {
                         doImportMerge(statusListener, tuple, csvImportDescriptorName, csvImportDescriptor, null, entityCache);
                     }
                 }
+                if (lookUp != null && !chunk.isEmpty()) {
+                    doImportMergeChunk(statusListener, chunk, csvImportDescriptorName, csvImportDescriptor, entityCache, lookUp);
+                    chunk.clear();
+                }
                 final String msgInfoLines = MessageFormat.format("total data lines : {0}",
                         (csvImportDescriptor.getImportFileDescriptor().isIgnoreFirstLine() ? csvFileReader.getRowsRead() - 1 : csvFileReader.getRowsRead()));
                 statusListener.notifyMessage(msgInfoLines);
+                if (lookUp != null) {
+                    final String msgInfoRate = MessageFormat.format(
+                            "imported {0} lines in {1} ms ({2} rows/sec) in batches of {3}, bulk look ups: {4}, look ups resolved in bulk: {5}",
+                            lineNumber, System.currentTimeMillis() - start, getRowsPerSecond(lineNumber, start),
+                            batchSize, lookUp.getQueryCount(), lookUp.getHitCount());
+                    statusListener.notifyMessage(msgInfoRate);
+                } else {
+                    final String msgInfoRate = MessageFormat.format(
+                            "imported {0} lines in {1} ms ({2} rows/sec)",
+                            lineNumber, System.currentTimeMillis() - start, getRowsPerSecond(lineNumber, start));
+                    statusListener.notifyMessage(msgInfoRate);
+                }
 
                 csvFileReader.close();
             } catch (FileNotFoundException e) {
@@ -332,6 +369,65 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
     }
 
 
+    /*
+     * Import chunk of lines as a single set. Look ups are resolved for all lines in bulk and
+     * changes are flushed once per chunk (i.e. JDBC batching is applied if enabled).
+     */
+    void doImportMergeChunk(final JobStatusListener statusListener,
+                            final List<ImportTuple> chunk,
+                            final String csvImportDescriptorName,
+                            final CsvImportDescriptor descriptor,
+                            final Map<String, Object> entityCache,
+                            final ChunkEntityLookUp lookUp) throws Exception {
+
+        final Collection<ImportColumn> fkColumns = descriptor.getColumns(ImpExColumn.FK_FIELD);
+        final List<LookUpQuery> queries = new ArrayList<LookUpQuery>();
+        for (final ImportTuple tuple : chunk) {
+            try {
+                queries.add(columnLookUpQueryParameterStrategy.getQuery(descriptor, null, tuple, valueDataAdapter, descriptor.getSelectSql()));
+                for (final ImportColumn column : fkColumns) {
+                    if (!column.isUseMasterObject() && StringUtils.isNotBlank(column.getLookupQuery())) {
+                        queries.add(columnLookUpQueryParameterStrategy.getQuery(descriptor, null, tuple, valueDataAdapter, column.getLookupQuery()));
+                    }
+                }
+            } catch (Exception exp) {
+                // invalid data, which will be reported by row import
+            }
+        }
+
+        try {
+
+            lookUp.prefetch(queries);
+
+            for (final ImportTuple tuple : chunk) {
+                doImportMerge(statusListener, tuple, csvImportDescriptorName, descriptor, null, entityCache, lookUp);
+            }
+
+            try {
+                genericDAO.flushClear();
+            } catch (Exception e) {
+
+                String message = MessageFormat.format(
+                        "during import rows : {0} - {1} \ndescriptor {2} \nerror {3}",
+                        chunk.get(0).getSourceId(),
+                        chunk.get(chunk.size() - 1).getSourceId(),
+                        csvImportDescriptorName,
+                        e.getMessage()
+                );
+                statusListener.notifyError(message, e);
+                genericDAO.clear();
+
+                throw new Exception(message, e);
+            }
+
+        } finally {
+            // entities are detached now
+            lookUp.clear();
+            entityCache.clear();
+        }
+
+    }
+
     /*
      * Import single line.
      * This method can be called recursive in case of sub imports.
@@ -342,6 +438,23 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                        final CsvImportDescriptor descriptor,
                        final Object masterObject,
                        final Map<String, Object> entityCache) throws Exception {
+
+        doImportMerge(statusListener, tuple, csvImportDescriptorName, descriptor, masterObject, entityCache, null);
+
+    }
+
+    /*
+     * Import single line.
+     * This method can be called recursive in case of sub imports.
+     * If chunk look up is provided then flush is performed once per chunk.
+     */
+    private void doImportMerge(final JobStatusListener statusListener,
+                               final ImportTuple tuple,
+                               final String csvImportDescriptorName,
+                               final CsvImportDescriptor descriptor,
+                               final Object masterObject,
+                               final Map<String, Object> entityCache,
+                               final ChunkEntityLookUp lookUp) throws Exception {
         Object object = null;
         try {
 
@@ -357,11 +470,11 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
 
             } else {
 
-                object = getEntity(tuple, null, masterObject, descriptor, entityCache);
+                object = getEntity(tuple, null, masterObject, descriptor, entityCache, lookUp);
 
 
                 fillEntityFields(tuple, object, descriptor.getColumns(ImpExColumn.FIELD));
-                fillEntityForeignKeys(tuple, object, descriptor.getColumns(ImpExColumn.FK_FIELD), masterObject, descriptor, entityCache);
+                fillEntityForeignKeys(tuple, object, descriptor.getColumns(ImpExColumn.FK_FIELD), masterObject, descriptor, entityCache, lookUp);
 
                 /*
                     Note: for correct data federation processing we need ALL-OR-NOTHING update for all import.
@@ -376,9 +489,9 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                 }
                 genericDAO.saveOrUpdate(object);
                 performSubImport(statusListener, tuple, csvImportDescriptorName, descriptor, object,
-                        descriptor.getColumns(ImpExColumn.SLAVE_INLINE_FIELD), entityCache);
+                        descriptor.getColumns(ImpExColumn.SLAVE_INLINE_FIELD), entityCache, lookUp);
                 performSubImport(statusListener, tuple, csvImportDescriptorName, descriptor, object,
-                        descriptor.getColumns(ImpExColumn.SLAVE_TUPLE_FIELD), entityCache);
+                        descriptor.getColumns(ImpExColumn.SLAVE_TUPLE_FIELD), entityCache, lookUp);
 
                 if (masterObject == null) {
                     // No need to validate sub imports
@@ -386,10 +499,14 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                     validateAccessAfterUpdate(object, descriptor.getEntityTypeClass());
                 }
 
-                genericDAO.flushClear();
+                if (lookUp == null) {
+                    genericDAO.flushClear();
+                }
 
             }
-            statusListener.notifyPing("Importing tuple: " + tuple.getSourceId()); // make sure we do not time out
+            if (lookUp == null) {
+                statusListener.notifyPing("Importing tuple: " + tuple.getSourceId()); // make sure we do not time out
+            }
 
         } catch (AccessDeniedException ade) {
 
@@ -453,7 +570,8 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                                   final ImportDescriptor importDescriptor,
                                   final Object object,
                                   final Collection<ImportColumn> slaves,
-                                  final Map<String, Object> entityCache) throws Exception {
+                                  final Map<String, Object> entityCache,
+                                  final ChunkEntityLookUp lookUp) throws Exception {
         for (ImportColumn slaveTable : slaves) {
             final List<ImportTuple> subTuples = tuple.getSubTuples(importDescriptor, slaveTable, valueDataAdapter);
             CsvImportDescriptor innerCsvImportDescriptor = (CsvImportDescriptor) slaveTable.getDescriptor();
@@ -463,7 +581,8 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                         csvImportDescriptorName,
                         innerCsvImportDescriptor,
                         object,
-                        entityCache);
+                        entityCache,
+                        lookUp);
             }
         }
     }
@@ -550,6 +669,7 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
      * @param masterObject     master object , that set from main import in case of sub import
      * @param importDescriptor import descriptor
      * @param entityCache      runtime cache
+     * @param lookUp           chunk look up (or null for row by row import)
      *
      * @throws Exception in case if something wrong with reflection (IntrospectionException,
      *                   InvocationTargetException,
@@ -560,7 +680,8 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                                        final Collection<ImportColumn> importColumns,
                                        final Object masterObject,
                                        final ImportDescriptor importDescriptor,
-                                       final Map<String, Object> entityCache) throws Exception {
+                                       final Map<String, Object> entityCache,
+                                       final ChunkEntityLookUp lookUp) throws Exception {
 
         ImportColumn currentColumn = null;
         final Class clz = object.getClass();
@@ -574,7 +695,7 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                 if (importColumn.isUseMasterObject()) {
                     singleObjectValue = masterObject;
                 } else {
-                    singleObjectValue = getEntity(tuple, importColumn, masterObject, importDescriptor, entityCache);
+                    singleObjectValue = getEntity(tuple, importColumn, masterObject, importDescriptor, entityCache, lookUp);
                 }
                 propertyDescriptor = new PropertyDescriptor(importColumn.getName(), clz);
                 final Object oldValue = propertyDescriptor.getReadMethod().invoke(object);
@@ -618,6 +739,7 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
      * @param masterObject     in case of subimport will be not null, but will be used with flag only
      * @param importDescriptor import descriptor
      * @param entityCache      runtime cache
+     * @param lookUp           chunk look up (or null for row by row import)
      *
      * @return new or existing entity
      * @throws ClassNotFoundException in case if entity interface is wrong.
@@ -626,13 +748,23 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                              final ImportColumn column,
                              final Object masterObject,
                              final ImportDescriptor importDescriptor,
-                             final Map<String, Object> entityCache) throws ClassNotFoundException {
+                             final Map<String, Object> entityCache,
+                             final ChunkEntityLookUp lookUp) throws ClassNotFoundException {
 
         if (column == null) {
             // no caching for prime select
-            final Object prime = getExistingEntity(importDescriptor, importDescriptor.getSelectSql(), masterObject, tuple);
+            final LookUpQuery query = columnLookUpQueryParameterStrategy.getQuery(importDescriptor, masterObject, tuple, valueDataAdapter, importDescriptor.getSelectSql());
+            Object prime = lookUp != null ? lookUp.get(query) : null;
             if (prime == null) {
-                return genericDAO.getEntityFactory().getByKey(importDescriptor.getEntityType());
+                prime = genericDAO.findSingleByQuery(query.getQueryString(), query.getParameters());
+            }
+            if (prime == null || prime == ChunkEntityLookUp.NONE) {
+                final Object created = genericDAO.getEntityFactory().getByKey(importDescriptor.getEntityType());
+                if (lookUp != null) {
+                    // next tuples in this chunk may refer to the same entity
+                    lookUp.register(query, created);
+                }
+                return created;
             }
             return prime;
         }
@@ -651,7 +783,12 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
                 throw new IllegalArgumentException("Missing look up query for field: " + column.getName()
                         + " at index: " + column.getColumnIndex() + " in tuple: " + tuple);
             }
-            object = getExistingEntity(importDescriptor, column.getLookupQuery(), masterObject, tuple);
+            final LookUpQuery query = columnLookUpQueryParameterStrategy.getQuery(importDescriptor, masterObject, tuple, valueDataAdapter, column.getLookupQuery());
+            object = lookUp != null ? lookUp.get(query) : null;
+            if (object == null || object == ChunkEntityLookUp.NONE) {
+                // foreign key may refer to entity created earlier in this chunk, so misses are always verified
+                object = genericDAO.findSingleByQuery(query.getQueryString(), query.getParameters());
+            }
             if (object == null) {
                 if (column.getEntityType() != null) {
                     object = genericDAO.getEntityFactory().getByIface(
@@ -669,26 +806,9 @@ public class CsvBulkImportServiceImpl extends AbstractImportService implements I
     }
 
 
-    /**
-     * Try to get existing entity for update. In case of sub import master object will be used in parameters if
-     * {@link ImportColumn#isUseMasterObject()} set to true.
-     *
-     * @param importDescriptor descriptor
-     * @param queryTemplate    template to use with tuple columns as parameter values
-     * @param masterObject in case of subimport will be not null, but will be used with flag only
-     * @param tuple        csv row to get the parameter value for lookup query.
-     *
-     * @return existing entity or null if not found
-     */
-    private Object getExistingEntity(final ImportDescriptor importDescriptor,
-                                     final String queryTemplate,
-                                     final Object masterObject,
-                                     final ImportTuple tuple) {
-
-        final LookUpQuery query = columnLookUpQueryParameterStrategy.getQuery(importDescriptor, masterObject, tuple, valueDataAdapter, queryTemplate);
-        final Object object = genericDAO.findSingleByQuery(query.getQueryString(), query.getParameters());
-        return object;
-
+    private long getRowsPerSecond(final long rows, final long start) {
+        final long millis = System.currentTimeMillis() - start;
+        return millis > 0L ? rows * 1000L / millis : rows;
     }
 
     /**
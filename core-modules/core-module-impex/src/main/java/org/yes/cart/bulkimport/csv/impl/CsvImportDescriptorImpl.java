@@ -54,7 +54,9 @@ public class CsvImportDescriptorImpl implements CsvImportDescriptor, Serializabl
     private String insertSql;
     private String deleteSql;
 
-    private boolean initialised = false;
+    private int batchSize;
+
+    private volatile boolean initialised = false;
 
     /**
      * Default constructor.
@@ -181,6 +183,18 @@ public class CsvImportDescriptorImpl implements CsvImportDescriptor, Serializabl
         this.deleteSql = deleteSql;
     }
 
+    /** {@inheritDoc} */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize number of tuples to import as a single set
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     ImportColumn getPrimaryKeyColumn() {
         if (!initialised) {
             this.reloadMappings();
@@ -270,11 +284,11 @@ public class CsvImportDescriptorImpl implements CsvImportDescriptor, Serializabl
         this.importDirectory = importDirectory;
     }
 
-    private void reloadMappings() {
-        initialised = true;
-        pkColumn = null;
-        columnByName = new HashMap<String, ImportColumn>();
-        columnsByType = new HashMap<String, List<ImportColumn>>();
+    private synchronized void reloadMappings() {
+        // descriptor may be shared by parallel imports, so mappings are published only when complete
+        ImportColumn pkColumn = null;
+        final Map<String, ImportColumn> columnByName = new HashMap<String, ImportColumn>();
+        final Map<String, List<ImportColumn>> columnsByType = new HashMap<String, List<ImportColumn>>();
 
         for (CsvImportColumn importColumn : columns) {
             importColumn.setParentDescriptor(this);
@@ -291,6 +305,11 @@ public class CsvImportDescriptorImpl implements CsvImportDescriptor, Serializabl
                 columnByName.put(importColumn.getName(), importColumn);
             }
         }
+
+        this.pkColumn = pkColumn;
+        this.columnByName = columnByName;
+        this.columnsByType = columnsByType;
+        this.initialised = true;
     }
 
     /**
@@ -308,6 +327,7 @@ public class CsvImportDescriptorImpl implements CsvImportDescriptor, Serializabl
                 ", selectSql='" + selectSql + '\'' +
                 ", insertSql='" + insertSql + '\'' +
                 ", deleteSql='" + deleteSql + '\'' +
+                ", batchSize=" + batchSize +
                 ", initialised=" + initialised +
                 '}';
     }
@@ -106,5 +106,14 @@ public interface ImportDescriptor extends ImpExDescriptor<ImportContext, ImportC
      */
     String getDeleteSql();
 
+    /**
+     * Get batch size, which defines how many tuples are imported as a single set (i.e. with
+     * look ups resolved for all tuples at once and single flush). Zero or one means that
+     * tuples are imported one by one.
+     *
+     * @return        batch size
+     */
+    int getBatchSize();
+
 
 }
@@ -46,7 +46,16 @@ public abstract class AbstractImportService implements ImportService {
                 fileName);
     }
 
-    private File[] getFilesToImport(final String importFolder, final String fileMaskRe, final String fileName) {
+    /**
+     * Get files to import.
+     *
+     * @param importFolder import folder
+     * @param fileMaskRe   file name mask (regular expression)
+     * @param fileName     optional file name
+     *
+     * @return files that match the mask (or null if folder does not exist)
+     */
+    public static File[] getFilesToImport(final String importFolder, final String fileMaskRe, final String fileName) {
         final FilenameFilter filenameFilter =
                 new AbstractImportService.RegexPatternFilenameFilter(fileMaskRe);
         final File importDirectory = new File(importFolder);
@@ -60,7 +69,7 @@ public abstract class AbstractImportService implements ImportService {
      * @param fileName optional file name
      * @return the filtered file array
      */
-    private File[] filterFiles(final File[] toFilter, final String fileName) {
+    private static File[] filterFiles(final File[] toFilter, final String fileName) {
         if (fileName != null && toFilter != null) {
             final File fileAsFilter = new File(fileName);
             for (File file : toFilter) {
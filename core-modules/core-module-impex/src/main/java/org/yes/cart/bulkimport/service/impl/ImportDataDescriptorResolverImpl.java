@@ -16,10 +16,10 @@
 
 package org.yes.cart.bulkimport.service.impl;
 
-import org.apache.commons.lang.StringUtils;
 import org.yes.cart.bulkimport.model.ImportDescriptor;
 import org.yes.cart.bulkcommon.service.DataDescriptorResolver;
 import org.yes.cart.bulkcommon.service.DataDescriptorTuplizer;
+import org.yes.cart.bulkcommon.service.model.DescriptorDependencies;
 import org.yes.cart.domain.entity.DataDescriptor;
 import org.yes.cart.domain.entity.DataGroup;
 import org.yes.cart.service.domain.DataDescriptorService;
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * User: denispavlov
@@ -85,18 +86,32 @@ public class ImportDataDescriptorResolverImpl implements DataDescriptorResolver<
 
                 final Map<String, ImportDescriptor> out = new LinkedHashMap<String, ImportDescriptor>();
 
-                final String descriptors = dataGroup.getDescriptors();
-                if (StringUtils.isNotBlank(descriptors)) {
+                for (final String name : DescriptorDependencies.parse(dataGroup.getDescriptors()).keySet()) {
+                    out.put(name, getByName(name));
+                }
 
-                    for (final String descriptor : StringUtils.split(descriptors, ',')) {
+                return out;
+            }
 
-                        final String name = descriptor.trim();
-                        out.put(name, getByName(name));
-                    }
+            throw new RuntimeException("Group with name " + group + " is not of type: " + DataGroup.TYPE_IMPORT);
 
-                }
+        }
+
+        throw new RuntimeException("Group with name " + group + " cannot be resolved");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Set<String>> getDependenciesByGroup(final String group) {
+
+        final DataGroup dataGroup = dataGroupService.findByName(group);
+        if (dataGroup != null) {
+
+            if (DataGroup.TYPE_IMPORT.equals(dataGroup.getType())) {
+
+                return DescriptorDependencies.parse(dataGroup.getDescriptors());
 
-                return out;
             }
 
             throw new RuntimeException("Group with name " + group + " is not of type: " + DataGroup.TYPE_IMPORT);
@@ -79,6 +79,7 @@ public class CsvImportDescriptorXStreamProvider implements XStreamProvider<CsvIm
             xStream.aliasField("select-sql", CsvImportDescriptorImpl.class, "selectSql");
             xStream.aliasField("insert-sql", CsvImportDescriptorImpl.class, "insertSql");
             xStream.aliasField("delete-sql", CsvImportDescriptorImpl.class, "deleteSql");
+            xStream.aliasField("batch-size", CsvImportDescriptorImpl.class, "batchSize");
 
             xStream.aliasField("import-file-descriptor", CsvImportDescriptorImpl.class, "importFileDescriptor");
             xStream.addDefaultImplementation(CsvImportFileImpl.class, CsvImportFile.class);
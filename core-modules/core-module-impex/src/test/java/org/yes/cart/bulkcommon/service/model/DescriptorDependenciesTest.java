@@ -0,0 +1,88 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkcommon.service.model;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 18:05
+ */
+public class DescriptorDependenciesTest {
+
+    @Test
+    public void testSequentialByDefault() throws Exception {
+
+        final Map<String, Set<String>> deps = DescriptorDependencies.parse("a.xml, b.xml,c.xml");
+
+        assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml"), new ArrayList<String>(deps.keySet()));
+        assertTrue(deps.get("a.xml").isEmpty());
+        assertEquals(Collections.singleton("a.xml"), deps.get("b.xml"));
+        assertEquals(Collections.singleton("b.xml"), deps.get("c.xml"));
+
+    }
+
+    @Test
+    public void testExplicitDependencies() throws Exception {
+
+        final Map<String, Set<String>> deps = DescriptorDependencies.parse("a.xml, b.xml(a.xml), c.xml(a.xml), d.xml(b.xml c.xml), e.xml()");
+
+        assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml", "d.xml", "e.xml"), new ArrayList<String>(deps.keySet()));
+        assertTrue(deps.get("a.xml").isEmpty());
+        assertEquals(Collections.singleton("a.xml"), deps.get("b.xml"));
+        assertEquals(Collections.singleton("a.xml"), deps.get("c.xml"));
+        assertEquals(new HashSet<String>(Arrays.asList("b.xml", "c.xml")), deps.get("d.xml"));
+        assertTrue(deps.get("e.xml").isEmpty());
+
+    }
+
+    @Test
+    public void testBlank() throws Exception {
+
+        assertTrue(DescriptorDependencies.parse(null).isEmpty());
+        assertTrue(DescriptorDependencies.parse(" ").isEmpty());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency() throws Exception {
+
+        DescriptorDependencies.parse("a.xml, b.xml(x.xml)");
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBrackets() throws Exception {
+
+        DescriptorDependencies.parse("a.xml, b.xml(a.xml");
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCyclicDependency() throws Exception {
+
+        DescriptorDependencies.parse("a.xml(c.xml), b.xml(a.xml), c.xml(b.xml)");
+
+    }
+
+}
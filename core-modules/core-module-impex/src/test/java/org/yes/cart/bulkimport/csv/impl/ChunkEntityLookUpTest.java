@@ -0,0 +1,136 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkimport.csv.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.yes.cart.bulkcommon.service.support.LookUpQuery;
+import org.yes.cart.bulkcommon.service.support.impl.HSQLQuery;
+import org.yes.cart.dao.GenericDAO;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:45
+ */
+public class ChunkEntityLookUpTest {
+
+    private static final String PRICE = "select p from SkuPriceEntity p where p.skuCode = ?1 and p.currency = ?2 and p.quantity = ?3";
+
+    private final Mockery mockery = new JUnit4Mockery();
+
+    @Test
+    public void testPrefetchMultipleConditions() throws Exception {
+
+        final GenericDAO<Object, Long> genericDAO = mockery.mock(GenericDAO.class, "genericDAO");
+
+        final Object price1 = new Object();
+        final Object price2 = new Object();
+
+        mockery.checking(new Expectations() {{
+            one(genericDAO).findByQuery(
+                    with(equal("select p, p.skuCode, p.currency, p.quantity from SkuPriceEntity p where p.skuCode in (?1) and p.currency in (?2) and p.quantity in (?3)")),
+                    with(any(Object[].class)));
+            will(returnValue(Arrays.asList(
+                    new Object[] { price1, "SKU-1", "EUR", new BigDecimal("1.00") },
+                    new Object[] { price2, "SKU-2", "EUR", new BigDecimal("1") }
+            )));
+        }});
+
+        final LookUpQuery sku1 = new HSQLQuery(PRICE, new Object[] { "SKU-1", "EUR", new BigDecimal("1") });
+        final LookUpQuery sku2 = new HSQLQuery(PRICE, new Object[] { "SKU-2", "EUR", new BigDecimal("1.0") });
+        final LookUpQuery sku3 = new HSQLQuery(PRICE, new Object[] { "SKU-3", "EUR", new BigDecimal("1") });
+
+        final ChunkEntityLookUp lookUp = new ChunkEntityLookUp(genericDAO);
+        lookUp.prefetch(Arrays.asList(sku1, sku2, sku3));
+        lookUp.prefetch(Arrays.asList(sku1, sku2, sku3)); // already resolved
+
+        assertSame(price1, lookUp.get(sku1));
+        assertSame(price2, lookUp.get(sku2));
+        assertSame(ChunkEntityLookUp.NONE, lookUp.get(sku3));
+
+        final Object price3 = new Object();
+        lookUp.register(sku3, price3);
+        assertSame(price3, lookUp.get(sku3));
+
+        assertEquals(1L, lookUp.getQueryCount());
+        assertEquals(4L, lookUp.getHitCount());
+
+        lookUp.clear();
+        assertNull(lookUp.get(sku1));
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testPrefetchNotExactMatch() throws Exception {
+
+        final GenericDAO<Object, Long> genericDAO = mockery.mock(GenericDAO.class, "genericDAO");
+
+        final Object brand = new Object();
+
+        mockery.checking(new Expectations() {{
+            one(genericDAO).findByQuery(
+                    with(equal("select b, b.name from BrandEntity b where b.name in (?1)")),
+                    with(any(Object[].class)));
+            will(returnValue(Collections.singletonList(new Object[] { brand, "Samsung" })));
+        }});
+
+        final LookUpQuery samsung = new HSQLQuery("select b from BrandEntity b where b.name = ?1", new Object[] { "SAMSUNG" });
+
+        final ChunkEntityLookUp lookUp = new ChunkEntityLookUp(genericDAO);
+        lookUp.prefetch(Collections.singletonList(samsung));
+
+        assertNull(lookUp.get(samsung)); // collation may be case insensitive, so must use row look up
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testUnsupportedQueries() throws Exception {
+
+        final GenericDAO<Object, Long> genericDAO = mockery.mock(GenericDAO.class, "genericDAO");
+
+        final LookUpQuery property = new HSQLQuery("select c.categoryId from CategoryEntity c where c.name = ?1", new Object[] { "Cat" });
+        final LookUpQuery literal = new HSQLQuery("select b from EtypeEntity b where b.businesstype = 'String'", new Object[0]);
+        final LookUpQuery master = new HSQLQuery("select v from AttrValueEntityProduct v where v.product = ?1", new Object[] { new Object() });
+        final LookUpQuery or = new HSQLQuery("select c from CategoryEntity c where c.guid = ?1 or c.name = ?2", new Object[] { "G", "N" });
+
+        final ChunkEntityLookUp lookUp = new ChunkEntityLookUp(genericDAO);
+        lookUp.prefetch(Arrays.asList(property, literal, master, or));
+
+        assertNull(lookUp.get(property));
+        assertNull(lookUp.get(literal));
+        assertNull(lookUp.get(master));
+        assertNull(lookUp.get(or));
+        assertEquals(0L, lookUp.getQueryCount());
+
+        mockery.assertIsSatisfied();
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.async.impl;
+
+import org.yes.cart.service.async.JobStatusListener;
+import org.yes.cart.service.async.model.JobStatus;
+
+import java.util.Map;
+
+/**
+ * Listener for a single task of a job that runs several tasks in parallel. All tasks report
+ * to the same job listener, which is not thread safe, so all calls are synchronized on it.
+ *
+ * Messages are prefixed with task name and ping messages of all running tasks are shown
+ * together, one line per task. Completion of this listener means completion of the task,
+ * the job listener has to be completed separately.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:25
+ */
+public class JobStatusListenerTaskWrapperImpl implements JobStatusListener {
+
+    private final JobStatusListener wrapped;
+    private final String task;
+    private final Map<String, String> pings;
+
+    private boolean completed = false;
+
+    /**
+     * @param listener job listener
+     * @param task     task name
+     * @param pings    ping messages of running tasks shared by all tasks of this job
+     */
+    public JobStatusListenerTaskWrapperImpl(final JobStatusListener listener,
+                                            final String task,
+                                            final Map<String, String> pings) {
+        this.wrapped = listener;
+        this.task = task;
+        this.pings = pings;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public JobStatus getLatestStatus() {
+        synchronized (wrapped) {
+            return wrapped.getLatestStatus();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getJobToken() {
+        return wrapped.getJobToken();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyPing() {
+        synchronized (wrapped) {
+            wrapped.notifyPing();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyPing(final String msg) {
+        synchronized (wrapped) {
+            pings.put(task, msg);
+            wrapped.notifyPing(joinPings());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyMessage(final String message) {
+        synchronized (wrapped) {
+            wrapped.notifyMessage(prefix(message));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyWarning(final String warning) {
+        synchronized (wrapped) {
+            wrapped.notifyWarning(prefix(warning));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyError(final String error) {
+        synchronized (wrapped) {
+            wrapped.notifyError(prefix(error));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyError(final String error, final Exception exp) {
+        synchronized (wrapped) {
+            wrapped.notifyError(prefix(error), exp);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void notifyCompleted() {
+        synchronized (wrapped) {
+            completed = true;
+            pings.remove(task);
+            wrapped.notifyPing(joinPings());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCompleted() {
+        synchronized (wrapped) {
+            return completed || wrapped.isCompleted();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTimeoutValue() {
+        return wrapped.getTimeoutValue();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isTimedOut() {
+        synchronized (wrapped) {
+            return wrapped.isTimedOut();
+        }
+    }
+
+    private String joinPings() {
+        if (pings.isEmpty()) {
+            return null;
+        }
+        final StringBuilder out = new StringBuilder();
+        for (final String ping : pings.values()) {
+            if (out.length() > 0) {
+                out.append("\n> ");
+            }
+            out.append(ping);
+        }
+        return out.toString();
+    }
+
+    private String prefix(final String message) {
+        return "[" + task + "] " + message;
+    }
+
+}
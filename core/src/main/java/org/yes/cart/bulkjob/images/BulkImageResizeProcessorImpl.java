@@ -0,0 +1,242 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.images;
+
+import org.slf4j.Logger;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.yes.cart.service.domain.ImageService;
+import org.yes.cart.service.domain.SystemService;
+import org.yes.cart.service.image.ImageNameStrategy;
+import org.yes.cart.stream.io.FileSystemIOProvider;
+import org.yes.cart.stream.io.IOProvider;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk processor that pre-generates resized images for all allowed sizes, so that first
+ * requests for images after import do not have to wait for resize.
+ *
+ * Processor walks all originals in image repository for each image name strategy and resizes
+ * original to all sizes for which resized image does not exist or is older than original.
+ * All missing sizes are generated in parallel using resize executor. Each resize goes through
+ * {@link ImageService#resizeImageToPath(String, String, String, String)}, so that it is de-duplicated
+ * with resizes requested by storefront at the same time and requests never read partially written file.
+ * Temporary files of writes in progress (".[name][random].tmp") are skipped, those left behind by a crash
+ * are removed once they are older than an hour.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 18:30
+ */
+public class BulkImageResizeProcessorImpl implements Runnable {
+
+    private static final Pattern SIZE_DIRECTORY = Pattern.compile("\\d+x\\d+");
+    private static final Pattern TEMP_FILE = Pattern.compile("\\..+\\.tmp");
+    private static final long STALE_TEMP_FILE_MS = 3600000L;
+
+    private final ImageService imageService;
+    private final SystemService systemService;
+    private final IOProvider ioProvider;
+    private final List<ImageNameStrategy> imageNameStrategies;
+
+    private TaskExecutor resizeExecutor = new SyncTaskExecutor();
+
+    public BulkImageResizeProcessorImpl(final ImageService imageService,
+                                        final SystemService systemService,
+                                        final IOProvider ioProvider,
+                                        final List<ImageNameStrategy> imageNameStrategies) {
+        this.imageService = imageService;
+        this.systemService = systemService;
+        this.ioProvider = ioProvider;
+        this.imageNameStrategies = imageNameStrategies;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+
+        final Logger log = ShopCodeContext.getLog(this);
+
+        if (!(ioProvider instanceof FileSystemIOProvider)) {
+            log.warn("Image repository is not on file system, resized images will be generated on request");
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+
+        final String repository = systemService.getImageRepositoryDirectory();
+        final List<String[]> sizes = imageService.getAllowedSizes();
+
+        log.info("Generate resized images in {} for sizes {}", repository, sizes.size());
+
+        final Stats stats = new Stats();
+        final Map<String, Object> ctx = Collections.emptyMap();
+
+        for (final ImageNameStrategy strategy : imageNameStrategies) {
+
+            final File root = ((FileSystemIOProvider) ioProvider).resolveFileFromUri(
+                    repository + strategy.getRelativeInternalRootDirectory(), ctx);
+
+            if (root == null || !root.isDirectory()) {
+                continue;
+            }
+
+            final List<File> originals = new ArrayList<File>();
+            final File[] dirs = root.listFiles();
+            if (dirs != null) {
+                for (final File dir : dirs) {
+                    if (dir.isDirectory() && !SIZE_DIRECTORY.matcher(dir.getName()).matches()) {
+                        collectFiles(dir, originals);
+                    }
+                }
+            }
+
+            for (final File original : originals) {
+                processOriginal(repository, strategy, original, sizes, stats);
+            }
+
+        }
+
+        final long finish = System.currentTimeMillis();
+
+        final long ms = (finish - start);
+
+        log.info("Generated {} resized image(s) for {} original(s), {} up to date, {} failed, {} not resolved",
+                new Object[] { stats.generated, stats.originals, stats.upToDate, stats.failed, stats.unresolved });
+        log.info("Generating resized images ... completed in {}s ({} images/s)",
+                (ms > 0 ? ms / 1000 : 0), (ms > 0 ? stats.generated * 1000L / ms : stats.generated));
+
+    }
+
+    private void processOriginal(final String repository,
+                                 final ImageNameStrategy strategy,
+                                 final File file,
+                                 final List<String[]> sizes,
+                                 final Stats stats) {
+
+        final Logger log = ShopCodeContext.getLog(this);
+        final Map<String, Object> ctx = Collections.emptyMap();
+
+        final String fileName = file.getName();
+        final String code = strategy.resolveObjectCode(fileName);
+        final String locale = strategy.resolveLocale(fileName);
+
+        final String original = repository + strategy.resolveRelativeInternalFileNamePath(fileName, code, locale);
+        final File resolved = ((FileSystemIOProvider) ioProvider).resolveFileFromUri(original, ctx);
+        if (resolved == null || !file.getAbsoluteFile().equals(resolved.getAbsoluteFile())) {
+            // file that image name strategy does not recognise will never be requested
+            log.debug("Skipping {}, resolved code {} does not match path", file.getAbsolutePath(), code);
+            stats.unresolved++;
+            return;
+        }
+
+        stats.originals++;
+
+        final List<String[]> missing = new ArrayList<String[]>();
+        for (final String[] size : sizes) {
+            final String resized = repository + strategy.resolveRelativeInternalFileNamePath(fileName, code, locale, size[0], size[1]);
+            if (ioProvider.isNewerThan(resized, original, ctx)) {
+                stats.upToDate++;
+            } else {
+                missing.add(new String[] { size[0], size[1], resized });
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        final CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(resizeExecutor);
+        for (final String[] size : missing) {
+            completion.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    // image service falls back to original if resize fails
+                    return size[2].equals(imageService.resizeImageToPath(original, size[2], size[0], size[1]));
+                }
+            });
+        }
+
+        for (int i = 0; i < missing.size(); i++) {
+            try {
+                if (completion.take().get()) {
+                    stats.generated++;
+                } else {
+                    stats.failed++;
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ee) {
+                log.error("Unable to resize image " + original, ee.getCause());
+                stats.failed++;
+            }
+        }
+
+    }
+
+    private void collectFiles(final File dir, final List<File> files) {
+        final File[] children = dir.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                if (child.isDirectory()) {
+                    collectFiles(child, files);
+                } else if (TEMP_FILE.matcher(child.getName()).matches()) {
+                    if (child.lastModified() < System.currentTimeMillis() - STALE_TEMP_FILE_MS && !child.delete()) {
+                        ShopCodeContext.getLog(this).error("Unable to delete file {}", child.getAbsolutePath());
+                    }
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set executor for resizing images in parallel.
+     *
+     * @param resizeExecutor executor
+     */
+    public void setResizeExecutor(final TaskExecutor resizeExecutor) {
+        this.resizeExecutor = resizeExecutor;
+    }
+
+    /**
+     * Counters for single run.
+     */
+    private static final class Stats {
+
+        private long originals;
+        private long generated;
+        private long upToDate;
+        private long failed;
+        private long unresolved;
+
+    }
+
+}
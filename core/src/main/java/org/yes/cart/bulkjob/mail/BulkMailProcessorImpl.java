@@ -17,6 +17,9 @@
 package org.yes.cart.bulkjob.mail;
 
 import org.slf4j.Logger;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.yes.cart.domain.entity.Mail;
 import org.yes.cart.service.domain.MailService;
@@ -27,10 +30,18 @@ import org.yes.cart.service.mail.MailComposer;
 import org.yes.cart.util.ShopCodeContext;
 
 import javax.mail.internet.MimeMessage;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
+ * Mail queue processor.
+ *
+ * Mails are read in pages in order of creation and grouped by shop. Each shop group is composed and sent
+ * on worker executor, so that different shops are sent concurrently while mails of the same shop
+ * are sent in order over a single SMTP connection per batch. Next page is read while current
+ * page is being sent. Sent mails are deleted in batch after each page, failed mails remain in the
+ * queue until next cycle.
+ *
  * User: denispavlov
  * Date: 10/11/2013
  * Time: 13:56
@@ -47,6 +58,9 @@ public class BulkMailProcessorImpl implements Runnable {
 
     private long delayBetweenEmailsMs;
     private int cycleExceptionsThreshold;
+    private int pageSize = 50;
+    private int messagesPerConnection = 10;
+    private TaskExecutor sendExecutor = new SyncTaskExecutor();
 
     private boolean pauseInitialised = false;
 
@@ -89,58 +103,72 @@ public class BulkMailProcessorImpl implements Runnable {
 
         final Map<String, Integer> exceptionsThresholdsByShop = new HashMap<String, Integer>();
 
-        Long lastFailedEmailId = null;
-        Mail mail = mailService.findOldestMail(lastFailedEmailId);
-        while (mail != null) {
+        int sentCount = 0;
+        int failedCount = 0;
 
-            log.info("Preparing mail object {}/{} for {} with subject {}",
-                    new Object[] { mail.getMailId(), mail.getShopCode(), mail.getRecipients(), mail.getSubject() });
+        List<Mail> page = mailService.findOldestMails(null, pageSize);
+        while (!page.isEmpty()) {
 
-            final String shopCode = mail.getShopCode();
+            final Long lastMailId = page.get(page.size() - 1).getMailId();
 
-            if (!exceptionsThresholdsByShop.containsKey(shopCode)) {
-                exceptionsThresholdsByShop.put(shopCode, this.cycleExceptionsThreshold);
-            }
+            final CompletionService<ShopBatchResult> completionService = new ExecutorCompletionService<ShopBatchResult>(sendExecutor);
+            int submitted = 0;
+            for (final Map.Entry<String, List<Mail>> shopMails : groupByShop(page).entrySet()) {
+
+                final String shopCode = shopMails.getKey();
+
+                if (!exceptionsThresholdsByShop.containsKey(shopCode)) {
+                    exceptionsThresholdsByShop.put(shopCode, this.cycleExceptionsThreshold);
+                }
 
-            int exceptionsThreshold = exceptionsThresholdsByShop.get(shopCode);
-            if (exceptionsThreshold <= 0) {
-                lastFailedEmailId = mail.getMailId();
-                log.info("Skipping send mail as exception threshold is exceeded for shop {}", shopCode);
-            } else {
+                if (exceptionsThresholdsByShop.get(shopCode) <= 0) {
+                    log.info("Skipping send mail as exception threshold is exceeded for shop {}", shopCode);
+                    continue;
+                }
 
                 final JavaMailSender javaMailSender = javaMailSenderFactory.getJavaMailSender(shopCode);
                 if (javaMailSender == null) {
                     log.info("No mail sender configured for {}", shopCode);
-                    lastFailedEmailId = mail.getMailId();
-                } else {
-
-                    final MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+                    continue;
+                }
 
-                    boolean sent = false;
-                    try {
-                        mailComposer.convertMessage(mail, mimeMessage);
-                        javaMailSender.send(mimeMessage);
-                        sent = true;
-                        log.info("Sent mail to {} with subject {}", mail.getRecipients(), mail.getSubject());
-                        mailService.delete(mail);
-                    } catch (Exception exp) {
-                        log.error("Unable to send mail " + mail.getMailId() + " for shop " + shopCode, exp);
-                        lastFailedEmailId = mail.getMailId();
-                        exceptionsThresholdsByShop.put(shopCode, exceptionsThreshold - 1);
+                completionService.submit(new ShopBatch(shopCode, shopMails.getValue(), javaMailSender));
+                submitted++;
 
-                    }
+            }
 
-                    if (sent && delayBetweenEmailsMs > 0) {
-                        try {
-                            Thread.sleep(delayBetweenEmailsMs);
-                        } catch (InterruptedException e) {
-                            // resume
-                        }
+            // read next page while this one is being sent
+            final List<Mail> next = mailService.findOldestMails(lastMailId, pageSize);
+
+            final List<Long> sent = new ArrayList<Long>();
+            for (int i = 0; i < submitted; i++) {
+                try {
+                    final ShopBatchResult result = completionService.take().get();
+                    sent.addAll(result.sent);
+                    if (result.failed > 0) {
+                        failedCount += result.failed;
+                        exceptionsThresholdsByShop.put(result.shopCode,
+                                exceptionsThresholdsByShop.get(result.shopCode) - result.failed);
                     }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Bulk send mail interrupted");
+                    break;
+                } catch (ExecutionException ee) {
+                    log.error("Unable to complete send mail batch", ee.getCause());
                 }
             }
 
-            mail = mailService.findOldestMail(lastFailedEmailId);
+            if (!sent.isEmpty()) {
+                mailService.deleteMails(sent);
+                sentCount += sent.size();
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            page = next;
 
         }
 
@@ -148,13 +176,153 @@ public class BulkMailProcessorImpl implements Runnable {
 
         final long ms = (finish - start);
 
-        log.info("Bulk send mail ... completed in {}s", (ms > 0 ? ms / 1000 : 0));
+        log.info("Bulk send mail ... completed in {}s, sent: {}, failed: {}",
+                new Object[] { (ms > 0 ? ms / 1000 : 0), sentCount, failedCount });
+
+    }
+
+    private Map<String, List<Mail>> groupByShop(final List<Mail> mails) {
+        final Map<String, List<Mail>> byShop = new LinkedHashMap<String, List<Mail>>();
+        for (final Mail mail : mails) {
+            List<Mail> shopMails = byShop.get(mail.getShopCode());
+            if (shopMails == null) {
+                shopMails = new ArrayList<Mail>();
+                byShop.put(mail.getShopCode(), shopMails);
+            }
+            shopMails.add(mail);
+        }
+        return byShop;
+    }
+
+    /**
+     * Outcome of sending mails for single shop.
+     */
+    static final class ShopBatchResult {
+
+        private final String shopCode;
+        private final List<Long> sent = new ArrayList<Long>();
+        private int failed = 0;
+
+        private ShopBatchResult(final String shopCode) {
+            this.shopCode = shopCode;
+        }
+    }
+
+    /**
+     * Composes and sends mails of single shop. Mails are sent in chunks of {@link #messagesPerConnection},
+     * each chunk is sent using single connection.
+     */
+    private final class ShopBatch implements Callable<ShopBatchResult> {
+
+        private final String shopCode;
+        private final List<Mail> mails;
+        private final JavaMailSender javaMailSender;
+
+        private ShopBatch(final String shopCode, final List<Mail> mails, final JavaMailSender javaMailSender) {
+            this.shopCode = shopCode;
+            this.mails = mails;
+            this.javaMailSender = javaMailSender;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ShopBatchResult call() throws Exception {
+
+            final Logger log = ShopCodeContext.getLog(BulkMailProcessorImpl.this);
+
+            final ShopBatchResult result = new ShopBatchResult(shopCode);
+
+            final Map<MimeMessage, Mail> chunk = new LinkedHashMap<MimeMessage, Mail>();
+            for (final Mail mail : mails) {
+
+                log.info("Preparing mail object {}/{} for {} with subject {}",
+                        new Object[] { mail.getMailId(), mail.getShopCode(), mail.getRecipients(), mail.getSubject() });
+
+                final MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+                try {
+                    mailComposer.convertMessage(mail, mimeMessage);
+                    chunk.put(mimeMessage, mail);
+                } catch (Exception exp) {
+                    log.error("Unable to compose mail " + mail.getMailId() + " for shop " + shopCode, exp);
+                    result.failed++;
+                    if (result.failed >= cycleExceptionsThreshold) {
+                        break;
+                    }
+                }
+
+                if (chunk.size() >= messagesPerConnection) {
+                    if (!send(chunk, result) || result.failed >= cycleExceptionsThreshold) {
+                        chunk.clear();
+                        break;
+                    }
+                    chunk.clear();
+                }
+
+            }
+
+            if (!chunk.isEmpty()) {
+                send(chunk, result);
+            }
+
+            return result;
+
+        }
+
+        /**
+         * @return false if connection failed and nothing was sent
+         */
+        private boolean send(final Map<MimeMessage, Mail> chunk, final ShopBatchResult result) {
+
+            final Logger log = ShopCodeContext.getLog(BulkMailProcessorImpl.this);
+
+            Map<Object, Exception> failed = Collections.emptyMap();
+            try {
+                javaMailSender.send(chunk.keySet().toArray(new MimeMessage[chunk.size()]));
+            } catch (MailSendException mse) {
+                failed = mse.getFailedMessages();
+                if (failed.isEmpty()) {
+                    // connection level failure, nothing was sent
+                    log.error("Unable to send mail for shop " + shopCode, mse);
+                    result.failed += chunk.size();
+                    return false;
+                }
+            } catch (Exception exp) {
+                log.error("Unable to send mail for shop " + shopCode, exp);
+                result.failed += chunk.size();
+                return false;
+            }
+
+            for (final Map.Entry<MimeMessage, Mail> entry : chunk.entrySet()) {
+                final Mail mail = entry.getValue();
+                final Exception exp = failed.get(entry.getKey());
+                if (exp == null) {
+                    log.info("Sent mail to {} with subject {}", mail.getRecipients(), mail.getSubject());
+                    result.sent.add(mail.getMailId());
+                } else {
+                    log.error("Unable to send mail " + mail.getMailId() + " for shop " + shopCode, exp);
+                    result.failed++;
+                }
+            }
+
+            if (delayBetweenEmailsMs > 0) {
+                try {
+                    Thread.sleep(delayBetweenEmailsMs * chunk.size());
+                } catch (InterruptedException e) {
+                    // resume
+                }
+            }
+
+            return true;
+
+        }
 
     }
 
     /**
      * Setting to allow delay interval between sending mail. This is useful to prevent
-     * bulk message be treated as spam.
+     * bulk message be treated as spam. Since mails are sent in batches over single connection
+     * delay is applied after each batch (i.e. batch size multiplied by this delay), so that
+     * average rate per shop is preserved.
      *
      * @param delayBetweenEmailsMs delay in millisecond between each email
      */
@@ -172,5 +340,32 @@ public class BulkMailProcessorImpl implements Runnable {
         this.cycleExceptionsThreshold = cycleExceptionsThreshold;
     }
 
+    /**
+     * Number of mails read from the queue in one go.
+     *
+     * @param pageSize page size
+     */
+    public void setPageSize(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Max number of mails sent over single SMTP connection.
+     *
+     * @param messagesPerConnection batch size
+     */
+    public void setMessagesPerConnection(final int messagesPerConnection) {
+        this.messagesPerConnection = messagesPerConnection;
+    }
+
+    /**
+     * Executor for composing and sending mails (default is synchronous sending). Pool size
+     * defines number of shops that are sent concurrently.
+     *
+     * @param sendExecutor executor
+     */
+    public void setSendExecutor(final TaskExecutor sendExecutor) {
+        this.sendExecutor = sendExecutor;
+    }
 
 }
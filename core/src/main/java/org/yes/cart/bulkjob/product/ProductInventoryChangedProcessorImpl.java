@@ -20,6 +20,7 @@ import org.slf4j.Logger;
 import org.yes.cart.bulkjob.cron.AbstractLastRunDependentProcessorImpl;
 import org.yes.cart.cache.CacheBundleHelper;
 import org.yes.cart.cluster.node.NodeService;
+import org.yes.cart.domain.entity.Product;
 import org.yes.cart.service.domain.ProductService;
 import org.yes.cart.service.domain.RuntimeAttributeService;
 import org.yes.cart.service.domain.SkuWarehouseService;
@@ -27,7 +28,9 @@ import org.yes.cart.service.domain.SystemService;
 import org.yes.cart.util.ShopCodeContext;
 
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Processor that scrolls though all modified inventory and re-indexes products so that
@@ -108,7 +111,7 @@ public class ProductInventoryChangedProcessorImpl extends AbstractLastRunDepende
 
             }
 
-            flushCaches();
+            flushCaches(productSkus);
 
         }
 
@@ -122,9 +125,23 @@ public class ProductInventoryChangedProcessorImpl extends AbstractLastRunDepende
 
     }
 
-    protected void flushCaches() {
+    /**
+     * Flush cached entries that depend on given SKU's and their products.
+     *
+     * @param skuCodes SKU with changed inventory
+     */
+    protected void flushCaches(final List<String> skuCodes) {
+
+        final Set<String> tags = new HashSet<String>();
+        for (final String sku : skuCodes) {
+            tags.add("ProductSkuCode:" + sku);
+            final Product product = productService.getProductBySkuCode(sku);
+            if (product != null) {
+                tags.add("Product:" + product.getProductId());
+            }
+        }
 
-        productCacheHelper.flushBundleCaches();
+        productCacheHelper.flushBundleCaches(tags);
 
     }
 
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.product;
+
+import org.slf4j.Logger;
+import org.yes.cart.cache.CacheBundleHelper;
+import org.yes.cart.cluster.node.NodeService;
+import org.yes.cart.cluster.service.IndexReplicationService;
+import org.yes.cart.util.ShopCodeContext;
+
+/**
+ * Index replication job for replica nodes. Replica nodes do not reindex products themselves but
+ * pull index snapshots from indexing node, so that reindex load on database does not grow with
+ * number of storefront nodes.
+ *
+ * Replicated snapshot only becomes visible when slave directory provider swaps readers on its next
+ * refresh, therefore product caches are not flushed straight after replication (they would be
+ * re-populated from old readers) but on the first run after refresh period has elapsed. Flush deadline
+ * is not postponed by replications that happen while flush is pending (otherwise caches would never be
+ * flushed during sustained churn), instead next flush is scheduled after pending one.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:50
+ */
+public class ProductsIndexReplicationProcessorImpl implements Runnable {
+
+    private final IndexReplicationService indexReplicationService;
+    private final NodeService nodeService;
+    private final CacheBundleHelper productCacheHelper;
+    private final long refreshPeriodMs;
+
+    private volatile long flushCachesAfter = 0L;
+    private volatile long flushCachesNextAfter = 0L;
+
+    /**
+     * @param indexReplicationService index replication service
+     * @param nodeService             node service
+     * @param productCacheHelper      product cache helper
+     * @param refreshPeriod           refresh period of slave directory provider in seconds
+     */
+    public ProductsIndexReplicationProcessorImpl(final IndexReplicationService indexReplicationService,
+                                                 final NodeService nodeService,
+                                                 final CacheBundleHelper productCacheHelper,
+                                                 final long refreshPeriod) {
+        this.indexReplicationService = indexReplicationService;
+        this.nodeService = nodeService;
+        this.productCacheHelper = productCacheHelper;
+        this.refreshPeriodMs = refreshPeriod * 1000L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run() {
+
+        if (!indexReplicationService.isReplica()) {
+            return;
+        }
+
+        final Logger log = ShopCodeContext.getLog(this);
+
+        final String nodeId = nodeService.getCurrentNodeId();
+
+        final long start = System.currentTimeMillis();
+
+        if (flushCachesAfter > 0L && start >= flushCachesAfter) {
+
+            log.info("Flushing product caches {}", nodeId);
+
+            productCacheHelper.flushBundleCaches();
+
+            // replicated while flush was pending, may not have been visible yet
+            flushCachesAfter = flushCachesNextAfter;
+            flushCachesNextAfter = 0L;
+
+        }
+
+        log.debug("Replicating index on {}", nodeId);
+
+        final int updated = indexReplicationService.replicate();
+
+        if (updated < 0) {
+            log.warn("Replicating index on {} ... indexing node is not available", nodeId);
+            return;
+        }
+
+        if (updated > 0) {
+
+            final long finish = System.currentTimeMillis();
+
+            // slave directory provider swaps readers within refresh period after marker is moved
+            if (flushCachesAfter == 0L) {
+                flushCachesAfter = finish + refreshPeriodMs;
+            } else {
+                flushCachesNextAfter = finish + refreshPeriodMs;
+            }
+
+            final long ms = (finish - start);
+
+            log.info("Replicating {} indexes on {} ... completed in {}s, product caches are flushed after refresh",
+                    new Object[] { updated, nodeId, (ms > 0 ? ms / 1000 : 0) });
+
+        }
+
+    }
+
+}
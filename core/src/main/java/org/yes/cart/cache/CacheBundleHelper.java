@@ -16,6 +16,8 @@
 
 package org.yes.cart.cache;
 
+import java.util.Collection;
+
 /**
  * User: denispavlov
  * Date: 17/07/2016
@@ -28,4 +30,13 @@ public interface CacheBundleHelper {
      */
     void flushBundleCaches();
 
+    /**
+     * Flush only entries of bundle related caches that depend on given entities
+     * (see {@link TaggedCacheManager}). Caches that do not track tags are flushed
+     * completely.
+     *
+     * @param tags tags of changed entities
+     */
+    void flushBundleCaches(Collection<String> tags);
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache;
+
+import java.util.Set;
+
+/**
+ * Resolves additional cache tags for changed entity, e.g. SKU price change
+ * affects entries tagged with SKU code and product PK.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 13:24
+ */
+public interface CacheTagResolver {
+
+    /**
+     * Resolve dependent tags for changed entity.
+     *
+     * @param entityName entity name
+     * @param pkValue    entity PK
+     *
+     * @return tags (see {@link TaggedCacheManager}) or null if tags cannot be
+     *         resolved (e.g. entity is already deleted)
+     */
+    Set<String> resolveTags(String entityName, Long pkValue);
+
+}
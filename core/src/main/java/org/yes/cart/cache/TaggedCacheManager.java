@@ -0,0 +1,56 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache;
+
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+
+/**
+ * Cache manager that tracks dependencies of cache entries. Each entry is tagged with
+ * the entity identities it was computed from (e.g. "Product:10", "ProductSkuCode:ABC")
+ * so that a write can evict only the entries that depend on touched entities instead
+ * of clearing whole region.
+ *
+ * Tag format is "[Type]:[id]".
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 13:20
+ */
+public interface TaggedCacheManager extends CacheManager {
+
+    /**
+     * Evict entries of given region that are tagged with any of the given tags.
+     * Entries that have no tags (i.e. dependencies are unknown) are always evicted.
+     * If region does not track tags it is cleared.
+     *
+     * @param cacheName cache region
+     * @param tags      tags of changed entities
+     *
+     * @return number of evicted entries (-1 if whole region was cleared)
+     */
+    int evictTagged(String cacheName, Collection<String> tags);
+
+    /**
+     * @param cacheName cache region
+     *
+     * @return true if tags are tracked for given region
+     */
+    boolean isTagged(String cacheName);
+
+}
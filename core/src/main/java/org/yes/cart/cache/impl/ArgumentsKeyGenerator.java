@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache.impl;
+
+import org.springframework.cache.interceptor.DefaultKeyGenerator;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Key generator that keeps method arguments in the key for methods with several parameters
+ * (default generator uses hash code of arguments instead). This allows {@link TaggedCacheManagerImpl}
+ * to tag entries by arguments and removes possibility of hash collisions.
+ *
+ * Keys for methods with single parameter are the same as with default generator, so that "key"
+ * eviction strategy of {@link org.yes.cart.web.service.ws.CacheDirector} still works.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 13:30
+ */
+public class ArgumentsKeyGenerator extends DefaultKeyGenerator {
+
+    /** {@inheritDoc} */
+    @Override
+    public Object generate(final Object target, final Method method, final Object... params) {
+        if (params.length > 1) {
+            return new ArgumentsKey(params);
+        }
+        return super.generate(target, method, params);
+    }
+
+    /**
+     * Cache key that holds all method arguments.
+     */
+    public static final class ArgumentsKey implements Serializable {
+
+        private static final long serialVersionUID = 20161018L;
+
+        private final Object[] args;
+        private final int hashCode;
+
+        public ArgumentsKey(final Object... args) {
+            this.args = args.clone();
+            this.hashCode = Arrays.deepHashCode(this.args);
+        }
+
+        /**
+         * @param index argument index
+         *
+         * @return argument or null if index is out of bounds
+         */
+        public Object getArgument(final int index) {
+            if (index < 0 || index >= args.length) {
+                return null;
+            }
+            return args[index];
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ArgumentsKey)) {
+                return false;
+            }
+            final ArgumentsKey that = (ArgumentsKey) o;
+            return hashCode == that.hashCode && Arrays.deepEquals(args, that.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.deepToString(args);
+        }
+    }
+
+}
@@ -19,8 +19,10 @@ package org.yes.cart.cache.impl;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.yes.cart.cache.CacheBundleHelper;
+import org.yes.cart.cache.TaggedCacheManager;
 import org.yes.cart.util.ShopCodeContext;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 
@@ -45,6 +47,27 @@ public class CacheBundleHelperImpl implements CacheBundleHelper {
 
     }
 
+    @Override
+    public void flushBundleCaches(final Collection<String> tags) {
+
+        if (!(cacheManager instanceof TaggedCacheManager)) {
+            flushBundleCaches();
+            return;
+        }
+
+        final TaggedCacheManager taggedCacheManager = (TaggedCacheManager) cacheManager;
+        for (final String cache : caches) {
+
+            if (taggedCacheManager.getCache(cache) != null) {
+                taggedCacheManager.evictTagged(cache, tags);
+            } else {
+                ShopCodeContext.getLog(this).warn("Cache {} does not exist", cache);
+            }
+
+        }
+
+    }
+
     private void safeFlushCache(final String cacheName) {
 
         final Cache cache = cacheManager.getCache(cacheName);
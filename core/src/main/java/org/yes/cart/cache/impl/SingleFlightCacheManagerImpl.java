@@ -0,0 +1,399 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache.impl;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator for cache manager that coalesces concurrent computations of the same missing key.
+ *
+ * Spring cache interceptor does get() and on miss invokes the method and does put(). For single flight
+ * regions first thread that misses becomes a leader for this key and proceeds to compute the value, all
+ * other threads that miss the same key wait until leader puts the value and then return it as a hit.
+ *
+ * This manager is also a method interceptor that must wrap cache interceptor (see cache-config.xml). When
+ * cached method completes without put (exception, value not cached) it releases all keys this thread
+ * was leading, waiting threads receive the leader's exception or, if there was none, one of them becomes
+ * a new leader. Without interceptor waiting threads give up after wait timeout.
+ *
+ * Refresh ahead regions (EhCache only) serve entries that are close to TTL as misses to a single thread,
+ * so that it recomputes the value, while all other threads are still served the current value and never
+ * see a miss for hot keys.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 15:10
+ */
+public class SingleFlightCacheManagerImpl implements CacheManager, MethodInterceptor {
+
+    private static final String ALL = "*";
+
+    private static final ThreadLocal<List<Flight>> LEADING = new ThreadLocal<List<Flight>>();
+
+    private final CacheManager cacheManager;
+
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<String, Cache>();
+
+    private Set<String> singleFlightCaches = Collections.emptySet();
+    private Map<String, Double> refreshAheadRatios = Collections.emptyMap();
+    private long waitTimeoutMs = 3000L;
+
+    private final AtomicLong leaderCount = new AtomicLong(0L);
+    private final AtomicLong coalescedCount = new AtomicLong(0L);
+    private final AtomicLong waitTimeoutCount = new AtomicLong(0L);
+    private final AtomicLong refreshAheadCount = new AtomicLong(0L);
+
+    /**
+     * @param cacheManager actual cache manager
+     */
+    public SingleFlightCacheManagerImpl(final CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Cache getCache(final String name) {
+
+        Cache cache = caches.get(name);
+        if (cache == null) {
+            final Cache target = cacheManager.getCache(name);
+            if (target == null) {
+                return null;
+            }
+            final boolean singleFlight = singleFlightCaches.contains(ALL) || singleFlightCaches.contains(name);
+            final Double ratio = refreshAheadRatios.get(name);
+            final double refreshAhead = ratio != null && ratio > 0d && ratio < 1d ? ratio : 0d;
+            if (!singleFlight && refreshAhead == 0d) {
+                cache = target;
+            } else {
+                cache = new SingleFlightCache(target, singleFlight, refreshAhead);
+            }
+            final Cache existing = caches.putIfAbsent(name, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<String> getCacheNames() {
+        return cacheManager.getCacheNames();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+
+        final List<Flight> outer = LEADING.get();
+        final List<Flight> leading = new ArrayList<Flight>(2);
+        LEADING.set(leading);
+        Throwable failure = null;
+        try {
+            return invocation.proceed();
+        } catch (Throwable thr) {
+            failure = thr;
+            throw thr;
+        } finally {
+            if (outer == null) {
+                LEADING.remove();
+            } else {
+                LEADING.set(outer);
+            }
+            for (final Flight flight : leading) {
+                flight.cache.release(flight, failure);
+            }
+        }
+
+    }
+
+    /**
+     * @return number of misses for which calling thread became leader and computed the value
+     */
+    public long getLeaderCount() {
+        return leaderCount.get();
+    }
+
+    /**
+     * @return number of misses that were served by waiting for leader
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of times waiting for leader timed out
+     */
+    public long getWaitTimeoutCount() {
+        return waitTimeoutCount.get();
+    }
+
+    /**
+     * @return number of entries refreshed ahead of TTL
+     */
+    public long getRefreshAheadCount() {
+        return refreshAheadCount.get();
+    }
+
+    /**
+     * IoC. Regions that coalesce computation of missing keys ("*" for all regions).
+     *
+     * @param singleFlightCaches cache names
+     */
+    public void setSingleFlightCaches(final Set<String> singleFlightCaches) {
+        this.singleFlightCaches = singleFlightCaches;
+    }
+
+    /**
+     * IoC. Refresh ahead configuration. Value is the ratio of TTL after which entry is refreshed,
+     * e.g. 0.8 with TTL 3600s means that entry is refreshed after 48 minutes.
+     *
+     * @param refreshAheadRatios ratios (key is cache name)
+     */
+    public void setRefreshAheadRatios(final Map<String, Double> refreshAheadRatios) {
+        this.refreshAheadRatios = refreshAheadRatios;
+    }
+
+    /**
+     * IoC. Max time to wait for leader.
+     *
+     * @param waitTimeoutMs wait timeout in milliseconds
+     */
+    public void setWaitTimeoutMs(final long waitTimeoutMs) {
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+
+    /**
+     * Computation of single key in progress.
+     */
+    private static final class Flight {
+
+        private final SingleFlightCache cache;
+        private final Object key;
+        private final Thread leader = Thread.currentThread();
+        private final long started = System.currentTimeMillis();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Throwable failure;
+
+        private Flight(final SingleFlightCache cache, final Object key) {
+            this.cache = cache;
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * Cache region decorator.
+     */
+    private final class SingleFlightCache implements Cache {
+
+        private final Cache target;
+        private final boolean singleFlight;
+        private final double refreshAhead;
+
+        private final ConcurrentMap<Object, Flight> flights = new ConcurrentHashMap<Object, Flight>();
+
+        private SingleFlightCache(final Cache target, final boolean singleFlight, final double refreshAhead) {
+            this.target = target;
+            this.singleFlight = singleFlight;
+            this.refreshAhead = refreshAhead;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getName() {
+            return target.getName();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object getNativeCache() {
+            return target.getNativeCache();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ValueWrapper get(final Object key) {
+
+            ValueWrapper value = target.get(key);
+
+            if (value != null) {
+                if (refreshAhead > 0d && isDueForRefresh(key) && acquireRefresh(key)) {
+                    // this thread refreshes, everyone else is served current value until put()
+                    refreshAheadCount.incrementAndGet();
+                    return null;
+                }
+                return value;
+            }
+
+            if (!singleFlight) {
+                return null;
+            }
+
+            while (true) {
+
+                final Flight flight = new Flight(this, key);
+                final Flight existing = flights.putIfAbsent(key, flight);
+                if (existing == null) {
+                    leaderCount.incrementAndGet();
+                    lead(flight);
+                    return null;
+                }
+                if (existing.leader == flight.leader) {
+                    return null; // re-entrant call from leader
+                }
+
+                final long remaining = existing.started + waitTimeoutMs - System.currentTimeMillis();
+                boolean completed = false;
+                if (remaining > 0L) {
+                    try {
+                        completed = existing.done.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+
+                value = target.get(key);
+                if (value != null) {
+                    coalescedCount.incrementAndGet();
+                    return value;
+                }
+
+                if (completed && existing.failure != null) {
+                    coalescedCount.incrementAndGet();
+                    rethrow(existing.failure);
+                }
+
+                if (!completed) {
+                    // leader has failed or is too slow, let someone else try
+                    waitTimeoutCount.incrementAndGet();
+                    ShopCodeContext.getLog(SingleFlightCacheManagerImpl.this).debug(
+                            "Timed out waiting for {} in cache {}", key, getName());
+                    flights.remove(key, existing);
+                }
+
+            }
+
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void put(final Object key, final Object value) {
+            target.put(key, value);
+            final Flight flight = flights.remove(key);
+            if (flight != null) {
+                flight.done.countDown();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void evict(final Object key) {
+            target.evict(key);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            target.clear();
+        }
+
+        private boolean acquireRefresh(final Object key) {
+
+            final Flight flight = new Flight(this, key);
+            final Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                lead(flight);
+                return true;
+            }
+            if (existing.started + waitTimeoutMs < System.currentTimeMillis()) {
+                flights.remove(key, existing); // refresh failed, next request will retry
+            }
+            return false;
+
+        }
+
+        private void lead(final Flight flight) {
+            final List<Flight> leading = LEADING.get();
+            if (leading != null) {
+                leading.add(flight);
+            }
+        }
+
+        private void release(final Flight flight, final Throwable failure) {
+            if (flights.remove(flight.key, flight)) {
+                // leader did not put the value
+                flight.failure = failure;
+                flight.done.countDown();
+            }
+        }
+
+        private void rethrow(final Throwable failure) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new IllegalStateException("Failed to compute value in cache " + getName(), failure);
+        }
+
+        private boolean isDueForRefresh(final Object key) {
+
+            final Object nativeCache = target.getNativeCache();
+            if (!(nativeCache instanceof Ehcache)) {
+                return false;
+            }
+            final Ehcache ehcache = (Ehcache) nativeCache;
+            final long ttl = ehcache.getCacheConfiguration().getTimeToLiveSeconds();
+            if (ttl <= 0L) {
+                return false;
+            }
+            final Element element = ehcache.getQuiet(key);
+            if (element == null) {
+                return false;
+            }
+            final long refreshAt = element.getLatestOfCreationAndUpdateTime() + (long) (ttl * 1000L * refreshAhead);
+            return System.currentTimeMillis() >= refreshAt;
+
+        }
+
+    }
+
+}
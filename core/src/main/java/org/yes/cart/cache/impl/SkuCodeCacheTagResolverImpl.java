@@ -0,0 +1,74 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache.impl;
+
+import org.yes.cart.cache.CacheTagResolver;
+import org.yes.cart.dao.GenericDAO;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Resolves tags for entities that reference SKU by code (e.g. prices, inventory). Resolved tags
+ * are "ProductSkuCode:[code]" and "Product:[PK]" for all products that own this SKU.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 14:05
+ */
+public class SkuCodeCacheTagResolverImpl implements CacheTagResolver {
+
+    private final GenericDAO<?, Long> genericDao;
+    private final String skuCodeByPkQuery;
+
+    /**
+     * @param genericDao       DAO for entity
+     * @param skuCodeByPkQuery named query that selects SKU code by entity PK
+     */
+    public SkuCodeCacheTagResolverImpl(final GenericDAO<?, Long> genericDao,
+                                       final String skuCodeByPkQuery) {
+        this.genericDao = genericDao;
+        this.skuCodeByPkQuery = skuCodeByPkQuery;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<String> resolveTags(final String entityName, final Long pkValue) {
+
+        if (pkValue == null) {
+            return null;
+        }
+
+        final List<Object> skuCodes = genericDao.findQueryObjectByNamedQuery(skuCodeByPkQuery, pkValue);
+        if (skuCodes.isEmpty()) {
+            return null;
+        }
+
+        final Set<String> tags = new HashSet<String>();
+        for (final Object skuCode : skuCodes) {
+            tags.add("ProductSkuCode:" + skuCode);
+            final List<Object> productIds = genericDao.findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.BY.CODE", skuCode);
+            for (final Object productId : productIds) {
+                tags.add("Product:" + productId);
+            }
+        }
+        return tags;
+
+    }
+
+}
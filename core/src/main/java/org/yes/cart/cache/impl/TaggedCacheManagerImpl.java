@@ -0,0 +1,458 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache.impl;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.yes.cart.cache.TaggedCacheManager;
+import org.yes.cart.domain.entity.Identifiable;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator for cache manager that tags cache entries with entity identities they depend on.
+ *
+ * Tags are derived on put from configurable per region rules "[Type]:[source]", where source is
+ * either argument index of the cached method (e.g. "Product:0" - first argument is product PK)
+ * or "value" (e.g. "SkuPrice:value" - cached value is a price or collection of prices). Identifiable
+ * arguments and values are tagged by their PK. Entries for which no tag can be derived are treated as
+ * dependent on everything in the region.
+ *
+ * Tag index is kept per region as tag to keys and key to tags maps, so that a key indexed under several
+ * tags is removed from all of them on eviction, re-put or tag eviction. Index and underlying region are
+ * changed under region index lock, so that concurrent put cannot add a key to a tag that is being evicted
+ * (reads are not locked). Index is bounded: when number of indexed keys grows above max size (stale keys
+ * of entries that expired by TTL are never removed individually) region is cleared together with its index.
+ *
+ * All regions (tagged or not) collect hit/miss counters which are available through JMX.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 13:40
+ */
+public class TaggedCacheManagerImpl implements TaggedCacheManager {
+
+    private static final String VALUE = "value";
+
+    private final CacheManager cacheManager;
+
+    private final ConcurrentMap<String, TaggedCache> caches = new ConcurrentHashMap<String, TaggedCache>();
+
+    private Map<String, List<String>> tagRules = Collections.emptyMap();
+
+    private int maxIndexSize = 50000;
+
+    private final AtomicLong tagEvictionCount = new AtomicLong(0L);
+    private final AtomicLong fallbackClearCount = new AtomicLong(0L);
+
+    /**
+     * @param cacheManager actual cache manager
+     */
+    public TaggedCacheManagerImpl(final CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Cache getCache(final String name) {
+
+        TaggedCache cache = caches.get(name);
+        if (cache == null) {
+            final Cache target = cacheManager.getCache(name);
+            if (target == null) {
+                return null;
+            }
+            cache = new TaggedCache(target, parseRules(tagRules.get(name)));
+            final TaggedCache existing = caches.putIfAbsent(name, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<String> getCacheNames() {
+        return cacheManager.getCacheNames();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int evictTagged(final String cacheName, final Collection<String> tags) {
+
+        final TaggedCache cache = (TaggedCache) getCache(cacheName);
+        if (cache == null) {
+            return 0;
+        }
+        if (!cache.isTagged()) {
+            cache.clear();
+            fallbackClearCount.incrementAndGet();
+            return -1;
+        }
+        final int evicted = cache.evictTagged(tags);
+        tagEvictionCount.incrementAndGet();
+        return evicted;
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isTagged(final String cacheName) {
+        final TaggedCache cache = (TaggedCache) getCache(cacheName);
+        return cache != null && cache.isTagged();
+    }
+
+    /**
+     * @param cacheName cache region
+     *
+     * @return number of distinct tags in region index
+     */
+    public int getTagCardinality(final String cacheName) {
+        final TaggedCache cache = caches.get(cacheName);
+        return cache != null ? cache.keysByTag.size() : 0;
+    }
+
+    /**
+     * @param cacheName cache region
+     *
+     * @return number of cache hits since startup
+     */
+    public long getHitCount(final String cacheName) {
+        final TaggedCache cache = caches.get(cacheName);
+        return cache != null ? cache.hits.get() : 0L;
+    }
+
+    /**
+     * @param cacheName cache region
+     *
+     * @return number of cache misses since startup
+     */
+    public long getMissCount(final String cacheName) {
+        final TaggedCache cache = caches.get(cacheName);
+        return cache != null ? cache.misses.get() : 0L;
+    }
+
+    /**
+     * @return statistics per region: hits, misses, hit ratio, tag cardinality and indexed keys
+     */
+    public String[] getRegionStatistics() {
+
+        final List<String> names = new ArrayList<String>(caches.keySet());
+        Collections.sort(names);
+        final String[] stats = new String[names.size()];
+        int i = 0;
+        for (final String name : names) {
+            final TaggedCache cache = caches.get(name);
+            final long hits = cache.hits.get();
+            final long misses = cache.misses.get();
+            final long total = hits + misses;
+            stats[i++] = name
+                    + ": hits=" + hits
+                    + ", misses=" + misses
+                    + ", hitRatio=" + (total > 0L ? (hits * 100L / total) : 0L) + "%"
+                    + (cache.isTagged() ? ", tags=" + cache.keysByTag.size() + ", indexed=" + cache.getIndexSize() : ", tags=n/a");
+        }
+        return stats;
+
+    }
+
+    /**
+     * @return number of tag based evictions
+     */
+    public long getTagEvictionCount() {
+        return tagEvictionCount.get();
+    }
+
+    /**
+     * @return number of times whole region was cleared instead of tag based eviction
+     *         (region without tag rules or index overflow)
+     */
+    public long getFallbackClearCount() {
+        return fallbackClearCount.get();
+    }
+
+    private List<Rule> parseRules(final List<String> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<Rule> parsed = new ArrayList<Rule>(rules.size());
+        for (final String rule : rules) {
+            final int colon = rule.indexOf(':');
+            if (colon <= 0 || colon == rule.length() - 1) {
+                ShopCodeContext.getLog(this).warn("Invalid cache tag rule {}, expected [Type]:[argIndex|value]", rule);
+                continue;
+            }
+            final String type = rule.substring(0, colon);
+            final String source = rule.substring(colon + 1);
+            if (VALUE.equals(source)) {
+                parsed.add(new Rule(type, -1));
+            } else {
+                try {
+                    parsed.add(new Rule(type, Integer.parseInt(source)));
+                } catch (NumberFormatException nfe) {
+                    ShopCodeContext.getLog(this).warn("Invalid cache tag rule {}, expected [Type]:[argIndex|value]", rule);
+                }
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * IoC. Tag rules per cache region.
+     *
+     * @param tagRules rules (key is cache name, value is list of "[Type]:[argIndex|value]")
+     */
+    public void setTagRules(final Map<String, List<String>> tagRules) {
+        this.tagRules = tagRules;
+    }
+
+    /**
+     * IoC. Max number of indexed keys per region after which region is cleared.
+     *
+     * @param maxIndexSize max index size
+     */
+    public void setMaxIndexSize(final int maxIndexSize) {
+        this.maxIndexSize = maxIndexSize;
+    }
+
+
+    private static final class Rule {
+
+        private final String type;
+        private final int argIndex;
+
+        private Rule(final String type, final int argIndex) {
+            this.type = type;
+            this.argIndex = argIndex;
+        }
+    }
+
+    /**
+     * Cache region decorator that maintains tag index.
+     */
+    private final class TaggedCache implements Cache {
+
+        private final Cache target;
+        private final List<Rule> rules;
+
+        private final ConcurrentMap<String, Set<Object>> keysByTag = new ConcurrentHashMap<String, Set<Object>>();
+        private final ConcurrentMap<Object, Set<String>> tagsByKey = new ConcurrentHashMap<Object, Set<String>>();
+        private final Set<Object> untagged = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        private final Object indexLock = new Object();
+
+        private final AtomicLong hits = new AtomicLong(0L);
+        private final AtomicLong misses = new AtomicLong(0L);
+
+        private TaggedCache(final Cache target, final List<Rule> rules) {
+            this.target = target;
+            this.rules = rules;
+        }
+
+        private boolean isTagged() {
+            return !rules.isEmpty();
+        }
+
+        private int getIndexSize() {
+            return tagsByKey.size() + untagged.size();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getName() {
+            return target.getName();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object getNativeCache() {
+            return target.getNativeCache();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ValueWrapper get(final Object key) {
+            final ValueWrapper value = target.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+            return value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void put(final Object key, final Object value) {
+            if (isTagged()) {
+                final Set<String> tags = resolveTags(key, value);
+                synchronized (indexLock) {
+                    index(key, tags);
+                    target.put(key, value);
+                }
+            } else {
+                target.put(key, value);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void evict(final Object key) {
+            if (isTagged()) {
+                synchronized (indexLock) {
+                    unindex(key);
+                    target.evict(key);
+                }
+            } else {
+                target.evict(key);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            synchronized (indexLock) {
+                keysByTag.clear();
+                tagsByKey.clear();
+                untagged.clear();
+                target.clear();
+            }
+        }
+
+        private int evictTagged(final Collection<String> tags) {
+
+            final Set<Object> keys = new HashSet<Object>();
+            synchronized (indexLock) {
+                for (final String tag : tags) {
+                    final Set<Object> tagged = keysByTag.get(tag);
+                    if (tagged != null) {
+                        keys.addAll(tagged);
+                    }
+                }
+                keys.addAll(untagged);
+                for (final Object key : keys) {
+                    unindex(key);
+                    target.evict(key);
+                }
+            }
+            return keys.size();
+
+        }
+
+        /**
+         * Add key to index replacing tags from previous put. Must be called under index lock.
+         *
+         * @param key  cache key
+         * @param tags tags of the new value
+         */
+        private void index(final Object key, final Set<String> tags) {
+
+            unindex(key);
+
+            if (getIndexSize() >= maxIndexSize) {
+                ShopCodeContext.getLog(TaggedCacheManagerImpl.this).warn(
+                        "Tag index for cache {} exceeded {} keys, clearing region", getName(), maxIndexSize);
+                clear();
+                fallbackClearCount.incrementAndGet();
+            }
+
+            if (tags.isEmpty()) {
+                untagged.add(key);
+            } else {
+                tagsByKey.put(key, tags);
+                for (final String tag : tags) {
+                    Set<Object> keys = keysByTag.get(tag);
+                    if (keys == null) {
+                        keys = new HashSet<Object>();
+                        keysByTag.put(tag, keys);
+                    }
+                    keys.add(key);
+                }
+            }
+
+        }
+
+        /**
+         * Remove key from all its tags. Must be called under index lock.
+         *
+         * @param key cache key
+         */
+        private void unindex(final Object key) {
+
+            untagged.remove(key);
+            final Set<String> tags = tagsByKey.remove(key);
+            if (tags != null) {
+                for (final String tag : tags) {
+                    final Set<Object> keys = keysByTag.get(tag);
+                    if (keys != null) {
+                        keys.remove(key);
+                        if (keys.isEmpty()) {
+                            keysByTag.remove(tag);
+                        }
+                    }
+                }
+            }
+
+        }
+
+        private Set<String> resolveTags(final Object key, final Object value) {
+
+            final Set<String> tags = new HashSet<String>();
+            for (final Rule rule : rules) {
+                if (rule.argIndex < 0) {
+                    addTags(tags, rule.type, value);
+                } else if (key instanceof ArgumentsKeyGenerator.ArgumentsKey) {
+                    addTag(tags, rule.type, ((ArgumentsKeyGenerator.ArgumentsKey) key).getArgument(rule.argIndex));
+                } else if (rule.argIndex == 0) {
+                    addTag(tags, rule.type, key);
+                }
+            }
+            return tags;
+
+        }
+
+        private void addTags(final Set<String> tags, final String type, final Object value) {
+            if (value instanceof Collection) {
+                for (final Object item : (Collection) value) {
+                    if (item instanceof Identifiable) {
+                        addTag(tags, type, item);
+                    }
+                }
+            } else if (value instanceof Identifiable) {
+                addTag(tags, type, value);
+            }
+        }
+
+        private void addTag(final Set<String> tags, final String type, final Object value) {
+            if (value instanceof Identifiable) {
+                final long pk = ((Identifiable) value).getId();
+                if (pk > 0L) {
+                    tags.add(type + ":" + pk);
+                }
+            } else if (value != null) {
+                tags.add(type + ":" + value);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.node.impl;
+
+import org.slf4j.Logger;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.yes.cart.cluster.node.*;
+import org.yes.cart.service.async.model.AsyncContext;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Node service decorator that batches notifications, such as cache eviction and single product reindex
+ * requests, which do not need a response.
+ *
+ * Messages with batched subject are not sent immediately but queued per subject for batch window. Duplicate
+ * payloads within window are coalesced and all queued payloads are sent as single compressed message with
+ * subject "[subject].batch". Receiving node applies batch on dedicated executor by invoking listeners
+ * subscribed to original subject for each payload, so listeners need not be aware of batching.
+ *
+ * Sender receives no responses for batched messages. All other messages are passed to underlying node service
+ * as is.
+ *
+ * Batches are kept per subject and user of async context (if any), so that batch is always sent with context
+ * (i.e. credentials) of the user whose messages it contains. Batched subjects are ordered: before batch is sent
+ * all pending batches of subjects configured before it are sent, so that e.g. reindex requests reach nodes before
+ * cache eviction. If batch cannot be sent its messages are broadcast one by one.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:40
+ */
+public class BatchingNodeServiceImpl implements NodeService {
+
+    static final String BATCH_SUFFIX = ".batch";
+
+    private final NodeService nodeService;
+    private final TaskScheduler flushScheduler;
+    private final TaskExecutor applyExecutor;
+
+    private Set<String> batchedSubjects = Collections.emptySet();
+    private long batchWindowMs = 200L;
+    private int maxBatchSize = 1000;
+
+    final ConcurrentMap<String, PendingBatch> pending = new ConcurrentHashMap<String, PendingBatch>();
+    private final ConcurrentMap<String, List<MessageListener>> listeners = new ConcurrentHashMap<String, List<MessageListener>>();
+    private final ConcurrentMap<String, SubjectStats> stats = new ConcurrentHashMap<String, SubjectStats>();
+
+    /**
+     * @param nodeService    underlying node service
+     * @param flushScheduler scheduler for sending batches after batch window
+     * @param applyExecutor  executor for applying received batches
+     */
+    public BatchingNodeServiceImpl(final NodeService nodeService,
+                                   final TaskScheduler flushScheduler,
+                                   final TaskExecutor applyExecutor) {
+        this.nodeService = nodeService;
+        this.flushScheduler = flushScheduler;
+        this.applyExecutor = applyExecutor;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCurrentNodeId() {
+        return nodeService.getCurrentNodeId();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, String> getConfiguration() {
+        return nodeService.getConfiguration();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Node> getCluster() {
+        return nodeService.getCluster();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Node getCurrentNode() {
+        return nodeService.getCurrentNode();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Node getYumNode() {
+        return nodeService.getYumNode();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Node> getYesNodes() {
+        return nodeService.getYesNodes();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Node> getOtherYesNodes() {
+        return nodeService.getOtherYesNodes();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void broadcast(final Message message) {
+
+        if (!batchedSubjects.contains(message.getSubject()) || isNoBroadcast(message)) {
+            nodeService.broadcast(message);
+            return;
+        }
+
+        final String subject = message.getSubject();
+        final SubjectStats subjectStats = getStats(subject);
+
+        while (true) {
+
+            final String key = getBatchKey(message);
+            PendingBatch batch = pending.get(key);
+            if (batch == null) {
+                final PendingBatch created = new PendingBatch(key, subject);
+                batch = pending.putIfAbsent(key, created);
+                if (batch == null) {
+                    batch = created;
+                    flushScheduler.schedule(new FlushTask(batch), new Date(System.currentTimeMillis() + batchWindowMs));
+                }
+            }
+
+            final int added = batch.add(message);
+            if (added < 0) {
+                pending.remove(key, batch);
+                continue; // batch was just sent, start new one
+            }
+            if (added == 0) {
+                subjectStats.coalesced.incrementAndGet();
+            } else if (added >= maxBatchSize) {
+                flushScheduler.schedule(new FlushTask(batch), new Date());
+            }
+            return;
+
+        }
+
+    }
+
+    private String getBatchKey(final Message message) {
+        if (message instanceof ContextRspMessage) {
+            final AsyncContext context = ((ContextRspMessage) message).getAsyncContext();
+            if (context != null) {
+                return message.getSubject() + "|" + context.getAttribute(AsyncContext.USERNAME);
+            }
+        }
+        return message.getSubject();
+    }
+
+    private boolean isNoBroadcast(final Message message) {
+        if (message instanceof ContextRspMessage) {
+            final AsyncContext context = ((ContextRspMessage) message).getAsyncContext();
+            return context != null && AsyncContext.NO_BROADCAST.equals(context.getAttribute(AsyncContext.NO_BROADCAST));
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void subscribe(final String subject, final MessageListener listener) {
+
+        nodeService.subscribe(subject, listener);
+
+        if (batchedSubjects.contains(subject)) {
+
+            List<MessageListener> subjectListeners = listeners.get(subject);
+            if (subjectListeners == null) {
+                subjectListeners = new CopyOnWriteArrayList<MessageListener>();
+                listeners.put(subject, subjectListeners);
+                nodeService.subscribe(subject + BATCH_SUFFIX, new BatchListener(subject));
+            }
+            subjectListeners.add(listener);
+
+        }
+
+    }
+
+    void flush(final PendingBatch batch) {
+
+        final List<Serializable> items = batch.close();
+        if (items == null) {
+            return; // already sent
+        }
+        pending.remove(batch.key, batch);
+
+        flushPreceding(batch.subject);
+
+        final SubjectStats subjectStats = getStats(batch.subject);
+        final long start = System.currentTimeMillis();
+
+        try {
+
+            final Batch payload = new Batch(start, items.size(), compress(items));
+            nodeService.broadcast(createMessage(batch, batch.subject + BATCH_SUFFIX, payload));
+
+            subjectStats.sent(items.size(), payload.data.length, start - batch.created, System.currentTimeMillis() - start);
+
+        } catch (Exception exp) {
+
+            final Logger log = ShopCodeContext.getLog(this);
+            log.error("Unable to send batch of " + items.size() + " for " + batch.subject + ", sending one by one, cause: " + exp.getMessage(), exp);
+            subjectStats.fallbackBatches.incrementAndGet();
+            for (final Serializable item : items) {
+                try {
+                    nodeService.broadcast(createMessage(batch, batch.subject, item));
+                } catch (Exception single) {
+                    log.error("Unable to send " + batch.subject + " for " + item + ", cause: " + single.getMessage(), single);
+                    subjectStats.failedItems.incrementAndGet();
+                }
+            }
+
+        }
+
+    }
+
+    /*
+     * Send all pending batches of subjects that are configured before given subject.
+     */
+    private void flushPreceding(final String subject) {
+
+        for (final String preceding : batchedSubjects) {
+            if (preceding.equals(subject)) {
+                return;
+            }
+            for (final PendingBatch other : pending.values()) {
+                if (preceding.equals(other.subject)) {
+                    flush(other);
+                }
+            }
+        }
+
+    }
+
+    private Message createMessage(final PendingBatch batch, final String subject, final Serializable payload) {
+        if (batch.context != null) {
+            return new ContextRspMessageImpl(nodeService.getCurrentNodeId(), batch.targets, subject, payload, batch.context);
+        }
+        return new RspMessageImpl(nodeService.getCurrentNodeId(), batch.targets, subject, payload);
+    }
+
+    void apply(final String subject, final Message message) {
+
+        final Logger log = ShopCodeContext.getLog(this);
+        final Batch batch = (Batch) message.getPayload();
+        final List<MessageListener> subjectListeners = listeners.get(subject);
+
+        try {
+
+            final List<Serializable> items = decompress(batch.data);
+            for (final Serializable item : items) {
+                final Message single = new BasicMessageImpl(message.getSource(), message.getTargets(), subject, item);
+                for (final MessageListener listener : subjectListeners) {
+                    try {
+                        listener.onMessageReceived(single);
+                    } catch (Exception exp) {
+                        log.error("Unable to apply " + subject + " for " + item + ", cause: " + exp.getMessage(), exp);
+                    }
+                }
+            }
+
+            // latency includes clock difference between nodes
+            getStats(subject).received(items.size(), System.currentTimeMillis() - batch.sent);
+
+        } catch (Exception exp) {
+            log.error("Unable to read batch of " + batch.size + " for " + subject + " from " + message.getSource() + ", cause: " + exp.getMessage(), exp);
+        }
+
+    }
+
+    private SubjectStats getStats(final String subject) {
+        SubjectStats subjectStats = stats.get(subject);
+        if (subjectStats == null) {
+            final SubjectStats created = new SubjectStats();
+            subjectStats = stats.putIfAbsent(subject, created);
+            if (subjectStats == null) {
+                subjectStats = created;
+            }
+        }
+        return subjectStats;
+    }
+
+    static byte[] compress(final List<Serializable> items) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(bytes));
+        try {
+            oos.writeObject(new ArrayList<Serializable>(items));
+        } finally {
+            oos.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Serializable> decompress(final byte[] data) throws IOException, ClassNotFoundException {
+        final ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
+        try {
+            return (List<Serializable>) ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+
+    /**
+     * @return statistics per subject: sent batches and items, coalesced items, average batch size, compressed
+     *         bytes, queue and send latency, received batches and items and receive latency
+     */
+    public String[] getSubjectStatistics() {
+
+        final List<String> subjects = new ArrayList<String>(stats.keySet());
+        Collections.sort(subjects);
+        final String[] out = new String[subjects.size()];
+        int i = 0;
+        for (final String subject : subjects) {
+            out[i++] = subject + ": " + stats.get(subject);
+        }
+        return out;
+
+    }
+
+    /**
+     * @return number of messages currently waiting for batch window
+     */
+    public int getPendingCount() {
+        int cnt = 0;
+        for (final PendingBatch batch : pending.values()) {
+            cnt += batch.size();
+        }
+        return cnt;
+    }
+
+    /**
+     * IoC. Subjects of messages that are batched. Same subjects must be configured on sending and
+     * receiving nodes. Order is significant: pending batches of preceding subjects are always sent
+     * first, so reindex subjects must be configured before cache eviction subjects.
+     *
+     * @param batchedSubjects subjects
+     */
+    public void setBatchedSubjects(final Set<String> batchedSubjects) {
+        this.batchedSubjects = new LinkedHashSet<String>(batchedSubjects);
+    }
+
+    /**
+     * IoC. Time that messages are collected before batch is sent.
+     *
+     * @param batchWindowMs window in milliseconds
+     */
+    public void setBatchWindowMs(final long batchWindowMs) {
+        this.batchWindowMs = batchWindowMs;
+    }
+
+    /**
+     * IoC. Max number of payloads in batch, full batch is sent without waiting for window to expire.
+     *
+     * @param maxBatchSize max batch size
+     */
+    public void setMaxBatchSize(final int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+
+    /**
+     * Batch payload.
+     */
+    static final class Batch implements Serializable {
+
+        private static final long serialVersionUID = 20161018L;
+
+        private final long sent;
+        private final int size;
+        private final byte[] data;
+
+        Batch(final long sent, final int size, final byte[] data) {
+            this.sent = sent;
+            this.size = size;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Messages for single subject and user collected within batch window.
+     */
+    final class PendingBatch {
+
+        private final String key;
+        private final String subject;
+        private final long created = System.currentTimeMillis();
+        private final Set<Serializable> items = new LinkedHashSet<Serializable>();
+        private List<String> targets = new ArrayList<String>();
+        private AsyncContext context;
+        private boolean closed;
+
+        private PendingBatch(final String key, final String subject) {
+            this.key = key;
+            this.subject = subject;
+        }
+
+        /**
+         * @return -1 if batch is closed, 0 if payload is coalesced, otherwise batch size
+         */
+        private synchronized int add(final Message message) {
+            if (closed) {
+                return -1;
+            }
+            if (context == null && message instanceof ContextRspMessage) {
+                context = ((ContextRspMessage) message).getAsyncContext();
+            }
+            if (message.getTargets() == null) {
+                targets = null; // everyone
+            } else if (targets != null) {
+                for (final String target : message.getTargets()) {
+                    if (!targets.contains(target)) {
+                        targets.add(target);
+                    }
+                }
+            }
+            return items.add(message.getPayload()) ? items.size() : 0;
+        }
+
+        private synchronized List<Serializable> close() {
+            if (closed) {
+                return null;
+            }
+            closed = true;
+            return new ArrayList<Serializable>(items);
+        }
+
+        private synchronized int size() {
+            return items.size();
+        }
+
+    }
+
+    private final class FlushTask implements Runnable {
+
+        private final PendingBatch batch;
+
+        private FlushTask(final PendingBatch batch) {
+            this.batch = batch;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            flush(batch);
+        }
+    }
+
+    private final class BatchListener implements MessageListener {
+
+        private final String subject;
+
+        private BatchListener(final String subject) {
+            this.subject = subject;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable onMessageReceived(final Message message) {
+            applyExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    apply(subject, message);
+                }
+            });
+            return "OK";
+        }
+    }
+
+    /**
+     * Counters for single subject.
+     */
+    private static final class SubjectStats {
+
+        private final AtomicLong sentBatches = new AtomicLong(0L);
+        private final AtomicLong sentItems = new AtomicLong(0L);
+        private final AtomicLong sentBytes = new AtomicLong(0L);
+        private final AtomicLong coalesced = new AtomicLong(0L);
+        private final AtomicLong fallbackBatches = new AtomicLong(0L);
+        private final AtomicLong failedItems = new AtomicLong(0L);
+        private final AtomicLong queueMs = new AtomicLong(0L);
+        private final AtomicLong sendMs = new AtomicLong(0L);
+        private final AtomicLong maxSendMs = new AtomicLong(0L);
+        private final AtomicLong receivedBatches = new AtomicLong(0L);
+        private final AtomicLong receivedItems = new AtomicLong(0L);
+        private final AtomicLong receiveMs = new AtomicLong(0L);
+        private final AtomicLong maxReceiveMs = new AtomicLong(0L);
+
+        private void sent(final int items, final int bytes, final long queued, final long send) {
+            sentBatches.incrementAndGet();
+            sentItems.addAndGet(items);
+            sentBytes.addAndGet(bytes);
+            queueMs.addAndGet(queued);
+            sendMs.addAndGet(send);
+            max(maxSendMs, send);
+        }
+
+        private void received(final int items, final long latency) {
+            receivedBatches.incrementAndGet();
+            receivedItems.addAndGet(items);
+            receiveMs.addAndGet(latency);
+            max(maxReceiveMs, latency);
+        }
+
+        private void max(final AtomicLong max, final long value) {
+            long current;
+            while ((current = max.get()) < value) {
+                if (max.compareAndSet(current, value)) {
+                    return;
+                }
+            }
+        }
+
+        private long avg(final AtomicLong total, final long count) {
+            return count > 0L ? total.get() / count : 0L;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            final long sb = sentBatches.get();
+            final long rb = receivedBatches.get();
+            return "sentBatches=" + sb
+                    + ", sentItems=" + sentItems.get()
+                    + ", coalesced=" + coalesced.get()
+                    + ", fallbackBatches=" + fallbackBatches.get()
+                    + ", failedItems=" + failedItems.get()
+                    + ", avgBatchSize=" + avg(sentItems, sb)
+                    + ", avgBytes=" + avg(sentBytes, sb)
+                    + ", avgQueueMs=" + avg(queueMs, sb)
+                    + ", avgSendMs=" + avg(sendMs, sb)
+                    + ", maxSendMs=" + maxSendMs.get()
+                    + ", receivedBatches=" + rb
+                    + ", receivedItems=" + receivedItems.get()
+                    + ", avgBatchSizeReceived=" + avg(receivedItems, rb)
+                    + ", avgReceiveMs=" + avg(receiveMs, rb)
+                    + ", maxReceiveMs=" + maxReceiveMs.get();
+        }
+    }
+
+}
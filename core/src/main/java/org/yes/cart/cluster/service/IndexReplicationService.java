@@ -0,0 +1,47 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.service;
+
+/**
+ * Index replication service allows to have a single indexing node in the cluster which publishes
+ * consistent index snapshots (Hibernate Search "filesystem-master" directory provider) and any number
+ * of replica nodes that pull these snapshots over cluster channel into their local source directory
+ * (Hibernate Search "filesystem-slave" directory provider), which then swaps index readers on the next refresh.
+ *
+ * Replica nodes must have Lucene index disabled, so that they do not run any reindex jobs.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:10
+ */
+public interface IndexReplicationService {
+
+    /**
+     * @return true if this node is configured to receive index snapshots from indexing node
+     */
+    boolean isReplica();
+
+    /**
+     * Pull latest snapshot from indexing node. Only files that are not yet present on this node
+     * are transferred, unchanged segment files are reused from the current local snapshot.
+     *
+     * @return number of indexes updated, 0 if all indexes are up to date or -1 if indexing node
+     *         is not available
+     */
+    int replicate();
+
+}
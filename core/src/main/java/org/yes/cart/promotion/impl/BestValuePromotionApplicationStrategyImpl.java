@@ -36,6 +36,7 @@ import java.util.*;
  */
 public class BestValuePromotionApplicationStrategyImpl implements PromotionApplicationStrategy {
 
+    private static final String VALID_COUPONS = BestValuePromotionApplicationStrategyImpl.class.getName() + ".validCoupons";
 
     private final PromotionCouponService promotionCouponService;
 
@@ -136,6 +137,17 @@ public class BestValuePromotionApplicationStrategyImpl implements PromotionAppli
 
     private Map<Long, PromotionCoupon> loadCoupons(final Map<String, Object> context) {
 
+        // Same context is used for all items in cart, so we resolve coupons only once
+        Map<Long, PromotionCoupon> coupons = (Map<Long, PromotionCoupon>) context.get(VALID_COUPONS);
+        if (coupons == null) {
+            coupons = resolveCoupons(context);
+            context.put(VALID_COUPONS, coupons);
+        }
+        return coupons;
+    }
+
+    private Map<Long, PromotionCoupon> resolveCoupons(final Map<String, Object> context) {
+
         final ShoppingCart cart = (ShoppingCart) context.get(PromotionCondition.VAR_CART);
 
         if (cart == null) {
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion.impl;
+
+import org.yes.cart.promotion.PromoTriplet;
+
+import java.util.*;
+
+/**
+ * Index of promotions of single type that selects candidate promotions for cart item,
+ * so that only promotions whose targets match the item are evaluated.
+ *
+ * Candidate buckets preserve order of the original buckets and the order of promotions
+ * within the buckets, buckets without candidates are omitted. Since non candidates are
+ * never eligible this yields the same result as evaluating all buckets.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:40
+ */
+class PromotionCandidateIndex {
+
+    private final List<List<PromoTriplet>> buckets = new ArrayList<List<PromoTriplet>>();
+
+    private final List<PromoTriplet> promotions = new ArrayList<PromoTriplet>();
+    private final List<PromotionConditionTargets> targets = new ArrayList<PromotionConditionTargets>();
+    private final List<Integer> bucketIndex = new ArrayList<Integer>();
+
+    private final Map<String, List<Integer>> bySku = new HashMap<String, List<Integer>>();
+    private final List<Integer> anySku = new ArrayList<Integer>();
+
+    private boolean targeted = false;
+
+    PromotionCandidateIndex() {
+        buckets.add(new ArrayList<PromoTriplet>()); // 0th can be combined
+    }
+
+    /**
+     * Add promotion to index.
+     *
+     * @param promo         promotion triplet
+     * @param canBeCombined true if promotion can be combined with others
+     * @param promoTargets  promotion targets
+     */
+    void add(final PromoTriplet promo, final boolean canBeCombined, final PromotionConditionTargets promoTargets) {
+
+        final int bucket;
+        if (canBeCombined) {
+            bucket = 0;
+            buckets.get(0).add(promo);
+        } else {
+            bucket = buckets.size();
+            buckets.add(Arrays.asList(promo));
+        }
+
+        final int ordinal = promotions.size();
+        promotions.add(promo);
+        targets.add(promoTargets);
+        bucketIndex.add(bucket);
+
+        if (promoTargets.getSkuCodes() == null) {
+            anySku.add(ordinal);
+        } else {
+            for (final String skuCode : promoTargets.getSkuCodes()) {
+                List<Integer> ordinals = bySku.get(skuCode);
+                if (ordinals == null) {
+                    ordinals = new ArrayList<Integer>();
+                    bySku.put(skuCode, ordinals);
+                }
+                ordinals.add(ordinal);
+            }
+        }
+
+        targeted = targeted || !promoTargets.isAny();
+
+    }
+
+    /**
+     * @return all promotion buckets
+     */
+    List<List<PromoTriplet>> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Select promotions that match given customer.
+     *
+     * @param customerType customer type
+     * @param customerTags customer tags
+     *
+     * @return flags by ordinal, or null if all promotions match
+     */
+    boolean[] matchCustomer(final String customerType, final Collection<String> customerTags) {
+
+        if (!targeted) {
+            return null;
+        }
+
+        final boolean[] matched = new boolean[promotions.size()];
+        for (int i = 0; i < matched.length; i++) {
+            matched[i] = targets.get(i).matchesCustomer(customerType, customerTags);
+        }
+        return matched;
+
+    }
+
+    /**
+     * Select candidate buckets for given item.
+     *
+     * @param customerMatch result of {@link #matchCustomer(String, java.util.Collection)}
+     * @param skuCode       item SKU
+     *
+     * @return candidate buckets
+     */
+    List<List<PromoTriplet>> getCandidates(final boolean[] customerMatch, final String skuCode) {
+
+        if (!targeted) {
+            return buckets;
+        }
+
+        final List<Integer> forSku = bySku.get(skuCode);
+        final int size = anySku.size() + (forSku != null ? forSku.size() : 0);
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        // bucket in high bits, ordinal in low bits, so that sort restores original order
+        final long[] keys = new long[size];
+        int count = 0;
+        count = collect(anySku, customerMatch, keys, count);
+        if (forSku != null) {
+            count = collect(forSku, customerMatch, keys, count);
+        }
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(keys, 0, count);
+
+        final List<List<PromoTriplet>> candidates = new ArrayList<List<PromoTriplet>>();
+        List<PromoTriplet> current = null;
+        int currentBucket = -1;
+        for (int i = 0; i < count; i++) {
+            final int bucket = (int) (keys[i] >>> 32);
+            final PromoTriplet promo = promotions.get((int) keys[i]);
+            if (bucket != currentBucket) {
+                current = new ArrayList<PromoTriplet>();
+                candidates.add(current);
+                currentBucket = bucket;
+            }
+            current.add(promo);
+        }
+        return candidates;
+
+    }
+
+    private int collect(final List<Integer> ordinals, final boolean[] customerMatch, final long[] keys, final int start) {
+        int count = start;
+        for (final Integer ordinal : ordinals) {
+            if (customerMatch == null || customerMatch[ordinal]) {
+                keys[count++] = ((long) bucketIndex.get(ordinal) << 32) | ordinal;
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.yes.cart.domain.entity.Promotion;
+import org.yes.cart.promotion.PromotionCondition;
+import org.yes.cart.promotion.TargetedPromotionCondition;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Candidate targets of promotion condition (SKU, customer type and customer tags). Targets are
+ * necessary (but not sufficient) conditions for eligibility, so promotion that does not match
+ * targets is guaranteed not to be eligible and need not be evaluated.
+ *
+ * Targets are either declared by {@link TargetedPromotionCondition} or derived from eligibility
+ * condition script. Derivation only recognises top level conjunctions (a && b && ...) of simple
+ * expressions:
+ * <pre>
+ *     ['SKU1', 'SKU2'].contains(shoppingCartItem.productSkuCode)
+ *     shoppingCartItem.productSkuCode == 'SKU1'
+ *     customerTags.contains('VIP')
+ *     customer?.customerType == 'B2B'
+ * </pre>
+ * Conjunctions are only split outside of parentheses, brackets and quotes, so conjuncts of negated or
+ * grouped expressions are never treated as top level. Any other script (including multi line scripts)
+ * is treated as matching anything.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:25
+ */
+final class PromotionConditionTargets {
+
+    static final PromotionConditionTargets ANY = new PromotionConditionTargets(null, null, null);
+
+    private static final String QUOTED = "(?:'[^'$]*'|\"[^\"$]*\")";
+
+    private static final Pattern SKU_IN = Pattern.compile(
+            "^\\[\\s*(" + QUOTED + "(?:\\s*,\\s*" + QUOTED + ")*)\\s*\\]\\.contains\\(\\s*shoppingCartItem\\.productSkuCode\\s*\\)$");
+    private static final Pattern SKU_EQ = Pattern.compile(
+            "^shoppingCartItem\\.productSkuCode\\s*==\\s*(" + QUOTED + ")$");
+    private static final Pattern TAG = Pattern.compile(
+            "^customerTags\\.contains\\(\\s*(" + QUOTED + ")\\s*\\)$");
+    private static final Pattern TYPE = Pattern.compile(
+            "^customer\\??\\.customerType\\s*==\\s*(" + QUOTED + ")$");
+    private static final Pattern VALUE = Pattern.compile(QUOTED);
+
+    private static final Pattern UNSAFE = Pattern.compile("\\|\\||;|\\{|\\}|\\r|\\n|\\breturn\\b|\\bif\\b|\\?(?!\\.)");
+
+    private final Set<String> skuCodes;
+    private final Set<String> customerTypes;
+    private final Set<String> customerTags;
+
+    PromotionConditionTargets(final Set<String> skuCodes,
+                              final Set<String> customerTypes,
+                              final Set<String> customerTags) {
+        this.skuCodes = skuCodes;
+        this.customerTypes = customerTypes;
+        this.customerTags = customerTags;
+    }
+
+    /**
+     * @return SKU codes one of which item must have, null for any
+     */
+    Set<String> getSkuCodes() {
+        return skuCodes;
+    }
+
+    /**
+     * @return true if these targets do not restrict candidates
+     */
+    boolean isAny() {
+        return skuCodes == null && customerTypes == null && customerTags == null;
+    }
+
+    /**
+     * @param customerType customer type (null for anonymous)
+     * @param tags         customer tags
+     *
+     * @return true if customer is a candidate
+     */
+    boolean matchesCustomer(final String customerType, final Collection<String> tags) {
+        if (customerTypes != null && (customerType == null || !customerTypes.contains(customerType))) {
+            return false;
+        }
+        return customerTags == null || (tags != null && tags.containsAll(customerTags));
+    }
+
+    /**
+     * @param skuCode SKU code
+     *
+     * @return true if item with this SKU is a candidate
+     */
+    boolean matchesSku(final String skuCode) {
+        return skuCodes == null || (skuCode != null && skuCodes.contains(skuCode));
+    }
+
+    /**
+     * Resolve targets for given promotion.
+     *
+     * @param promotion promotion
+     * @param condition compiled condition
+     *
+     * @return targets (never null)
+     */
+    static PromotionConditionTargets of(final Promotion promotion, final PromotionCondition condition) {
+
+        if (condition instanceof TargetedPromotionCondition) {
+            final TargetedPromotionCondition targeted = (TargetedPromotionCondition) condition;
+            return new PromotionConditionTargets(
+                    targeted.getTargetSkuCodes(),
+                    targeted.getTargetCustomerTypes(),
+                    targeted.getTargetCustomerTags()
+            );
+        }
+        return derive(promotion.getEligibilityCondition());
+
+    }
+
+    /**
+     * Derive targets from eligibility condition script.
+     *
+     * @param script eligibility condition
+     *
+     * @return targets (never null)
+     */
+    static PromotionConditionTargets derive(final String script) {
+
+        if (StringUtils.isBlank(script)) {
+            return ANY;
+        }
+
+        final String expression = script.trim();
+        if (expression.startsWith("!") || UNSAFE.matcher(expression).find()) {
+            return ANY;
+        }
+
+        final List<String> conjuncts = splitTopLevelConjunction(expression);
+        if (conjuncts == null) {
+            return ANY;
+        }
+
+        Set<String> skuCodes = null;
+        Set<String> customerTypes = null;
+        Set<String> customerTags = null;
+
+        for (final String part : conjuncts) {
+
+            final String conjunct = part.trim();
+
+            Matcher matcher = SKU_IN.matcher(conjunct);
+            if (matcher.matches()) {
+                skuCodes = intersect(skuCodes, values(matcher.group(1)));
+                continue;
+            }
+            matcher = SKU_EQ.matcher(conjunct);
+            if (matcher.matches()) {
+                skuCodes = intersect(skuCodes, values(matcher.group(1)));
+                continue;
+            }
+            matcher = TYPE.matcher(conjunct);
+            if (matcher.matches()) {
+                customerTypes = intersect(customerTypes, values(matcher.group(1)));
+                continue;
+            }
+            matcher = TAG.matcher(conjunct);
+            if (matcher.matches()) {
+                if (customerTags == null) {
+                    customerTags = new HashSet<String>();
+                }
+                customerTags.addAll(values(matcher.group(1)));
+            }
+
+        }
+
+        if (skuCodes == null && customerTypes == null && customerTags == null) {
+            return ANY;
+        }
+        return new PromotionConditionTargets(skuCodes, customerTypes, customerTags);
+
+    }
+
+    /**
+     * Split expression at "&&" that are not inside parentheses, brackets or quotes.
+     *
+     * @param expression expression
+     *
+     * @return conjuncts or null if expression is not well formed
+     */
+    private static List<String> splitTopLevelConjunction(final String expression) {
+
+        final List<String> conjuncts = new ArrayList<String>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            final char ch = expression.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '\'' || ch == '"') {
+                quote = ch;
+            } else if (ch == '(' || ch == '[') {
+                depth++;
+            } else if (ch == ')' || ch == ']') {
+                if (--depth < 0) {
+                    return null;
+                }
+            } else if (depth == 0 && ch == '&' && i + 1 < expression.length() && expression.charAt(i + 1) == '&') {
+                conjuncts.add(expression.substring(start, i));
+                start = i + 2;
+                i++;
+            }
+        }
+        if (depth != 0 || quote != 0) {
+            return null;
+        }
+        conjuncts.add(expression.substring(start));
+        return conjuncts;
+
+    }
+
+    private static Set<String> values(final String quoted) {
+        final Set<String> values = new HashSet<String>();
+        final Matcher matcher = VALUE.matcher(quoted);
+        while (matcher.find()) {
+            final String value = matcher.group();
+            values.add(value.substring(1, value.length() - 1));
+        }
+        return values;
+    }
+
+    private static Set<String> intersect(final Set<String> current, final Set<String> values) {
+        if (current == null) {
+            return values;
+        }
+        current.retainAll(values);
+        return current;
+    }
+
+}
@@ -29,6 +29,10 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Promotion context factory. Context contains candidate index of active promotions (see
+ * {@link PromotionConditionTargets}), so that promotions are only evaluated against cart
+ * items they can possibly apply to.
+ *
  * User: denispavlov
  * Date: 13-10-29
  * Time: 8:15 AM
@@ -65,7 +69,7 @@ public class PromotionContextFactoryImpl implements PromotionContextFactory {
             if (actionByTypeMap != null) {
                 final PromotionAction action = actionByTypeMap.get(promotion.getPromoAction());
                 if (action != null) {
-                    ctx.addPromotion(promotion, condition, action);
+                    ctx.addPromotion(promotion, condition, action, PromotionConditionTargets.of(promotion, condition));
                 } else {
                     ShopCodeContext.getLog(this).warn(
                             "No action mapping for promotion: {}, type: {}, action {}",
@@ -38,7 +38,7 @@ public class PromotionContextImpl implements PromotionContext {
     private final PromotionApplicationStrategy strategy;
     private final Date timestamp = new Date();
 
-    private final Map<String, List<List<PromoTriplet>>> promotionBuckets = new HashMap<String, List<List<PromoTriplet>>>();
+    private final Map<String, PromotionCandidateIndex> promotionBuckets = new HashMap<String, PromotionCandidateIndex>();
     private final Map<String, PromoTriplet> promotionByCode = new HashMap<String, PromoTriplet>();
 
     public PromotionContextImpl(final String shopCode, final PromotionApplicationStrategy strategy) {
@@ -57,23 +57,40 @@ public class PromotionContextImpl implements PromotionContext {
                              final PromotionCondition condition,
                              final PromotionAction action) {
 
+        addPromotion(promotion, condition, action, PromotionConditionTargets.of(promotion, condition));
+
+    }
+
+    /**
+     * Add promotion triplet to this context.
+     *
+     * @param promotion original promotion object
+     * @param condition precompiled condition
+     * @param action action to be performed
+     * @param targets candidate targets for this promotion
+     */
+    void addPromotion(final Promotion promotion,
+                      final PromotionCondition condition,
+                      final PromotionAction action,
+                      final PromotionConditionTargets targets) {
+
         final PromoTriplet promo = new PromoTripletImpl(promotion, condition, action);
 
         promotionByCode.put(promotion.getCode(), promo);
 
-        List<List<PromoTriplet>> buckets = promotionBuckets.get(promotion.getPromoType());
+        PromotionCandidateIndex buckets = promotionBuckets.get(promotion.getPromoType());
 
         if (buckets == null) {
-            buckets = new ArrayList<List<PromoTriplet>>();
-            buckets.add(new ArrayList<PromoTriplet>()); // 0th can be combined
+            buckets = new PromotionCandidateIndex();
             promotionBuckets.put(promotion.getPromoType(), buckets);
         }
 
-        if (promotion.isCanBeCombined()) {
-            buckets.get(0).add(promo);
-        } else {
-            buckets.add(Arrays.asList(promo));
-        }
+        buckets.add(promo, promotion.isCanBeCombined(), targets);
+    }
+
+    private List<List<PromoTriplet>> getBuckets(final String promoType) {
+        final PromotionCandidateIndex buckets = promotionBuckets.get(promoType);
+        return buckets != null ? buckets.getBuckets() : null;
     }
 
     /** {@inheritDoc} */
@@ -105,17 +122,21 @@ public class PromotionContextImpl implements PromotionContext {
 
         cart.removeItemPromotions(); // remove all gifts and promo prices
 
-        final List<List<PromoTriplet>> itemPromoBuckets = promotionBuckets.get(Promotion.TYPE_ITEM);
+        final PromotionCandidateIndex itemPromoIndex = promotionBuckets.get(Promotion.TYPE_ITEM);
 
-        if (CollectionUtils.isEmpty(itemPromoBuckets) || cart.isPromotionsDisabled()) {
+        if (itemPromoIndex == null || cart.isPromotionsDisabled()) {
             return;
         }
 
+        final List<String> customerTags = getCustomerTags(customer);
+        final String customerType = customer != null ? customer.getCustomerType() : null;
+        final boolean[] customerMatch = itemPromoIndex.matchCustomer(customerType, customerTags);
+
         final Map<String, Object> context = new HashMap<String, Object>();
         context.put(PromotionCondition.VAR_REGISTERED, customer != null);
         context.put(PromotionCondition.VAR_CUSTOMER, customer);
-        context.put(PromotionCondition.VAR_CUSTOMER_TAGS, getCustomerTags(customer));
-        context.put(PromotionCondition.VAR_CUSTOMER_TYPE, customer != null ? customer.getCustomerType() : null);
+        context.put(PromotionCondition.VAR_CUSTOMER_TAGS, customerTags);
+        context.put(PromotionCondition.VAR_CUSTOMER_TYPE, customerType);
         context.put(PromotionCondition.VAR_CUSTOMER_PRICING_POLICY, getCustomerPricingPolicies(customer));
         context.put(PromotionCondition.VAR_CART, cart);
 
@@ -123,9 +144,15 @@ public class PromotionContextImpl implements PromotionContext {
 
             if (!item.isFixedPrice()) { // Offers do not participate in promotions
 
-                context.put(PromotionCondition.VAR_CART_ITEM, item);
+                final List<List<PromoTriplet>> candidates = itemPromoIndex.getCandidates(customerMatch, item.getProductSkuCode());
+
+                if (!candidates.isEmpty()) {
+
+                    context.put(PromotionCondition.VAR_CART_ITEM, item);
+
+                    applyPromotions(candidates, context);
 
-                applyPromotions(itemPromoBuckets, context);
+                }
 
             }
 
@@ -136,7 +163,7 @@ public class PromotionContextImpl implements PromotionContext {
     /** {@inheritDoc} */
     public Total applyOrderPromo(final Customer customer, final MutableShoppingCart cart, final Total itemTotal) {
 
-        final List<List<PromoTriplet>> orderPromoBuckets = promotionBuckets.get(Promotion.TYPE_ORDER);
+        final List<List<PromoTriplet>> orderPromoBuckets = getBuckets(Promotion.TYPE_ORDER);
 
         if (CollectionUtils.isEmpty(orderPromoBuckets) || cart.isPromotionsDisabled()) {
             return new TotalImpl().add(itemTotal);
@@ -161,7 +188,7 @@ public class PromotionContextImpl implements PromotionContext {
     /** {@inheritDoc} */
     public void applyShippingPromo(final Customer customer, final MutableShoppingCart cart, final Total orderTotal) {
 
-        final List<List<PromoTriplet>> orderPromoBuckets = promotionBuckets.get(Promotion.TYPE_SHIPPING);
+        final List<List<PromoTriplet>> orderPromoBuckets = getBuckets(Promotion.TYPE_SHIPPING);
 
         if (CollectionUtils.isEmpty(orderPromoBuckets) || cart.isPromotionsDisabled()) {
             return;
@@ -193,7 +220,7 @@ public class PromotionContextImpl implements PromotionContext {
             return;
         }
 
-        final List<List<PromoTriplet>> tagPromoBuckets = promotionBuckets.get(Promotion.TYPE_CUSTOMER_TAG);
+        final List<List<PromoTriplet>> tagPromoBuckets = getBuckets(Promotion.TYPE_CUSTOMER_TAG);
 
         if (CollectionUtils.isEmpty(tagPromoBuckets)) {
             return;
@@ -23,6 +23,8 @@ import org.springframework.cache.annotation.Cacheable;
 import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.domain.entity.AttrValue;
 import org.yes.cart.domain.entity.Category;
+import org.yes.cart.domain.entity.bridge.support.CategoryTree;
+import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
 import org.yes.cart.domain.i18n.impl.FailoverStringI18NModel;
 import org.yes.cart.service.domain.CategoryService;
 import org.yes.cart.util.DomainApiUtils;
@@ -38,6 +40,8 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
 
     private final GenericDAO<Category, Long> categoryDao;
 
+    private ShopCategoryRelationshipSupport shopCategoryRelationshipSupport;
+
     /**
      * Construct service to manage categories
      *
@@ -130,6 +134,12 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
     @Cacheable(value = "categoryService-categoryAttributeRecursive")
     public String getCategoryAttributeRecursive(final String locale, final long categoryId, final String attributeName, final String defaultValue) {
 
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            final String val = tree.getAttributeValueRecursive(locale, categoryId, attributeName);
+            return val != null ? val : defaultValue;
+        }
+
         final Category category = proxy().getById(categoryId);
 
         if (category == null || attributeName == null || category.isRoot()) {
@@ -202,6 +212,10 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
      */
     @Cacheable(value = "categoryService-categoryHasChildren")
     public boolean isCategoryHasChildren(final long categoryId) {
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.hasChildren(categoryId, true);
+        }
         final Category category = proxy().getById(categoryId);
         if (category != null) {
             final long id = category.getLinkToId() != null ? category.getLinkToId() : categoryId;
@@ -222,6 +236,11 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
     @Cacheable(value = "categoryService-childCategories")
     public List<Category> getChildCategories(final long categoryId) {
 
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.getChildren(categoryId, true, new Date());
+        }
+
         final Category current = proxy().getById(categoryId);
         if (current != null) {
             if (current.getLinkToId() != null) {
@@ -269,6 +288,10 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
      */
     @Cacheable(value = "categoryService-childCategoriesRecursive")
     public Set<Category> getChildCategoriesRecursive(final long categoryId) {
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.getChildrenRecursive(categoryId, true, new Date());
+        }
         final Category thisCat = proxy().getById(categoryId);
         if (thisCat != null) {
             final Set<Category> all = new HashSet<Category>();
@@ -333,6 +356,10 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
      */
     @Cacheable(value = "categoryService-categoryHasSubcategory")
     public boolean isCategoryHasSubcategory(final long topCategoryId, final long subCategoryId) {
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.isSubCategory(topCategoryId, subCategoryId);
+        }
         final Category start = proxy().getById(subCategoryId);
         if (start != null) {
             if (subCategoryId == topCategoryId) {
@@ -460,6 +487,7 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
     @CacheEvict(value = {
             "categoryService-topLevelCategories",
             "categoryService-currentCategoryMenu",
+            "categoryService-categoryTree",
             "breadCrumbBuilder-breadCrumbs",
             "categoryService-rootCategory",
             "categoryService-categoryHasChildren",
@@ -484,6 +512,7 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
     @CacheEvict(value = {
             "categoryService-topLevelCategories",
             "categoryService-currentCategoryMenu",
+            "categoryService-categoryTree",
             "breadCrumbBuilder-breadCrumbs",
             "categoryService-rootCategory",
             "shopService-shopCategoryParentId",
@@ -520,6 +549,7 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
     @CacheEvict(value = {
             "categoryService-topLevelCategories",
             "categoryService-currentCategoryMenu",
+            "categoryService-categoryTree",
             "breadCrumbBuilder-breadCrumbs",
             "categoryService-rootCategory",
             "shopService-shopCategoryParentId",
@@ -549,6 +579,19 @@ public class CategoryServiceImpl extends BaseGenericServiceImpl<Category> implem
     }
 
 
+    private CategoryTree tree() {
+        return shopCategoryRelationshipSupport != null ? shopCategoryRelationshipSupport.getCategoryTree() : null;
+    }
+
+    /**
+     * IoC. Category tree snapshot provider, if not set all lookups are done category by category.
+     *
+     * @param shopCategoryRelationshipSupport support
+     */
+    public void setShopCategoryRelationshipSupport(final ShopCategoryRelationshipSupport shopCategoryRelationshipSupport) {
+        this.shopCategoryRelationshipSupport = shopCategoryRelationshipSupport;
+    }
+
     private CategoryService proxy;
 
     private CategoryService proxy() {
@@ -24,6 +24,8 @@ import org.yes.cart.domain.entity.AttrValue;
 import org.yes.cart.domain.entity.Category;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.ShopCategory;
+import org.yes.cart.domain.entity.bridge.support.CategoryTree;
+import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
 import org.yes.cart.domain.i18n.impl.FailoverStringI18NModel;
 import org.yes.cart.service.domain.ContentService;
 import org.yes.cart.service.domain.ContentServiceTemplateSupport;
@@ -45,6 +47,8 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
 
     private final ContentServiceTemplateSupport templateSupport;
 
+    private ShopCategoryRelationshipSupport shopCategoryRelationshipSupport;
+
     /**
      * Construct service to manage categories
      *
@@ -216,6 +220,12 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
     @Cacheable(value = "contentService-contentAttributeRecursive")
     public String getContentAttributeRecursive(final String locale, final long contentId, final String attributeName, final String defaultValue) {
 
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            final String val = tree.getAttributeValueRecursive(locale, contentId, attributeName);
+            return val != null ? val : defaultValue;
+        }
+
         final Category content = proxy().getById(contentId);
 
         if (content == null || attributeName == null || content.isRoot()) {
@@ -279,6 +289,10 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
      */
     @Cacheable(value = "contentService-childContent")
     public List<Category> getChildContent(final long contentId) {
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.getChildren(contentId, false, new Date());
+        }
         return findChildContentWithAvailability(contentId, true);
     }
 
@@ -318,6 +332,10 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
      */
     @Cacheable(value = "contentService-childContentRecursive")
     public Set<Category> getChildContentRecursive(final long contentId) {
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.getChildrenRecursive(contentId, false, new Date());
+        }
         final Category thisCon = proxy().getById(contentId);
         if (thisCon != null) {
             final Set<Category> all = new HashSet<Category>();
@@ -402,6 +420,10 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
      */
     @Cacheable(value = "contentService-contentHasSubcontent")
     public boolean isContentHasSubcontent(final long topContentId, final long subContentId) {
+        final CategoryTree tree = tree();
+        if (tree != null) {
+            return tree.isSubCategory(topContentId, subContentId);
+        }
         final Category start = proxy().getById(subContentId);
         if (start != null) {
             if (subContentId == topContentId) {
@@ -435,6 +457,7 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
     @CacheEvict(value = {
             "contentService-rootContent",
             "categoryService-currentCategoryMenu",
+            "categoryService-categoryTree",
             "breadCrumbBuilder-breadCrumbs",
             "contentService-contentAttributeRecursive",
             "contentService-contentAttributesRecursive",
@@ -456,6 +479,7 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
     @CacheEvict(value = {
             "contentService-rootContent",
             "categoryService-currentCategoryMenu",
+            "categoryService-categoryTree",
             "breadCrumbBuilder-breadCrumbs",
             "contentService-contentTemplate",
             "contentService-contentBody" ,
@@ -478,6 +502,7 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
     @CacheEvict(value ={
             "contentService-rootContent",
             "categoryService-currentCategoryMenu",
+            "categoryService-categoryTree",
             "breadCrumbBuilder-breadCrumbs",
             "contentService-contentTemplate",
             "contentService-contentBody" ,
@@ -494,6 +519,19 @@ public class ContentServiceImpl extends BaseGenericServiceImpl<Category> impleme
         super.delete(instance);
     }
 
+    private CategoryTree tree() {
+        return shopCategoryRelationshipSupport != null ? shopCategoryRelationshipSupport.getCategoryTree() : null;
+    }
+
+    /**
+     * IoC. Category tree snapshot provider, if not set all lookups are done content by content.
+     *
+     * @param shopCategoryRelationshipSupport support
+     */
+    public void setShopCategoryRelationshipSupport(final ShopCategoryRelationshipSupport shopCategoryRelationshipSupport) {
+        this.shopCategoryRelationshipSupport = shopCategoryRelationshipSupport;
+    }
+
     private ContentService proxy;
 
     private ContentService proxy() {
@@ -22,6 +22,8 @@ import org.hibernate.criterion.Restrictions;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.yes.cart.constants.AttributeNamesKeys;
 import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.domain.entity.SeoImage;
@@ -40,9 +42,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Image service to resize and store resized image.
@@ -71,6 +80,9 @@ public class ImageServiceImpl
 
     private final IOProvider ioProvider;
 
+    private final ConcurrentMap<String, ResizeTask> resizesInProgress = new ConcurrentHashMap<String, ResizeTask>();
+
+    private TaskExecutor resizeExecutor;
 
     /**
      * Construct image service.
@@ -118,6 +130,15 @@ public class ImageServiceImpl
         this.replaceFilesModeOn = replaceFilesModeOn;
     }
 
+    /**
+     * IoC. Executor that limits number of concurrent resizes (if not set resize is done by calling thread).
+     *
+     * @param resizeExecutor executor
+     */
+    public void setResizeExecutor(final TaskExecutor resizeExecutor) {
+        this.resizeExecutor = resizeExecutor;
+    }
+
     public void setConfig(final Resource config) throws IOException {
 
         final Properties properties = new Properties();
@@ -181,24 +202,15 @@ public class ImageServiceImpl
                 padY = 0;
 
                 final BufferedImage croppedImg = originalImg.getSubimage(cropDims[0], cropDims[1], cropDims[2], cropDims[3]);
-                resizedImg = croppedImg.getScaledInstance(x, y, Image.SCALE_SMOOTH);
+                resizedImg = scaleImageProgressive(croppedImg, x, y);
 
-//                final BufferedImage croppedImg = originalImg.getSubimage(cropDims[0], cropDims[1], cropDims[2], cropDims[3]);
-//                resizedImg = new BufferedImage(y, x, imageType);
-//                Graphics2D graphics = resizedImg.createGraphics();
-//                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-//                graphics.drawImage(croppedImg, 0, 0, x, y, null);
             } else {
                 int[] scaleDims = scaleImageToCenter(x, y, originalX, originalY);
                 padX = scaleDims[0];
                 padY = scaleDims[1];
 
-                resizedImg = originalImg.getScaledInstance(scaleDims[2], scaleDims[3], Image.SCALE_SMOOTH);
+                resizedImg = scaleImageProgressive(originalImg, scaleDims[2], scaleDims[3]);
 
-//                resizedImg = new BufferedImage(scaleDims[3], scaleDims[2], imageType);
-//                Graphics2D graphics = resizedImg.createGraphics();
-//                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-//                graphics.drawImage(originalImg, 0, 0, scaleDims[2], scaleDims[3], null);
             }
 
             // base canvas
@@ -226,6 +238,43 @@ public class ImageServiceImpl
 
     }
 
+    /**
+     * Scale image using bilinear interpolation. Downscaling is done in steps, each step at most halves
+     * the image, which gives quality close to {@link Image#SCALE_SMOOTH} but is many times faster.
+     *
+     * @param image  image to scale
+     * @param width  target width
+     * @param height target height
+     *
+     * @return scaled image
+     */
+    BufferedImage scaleImageProgressive(final BufferedImage image, final int width, final int height) {
+
+        final int type = image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        BufferedImage current = image;
+        int stepWidth = image.getWidth();
+        int stepHeight = image.getHeight();
+
+        do {
+
+            stepWidth = stepWidth > width ? Math.max(stepWidth / 2, width) : width;
+            stepHeight = stepHeight > height ? Math.max(stepHeight / 2, height) : height;
+
+            final BufferedImage step = new BufferedImage(stepWidth, stepHeight, type);
+            final Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, stepWidth, stepHeight, null);
+            graphics.dispose();
+            current = step;
+
+        } while (stepWidth != width || stepHeight != height);
+
+        return current;
+
+    }
+
     /**
      * Get the image codec from filename's given extension
      * <p/>
@@ -321,6 +370,27 @@ public class ImageServiceImpl
         return isSizeAllowed(width + "x" + height);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List<String[]> getAllowedSizes() {
+
+        final SystemService systemService = getSystemService();
+        String sizes = systemService.getAttributeValue(AttributeNamesKeys.System.SYSTEM_ALLOWED_IMAGE_SIZES);
+        if (StringUtils.isBlank(sizes)) {
+            sizes = this.allowedSizes;
+        }
+
+        final List<String[]> allowed = new ArrayList<String[]>();
+        for (final String size : StringUtils.split(sizes, ',')) {
+            final String[] widthAndHeight = StringUtils.split(size.trim(), 'x');
+            if (widthAndHeight.length == 2 && NumberUtils.isDigits(widthAndHeight[0]) && NumberUtils.isDigits(widthAndHeight[1])) {
+                allowed.add(widthAndHeight);
+            }
+        }
+        return allowed;
+    }
+
     /** {@inheritDoc} */
     public ImageNameStrategy getImageNameStrategy(final String url) {
         return imageNameStrategyResolver.getImageNameStrategy(url);
@@ -344,39 +414,134 @@ public class ImageServiceImpl
         try {
             final Map<String, Object> ctx = Collections.EMPTY_MAP;
 
-            if (resized != null) {
+            if (resized != null && ensureResized(original, resized, width, height, cropToFit)) {
+                return ioProvider.read(resized, ctx);
+            }
+            return ioProvider.read(original, ctx);
+
+        } catch (IOException ioe) {
+            ShopCodeContext.getLog(this).error("Unable to resize image {} to {}", original, resized);
+            ShopCodeContext.getLog(this).error(ioe.getMessage(), ioe);
+            return new byte[0];
+        }
+    }
+
+    /** {@inheritDoc} */
+    public String resizeImageToPath(final String original,
+                                    final String resized,
+                                    final String width,
+                                    final String height) {
+
+        if (resized != null && ensureResized(original, resized, width, height, cropToFit)) {
+            return resized;
+        }
+        return original;
+
+    }
+
+    /**
+     * Make sure that resized image exists and is newer than original. Only one resize of the same
+     * image is performed at a time, all concurrent requests for this image wait for its result.
+     *
+     * @param original  path to original image
+     * @param resized   path to resized image
+     * @param width     requested width
+     * @param height    requested height
+     * @param cropToFit crop to fit
+     *
+     * @return true if resized image is available, false if original should be used instead
+     */
+    private boolean ensureResized(final String original,
+                                  final String resized,
+                                  final String width,
+                                  final String height,
+                                  final boolean cropToFit) {
+
+        ResizeTask resize = resizesInProgress.get(resized);
+        if (resize == null) {
+
+            if (ioProvider.isNewerThan(resized, original, Collections.EMPTY_MAP)) {
+                return true;
+            }
+
+            final ResizeTask task = new ResizeTask(original, resized, width, height, cropToFit);
+            resize = resizesInProgress.putIfAbsent(resized, task);
+            if (resize == null) {
+                resize = task;
+                if (resizeExecutor == null) {
+                    task.run();
+                } else {
+                    try {
+                        resizeExecutor.execute(task);
+                    } catch (TaskRejectedException tre) {
+                        task.run();
+                    }
+                }
+            }
+
+        }
+
+        try {
+            return resize.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ee) {
+            ShopCodeContext.getLog(this).error("Unable to resize image {} to {}", original, resized);
+            ShopCodeContext.getLog(this).error(ee.getCause().getMessage(), ee.getCause());
+            return false;
+        }
 
-                final boolean resizedIsNewer = ioProvider.isNewerThan(resized, original, ctx);
+    }
 
-                if (!resizedIsNewer) {
+    /**
+     * Resize of single image, removes itself from resizes in progress when done.
+     */
+    private class ResizeTask extends FutureTask<Boolean> {
+
+        private final String resized;
+
+        private ResizeTask(final String original,
+                           final String resized,
+                           final String width,
+                           final String height,
+                           final boolean cropToFit) {
+            super(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+
+                    final Map<String, Object> ctx = Collections.EMPTY_MAP;
+
+                    if (ioProvider.isNewerThan(resized, original, ctx)) {
+                        return Boolean.TRUE; // resized by previous task
+                    }
 
                     final byte[] originalContent = ioProvider.read(original, ctx);
-                    final byte[] resizedContent = resizeImage(original, originalContent, width, height);
+                    final byte[] resizedContent = resizeImage(original, originalContent, width, height, cropToFit);
 
                     if (resizedContent.length > 0) {
                         ioProvider.write(resized, resizedContent, ctx);
-                        return resizedContent;
+                        return Boolean.TRUE;
                     }
 
                     /*
                          If we failed to resize this is probably due to invalid color metadata for the original image.
                          JDK image API will fail if the metadata is incorrect. In order to fail gracefully we
-                         just pass back the original bytes so that the original image is used instead. There will be an
+                         just pass back the original image so that it is used instead. There will be an
                          ERROR log produced by catch block from #resizeImage(), so sys admins should provide regular
                          feedback to business users to fix these images. Usually the fix is  simply erasing all meta
                          from the image.
                      */
-                    return originalContent;
+                    return Boolean.FALSE;
                 }
+            });
+            this.resized = resized;
+        }
 
-                return ioProvider.read(resized, ctx);
-            }
-            return ioProvider.read(original, ctx);
-
-        } catch (IOException ioe) {
-            ShopCodeContext.getLog(this).error("Unable to resize image {} to {}", original, resized);
-            ShopCodeContext.getLog(this).error(ioe.getMessage(), ioe);
-            return new byte[0];
+        /** {@inheritDoc} */
+        @Override
+        protected void done() {
+            resizesInProgress.remove(resized, this);
         }
     }
 
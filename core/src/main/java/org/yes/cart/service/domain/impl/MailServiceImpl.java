@@ -20,6 +20,9 @@ import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.domain.entity.Mail;
 import org.yes.cart.service.domain.MailService;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * User: denispavlov
  * Date: 10/11/2013
@@ -39,4 +42,20 @@ public class MailServiceImpl extends BaseGenericServiceImpl<Mail> implements Mai
         }
         return getGenericDao().findSingleByNamedQuery("OLDEST.MAIL.AFTER", lastFailedMailId);
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Mail> findOldestMails(final Long lastMailId, final int max) {
+        return getGenericDao().findRangeByNamedQuery("MAILS.AFTER.ID", 0, max, lastMailId == null ? 0L : lastMailId);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int deleteMails(final Collection<Long> mailIds) {
+        if (mailIds == null || mailIds.isEmpty()) {
+            return 0;
+        }
+        getGenericDao().executeUpdate("REMOVE.MAILPARTS.BY.MAIL.IDS", mailIds);
+        return getGenericDao().executeUpdate("REMOVE.MAILS.BY.IDS", mailIds);
+    }
 }
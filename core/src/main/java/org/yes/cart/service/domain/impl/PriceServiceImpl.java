@@ -16,7 +16,6 @@
 
 package org.yes.cart.service.domain.impl;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -32,7 +31,6 @@ import org.yes.cart.domain.query.ProductSearchQueryBuilder;
 import org.yes.cart.domain.queryobject.FilteredNavigationRecord;
 import org.yes.cart.domain.queryobject.impl.FilteredNavigationRecordImpl;
 import org.yes.cart.service.domain.PriceService;
-import org.yes.cart.util.DomainApiUtils;
 import org.yes.cart.util.MoneyUtils;
 
 import java.math.BigDecimal;
@@ -50,6 +48,7 @@ public class PriceServiceImpl
 
     private final PriceNavigation priceNavigation;
     private final GenericDAO<SkuPrice, Long> skuPriceDao;
+    private final SkuPriceIndex skuPriceIndex;
 
 
     /**
@@ -57,13 +56,16 @@ public class PriceServiceImpl
      *
      * @param priceNavigation     price navigation composer
      * @param skuPriceDao         sku price dao service
+     * @param skuPriceIndex       in memory price index
      */
     public PriceServiceImpl(final PriceNavigation priceNavigation,
-                            final GenericDAO<SkuPrice, Long> skuPriceDao
+                            final GenericDAO<SkuPrice, Long> skuPriceDao,
+                            final SkuPriceIndex skuPriceIndex
     ) {
         super(skuPriceDao);
         this.priceNavigation = priceNavigation;
         this.skuPriceDao = skuPriceDao;
+        this.skuPriceIndex = skuPriceIndex;
 
     }
 
@@ -92,13 +94,36 @@ public class PriceServiceImpl
         return getMinimalSkuPrice(skuPrices, selectedSku, quantity, enforceTier);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, SkuPrice> getMinimalPrices(final Collection<String> skuCodes,
+                                                  final long shopId,
+                                                  final String currencyCode,
+                                                  final BigDecimal quantity,
+                                                  final boolean enforceTier,
+                                                  final String pricingPolicy) {
+
+        final Map<String, List<Pair<String, SkuPrice>>> skuPrices =
+                skuPriceIndex.getSkuPrices(skuCodes, shopId, currencyCode, pricingPolicy, System.currentTimeMillis()); //TODO: V2 time machine
+
+        final Map<String, SkuPrice> prices = new HashMap<String, SkuPrice>(skuCodes.size() * 2);
+        for (final String skuCode : skuCodes) {
+            if (skuCode != null && !prices.containsKey(skuCode)) {
+                final List<Pair<String, SkuPrice>> skuCodePrices = skuPrices.get(skuCode);
+                prices.put(skuCode, getMinimalSkuPrice(
+                        skuCodePrices != null ? skuCodePrices : Collections.<Pair<String, SkuPrice>>emptyList(),
+                        skuCode, quantity, enforceTier));
+            }
+        }
+        return prices;
+    }
+
     private SkuPrice getMinimalSkuPrice(List<Pair<String, SkuPrice>> skuPrices,
                                         final String selectedSku,
                                         final BigDecimal quantity,
                                         final boolean enforceTier) {
 
-        skuPrices = getSkuPricesFilteredByTimeFrame(skuPrices);
-
         if (quantity != null) {
             skuPrices = getSkuPricesFilteredByQuantity(
                     skuPrices,
@@ -169,10 +194,8 @@ public class PriceServiceImpl
             skuPrices = Collections.emptyList();
         }
 
-        final List<Pair<String, SkuPrice>> filtered = getSkuPricesFilteredByTimeFrame(skuPrices);
-
         final List<SkuPrice> prices = new ArrayList<SkuPrice>();
-        for (final Pair<String, SkuPrice> price : filtered) {
+        for (final Pair<String, SkuPrice> price : skuPrices) {
             prices.add(price.getSecond());
         }
 
@@ -195,33 +218,7 @@ public class PriceServiceImpl
     }
 
     /**
-     * Atm we can have different price definitions (lowest in list with high priority):
-     * price without any time limitations;
-     * price, which starts in infinitive past and will be end at some date;
-     * price, which has the start date but no end date;
-     * price with start and end date.
-     *
-     * @param skuPrices all prices filtered by currency, and quantity for all skus
-     * @return the list of sku prices, which is filtered by time frame
-     */
-    List<Pair<String, SkuPrice>> getSkuPricesFilteredByTimeFrame(final List<Pair<String, SkuPrice>> skuPrices) {
-
-        final List<Pair<String, SkuPrice>> allPrices = new LinkedList<Pair<String, SkuPrice>>();
-
-        final Date now = new Date(); //TODO: V2 time machine
-        for (Pair<String, SkuPrice> skuPrice : skuPrices) {
-
-            if (DomainApiUtils.isObjectAvailableNow(true, skuPrice.getSecond().getSalefrom(), skuPrice.getSecond().getSaleto(), now)) {
-                allPrices.add(skuPrice);
-            }
-
-        }
-
-        return allPrices;
-    }
-
-    /**
-     * Get the sku prices filtered by shop.
+     * Get the sku prices filtered by shop and time frame.
      *
      * @param skuCode      SKU code
      * @param shopId       shop filter
@@ -232,12 +229,12 @@ public class PriceServiceImpl
      */
     List<Pair<String, SkuPrice>> getSkuPrices(final String skuCode, final long shopId, final String currencyCode, final String pricingPolicy) {
 
-        return getSkuPriceFilteredByShopCurrency(skuCode, shopId, currencyCode, pricingPolicy);
+        return skuPriceIndex.getSkuPrices(skuCode, shopId, currencyCode, pricingPolicy, System.currentTimeMillis()); //TODO: V2 time machine
 
     }
 
     /**
-     * Get the sku prices filtered by shop.
+     * Get the sku prices filtered by shop and time frame.
      *
      * @param productId    product PK
      * @param shopId       shop filter
@@ -248,7 +245,7 @@ public class PriceServiceImpl
      */
     List<Pair<String, SkuPrice>> getSkuPrices(final long productId, final long shopId, final String currencyCode, final String pricingPolicy) {
 
-        return getSkuPriceFilteredByShopCurrency(productId, shopId, currencyCode, pricingPolicy);
+        return skuPriceIndex.getProductPrices(productId, shopId, currencyCode, pricingPolicy, System.currentTimeMillis()); //TODO: V2 time machine
 
     }
 
@@ -276,54 +273,6 @@ public class PriceServiceImpl
         return result;
     }
 
-    private List<Pair<String, SkuPrice>> getSkuPriceFilteredByShopCurrency(final String skuCode,
-                                                                           final long shopId,
-                                                                           final String currencyCode,
-                                                                           final String pricingPolicy) {
-
-        final List<SkuPrice> prices;
-        if (StringUtils.isNotBlank(pricingPolicy)) {
-            prices = getGenericDao().findByNamedQuery("SKUPRICE.BY.CODE.AND.CURRENCY.AND.SHOP.AND.POLICY",
-                    skuCode, currencyCode, shopId, pricingPolicy);
-        } else {
-            prices = getGenericDao().findByNamedQuery("SKUPRICE.BY.CODE.AND.CURRENCY.AND.SHOP",
-                    skuCode, currencyCode, shopId);
-        }
-        if (CollectionUtils.isNotEmpty(prices)) {
-            final List<Pair<String, SkuPrice>> rez = new ArrayList<Pair<String, SkuPrice>>(prices.size());
-            for (final SkuPrice price : prices) {
-                rez.add(new Pair<String, SkuPrice>(price.getSkuCode(), price));
-            }
-            return rez;
-        }
-        return Collections.emptyList();
-
-    }
-
-    private List<Pair<String, SkuPrice>> getSkuPriceFilteredByShopCurrency(final long productId,
-                                                                           final long shopId,
-                                                                           final String currencyCode,
-                                                                           final String pricingPolicy) {
-
-        final List<SkuPrice> prices;
-        if (StringUtils.isNotBlank(pricingPolicy)) {
-            prices = getGenericDao().findByNamedQuery("SKUPRICE.BY.PRODUCT.AND.CURRENCY.AND.SHOP.AND.POLICY",
-                    productId, currencyCode, shopId, pricingPolicy);
-        } else {
-            prices = getGenericDao().findByNamedQuery("SKUPRICE.BY.PRODUCT.AND.CURRENCY.AND.SHOP",
-                    productId, currencyCode, shopId);
-        }
-        if (CollectionUtils.isNotEmpty(prices)) {
-            final List<Pair<String, SkuPrice>> rez = new ArrayList<Pair<String, SkuPrice>>(prices.size());
-            for (final SkuPrice price : prices) {
-                rez.add(new Pair<String, SkuPrice>(price.getSkuCode(), price));
-            }
-            return rez;
-        }
-        return Collections.emptyList();
-
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -405,7 +354,9 @@ public class PriceServiceImpl
     }, allEntries = true)
     public SkuPrice create(final SkuPrice instance) {
         ensureNonZeroPrices(instance);
-        return super.create(instance);
+        final SkuPrice created = super.create(instance);
+        skuPriceIndex.onPriceChange(created.getSkuPriceId());
+        return created;
     }
 
     /**
@@ -419,7 +370,9 @@ public class PriceServiceImpl
     }, allEntries = true)
     public SkuPrice update(final SkuPrice instance) {
         ensureNonZeroPrices(instance);
-        return super.update(instance);
+        final SkuPrice updated = super.update(instance);
+        skuPriceIndex.onPriceChange(updated.getSkuPriceId());
+        return updated;
     }
 
 
@@ -442,6 +395,8 @@ public class PriceServiceImpl
             "priceService-allPrices"
     }, allEntries = true)
     public void delete(final SkuPrice instance) {
+        final long pk = instance.getSkuPriceId();
         super.delete(instance);
+        skuPriceIndex.onPriceChange(pk);
     }
 }
@@ -65,6 +65,32 @@ import java.util.*;
  */
 public class ProductServiceImpl extends BaseGenericServiceImpl<Product> implements ProductService {
 
+    private static final String[] PRODUCT_SEARCH_RESULT_FIELDS = new String[] {
+            ProductSearchQueryBuilder.PRODUCT_ID_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_CODE_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_DEFAULT_SKU_CODE_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_NAME_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_DESCRIPTION_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_AVAILABILITY_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_QTY_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_DEFAULTIMAGE_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_DISPLAYNAME_ASIS_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_DESCRIPTION_ASIS_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_FEATURED_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_AVAILABILITY_FROM_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_AVAILABILITY_TO_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_MIN_QTY_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_MAX_QTY_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_STEP_QTY_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_MULTISKU,
+            ProductSearchQueryBuilder.PRODUCT_MANUFACTURER_CODE_FIELD,
+            ProductSearchQueryBuilder.ATTRIBUTE_VALUE_STORE_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_CREATED_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_UPDATED_FIELD,
+            ProductSearchQueryBuilder.PRODUCT_TAG_FIELD,
+            ProductSearchQueryBuilder.BRAND_NAME_FIELD
+    };
+
     private final GenericDAO<Product, Long> productDao;
     private final GenericDAO<ProductSku, Long> productSkuDao;
     private final ProductSkuService productSkuService;
@@ -501,32 +527,47 @@ public class ProductServiceImpl extends BaseGenericServiceImpl<Product> implemen
                 maxResults,
                 sortFieldName,
                 reverse,
-                ProductSearchQueryBuilder.PRODUCT_ID_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_CODE_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_DEFAULT_SKU_CODE_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_NAME_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_DESCRIPTION_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_AVAILABILITY_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_QTY_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_DEFAULTIMAGE_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_DISPLAYNAME_ASIS_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_DESCRIPTION_ASIS_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_FEATURED_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_AVAILABILITY_FROM_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_AVAILABILITY_TO_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_MIN_QTY_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_MAX_QTY_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_STEP_QTY_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_MULTISKU,
-                ProductSearchQueryBuilder.PRODUCT_MANUFACTURER_CODE_FIELD,
-                ProductSearchQueryBuilder.ATTRIBUTE_VALUE_STORE_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_CREATED_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_UPDATED_FIELD,
-                ProductSearchQueryBuilder.PRODUCT_TAG_FIELD,
-                ProductSearchQueryBuilder.BRAND_NAME_FIELD
+                PRODUCT_SEARCH_RESULT_FIELDS
+                );
+
+        return toProductSearchResultPageDTO(searchRez, firstResult, maxResults, sortFieldName, reverse);
+
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Cacheable(value = "productService-productSearchResultDTOAndNavigationByQuery")
+    public Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> getProductSearchResultDTOAndNavigationByQuery(final Query query,
+                                                                                                                                    final int firstResult,
+                                                                                                                                    final int maxResults,
+                                                                                                                                    final String sortFieldName,
+                                                                                                                                    final boolean reverse,
+                                                                                                                                    final List<FilteredNavigationRecordRequest> request) {
+
+        final Pair<Pair<List<Object[]>, Integer>, Map<String, List<Pair<String, Integer>>>> searchRez = productDao.fullTextSearch(
+                query,
+                firstResult,
+                maxResults,
+                sortFieldName,
+                reverse,
+                request,
+                PRODUCT_SEARCH_RESULT_FIELDS
                 );
 
+        return new Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>>(
+                toProductSearchResultPageDTO(searchRez.getFirst(), firstResult, maxResults, sortFieldName, reverse),
+                Collections.unmodifiableMap(searchRez.getSecond())
+        );
+
+    }
+
+    private ProductSearchResultPageDTO toProductSearchResultPageDTO(final Pair<List<Object[]>, Integer> searchRez,
+                                                                    final int firstResult,
+                                                                    final int maxResults,
+                                                                    final String sortFieldName,
+                                                                    final boolean reverse) {
+
         final List<ProductSearchResultDTO> rez = new ArrayList<ProductSearchResultDTO>(searchRez.getFirst().size());
         for (Object[] obj : searchRez.getFirst()) {
             final ProductSearchResultDTO dto = new ProductSearchResultDTOImpl();
@@ -1123,6 +1164,7 @@ public class ProductServiceImpl extends BaseGenericServiceImpl<Product> implemen
             "productService-randomProductByCategory",
             "productService-productByQuery",
             "productService-productSearchResultDTOByQuery",
+            "productService-productSearchResultDTOAndNavigationByQuery",
             "productService-productQtyByQuery",
             "productService-productByIdList",
             "productService-distinctAttributeValues",
@@ -1160,6 +1202,7 @@ public class ProductServiceImpl extends BaseGenericServiceImpl<Product> implemen
             "productService-productById",
             "productService-productByQuery",
             "productService-productSearchResultDTOByQuery",
+            "productService-productSearchResultDTOAndNavigationByQuery",
             "productService-productQtyByQuery",
             "productService-distinctAttributeValues",
             "productService-distinctBrands",
@@ -1186,6 +1229,7 @@ public class ProductServiceImpl extends BaseGenericServiceImpl<Product> implemen
             "productService-productById",
             "productService-productByQuery",
             "productService-productSearchResultDTOByQuery",
+            "productService-productSearchResultDTOAndNavigationByQuery",
             "productService-productQtyByQuery",
             "productService-distinctAttributeValues",
             "productService-distinctBrands",
@@ -5,6 +5,8 @@ import org.yes.cart.shoppingcart.*;
 import org.yes.cart.shoppingcart.impl.ShoppingCartImpl;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * User: denispavlov
@@ -92,6 +94,42 @@ public class ShoppingCartCalculatorImpl implements ShoppingCartCalculator {
         return model;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, PriceModel> calculatePrices(final ShoppingCart currentCart,
+                                                   final Map<String, BigDecimal> minimalPrices) {
+
+        final Map<String, PriceModel> models = new HashMap<String, PriceModel>(minimalPrices.size() * 2);
+        if (minimalPrices.isEmpty()) {
+            return models;
+        }
+
+        // All SKU go into single throw away cart, so that taxes are calculated in one recalculation
+        final MutableShoppingCart cart = createNewCart(currentCart, true, false, true);
+
+        for (final Map.Entry<String, BigDecimal> minimalPrice : minimalPrices.entrySet()) {
+            cart.addProductSkuToCart(minimalPrice.getKey(), BigDecimal.ONE);
+            cart.setProductSkuPrice(minimalPrice.getKey(), minimalPrice.getValue(), minimalPrice.getValue());
+        }
+
+        cart.recalculate();
+
+        for (final CartItem item : cart.getCartItemList()) {
+            if (minimalPrices.containsKey(item.getProductSkuCode())) {
+                models.put(item.getProductSkuCode(), new DefaultPriceModel(
+                        item.getGrossPrice(),
+                        item.getNetPrice(),
+                        item.getTaxCode(),
+                        item.getTaxRate(),
+                        item.isTaxExclusiveOfPrice()));
+            }
+        }
+
+        return models;
+    }
+
     public static class DefaultPriceModel implements PriceModel {
 
         private final BigDecimal grossPrice;
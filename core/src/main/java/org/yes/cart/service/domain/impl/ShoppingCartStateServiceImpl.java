@@ -21,6 +21,8 @@ import org.yes.cart.dao.ResultsIterator;
 import org.yes.cart.domain.entity.ShoppingCartState;
 import org.yes.cart.service.domain.ShoppingCartStateService;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -45,6 +47,16 @@ public class ShoppingCartStateServiceImpl extends BaseGenericServiceImpl<Shoppin
         return shoppingCartStateDao.findSingleByNamedQuery("SHOPPINGCARTSTATE.BY.GUID", guid);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public List<ShoppingCartState> findByGuids(final Collection<String> guids) {
+        if (guids == null || guids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return shoppingCartStateDao.findByNamedQuery("SHOPPINGCARTSTATE.BY.GUIDS", guids);
+    }
+
     /**
      * {@inheritDoc}
      */
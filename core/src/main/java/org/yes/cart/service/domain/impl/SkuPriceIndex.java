@@ -0,0 +1,551 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.domain.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.domain.misc.Pair;
+import org.yes.cart.web.service.ws.CacheEvictionListener;
+import org.yes.cart.web.service.ws.CacheableChangeListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory index of SKU prices.
+ *
+ * Index is partitioned by shop and currency. Partition is loaded with a single query on first
+ * access and holds per SKU tiers (all pricing policies) with validity windows in primitive arrays,
+ * as well as product to SKU mapping. Lookups do not access DB.
+ *
+ * Price changes (either local after commit or received through {@link org.yes.cart.web.service.ws.CacheDirector})
+ * are queued by price PK and applied on next lookup by reloading only affected SKU's. Complete eviction of
+ * price cache regions (evict all, bulk import) drops all partitions. Partitions older than max age are
+ * reloaded fully as a safety net for changes that bypass notifications.
+ *
+ * Index holds detached copies of prices (without shop), so that entities are never shared between threads.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 12:10
+ */
+public class SkuPriceIndex implements CacheableChangeListener, CacheEvictionListener {
+
+    private final GenericDAO<SkuPrice, Long> skuPriceDao;
+    private final long maxAgeMs;
+
+    private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<String, Partition>();
+    private final Queue<Long> pendingChanges = new ConcurrentLinkedQueue<Long>();
+    private final Object loadLock = new Object();
+
+    private final AtomicLong lookupCount = new AtomicLong(0L);
+    private final AtomicLong partitionLoadCount = new AtomicLong(0L);
+    private final AtomicLong skuReloadCount = new AtomicLong(0L);
+
+    /**
+     * @param skuPriceDao      price DAO
+     * @param maxAgeSeconds    max age of partition after which it is fully reloaded (0 - never)
+     */
+    public SkuPriceIndex(final GenericDAO<SkuPrice, Long> skuPriceDao,
+                         final int maxAgeSeconds) {
+        this.skuPriceDao = skuPriceDao;
+        this.maxAgeMs = maxAgeSeconds * 1000L;
+    }
+
+    /**
+     * Get currently active prices for given SKU.
+     *
+     * @param skuCode       SKU code
+     * @param shopId        shop PK
+     * @param currency      currency
+     * @param pricingPolicy pricing policy (null or empty for default prices only)
+     * @param now           time for validity check
+     *
+     * @return prices (in order of creation)
+     */
+    public List<Pair<String, SkuPrice>> getSkuPrices(final String skuCode,
+                                                     final long shopId,
+                                                     final String currency,
+                                                     final String pricingPolicy,
+                                                     final long now) {
+
+        final Partition partition = getPartition(shopId, currency);
+        final SkuTiers tiers = partition.bySku.get(skuCode);
+        if (tiers == null) {
+            return Collections.emptyList();
+        }
+        final List<Pair<String, SkuPrice>> result = new ArrayList<Pair<String, SkuPrice>>(tiers.ids.length);
+        tiers.collect(result, pricingPolicy, now);
+        return result;
+
+    }
+
+    /**
+     * Get currently active prices for given SKU's (e.g. all SKU's on search result page).
+     *
+     * @param skuCodes      SKU codes
+     * @param shopId        shop PK
+     * @param currency      currency
+     * @param pricingPolicy pricing policy (null or empty for default prices only)
+     * @param now           time for validity check
+     *
+     * @return prices by SKU code (in order of creation), SKU without prices are not included
+     */
+    public Map<String, List<Pair<String, SkuPrice>>> getSkuPrices(final Collection<String> skuCodes,
+                                                                  final long shopId,
+                                                                  final String currency,
+                                                                  final String pricingPolicy,
+                                                                  final long now) {
+
+        final Partition partition = getPartition(shopId, currency);
+        final Map<String, List<Pair<String, SkuPrice>>> result = new HashMap<String, List<Pair<String, SkuPrice>>>(skuCodes.size() * 2);
+        for (final String skuCode : skuCodes) {
+            final SkuTiers tiers = skuCode != null ? partition.bySku.get(skuCode) : null;
+            if (tiers != null && !result.containsKey(skuCode)) {
+                final List<Pair<String, SkuPrice>> prices = new ArrayList<Pair<String, SkuPrice>>(tiers.ids.length);
+                tiers.collect(prices, pricingPolicy, now);
+                result.put(skuCode, prices);
+            }
+        }
+        return result;
+
+    }
+
+    /**
+     * Get currently active prices for all SKU of given product.
+     *
+     * @param productId     product PK
+     * @param shopId        shop PK
+     * @param currency      currency
+     * @param pricingPolicy pricing policy (null or empty for default prices only)
+     * @param now           time for validity check
+     *
+     * @return prices (in order of creation)
+     */
+    public List<Pair<String, SkuPrice>> getProductPrices(final long productId,
+                                                         final long shopId,
+                                                         final String currency,
+                                                         final String pricingPolicy,
+                                                         final long now) {
+
+        final Partition partition = getPartition(shopId, currency);
+        final String[] skus = partition.productSkus.get(productId);
+        if (skus == null) {
+            return Collections.emptyList();
+        }
+        final List<Pair<String, SkuPrice>> result = new ArrayList<Pair<String, SkuPrice>>();
+        for (final String sku : skus) {
+            final SkuTiers tiers = partition.bySku.get(sku);
+            if (tiers != null) {
+                tiers.collect(result, pricingPolicy, now);
+            }
+        }
+        if (skus.length > 1) {
+            Collections.sort(result, BY_PK);
+        }
+        return result;
+
+    }
+
+    /**
+     * Notify about local price change (create, update or delete). If invoked within transaction
+     * change is queued only after commit, so that reload does not see old state (or state that
+     * is rolled back).
+     *
+     * @param skuPriceId price PK
+     */
+    public void onPriceChange(final long skuPriceId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    pendingChanges.offer(skuPriceId);
+                }
+            });
+        } else {
+            pendingChanges.offer(skuPriceId);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onCacheableChange(final String entityOperation, final String entityName, final Long pkValue) {
+        if (pkValue != null) {
+            pendingChanges.offer(pkValue);
+        } else {
+            clear();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onCacheEvicted(final String cacheName) {
+        clear();
+    }
+
+    /**
+     * Drop all partitions, so that they are reloaded on next access.
+     */
+    public void clear() {
+        synchronized (loadLock) {
+            partitions.clear();
+            pendingChanges.clear();
+        }
+    }
+
+
+    private Partition getPartition(final long shopId, final String currency) {
+
+        lookupCount.incrementAndGet();
+
+        if (!pendingChanges.isEmpty()) {
+            applyPendingChanges();
+        }
+
+        final String key = shopId + ":" + currency;
+        Partition partition = partitions.get(key);
+        if (partition == null || partition.isExpired(maxAgeMs)) {
+            synchronized (loadLock) {
+                partition = partitions.get(key);
+                if (partition == null || partition.isExpired(maxAgeMs)) {
+                    partition = loadPartition(shopId, currency);
+                    partitions.put(key, partition);
+                }
+            }
+        }
+        return partition;
+
+    }
+
+    private Partition loadPartition(final long shopId, final String currency) {
+
+        final Partition partition = new Partition(shopId, currency);
+
+        final List<SkuPrice> prices = skuPriceDao.findByNamedQuery("SKUPRICE.BY.CURRENCY.AND.SHOP.ALL", currency, shopId);
+        final Map<String, List<SkuPrice>> bySku = new HashMap<String, List<SkuPrice>>();
+        for (final SkuPrice price : prices) {
+            List<SkuPrice> skuPrices = bySku.get(price.getSkuCode());
+            if (skuPrices == null) {
+                skuPrices = new ArrayList<SkuPrice>();
+                bySku.put(price.getSkuCode(), skuPrices);
+            }
+            skuPrices.add(price);
+        }
+        for (final Map.Entry<String, List<SkuPrice>> entry : bySku.entrySet()) {
+            partition.putTiers(new SkuTiers(copyOf(entry.getValue())));
+        }
+
+        final List<Object> productSkus = skuPriceDao.findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.CODE.BY.PRICE.CURRENCY.AND.SHOP", currency, shopId);
+        final Map<Long, List<String>> skusByProduct = new HashMap<Long, List<String>>();
+        for (final Object row : productSkus) {
+            final Object[] productSku = (Object[]) row;
+            final Long productId = (Long) productSku[0];
+            List<String> skus = skusByProduct.get(productId);
+            if (skus == null) {
+                skus = new ArrayList<String>(2);
+                skusByProduct.put(productId, skus);
+            }
+            skus.add((String) productSku[1]);
+        }
+        for (final Map.Entry<Long, List<String>> entry : skusByProduct.entrySet()) {
+            partition.productSkus.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+
+        partitionLoadCount.incrementAndGet();
+        return partition;
+
+    }
+
+    private void applyPendingChanges() {
+
+        synchronized (loadLock) {
+
+            final Set<Long> pks = new HashSet<Long>();
+            Long pk;
+            while ((pk = pendingChanges.poll()) != null) {
+                pks.add(pk);
+            }
+            if (pks.isEmpty()) {
+                return;
+            }
+
+            final Map<Partition, Set<String>> toReload = new HashMap<Partition, Set<String>>();
+
+            // Updates and deletes of prices that are already indexed
+            for (final Partition partition : partitions.values()) {
+                for (final Long changed : pks) {
+                    final String sku = partition.skuByPk.get(changed);
+                    if (sku != null) {
+                        addToReload(toReload, partition, sku);
+                    }
+                }
+            }
+
+            // Creates and updates that may have moved price to other SKU, shop or currency
+            final List<Object> changed = skuPriceDao.findQueryObjectByNamedQuery("SKUPRICE.CODE.CURRENCY.SHOP.BY.IDS", pks);
+            for (final Object row : changed) {
+                final Object[] codeCurrencyShop = (Object[]) row;
+                final Partition partition = partitions.get(codeCurrencyShop[2] + ":" + codeCurrencyShop[1]);
+                if (partition != null) { // partitions that are not loaded yet will get this on load
+                    addToReload(toReload, partition, (String) codeCurrencyShop[0]);
+                }
+            }
+
+            for (final Map.Entry<Partition, Set<String>> entry : toReload.entrySet()) {
+                for (final String sku : entry.getValue()) {
+                    reloadSku(entry.getKey(), sku);
+                }
+            }
+
+        }
+
+    }
+
+    private void addToReload(final Map<Partition, Set<String>> toReload, final Partition partition, final String sku) {
+        Set<String> skus = toReload.get(partition);
+        if (skus == null) {
+            skus = new HashSet<String>();
+            toReload.put(partition, skus);
+        }
+        skus.add(sku);
+    }
+
+    private void reloadSku(final Partition partition, final String sku) {
+
+        final List<SkuPrice> prices = skuPriceDao.findByNamedQuery("SKUPRICE.BY.CODE.AND.CURRENCY.AND.SHOP.ALL",
+                sku, partition.currency, partition.shopId);
+
+        if (prices.isEmpty()) {
+            partition.removeTiers(sku);
+        } else {
+            partition.putTiers(new SkuTiers(copyOf(prices)));
+            if (!partition.isMapped(sku)) {
+                final List<Object> productIds = skuPriceDao.findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.BY.CODE", sku);
+                for (final Object productId : productIds) {
+                    partition.mapSku((Long) productId, sku);
+                }
+            }
+        }
+
+        skuReloadCount.incrementAndGet();
+
+    }
+
+    /**
+     * Copy price values, so that index does not retain entities attached to (or lazily loaded from)
+     * session of loading thread.
+     *
+     * @param prices prices loaded from DB
+     *
+     * @return detached copies without shop
+     */
+    private List<SkuPrice> copyOf(final List<SkuPrice> prices) {
+        final List<SkuPrice> copies = new ArrayList<SkuPrice>(prices.size());
+        for (final SkuPrice price : prices) {
+            final SkuPrice copy = skuPriceDao.getEntityFactory().getByIface(SkuPrice.class);
+            copy.setSkuPriceId(price.getSkuPriceId());
+            copy.setSkuCode(price.getSkuCode());
+            copy.setCurrency(price.getCurrency());
+            copy.setQuantity(price.getQuantity());
+            copy.setRegularPrice(price.getRegularPrice());
+            copy.setSalePrice(price.getSalePrice());
+            copy.setMinimalPrice(price.getMinimalPrice());
+            copy.setSalefrom(price.getSalefrom());
+            copy.setSaleto(price.getSaleto());
+            copy.setTag(price.getTag());
+            copy.setPricingPolicy(price.getPricingPolicy());
+            copy.setGuid(price.getGuid());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * @return number of loaded partitions (shop/currency)
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * @return number of full partition loads
+     */
+    public long getPartitionLoadCount() {
+        return partitionLoadCount.get();
+    }
+
+    /**
+     * @return number of incremental SKU reloads
+     */
+    public long getSkuReloadCount() {
+        return skuReloadCount.get();
+    }
+
+    /**
+     * @return number of lookups
+     */
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * @return number of changes waiting to be applied
+     */
+    public int getPendingCount() {
+        return pendingChanges.size();
+    }
+
+
+    private static final Comparator<Pair<String, SkuPrice>> BY_PK = new Comparator<Pair<String, SkuPrice>>() {
+        @Override
+        public int compare(final Pair<String, SkuPrice> price1, final Pair<String, SkuPrice> price2) {
+            final long pk1 = price1.getSecond().getSkuPriceId();
+            final long pk2 = price2.getSecond().getSkuPriceId();
+            return pk1 < pk2 ? -1 : (pk1 == pk2 ? 0 : 1);
+        }
+    };
+
+    /**
+     * All prices for single SKU within partition, ordered by PK (i.e. order of creation).
+     */
+    static final class SkuTiers {
+
+        private final String skuCode;
+        private final long[] ids;
+        private final long[] from;
+        private final long[] to;
+        private final String[] policies;
+        private final SkuPrice[] prices;
+
+        SkuTiers(final List<SkuPrice> skuPrices) {
+
+            final SkuPrice[] sorted = skuPrices.toArray(new SkuPrice[skuPrices.size()]);
+            Arrays.sort(sorted, new Comparator<SkuPrice>() {
+                @Override
+                public int compare(final SkuPrice price1, final SkuPrice price2) {
+                    final long pk1 = price1.getSkuPriceId();
+                    final long pk2 = price2.getSkuPriceId();
+                    return pk1 < pk2 ? -1 : (pk1 == pk2 ? 0 : 1);
+                }
+            });
+
+            this.skuCode = sorted[0].getSkuCode();
+            this.prices = sorted;
+            this.ids = new long[sorted.length];
+            this.from = new long[sorted.length];
+            this.to = new long[sorted.length];
+            this.policies = new String[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                final SkuPrice price = sorted[i];
+                ids[i] = price.getSkuPriceId();
+                from[i] = price.getSalefrom() != null ? price.getSalefrom().getTime() : Long.MIN_VALUE;
+                to[i] = price.getSaleto() != null ? price.getSaleto().getTime() : Long.MAX_VALUE;
+                policies[i] = StringUtils.isBlank(price.getPricingPolicy()) ? null : price.getPricingPolicy();
+            }
+        }
+
+        void collect(final List<Pair<String, SkuPrice>> result, final String pricingPolicy, final long now) {
+            final boolean defaultOnly = StringUtils.isBlank(pricingPolicy);
+            for (int i = 0; i < ids.length; i++) {
+                if (now < from[i] || now > to[i]) {
+                    continue;
+                }
+                if (policies[i] != null && (defaultOnly || !policies[i].equals(pricingPolicy))) {
+                    continue;
+                }
+                result.add(new Pair<String, SkuPrice>(skuCode, prices[i]));
+            }
+        }
+
+    }
+
+    /**
+     * Shop/currency partition.
+     */
+    static final class Partition {
+
+        private final long shopId;
+        private final String currency;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private final ConcurrentMap<String, SkuTiers> bySku = new ConcurrentHashMap<String, SkuTiers>();
+        private final ConcurrentMap<Long, String[]> productSkus = new ConcurrentHashMap<Long, String[]>();
+        private final ConcurrentMap<Long, String> skuByPk = new ConcurrentHashMap<Long, String>();
+
+        Partition(final long shopId, final String currency) {
+            this.shopId = shopId;
+            this.currency = currency;
+        }
+
+        boolean isExpired(final long maxAgeMs) {
+            return maxAgeMs > 0L && System.currentTimeMillis() - loadedAt > maxAgeMs;
+        }
+
+        void putTiers(final SkuTiers tiers) {
+            final SkuTiers old = bySku.put(tiers.skuCode, tiers);
+            for (final long pk : tiers.ids) {
+                skuByPk.put(pk, tiers.skuCode);
+            }
+            if (old != null) {
+                for (final long pk : old.ids) {
+                    if (Arrays.binarySearch(tiers.ids, pk) < 0) {
+                        skuByPk.remove(pk);
+                    }
+                }
+            }
+        }
+
+        void removeTiers(final String sku) {
+            final SkuTiers old = bySku.remove(sku);
+            if (old != null) {
+                for (final long pk : old.ids) {
+                    skuByPk.remove(pk);
+                }
+            }
+        }
+
+        boolean isMapped(final String sku) {
+            for (final String[] skus : productSkus.values()) {
+                for (final String mapped : skus) {
+                    if (mapped.equals(sku)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        void mapSku(final Long productId, final String sku) {
+            final String[] skus = productSkus.get(productId);
+            if (skus == null) {
+                productSkus.put(productId, new String[] { sku });
+            } else {
+                final String[] copy = Arrays.copyOf(skus, skus.length + 1);
+                copy[skus.length] = sku;
+                productSkus.put(productId, copy);
+            }
+        }
+
+    }
+
+}
@@ -30,6 +30,7 @@ import org.yes.cart.service.domain.ProductService;
 import org.yes.cart.service.domain.SkuWarehouseService;
 import org.yes.cart.util.DomainApiUtils;
 import org.yes.cart.util.MoneyUtils;
+import org.yes.cart.util.ShopCodeContext;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -38,11 +39,25 @@ import java.util.*;
  * User: Igor Azarny iazarny@yahoo.com
  * Date: 09-May-2011
  * Time: 14:12:54
+ *
+ * Stock movements (reservation, void, debit and credit) are done using conditional single statement
+ * updates in the caller's transaction, so that stock level is checked and changed atomically by the database
+ * without reading and locking the row upfront. Update only succeeds if the stock level still allows it,
+ * otherwise current state is re-read and partial movement is applied using version check and retried if
+ * someone else got there first. After max retries (e.g. when re-read state is stale under repeatable read
+ * isolation) we fall back to pessimistic lock. Since movement is part of the caller's transaction it is
+ * rolled back together with the order, so no compensation is needed.
+ *
+ * Note that bulk updates bypass the session, so SkuWarehouse instances already loaded in current session
+ * are not refreshed by these methods.
  */
 public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse> implements SkuWarehouseService {
 
     private ProductService productService;
 
+    private boolean conditionalUpdate = true;
+    private int maxRetries = 10;
+
 
     /**
      * Construct sku warehouse service.
@@ -194,6 +209,80 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
     }, allEntries = true)
     public BigDecimal reservation(final Warehouse warehouse, final String productSkuCode, final BigDecimal reserveQty, final boolean allowBackorder) {
 
+        BigDecimal rest = null;
+
+        if (conditionalUpdate) {
+
+            final Object[] state = findStateByWarehouseSku(warehouse, productSkuCode);
+
+            if (state != null) {
+
+                final Long pk = (Long) state[0];
+
+                for (int i = 0; i <= maxRetries && rest == null; i++) {
+                    final boolean firstAttempt = i == 0;
+                    rest = reservationAttempt(pk, reserveQty, allowBackorder, firstAttempt);
+                }
+
+                if (rest == null) {
+                    ShopCodeContext.getLog(this).warn("Reservation of {} on warehouse {} exceeded {} retries, using lock",
+                            new Object[] { productSkuCode, warehouse.getCode(), maxRetries });
+                }
+
+            }
+
+        }
+
+        if (rest == null) {
+            rest = reservationWithLock(warehouse, productSkuCode, reserveQty, allowBackorder);
+        }
+
+        return rest;
+
+    }
+
+    /**
+     * Single reservation attempt.
+     *
+     * @return remainder that could not be reserved or null if attempt lost the race and needs to be retried
+     */
+    private BigDecimal reservationAttempt(final Long pk, final BigDecimal reserveQty, final boolean allowBackorder, final boolean firstAttempt) {
+
+        if (allowBackorder) {
+            getGenericDao().executeUpdate("SKUWAREHOUSE.RESERVE", reserveQty, new Date(), pk);
+            return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+        }
+
+        if (firstAttempt) {
+            // optimistic attempt without reading current state
+            if (getGenericDao().executeUpdate("SKUWAREHOUSE.RESERVE.IF.AVAILABLE", reserveQty, new Date(), pk) > 0) {
+                return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+            }
+            return null;
+        }
+
+        final Object[] current = findStateById(pk);
+        final BigDecimal quantity = MoneyUtils.notNull((BigDecimal) current[1], BigDecimal.ZERO);
+        final BigDecimal reserved = MoneyUtils.notNull((BigDecimal) current[2], BigDecimal.ZERO);
+        final BigDecimal available = quantity.subtract(reserved);
+
+        if (MoneyUtils.isFirstBiggerThanOrEqualToSecond(available, reserveQty)) {
+            // stock was freed up since first attempt
+            if (getGenericDao().executeUpdate("SKUWAREHOUSE.RESERVE.IF.AVAILABLE", reserveQty, new Date(), pk) > 0) {
+                return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+            }
+        } else if (!MoneyUtils.isFirstBiggerThanSecond(available, BigDecimal.ZERO)) {
+            // nothing to reserve
+            return reserveQty.setScale(Constants.DEFAULT_SCALE);
+        } else if (getGenericDao().executeUpdate("SKUWAREHOUSE.SET.RESERVED.IF.VERSION", quantity, new Date(), pk, current[3]) > 0) {
+            return reserveQty.subtract(available).setScale(Constants.DEFAULT_SCALE);
+        }
+        return null;
+
+    }
+
+    private BigDecimal reservationWithLock(final Warehouse warehouse, final String productSkuCode, final BigDecimal reserveQty, final boolean allowBackorder) {
+
         final SkuWarehouse skuWarehouse = findByWarehouseSkuForUpdate(warehouse, productSkuCode);
 
         if (skuWarehouse == null) {
@@ -241,6 +330,69 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
             "skuWarehouseService-productSkusOnWarehouse"
     }, allEntries = true)
     public BigDecimal voidReservation(final Warehouse warehouse, final String productSkuCode, final BigDecimal voidQty) {
+
+        BigDecimal rest = null;
+
+        if (conditionalUpdate) {
+
+            final Object[] state = findStateByWarehouseSku(warehouse, productSkuCode);
+
+            if (state == null) {
+                return voidQty.setScale(Constants.DEFAULT_SCALE);
+            }
+
+            final Long pk = (Long) state[0];
+
+            for (int i = 0; i <= maxRetries && rest == null; i++) {
+                final boolean firstAttempt = i == 0;
+                rest = voidReservationAttempt(pk, voidQty, firstAttempt);
+            }
+
+            if (rest == null) {
+                ShopCodeContext.getLog(this).warn("Void reservation of {} on warehouse {} exceeded {} retries, using lock",
+                        new Object[] { productSkuCode, warehouse.getCode(), maxRetries });
+            }
+
+        }
+
+        if (rest == null) {
+            rest = voidReservationWithLock(warehouse, productSkuCode, voidQty);
+        }
+
+        return rest;
+
+    }
+
+    /**
+     * Single void reservation attempt.
+     *
+     * @return remainder that could not be voided or null if attempt lost the race and needs to be retried
+     */
+    private BigDecimal voidReservationAttempt(final Long pk, final BigDecimal voidQty, final boolean firstAttempt) {
+
+        if (firstAttempt) {
+            if (getGenericDao().executeUpdate("SKUWAREHOUSE.VOID.RESERVATION.IF.RESERVED", voidQty, new Date(), pk) > 0) {
+                return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+            }
+            return null;
+        }
+
+        final Object[] current = findStateById(pk);
+        final BigDecimal reserved = MoneyUtils.notNull((BigDecimal) current[2], BigDecimal.ZERO);
+
+        if (MoneyUtils.isFirstBiggerThanOrEqualToSecond(reserved, voidQty)) {
+            if (getGenericDao().executeUpdate("SKUWAREHOUSE.VOID.RESERVATION.IF.RESERVED", voidQty, new Date(), pk) > 0) {
+                return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+            }
+        } else if (getGenericDao().executeUpdate("SKUWAREHOUSE.SET.RESERVED.IF.VERSION", BigDecimal.ZERO, new Date(), pk, current[3]) > 0) {
+            return voidQty.subtract(reserved).setScale(Constants.DEFAULT_SCALE);
+        }
+        return null;
+
+    }
+
+    private BigDecimal voidReservationWithLock(final Warehouse warehouse, final String productSkuCode, final BigDecimal voidQty) {
+
         final SkuWarehouse skuWarehouse = findByWarehouseSkuForUpdate(warehouse, productSkuCode);
 
         if (skuWarehouse == null) {
@@ -268,6 +420,21 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
             "skuWarehouseService-productSkusOnWarehouse"
     }, allEntries = true)
     public BigDecimal credit(final Warehouse warehouse, final String productSkuCode, final BigDecimal addQty) {
+
+        final Object[] state = conditionalUpdate ? findStateByWarehouseSku(warehouse, productSkuCode) : null;
+
+        if (state != null) {
+            getGenericDao().executeUpdate("SKUWAREHOUSE.CREDIT", addQty, new Date(), state[0]);
+        } else {
+            creditWithLock(warehouse, productSkuCode, addQty);
+        }
+
+        return BigDecimal.ZERO;
+
+    }
+
+    private void creditWithLock(final Warehouse warehouse, final String productSkuCode, final BigDecimal addQty) {
+
         final SkuWarehouse skuWarehouse = findByWarehouseSkuForUpdate(warehouse, productSkuCode);
 
         if (skuWarehouse == null) {
@@ -281,7 +448,6 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
             skuWarehouse.setQuantity(skuWarehouse.getQuantity().add(addQty));
             update(skuWarehouse);
         }
-        return BigDecimal.ZERO;
 
     }
 
@@ -315,6 +481,68 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
     }, allEntries = true)
     public BigDecimal debit(final Warehouse warehouse, final String productSkuCode, final BigDecimal debitQty) {
 
+        BigDecimal rest = null;
+
+        if (conditionalUpdate) {
+
+            final Object[] state = findStateByWarehouseSku(warehouse, productSkuCode);
+
+            if (state == null) {
+                return debitQty.setScale(Constants.DEFAULT_SCALE);
+            }
+
+            final Long pk = (Long) state[0];
+
+            for (int i = 0; i <= maxRetries && rest == null; i++) {
+                final boolean firstAttempt = i == 0;
+                rest = debitAttempt(pk, debitQty, firstAttempt);
+            }
+
+            if (rest == null) {
+                ShopCodeContext.getLog(this).warn("Debit of {} on warehouse {} exceeded {} retries, using lock",
+                        new Object[] { productSkuCode, warehouse.getCode(), maxRetries });
+            }
+
+        }
+
+        if (rest == null) {
+            rest = debitWithLock(warehouse, productSkuCode, debitQty);
+        }
+
+        return rest;
+
+    }
+
+    /**
+     * Single debit attempt.
+     *
+     * @return remainder that could not be debited or null if attempt lost the race and needs to be retried
+     */
+    private BigDecimal debitAttempt(final Long pk, final BigDecimal debitQty, final boolean firstAttempt) {
+
+        if (firstAttempt) {
+            if (getGenericDao().executeUpdate("SKUWAREHOUSE.DEBIT.IF.AVAILABLE", debitQty, new Date(), pk) > 0) {
+                return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+            }
+            return null;
+        }
+
+        final Object[] current = findStateById(pk);
+        final BigDecimal quantity = MoneyUtils.notNull((BigDecimal) current[1], BigDecimal.ZERO);
+
+        if (MoneyUtils.isFirstBiggerThanOrEqualToSecond(quantity, debitQty)) {
+            if (getGenericDao().executeUpdate("SKUWAREHOUSE.DEBIT.IF.AVAILABLE", debitQty, new Date(), pk) > 0) {
+                return BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE);
+            }
+        } else if (getGenericDao().executeUpdate("SKUWAREHOUSE.SET.QUANTITY.IF.VERSION", BigDecimal.ZERO, new Date(), pk, current[3]) > 0) {
+            return debitQty.subtract(quantity).setScale(Constants.DEFAULT_SCALE);
+        }
+        return null;
+
+    }
+
+    private BigDecimal debitWithLock(final Warehouse warehouse, final String productSkuCode, final BigDecimal debitQty) {
+
         final SkuWarehouse skuWarehouse = findByWarehouseSkuForUpdate(warehouse, productSkuCode);
 
         if (skuWarehouse == null) {
@@ -333,6 +561,24 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
 
     }
 
+    private Object[] findStateByWarehouseSku(final Warehouse warehouse, final String productSkuCode) {
+        final List<Object[]> state = getGenericDao().findQueryObjectsByNamedQuery(
+                "SKUWAREHOUSE.STATE.BY.SKUCODE.WAREHOUSEID",
+                productSkuCode,
+                warehouse.getWarehouseId());
+        if (state.isEmpty()) {
+            return null;
+        }
+        return state.get(0);
+    }
+
+    private Object[] findStateById(final Long skuWarehouseId) {
+        final List<Object[]> state = getGenericDao().findQueryObjectsByNamedQuery(
+                "SKUWAREHOUSE.STATE.BY.ID",
+                skuWarehouseId);
+        return state.get(0);
+    }
+
     private SkuWarehouse findByWarehouseSkuForUpdate(final Warehouse warehouse, final String productSkuCode) {
         final SkuWarehouse inventory = findByWarehouseSku(warehouse, productSkuCode);
         if (inventory != null) {
@@ -376,4 +622,22 @@ public class SkuWarehouseServiceImpl extends BaseGenericServiceImpl<SkuWarehouse
         this.productService = productService;
     }
 
+    /**
+     * IoC. Use conditional updates for stock movements (default), otherwise row is locked for update.
+     *
+     * @param conditionalUpdate true to use conditional updates
+     */
+    public void setConditionalUpdate(final boolean conditionalUpdate) {
+        this.conditionalUpdate = conditionalUpdate;
+    }
+
+    /**
+     * IoC. Number of attempts to apply partial movement before falling back to lock.
+     *
+     * @param maxRetries max retries
+     */
+    public void setMaxRetries(final int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
 }
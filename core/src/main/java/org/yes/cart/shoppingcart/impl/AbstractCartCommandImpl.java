@@ -20,8 +20,11 @@ import org.yes.cart.shoppingcart.MutableShoppingCart;
 import org.yes.cart.shoppingcart.ShoppingCart;
 import org.yes.cart.shoppingcart.ShoppingCartCommand;
 import org.yes.cart.shoppingcart.ShoppingCartCommandRegistry;
+import org.yes.cart.shoppingcart.ShoppingContext;
 
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * User: Igor Azarny iazarny@yahoo.com
@@ -30,6 +33,8 @@ import java.util.Map;
  */
 public abstract class AbstractCartCommandImpl implements ShoppingCartCommand {
 
+    private static final ThreadLocal<DeferredRecalculation> DEFERRED = new ThreadLocal<DeferredRecalculation>();
+
     private int priority = 0;
 
     /**
@@ -60,7 +65,96 @@ public abstract class AbstractCartCommandImpl implements ShoppingCartCommand {
      * @param shoppingCart current cart
      */
     protected void recalculate(final MutableShoppingCart shoppingCart) {
-        shoppingCart.recalculate();
+        final DeferredRecalculation deferred = DEFERRED.get();
+        if (deferred != null && deferred.cart == shoppingCart) {
+            deferred.pending = true; // recalculated once all commands are executed
+        } else {
+            shoppingCart.recalculate();
+        }
+    }
+
+    /**
+     * Defer re-pricing of given cart until all commands are executed.
+     *
+     * @param shoppingCart cart
+     * @param repricer     command that re-prices the cart
+     * @param skuCode      SKU which quantity has changed or null to re-price all items
+     *
+     * @return true if re-pricing is deferred, false if caller has to re-price cart now
+     */
+    static boolean deferRepricing(final MutableShoppingCart shoppingCart,
+                                  final AbstractRecalculatePriceCartCommandImpl repricer,
+                                  final String skuCode) {
+        final DeferredRecalculation deferred = DEFERRED.get();
+        if (deferred == null || deferred.cart != shoppingCart) {
+            return false;
+        }
+        deferred.repricer = repricer;
+        if (skuCode == null) {
+            deferred.repriceAll = true;
+        } else {
+            deferred.repriceSkus.add(skuCode);
+        }
+        deferred.pending = true;
+        return true;
+    }
+
+    /**
+     * Start deferring recalculation of given cart on current thread. All recalculation requests are
+     * collapsed into single recalculation in {@link #endDeferredRecalculation(ShoppingCartCommand)}.
+     *
+     * @param shoppingCart cart
+     *
+     * @return true if deferral started, false if recalculation is already deferred on this thread
+     */
+    static boolean startDeferredRecalculation(final ShoppingCart shoppingCart) {
+        if (DEFERRED.get() != null || !(shoppingCart instanceof MutableShoppingCart)) {
+            return false;
+        }
+        DEFERRED.set(new DeferredRecalculation((MutableShoppingCart) shoppingCart));
+        return true;
+    }
+
+    /**
+     * Stop deferring recalculation and recalculate cart if any of the commands requested it
+     * (even if some command failed afterwards, so that cart totals are never left stale).
+     *
+     * Only SKUs changed by commands are re-priced, unless pricing policy inputs (shop, currency, customer,
+     * country and state) have changed while commands were executed (e.g. login, logout or address change),
+     * in which case all items are re-priced, since they were priced under different policy.
+     *
+     * @param fullRepricer command used to re-price all items if pricing policy inputs have changed and none
+     *                     of the executed commands re-priced the cart (may be null)
+     */
+    static void endDeferredRecalculation(final ShoppingCartCommand fullRepricer) {
+        final DeferredRecalculation deferred = DEFERRED.get();
+        DEFERRED.remove();
+        if (deferred == null) {
+            return;
+        }
+
+        AbstractRecalculatePriceCartCommandImpl repricer = deferred.repricer;
+        boolean repriceAll = deferred.repriceAll;
+        if (!deferred.pricingInputs.equals(getPricingInputs(deferred.cart))
+                && !deferred.cart.getCartItemList().isEmpty()) {
+            repriceAll = true;
+            if (repricer == null && fullRepricer instanceof AbstractRecalculatePriceCartCommandImpl) {
+                repricer = (AbstractRecalculatePriceCartCommandImpl) fullRepricer;
+            }
+        }
+
+        if (repricer != null && (repriceAll || !deferred.repriceSkus.isEmpty())) {
+            repricer.repriceCart(deferred.cart, repriceAll ? null : deferred.repriceSkus);
+            deferred.cart.recalculate();
+        } else if (deferred.pending) {
+            deferred.cart.recalculate();
+        }
+    }
+
+    private static String getPricingInputs(final MutableShoppingCart shoppingCart) {
+        final ShoppingContext context = shoppingCart.getShoppingContext();
+        return context.getShopId() + "|" + shoppingCart.getCurrencyCode() + "|" + context.getCustomerEmail()
+                + "|" + context.getCountryCode() + "|" + context.getStateCode();
     }
 
     /**
@@ -86,4 +180,20 @@ public abstract class AbstractCartCommandImpl implements ShoppingCartCommand {
         this.priority = priority;
     }
 
+    private static final class DeferredRecalculation {
+
+        private final MutableShoppingCart cart;
+        private final String pricingInputs;
+        private boolean pending = false;
+        private AbstractRecalculatePriceCartCommandImpl repricer;
+        private boolean repriceAll = false;
+        private final Set<String> repriceSkus = new LinkedHashSet<String>();
+
+        private DeferredRecalculation(final MutableShoppingCart cart) {
+            this.cart = cart;
+            this.pricingInputs = getPricingInputs(cart);
+        }
+
+    }
+
 }
@@ -27,6 +27,7 @@ import org.yes.cart.util.ShopCodeContext;
 
 import java.math.BigDecimal;
 import java.text.MessageFormat;
+import java.util.Set;
 
 /**
  * Abstract cart prices recalculation command.
@@ -74,6 +75,39 @@ public abstract class AbstractRecalculatePriceCartCommandImpl extends AbstractCa
      */
     protected void recalculatePricesInCart(final MutableShoppingCart shoppingCart) {
 
+        if (!deferRepricing(shoppingCart, this, null)) {
+            repriceCart(shoppingCart, null);
+            recalculate(shoppingCart);
+        }
+
+    }
+
+    /**
+     * Recalculate price in shopping cart after quantity of single SKU has changed. When executed by command
+     * factory only changed SKUs are re-priced once all commands are executed, unless pricing policy inputs
+     * have changed (see {@link #endDeferredRecalculation(ShoppingCartCommand)}). Otherwise all items are
+     * re-priced straight away.
+     *
+     * @param shoppingCart shopping cart
+     * @param skuCode      SKU that has changed
+     */
+    protected void recalculatePricesInCart(final MutableShoppingCart shoppingCart, final String skuCode) {
+
+        if (!deferRepricing(shoppingCart, this, skuCode)) {
+            repriceCart(shoppingCart, null);
+            recalculate(shoppingCart);
+        }
+
+    }
+
+    /**
+     * Re-price items in cart. Items that were never priced are always re-priced.
+     *
+     * @param shoppingCart shopping cart
+     * @param skuCodes     SKU to re-price, null for all
+     */
+    void repriceCart(final MutableShoppingCart shoppingCart, final Set<String> skuCodes) {
+
         if (shoppingCart.getShoppingContext().getShopId() == 0L) {
 
             ShopCodeContext.getLog(this).error("Can not recalculate price because the shop id is 0");
@@ -91,11 +125,16 @@ public abstract class AbstractRecalculatePriceCartCommandImpl extends AbstractCa
 
             for (final CartItem cartItem : shoppingCart.getCartItemList()) {
 
-                setProductSkuPrice(shoppingCart, shop, cartItem.getProductSkuCode(), cartItem.getQty(), policy);
+                if (skuCodes == null
+                        || skuCodes.contains(cartItem.getProductSkuCode())
+                        || cartItem.getListPrice() == null
+                        || MoneyUtils.isFirstEqualToSecond(cartItem.getListPrice(), BigDecimal.ZERO)) {
 
-            }
+                    setProductSkuPrice(shoppingCart, shop, cartItem.getProductSkuCode(), cartItem.getQty(), policy);
 
-            recalculate(shoppingCart);
+                }
+
+            }
 
         }
 
@@ -108,7 +108,7 @@ public class AddSkuToCartEventCommandImpl extends AbstractSkuCartCommandImpl {
         if (productSku != null) {
             shoppingCart.addProductSkuToCart(productSku.getCode(),
                     getQuantityValue(parameters, productSku, shoppingCart.getProductSkuQuantity(productSku.getCode())));
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, productSku.getCode());
             markDirty(shoppingCart);
             final Logger log = ShopCodeContext.getLog(this);
             if (log.isDebugEnabled()) {
@@ -119,7 +119,7 @@ public class AddSkuToCartEventCommandImpl extends AbstractSkuCartCommandImpl {
             // if we have no product for SKU, make sure we have price for this SKU
             shoppingCart.addProductSkuToCart(skuCode,
                     getQuantityValue(parameters, null, shoppingCart.getProductSkuQuantity(skuCode)));
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, skuCode);
             markDirty(shoppingCart);
             final Logger log = ShopCodeContext.getLog(this);
             if (log.isDebugEnabled()) {
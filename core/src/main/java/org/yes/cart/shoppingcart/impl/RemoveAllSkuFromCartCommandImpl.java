@@ -73,7 +73,7 @@ public class RemoveAllSkuFromCartCommandImpl extends AbstractSkuCartCommandImpl
                     skuCode);
 
         } else  {
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, skuCode);
             markDirty(shoppingCart);
         }
     }
@@ -97,7 +97,7 @@ public class RemoveSkuFromCartCommandImpl extends AbstractSkuCartCommandImpl{
                         productSku.getCode());
             }
 
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, productSku.getCode());
             markDirty(shoppingCart);
         } else {
             if(!shoppingCart.removeCartItemQuantity(skuCode,
@@ -106,7 +106,7 @@ public class RemoveSkuFromCartCommandImpl extends AbstractSkuCartCommandImpl{
                         skuCode);
             }
 
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, skuCode);
             markDirty(shoppingCart);
         }
     }
@@ -111,7 +111,7 @@ public class SetSkuQuantityToCartEventCommandImpl  extends AbstractSkuCartComman
 
             final BigDecimal validQuantity = getQuantityValue(parameters, productSku, shoppingCart.getProductSkuQuantity(productSku.getCode()));
             shoppingCart.setProductSkuToCart(productSku.getCode(), validQuantity);
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, productSku.getCode());
             ShopCodeContext.getLog(this).debug("Set product sku with code {} to qty {}",
                     productSku.getCode(),
                     validQuantity);
@@ -120,7 +120,7 @@ public class SetSkuQuantityToCartEventCommandImpl  extends AbstractSkuCartComman
             // if we have no product for SKU, make sure we have price for this SKU
             final BigDecimal validQuantity = getQuantityValue(parameters, null, shoppingCart.getProductSkuQuantity(skuCode));
             shoppingCart.setProductSkuToCart(skuCode, validQuantity);
-            recalculatePricesInCart(shoppingCart);
+            recalculatePricesInCart(shoppingCart, skuCode);
             ShopCodeContext.getLog(this).debug("Set product sku with code {} to qty {}",
                     skuCode,
                     validQuantity);
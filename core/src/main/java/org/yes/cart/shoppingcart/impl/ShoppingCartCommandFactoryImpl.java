@@ -25,7 +25,13 @@ import org.yes.cart.util.ShopCodeContext;
 import java.util.*;
 
 /**
- * .
+ * Command factory that dispatches parameters to commands.
+ * <p/>
+ * Commands only react to parameters that contain their key, so instead of running the whole chain
+ * for every request factory looks up commands by parameter keys and runs only those in priority order.
+ * Recalculation of the cart requested by commands is deferred until all commands for the request
+ * have been executed, so that cart is recalculated at most once per request. Re-pricing is deferred
+ * too and only covers changed SKUs, unless pricing policy inputs have changed during the request.
  * <p/>
  * User: dogma
  * Date: Jan 22, 2011
@@ -36,7 +42,8 @@ public class ShoppingCartCommandFactoryImpl implements ShoppingCartCommandFactor
 
     private static final long serialVersionUID = 20100122L;
 
-    private ShoppingCartCommand[] commands;
+    private ShoppingCartCommand[] commands = new ShoppingCartCommand[0];
+    private Map<String, Integer> commandPosition = Collections.emptyMap();
     private final Map<String, ShoppingCartCommand> commandByKey = new HashMap<String, ShoppingCartCommand>();
 
     /** {@inheritDoc} */
@@ -51,7 +58,13 @@ public class ShoppingCartCommandFactoryImpl implements ShoppingCartCommandFactor
                 ShopCodeContext.getLog(this).info("Adding command impl for: {} with {}", command.getCmdKey(), command);
             }
             commandByKey.put(command.getCmdKey(), command);
-            commands = remapCommandChain(commandByKey.values());
+            final ShoppingCartCommand[] chain = remapCommandChain(commandByKey.values());
+            final Map<String, Integer> positions = new HashMap<String, Integer>(chain.length * 2);
+            for (int i = 0; i < chain.length; i++) {
+                positions.put(chain[i].getCmdKey(), i);
+            }
+            commands = chain;
+            commandPosition = positions;
         }
     }
 
@@ -69,16 +82,51 @@ public class ShoppingCartCommandFactoryImpl implements ShoppingCartCommandFactor
     /** {@inheritDoc} */
     @Override
     public void execute(final ShoppingCart shoppingCart, final Map<String, Object> parameters) {
-        for (ShoppingCartCommand command : commands) {
-            command.execute(shoppingCart, parameters);
+
+        final ShoppingCartCommand[] chain = commands;
+        final Map<String, Integer> positions = commandPosition;
+
+        final int[] matched = new int[Math.min(parameters.size(), chain.length)];
+        int count = 0;
+        for (final String key : parameters.keySet()) {
+            final Integer position = positions.get(key);
+            if (position != null) {
+                matched[count++] = position;
+            }
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        Arrays.sort(matched, 0, count);
+
+        final boolean deferred = AbstractCartCommandImpl.startDeferredRecalculation(shoppingCart);
+        try {
+            for (int i = 0; i < count; i++) {
+                chain[matched[i]].execute(shoppingCart, parameters);
+            }
+        } finally {
+            if (deferred) {
+                // commands executed before failure may have changed the cart, so totals must be recalculated anyway
+                AbstractCartCommandImpl.endDeferredRecalculation(commandByKey.get(CMD_RECALCULATEPRICE));
+            }
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public void execute(final String key, final ShoppingCart shoppingCart, final Map<String, Object> parameters) throws IllegalArgumentException {
-        if (commandByKey.containsKey(key)) {
-            commandByKey.get(key).execute(shoppingCart, parameters);
+        final ShoppingCartCommand command = commandByKey.get(key);
+        if (command != null) {
+            final boolean deferred = AbstractCartCommandImpl.startDeferredRecalculation(shoppingCart);
+            try {
+                command.execute(shoppingCart, parameters);
+            } finally {
+                if (deferred) {
+                    AbstractCartCommandImpl.endDeferredRecalculation(commandByKey.get(CMD_RECALCULATEPRICE));
+                }
+            }
         } else {
             throw new IllegalArgumentException("Command " + key + " is not mapped");
         }
@@ -22,6 +22,9 @@ import org.yes.cart.util.ShopCodeContext;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
 /**
@@ -83,7 +86,13 @@ public abstract class AbstractFileSystemIOProviderImpl implements FileSystemIOPr
 
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * Content is written to temporary file in the same directory, which then replaces target file,
+     * so that concurrent readers never see partially written file. Temporary file is hidden (".[name][random].tmp")
+     * and is removed if write fails, bulk image resize skips such files and removes those left after a crash.
+     */
     @Override
     public void write(final String uri, final byte[] content, final Map<String, Object> context) throws IOException {
 
@@ -96,7 +105,19 @@ public abstract class AbstractFileSystemIOProviderImpl implements FileSystemIOPr
             }
         }
 
-        FileUtils.writeByteArrayToFile(resolveFileFromUri(uri, context), content);
+        final File tmp = File.createTempFile("." + file.getName(), ".tmp", file.getParentFile());
+        try {
+            FileUtils.writeByteArrayToFile(tmp, content);
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                ShopCodeContext.getLog(this).error("Unable to delete file {}", tmp.getAbsolutePath());
+            }
+        }
 
     }
 
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.web.service.ws;
+
+/**
+ * Listener that is notified by {@link CacheDirector} when cache region is cleared completely (e.g. evict all
+ * from admin app, after bulk import or by "all" eviction strategy), so that in memory structures backing
+ * this region can be dropped as well and do not refill the region with stale data.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:40
+ */
+public interface CacheEvictionListener {
+
+    /**
+     * Cache region cleared notification.
+     *
+     * @param cacheName cache region name
+     */
+    void onCacheEvicted(String cacheName);
+
+}
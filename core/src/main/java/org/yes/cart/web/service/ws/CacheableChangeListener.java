@@ -0,0 +1,41 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.web.service.ws;
+
+/**
+ * Listener that is notified by {@link CacheDirector} about entity changes, so that in memory
+ * structures (other than caches) can be updated incrementally.
+ *
+ * Listeners are invoked on the thread that delivers the change notification and must not
+ * perform any heavy operations (e.g. DB access) there.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 12:03
+ */
+public interface CacheableChangeListener {
+
+    /**
+     * Entity change notification.
+     *
+     * @param entityOperation operation (see {@link CacheDirector.EntityOperation})
+     * @param entityName      entity name
+     * @param pkValue         primary key of changed entity
+     */
+    void onCacheableChange(String entityOperation, String entityName, Long pkValue);
+
+}
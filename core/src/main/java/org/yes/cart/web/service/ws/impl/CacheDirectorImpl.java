@@ -18,10 +18,14 @@ package org.yes.cart.web.service.ws.impl;
 import net.sf.ehcache.statistics.LiveCacheStatistics;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.yes.cart.cache.CacheTagResolver;
+import org.yes.cart.cache.TaggedCacheManager;
 import org.yes.cart.domain.dto.impl.CacheInfoDTOImpl;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.util.ShopCodeContext;
 import org.yes.cart.web.service.ws.CacheDirector;
+import org.yes.cart.web.service.ws.CacheEvictionListener;
+import org.yes.cart.web.service.ws.CacheableChangeListener;
 
 import java.util.*;
 
@@ -38,6 +42,12 @@ public class CacheDirectorImpl implements CacheDirector {
 
     private CacheManager cacheManager;
 
+    private Map<String, List<CacheableChangeListener>> cacheableChangeListeners = Collections.emptyMap();
+
+    private Map<String, CacheTagResolver> cacheTagResolvers = Collections.emptyMap();
+
+    private Map<String, List<CacheEvictionListener>> cacheEvictionListeners = Collections.emptyMap();
+
     /**
      * {@inheritDoc}
      */
@@ -99,6 +109,14 @@ public class CacheDirectorImpl implements CacheDirector {
             final Cache cache = cm.getCache(cacheName);
             cache.clear();
         }
+        final Set<CacheEvictionListener> notified = new HashSet<CacheEvictionListener>();
+        for (final Map.Entry<String, List<CacheEvictionListener>> entry : cacheEvictionListeners.entrySet()) {
+            for (final CacheEvictionListener listener : entry.getValue()) {
+                if (notified.add(listener)) {
+                    listener.onCacheEvicted(entry.getKey());
+                }
+            }
+        }
     }
 
     /**
@@ -110,6 +128,21 @@ public class CacheDirectorImpl implements CacheDirector {
         if (cache != null) {
             cache.clear();
         }
+        notifyCacheEvicted(cacheName);
+    }
+
+    /**
+     * Notify listeners backing given cache region that region was cleared completely.
+     *
+     * @param cacheName cache name
+     */
+    void notifyCacheEvicted(final String cacheName) {
+        final List<CacheEvictionListener> listeners = cacheEvictionListeners.get(cacheName);
+        if (listeners != null) {
+            for (final CacheEvictionListener listener : listeners) {
+                listener.onCacheEvicted(cacheName);
+            }
+        }
     }
 
     /**
@@ -141,12 +174,22 @@ public class CacheDirectorImpl implements CacheDirector {
 
         int cnt = 0;
 
+        // listeners go first, so that cache misses after eviction already see the change
+        final List<CacheableChangeListener> listeners = cacheableChangeListeners.get(entityName);
+        if (listeners != null) {
+            for (final CacheableChangeListener listener : listeners) {
+                listener.onCacheableChange(entityOperation, entityName, pkValue);
+            }
+        }
+
         final Set<Pair<String, String>> cacheNames = resolveCacheNames(entityOperation, entityName);
 
         if (cacheNames != null) {
 
             final CacheManager cm = getCacheManager();
 
+            Set<String> tags = null;
+
             for (Pair<String, String> cacheStrategy : cacheNames) {
 
                 final Cache cache = cm.getCache(cacheStrategy.getFirst());
@@ -156,6 +199,7 @@ public class CacheDirectorImpl implements CacheDirector {
                     if("all".equals(cacheStrategy.getSecond())) {
 
                         cache.clear();
+                        notifyCacheEvicted(cacheStrategy.getFirst());
 
                         cnt ++;
 
@@ -165,6 +209,21 @@ public class CacheDirectorImpl implements CacheDirector {
 
                         cnt ++;
 
+                    } else if("tag".equals(cacheStrategy.getSecond())) {
+
+                        if (tags == null) {
+                            tags = resolveTags(entityName, pkValue);
+                        }
+
+                        if (cm instanceof TaggedCacheManager && !tags.isEmpty()) {
+                            ((TaggedCacheManager) cm).evictTagged(cacheStrategy.getFirst(), tags);
+                        } else {
+                            cache.clear();
+                            notifyCacheEvicted(cacheStrategy.getFirst());
+                        }
+
+                        cnt ++;
+
                     } else {
 
                         ShopCodeContext.getLog(this).warn("The [" + cacheStrategy.getSecond() + "] cache eviction strategy not supported");
@@ -198,6 +257,39 @@ public class CacheDirectorImpl implements CacheDirector {
 
     }
 
+    /**
+     * Resolve tags of cache entries that depend on changed entity. Entity itself is tagged as
+     * "[EntityName without Entity suffix]:[pk]", additional tags come from {@link CacheTagResolver}
+     * configured for this entity. If resolver cannot resolve tags (e.g. entity is already deleted)
+     * only entity tag is used: entries that contained deleted entity are tagged by it, and entries
+     * without derivable tags are evicted on any tag eviction.
+     *
+     * @param entityName given entity name
+     * @param pkValue entity pk
+     * @return tags or empty set if pk is unknown, in which case caches need to be cleared
+     */
+    Set<String> resolveTags(final String entityName, final Long pkValue) {
+
+        if (pkValue == null) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> tags = new HashSet<String>();
+        final String type = entityName.endsWith("Entity") ? entityName.substring(0, entityName.length() - 6) : entityName;
+        tags.add(type + ":" + pkValue);
+
+        final CacheTagResolver resolver = cacheTagResolvers.get(entityName);
+        if (resolver != null) {
+            final Set<String> resolved = resolver.resolveTags(entityName, pkValue);
+            if (resolved != null) {
+                tags.addAll(resolved);
+            }
+        }
+
+        return tags;
+
+    }
+
     /** IoC. Set configuration. */
     public void setEntityOperationCache(final Map<String, Map<String, Set<Pair<String, String>>>> entityOperationCache) {
         this.entityOperationCache = entityOperationCache;
@@ -208,4 +300,19 @@ public class CacheDirectorImpl implements CacheDirector {
         this.cacheManager = cacheManager;
     }
 
+    /** IoC. Set listeners for entity changes (key is entity name). */
+    public void setCacheableChangeListeners(final Map<String, List<CacheableChangeListener>> cacheableChangeListeners) {
+        this.cacheableChangeListeners = cacheableChangeListeners;
+    }
+
+    /** IoC. Set tag resolvers for "tag" eviction strategy (key is entity name). */
+    public void setCacheTagResolvers(final Map<String, CacheTagResolver> cacheTagResolvers) {
+        this.cacheTagResolvers = cacheTagResolvers;
+    }
+
+    /** IoC. Set listeners for complete cache region evictions (key is cache name). */
+    public void setCacheEvictionListeners(final Map<String, List<CacheEvictionListener>> cacheEvictionListeners) {
+        this.cacheEvictionListeners = cacheEvictionListeners;
+    }
+
 }
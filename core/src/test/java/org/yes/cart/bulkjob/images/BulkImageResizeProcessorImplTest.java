@@ -0,0 +1,119 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.images;
+
+import org.apache.commons.io.FileUtils;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Test;
+import org.yes.cart.service.domain.ImageService;
+import org.yes.cart.service.domain.SystemService;
+import org.yes.cart.service.image.ImageNameStrategy;
+import org.yes.cart.stream.io.impl.LocalFileSystemIOProviderImpl;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 18:55
+ */
+public class BulkImageResizeProcessorImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testRun() throws Exception {
+
+        final ImageService imageService = context.mock(ImageService.class, "imageService");
+        final SystemService systemService = context.mock(SystemService.class, "systemService");
+        final ImageNameStrategy strategy = context.mock(ImageNameStrategy.class, "strategy");
+
+        final File root = new File("target/test/imgpregen");
+        FileUtils.deleteQuietly(root);
+        final File original = new File(root, "product/A/ABC/img_ABC_a.jpg".replace('/', File.separatorChar));
+        FileUtils.copyFile(new File("src/test/resources/imgresize/resize-200x200.jpg"), original);
+        original.setLastModified(System.currentTimeMillis() - 60000L);
+        final File unresolved = new File(root, "product/A/ABC/other.jpg".replace('/', File.separatorChar));
+        FileUtils.copyFile(original, unresolved);
+        final File staleTemp = new File(root, "product/A/ABC/.img_ABC_a.jpg123.tmp".replace('/', File.separatorChar));
+        FileUtils.copyFile(original, staleTemp);
+        staleTemp.setLastModified(System.currentTimeMillis() - 7200000L);
+        final File activeTemp = new File(root, "product/A/ABC/.img_ABC_a.jpg456.tmp".replace('/', File.separatorChar));
+        FileUtils.copyFile(original, activeTemp);
+        activeTemp.setLastModified(System.currentTimeMillis());
+
+        final String repository = root.getAbsolutePath() + File.separator;
+        final String originalPath = "product/A/ABC/img_ABC_a.jpg".replace('/', File.separatorChar);
+        final String resizedPath = "product/40x40/A/ABC/img_ABC_a.jpg".replace('/', File.separatorChar);
+
+        context.checking(new Expectations() {{
+            allowing(systemService).getImageRepositoryDirectory(); will(returnValue(repository));
+            allowing(imageService).getAllowedSizes(); will(returnValue(Arrays.asList(new String[] { "40", "40" }, new String[] { "80", "80" })));
+            allowing(strategy).getRelativeInternalRootDirectory(); will(returnValue("product" + File.separator));
+            allowing(strategy).resolveObjectCode("img_ABC_a.jpg"); will(returnValue("ABC"));
+            allowing(strategy).resolveObjectCode("other.jpg"); will(returnValue("noImage"));
+            allowing(strategy).resolveLocale(with(any(String.class))); will(returnValue(null));
+            allowing(strategy).resolveRelativeInternalFileNamePath("img_ABC_a.jpg", "ABC", null); will(returnValue(originalPath));
+            allowing(strategy).resolveRelativeInternalFileNamePath("other.jpg", "noImage", null); will(returnValue("product" + File.separator + "other.jpg"));
+            allowing(strategy).resolveRelativeInternalFileNamePath("img_ABC_a.jpg", "ABC", null, "40", "40"); will(returnValue(resizedPath));
+            allowing(strategy).resolveRelativeInternalFileNamePath("img_ABC_a.jpg", "ABC", null, "80", "80"); will(returnValue(resizedPath.replace("40x40", "80x80")));
+            // only first run resizes, second run finds resized images up to date
+            oneOf(imageService).resizeImageToPath(repository + originalPath, repository + resizedPath, "40", "40");
+            will(writeResized(repository + resizedPath, new byte[] { 4 }));
+            oneOf(imageService).resizeImageToPath(repository + originalPath, repository + resizedPath.replace("40x40", "80x80"), "80", "80");
+            will(writeResized(repository + resizedPath.replace("40x40", "80x80"), new byte[] { 8 }));
+        }});
+
+        final BulkImageResizeProcessorImpl processor = new BulkImageResizeProcessorImpl(
+                imageService, systemService, new LocalFileSystemIOProviderImpl(), Collections.singletonList(strategy));
+
+        processor.run();
+
+        assertArrayEquals(new byte[] { 4 }, FileUtils.readFileToByteArray(new File(repository + resizedPath)));
+        assertArrayEquals(new byte[] { 8 }, FileUtils.readFileToByteArray(new File(repository + resizedPath.replace("40x40", "80x80"))));
+        assertFalse(new File(root, "product/80x80/A/ABC/other.jpg".replace('/', File.separatorChar)).exists());
+        assertFalse(staleTemp.exists());
+        assertTrue(activeTemp.exists());
+
+        processor.run();
+
+        context.assertIsSatisfied();
+
+    }
+
+    private Action writeResized(final String resized, final byte[] content) {
+        return new CustomAction("write resized") {
+            @Override
+            public Object invoke(final Invocation invocation) throws Throwable {
+                FileUtils.writeByteArrayToFile(new File(resized), content);
+                return resized;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.bulkjob.mail;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.yes.cart.domain.entity.AttrValueSystem;
+import org.yes.cart.domain.entity.Mail;
+import org.yes.cart.service.domain.MailService;
+import org.yes.cart.service.domain.RuntimeAttributeService;
+import org.yes.cart.service.domain.SystemService;
+import org.yes.cart.service.mail.JavaMailSenderFactory;
+import org.yes.cart.service.mail.MailComposer;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 19:20
+ */
+public class BulkMailProcessorImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testRunSendsPerShopAndDeletesSent() throws Exception {
+
+        final MailService mailService = context.mock(MailService.class, "mailService");
+        final MailComposer mailComposer = context.mock(MailComposer.class, "mailComposer");
+        final JavaMailSenderFactory javaMailSenderFactory = context.mock(JavaMailSenderFactory.class, "javaMailSenderFactory");
+        final SystemService systemService = context.mock(SystemService.class, "systemService");
+        final RuntimeAttributeService runtimeAttributeService = context.mock(RuntimeAttributeService.class, "runtimeAttributeService");
+        final JavaMailSender sender10 = context.mock(JavaMailSender.class, "sender10");
+        final JavaMailSender sender20 = context.mock(JavaMailSender.class, "sender20");
+
+        final Mail mail1 = context.mock(Mail.class, "mail1");
+        final Mail mail2 = context.mock(Mail.class, "mail2");
+        final Mail mail3 = context.mock(Mail.class, "mail3");
+
+        final Session session = Session.getInstance(new Properties());
+        final MimeMessage message1 = new MimeMessage(session);
+        final MimeMessage message2 = new MimeMessage(session);
+        final MimeMessage message3 = new MimeMessage(session);
+
+        final Map<Object, Exception> failed = Collections.<Object, Exception>singletonMap(message3, new Exception("bad recipient"));
+
+        context.checking(new Expectations() {{
+            allowing(systemService).getAttributeValues(); will(returnValue(Collections.<String, AttrValueSystem>singletonMap("JOB_SEND_MAIL_PAUSE", null)));
+            allowing(systemService).getAttributeValue("JOB_SEND_MAIL_PAUSE"); will(returnValue("false"));
+
+            allowing(mail1).getMailId(); will(returnValue(1L));
+            allowing(mail1).getShopCode(); will(returnValue("SHOP10"));
+            allowing(mail2).getMailId(); will(returnValue(2L));
+            allowing(mail2).getShopCode(); will(returnValue("SHOP10"));
+            allowing(mail3).getMailId(); will(returnValue(3L));
+            allowing(mail3).getShopCode(); will(returnValue("SHOP20"));
+            allowing(mail1).getRecipients(); allowing(mail1).getSubject();
+            allowing(mail2).getRecipients(); allowing(mail2).getSubject();
+            allowing(mail3).getRecipients(); allowing(mail3).getSubject();
+
+            one(mailService).findOldestMails(null, 10); will(returnValue(Arrays.asList(mail1, mail2, mail3)));
+            one(mailService).findOldestMails(3L, 10); will(returnValue(Collections.emptyList()));
+
+            one(javaMailSenderFactory).getJavaMailSender("SHOP10"); will(returnValue(sender10));
+            one(javaMailSenderFactory).getJavaMailSender("SHOP20"); will(returnValue(sender20));
+
+            exactly(2).of(sender10).createMimeMessage(); will(onConsecutiveCalls(returnValue(message1), returnValue(message2)));
+            one(sender20).createMimeMessage(); will(returnValue(message3));
+
+            one(mailComposer).convertMessage(mail1, message1);
+            one(mailComposer).convertMessage(mail2, message2);
+            one(mailComposer).convertMessage(mail3, message3);
+
+            one(sender10).send(new MimeMessage[] { message1, message2 }); // single connection for both
+            one(sender20).send(new MimeMessage[] { message3 }); will(throwException(new MailSendException(failed)));
+
+            one(mailService).deleteMails(Arrays.asList(1L, 2L));
+        }});
+
+        final BulkMailProcessorImpl processor = new BulkMailProcessorImpl(mailService, mailComposer, javaMailSenderFactory, systemService, runtimeAttributeService);
+        processor.setCycleExceptionsThreshold(3);
+        processor.setPageSize(10);
+        processor.setMessagesPerConnection(10);
+
+        processor.run();
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testRunConnectionFailureKeepsMails() throws Exception {
+
+        final MailService mailService = context.mock(MailService.class, "mailService");
+        final MailComposer mailComposer = context.mock(MailComposer.class, "mailComposer");
+        final JavaMailSenderFactory javaMailSenderFactory = context.mock(JavaMailSenderFactory.class, "javaMailSenderFactory");
+        final SystemService systemService = context.mock(SystemService.class, "systemService");
+        final RuntimeAttributeService runtimeAttributeService = context.mock(RuntimeAttributeService.class, "runtimeAttributeService");
+        final JavaMailSender sender10 = context.mock(JavaMailSender.class, "sender10");
+
+        final Mail mail1 = context.mock(Mail.class, "mail1");
+        final Mail mail2 = context.mock(Mail.class, "mail2");
+
+        final Session session = Session.getInstance(new Properties());
+        final MimeMessage message1 = new MimeMessage(session);
+        final MimeMessage message2 = new MimeMessage(session);
+
+        context.checking(new Expectations() {{
+            allowing(systemService).getAttributeValues(); will(returnValue(Collections.<String, AttrValueSystem>singletonMap("JOB_SEND_MAIL_PAUSE", null)));
+            allowing(systemService).getAttributeValue("JOB_SEND_MAIL_PAUSE"); will(returnValue("false"));
+
+            allowing(mail1).getMailId(); will(returnValue(1L));
+            allowing(mail1).getShopCode(); will(returnValue("SHOP10"));
+            allowing(mail2).getMailId(); will(returnValue(2L));
+            allowing(mail2).getShopCode(); will(returnValue("SHOP10"));
+            allowing(mail1).getRecipients(); allowing(mail1).getSubject();
+            allowing(mail2).getRecipients(); allowing(mail2).getSubject();
+
+            one(mailService).findOldestMails(null, 1); will(returnValue(Arrays.asList(mail1)));
+            one(mailService).findOldestMails(1L, 1); will(returnValue(Arrays.asList(mail2)));
+            one(mailService).findOldestMails(2L, 1); will(returnValue(Collections.emptyList()));
+
+            one(javaMailSenderFactory).getJavaMailSender("SHOP10"); will(returnValue(sender10));
+
+            one(sender10).createMimeMessage(); will(returnValue(message1));
+            one(mailComposer).convertMessage(mail1, message1);
+            one(sender10).send(new MimeMessage[] { message1 }); will(throwException(new MailSendException("Connection refused")));
+            // threshold of 1 is exceeded, so mail2 is skipped and nothing is deleted
+        }});
+
+        final BulkMailProcessorImpl processor = new BulkMailProcessorImpl(mailService, mailComposer, javaMailSenderFactory, systemService, runtimeAttributeService);
+        processor.setCycleExceptionsThreshold(1);
+        processor.setPageSize(1);
+
+        processor.run();
+
+        context.assertIsSatisfied();
+
+    }
+
+}
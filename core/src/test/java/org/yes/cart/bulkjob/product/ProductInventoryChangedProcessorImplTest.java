@@ -119,7 +119,7 @@ public class ProductInventoryChangedProcessorImplTest extends BaseCoreDBTestCase
                     }
 
                     @Override
-                    protected void flushCaches() {
+                    protected void flushCaches(final List<String> skuCodes) {
 
                     }
                 }.doRun(new Date()); // this should reindex product and it will be removed as there is no inventory
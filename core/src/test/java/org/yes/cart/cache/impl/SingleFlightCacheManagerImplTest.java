@@ -0,0 +1,255 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache.impl;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.ehcache.EhCacheCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 15:40
+ */
+public class SingleFlightCacheManagerImplTest {
+
+    @Test
+    public void testSingleFlight() throws Exception {
+
+        final SingleFlightCacheManagerImpl cacheManager = new SingleFlightCacheManagerImpl(new ConcurrentMapCacheManager());
+        cacheManager.setSingleFlightCaches(Collections.singleton("test"));
+
+        final Cache cache = cacheManager.getCache("test");
+
+        assertNull(cache.get("key")); // leader
+
+        final ExecutorService exec = Executors.newFixedThreadPool(4);
+        final List<Future<Cache.ValueWrapper>> waiters = new ArrayList<Future<Cache.ValueWrapper>>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(exec.submit(new Callable<Cache.ValueWrapper>() {
+                @Override
+                public Cache.ValueWrapper call() throws Exception {
+                    return cache.get("key");
+                }
+            }));
+        }
+
+        Thread.sleep(100L);
+        for (final Future<Cache.ValueWrapper> waiter : waiters) {
+            assertFalse(waiter.isDone());
+        }
+
+        cache.put("key", "value");
+
+        for (final Future<Cache.ValueWrapper> waiter : waiters) {
+            assertEquals("value", waiter.get(1, TimeUnit.SECONDS).get());
+        }
+        exec.shutdown();
+
+        assertEquals(1L, cacheManager.getLeaderCount());
+        assertEquals(4L, cacheManager.getCoalescedCount());
+        assertEquals(0L, cacheManager.getWaitTimeoutCount());
+
+    }
+
+    @Test
+    public void testLeaderFailureTimesOut() throws Exception {
+
+        final SingleFlightCacheManagerImpl cacheManager = new SingleFlightCacheManagerImpl(new ConcurrentMapCacheManager());
+        cacheManager.setSingleFlightCaches(Collections.singleton("*"));
+        cacheManager.setWaitTimeoutMs(100L);
+
+        final Cache cache = cacheManager.getCache("test");
+
+        assertNull(cache.get("key")); // leader that never puts
+
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        final Future<Cache.ValueWrapper> next = exec.submit(new Callable<Cache.ValueWrapper>() {
+            @Override
+            public Cache.ValueWrapper call() throws Exception {
+                return cache.get("key");
+            }
+        });
+
+        assertNull(next.get(1, TimeUnit.SECONDS)); // becomes new leader
+        exec.shutdown();
+
+        assertEquals(2L, cacheManager.getLeaderCount());
+        assertEquals(1L, cacheManager.getWaitTimeoutCount());
+
+    }
+
+    @Test
+    public void testLeaderExceptionPassedToWaiters() throws Exception {
+
+        final Mockery context = new Mockery();
+        final MethodInvocation invocation = context.mock(MethodInvocation.class);
+
+        final SingleFlightCacheManagerImpl cacheManager = new SingleFlightCacheManagerImpl(new ConcurrentMapCacheManager());
+        cacheManager.setSingleFlightCaches(Collections.singleton("test"));
+        cacheManager.setWaitTimeoutMs(60000L);
+
+        final Cache cache = cacheManager.getCache("test");
+
+        final CountDownLatch leading = new CountDownLatch(1);
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final IllegalArgumentException failure = new IllegalArgumentException("load failed");
+
+        final Action load = new CustomAction("failed load") {
+            @Override
+            public Object invoke(final Invocation inv) throws Throwable {
+                assertNull(cache.get("key")); // leader
+                leading.countDown();
+                waiting.await(1, TimeUnit.SECONDS);
+                Thread.sleep(100L);
+                throw failure;
+            }
+        };
+
+        context.checking(new Expectations() {{
+            allowing(invocation).proceed(); will(load);
+        }});
+
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        final Future<Cache.ValueWrapper> waiter = exec.submit(new Callable<Cache.ValueWrapper>() {
+            @Override
+            public Cache.ValueWrapper call() throws Exception {
+                leading.await(1, TimeUnit.SECONDS);
+                waiting.countDown();
+                return cache.get("key");
+            }
+        });
+
+        try {
+            cacheManager.invoke(invocation);
+            fail("Leader exception expected");
+        } catch (IllegalArgumentException iae) {
+            assertSame(failure, iae);
+        }
+
+        try {
+            waiter.get(1, TimeUnit.SECONDS);
+            fail("Leader exception expected");
+        } catch (ExecutionException ee) {
+            assertSame(failure, ee.getCause());
+        }
+        exec.shutdown();
+
+        assertNull(cache.get("key")); // flight released, new leader
+        assertEquals(2L, cacheManager.getLeaderCount());
+        assertEquals(0L, cacheManager.getWaitTimeoutCount());
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testReentrantLeaderDoesNotWait() throws Exception {
+
+        final SingleFlightCacheManagerImpl cacheManager = new SingleFlightCacheManagerImpl(new ConcurrentMapCacheManager());
+        cacheManager.setSingleFlightCaches(Collections.singleton("test"));
+
+        final Cache cache = cacheManager.getCache("test");
+
+        assertNull(cache.get("key"));
+        assertNull(cache.get("key"));
+
+        assertEquals(1L, cacheManager.getLeaderCount());
+
+    }
+
+    @Test
+    public void testRegionWithoutConfigurationIsNotDecorated() throws Exception {
+
+        final ConcurrentMapCacheManager target = new ConcurrentMapCacheManager();
+        final SingleFlightCacheManagerImpl cacheManager = new SingleFlightCacheManagerImpl(target);
+        cacheManager.setSingleFlightCaches(Collections.singleton("test"));
+
+        assertSame(target.getCache("other"), cacheManager.getCache("other"));
+        assertNotSame(target.getCache("test"), cacheManager.getCache("test"));
+
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+
+        final net.sf.ehcache.CacheManager ehcacheManager = net.sf.ehcache.CacheManager.create();
+        final net.sf.ehcache.Cache ehcache = new net.sf.ehcache.Cache("singleFlightRefreshAheadTest", 100, false, false, 1, 0);
+        ehcacheManager.addCache(ehcache);
+
+        try {
+
+            final SingleFlightCacheManagerImpl cacheManager = new SingleFlightCacheManagerImpl(new CacheManager() {
+                @Override
+                public Cache getCache(final String name) {
+                    return new EhCacheCache(ehcache);
+                }
+
+                @Override
+                public Collection<String> getCacheNames() {
+                    return Collections.singletonList(ehcache.getName());
+                }
+            });
+            cacheManager.setRefreshAheadRatios(Collections.singletonMap(ehcache.getName(), 0.1d));
+
+            final Cache cache = cacheManager.getCache(ehcache.getName());
+
+            cache.put("key", "value");
+            assertEquals("value", cache.get("key").get());
+
+            Thread.sleep(150L);
+
+            assertNull(cache.get("key")); // refresh
+
+            final ExecutorService exec = Executors.newSingleThreadExecutor();
+            final Future<Cache.ValueWrapper> other = exec.submit(new Callable<Cache.ValueWrapper>() {
+                @Override
+                public Cache.ValueWrapper call() throws Exception {
+                    return cache.get("key");
+                }
+            });
+            assertEquals("value", other.get(1, TimeUnit.SECONDS).get()); // stale value while refreshing
+            exec.shutdown();
+
+            cache.put("key", "value2");
+            assertEquals("value2", cache.get("key").get());
+
+            assertEquals(1L, cacheManager.getRefreshAheadCount());
+
+        } finally {
+            ehcacheManager.removeCache(ehcache.getName());
+        }
+
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cache.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.yes.cart.domain.entity.Identifiable;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 14:40
+ */
+public class TaggedCacheManagerImplTest {
+
+    private TaggedCacheManagerImpl cacheManager;
+
+    @Before
+    public void setUp() throws Exception {
+
+        cacheManager = new TaggedCacheManagerImpl(new ConcurrentMapCacheManager());
+        final Map<String, List<String>> rules = new HashMap<String, List<String>>();
+        rules.put("price", Arrays.asList("Product:0", "ProductSkuCode:1", "SkuPrice:value"));
+        rules.put("product", Arrays.asList("Product:0"));
+        cacheManager.setTagRules(rules);
+
+    }
+
+    @Test
+    public void testEvictTaggedByArguments() throws Exception {
+
+        final Cache cache = cacheManager.getCache("price");
+
+        final Object p1 = new ArgumentsKeyGenerator.ArgumentsKey(1L, null, 10L, "EUR");
+        final Object p2 = new ArgumentsKeyGenerator.ArgumentsKey(2L, null, 10L, "EUR");
+        final Object s1 = new ArgumentsKeyGenerator.ArgumentsKey(null, "SKU-1", 10L, "EUR");
+        final Object s2 = new ArgumentsKeyGenerator.ArgumentsKey(null, "SKU-2", 10L, "EUR");
+
+        cache.put(p1, "P1");
+        cache.put(p2, "P2");
+        cache.put(s1, "S1");
+        cache.put(s2, "S2");
+
+        assertEquals(4, cacheManager.getTagCardinality("price"));
+
+        assertEquals(2, cacheManager.evictTagged("price", Arrays.asList("Product:1", "ProductSkuCode:SKU-1")));
+
+        assertNull(cache.get(p1));
+        assertNotNull(cache.get(p2));
+        assertNull(cache.get(s1));
+        assertNotNull(cache.get(s2));
+
+        assertEquals(2, cacheManager.getTagCardinality("price"));
+        assertEquals(2L, cacheManager.getHitCount("price"));
+        assertEquals(2L, cacheManager.getMissCount("price"));
+        assertEquals(1L, cacheManager.getTagEvictionCount());
+
+    }
+
+    @Test
+    public void testEvictTaggedByValue() throws Exception {
+
+        final Cache cache = cacheManager.getCache("price");
+
+        final Object k1 = new ArgumentsKeyGenerator.ArgumentsKey(null, null, 10L, "EUR");
+        final Object k2 = new ArgumentsKeyGenerator.ArgumentsKey(null, null, 20L, "EUR");
+
+        cache.put(k1, Arrays.asList(new IdentifiableStub(100L), new IdentifiableStub(101L)));
+        cache.put(k2, new IdentifiableStub(200L));
+
+        assertEquals(1, cacheManager.evictTagged("price", Collections.singletonList("SkuPrice:101")));
+
+        assertNull(cache.get(k1));
+        assertNotNull(cache.get(k2));
+
+    }
+
+    @Test
+    public void testEvictTaggedAlwaysEvictsUntagged() throws Exception {
+
+        final Cache cache = cacheManager.getCache("price");
+
+        final Object tagged = new ArgumentsKeyGenerator.ArgumentsKey(1L, null, 10L, "EUR");
+        final Object untagged = new ArgumentsKeyGenerator.ArgumentsKey(null, null, 10L, "EUR");
+
+        cache.put(tagged, "T");
+        cache.put(untagged, "U");
+
+        assertEquals(1, cacheManager.evictTagged("price", Collections.singletonList("Product:2")));
+
+        assertNotNull(cache.get(tagged));
+        assertNull(cache.get(untagged));
+
+    }
+
+    @Test
+    public void testSingleArgumentKey() throws Exception {
+
+        final Cache cache = cacheManager.getCache("product");
+
+        cache.put(1L, "P1");
+        cache.put(2L, "P2");
+
+        assertEquals(1, cacheManager.evictTagged("product", Collections.singletonList("Product:1")));
+
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+
+    }
+
+    @Test
+    public void testEvictTaggedRegionWithoutRules() throws Exception {
+
+        final Cache cache = cacheManager.getCache("other");
+
+        cache.put(1L, "P1");
+        cache.put(2L, "P2");
+
+        assertFalse(cacheManager.isTagged("other"));
+        assertEquals(-1, cacheManager.evictTagged("other", Collections.singletonList("Product:1")));
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(1L, cacheManager.getFallbackClearCount());
+
+    }
+
+    @Test
+    public void testIndexOverflowClearsRegion() throws Exception {
+
+        cacheManager.setMaxIndexSize(2);
+
+        final Cache cache = cacheManager.getCache("product");
+
+        cache.put(1L, "P1");
+        cache.put(2L, "P2");
+        cache.put(3L, "P3");
+
+        assertNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(3L));
+        assertEquals(1, cacheManager.getTagCardinality("product"));
+        assertEquals(1L, cacheManager.getFallbackClearCount());
+
+    }
+
+    @Test
+    public void testEvictTaggedRemovesKeyFromAllTags() throws Exception {
+
+        final Cache cache = cacheManager.getCache("price");
+
+        final Object k1 = new ArgumentsKeyGenerator.ArgumentsKey(1L, "SKU-1", 10L, "EUR");
+
+        cache.put(k1, "K1");
+        assertEquals(2, cacheManager.getTagCardinality("price"));
+
+        assertEquals(1, cacheManager.evictTagged("price", Collections.singletonList("Product:1")));
+        assertEquals(0, cacheManager.getTagCardinality("price"));
+
+        cache.put(k1, new IdentifiableStub(100L));
+        assertEquals(3, cacheManager.getTagCardinality("price"));
+        cache.put(k1, "K1"); // re-put drops tags of previous value
+        assertEquals(2, cacheManager.getTagCardinality("price"));
+
+        cache.evict(k1);
+        assertEquals(0, cacheManager.getTagCardinality("price"));
+
+    }
+
+    @Test
+    public void testConcurrentEvictAndPut() throws Exception {
+
+        final Cache cache = cacheManager.getCache("price");
+
+        final int threads = 8;
+        final int iterations = 5000;
+        final List<String> productTags = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            productTags.add("Product:" + i);
+        }
+
+        final ExecutorService exec = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> results = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+            final boolean evictor = t % 2 == 0;
+            results.add(exec.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    start.await();
+                    final Random random = new Random();
+                    for (int i = 0; i < iterations; i++) {
+                        final long product = random.nextInt(productTags.size());
+                        if (evictor) {
+                            cacheManager.evictTagged("price", Collections.singletonList("Product:" + product));
+                        } else {
+                            cache.put(new ArgumentsKeyGenerator.ArgumentsKey(product, "SKU-" + random.nextInt(100), 10L, "EUR"), "V");
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (final Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        exec.shutdown();
+
+        cacheManager.evictTagged("price", productTags);
+
+        // every key that made it into region is indexed, and no tag is left behind
+        assertEquals(0, cacheManager.getTagCardinality("price"));
+        for (int product = 0; product < productTags.size(); product++) {
+            for (int sku = 0; sku < 100; sku++) {
+                assertNull(cache.get(new ArgumentsKeyGenerator.ArgumentsKey((long) product, "SKU-" + sku, 10L, "EUR")));
+            }
+        }
+
+    }
+
+    @Test
+    public void testArgumentsKey() throws Exception {
+
+        final ArgumentsKeyGenerator generator = new ArgumentsKeyGenerator();
+
+        final Object key1 = generator.generate(null, null, 1L, "SKU", new String[] { "A" });
+        final Object key2 = generator.generate(null, null, 1L, "SKU", new String[] { "A" });
+        final Object key3 = generator.generate(null, null, 1L, "SKU", new String[] { "B" });
+
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertFalse(key1.equals(key3));
+
+        assertEquals(1L, generator.generate(null, null, 1L));
+
+    }
+
+    private static class IdentifiableStub implements Identifiable {
+
+        private final long id;
+
+        private IdentifiableStub(final long id) {
+            this.id = id;
+        }
+
+        public long getId() {
+            return id;
+        }
+    }
+
+}
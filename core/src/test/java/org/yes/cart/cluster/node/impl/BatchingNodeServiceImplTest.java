@@ -0,0 +1,317 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.node.impl;
+
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.yes.cart.cluster.node.*;
+import org.yes.cart.service.async.model.AsyncContext;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 18:20
+ */
+public class BatchingNodeServiceImplTest {
+
+    @Test
+    public void testBatchAndCoalesce() throws Exception {
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+
+            final LoopbackNodeService cluster = new LoopbackNodeService();
+            final BatchingNodeServiceImpl nodeService = new BatchingNodeServiceImpl(
+                    cluster, new ConcurrentTaskScheduler(scheduler), new SyncTaskExecutor());
+            nodeService.setBatchedSubjects(Collections.singleton("CacheDirector.onCacheableChange"));
+            nodeService.setBatchWindowMs(100L);
+
+            final List<Serializable> received = new CopyOnWriteArrayList<Serializable>();
+            nodeService.subscribe("CacheDirector.onCacheableChange", new MessageListener() {
+                @Override
+                public Serializable onMessageReceived(final Message message) {
+                    received.add(message.getPayload());
+                    return 1;
+                }
+            });
+
+            for (int i = 0; i < 10; i++) {
+                nodeService.broadcast(new RspMessageImpl("YUM", Arrays.asList("YES0"), "CacheDirector.onCacheableChange", (long) (i % 3)));
+            }
+
+            assertEquals(3, nodeService.getPendingCount());
+            assertTrue(cluster.sent.isEmpty());
+
+            Thread.sleep(500L);
+
+            assertEquals(0, nodeService.getPendingCount());
+            assertEquals(1, cluster.sent.size());
+            assertEquals("CacheDirector.onCacheableChange.batch", cluster.sent.get(0).getSubject());
+            assertEquals(Arrays.asList("YES0"), cluster.sent.get(0).getTargets());
+            assertEquals(Arrays.<Serializable>asList(0L, 1L, 2L), received);
+
+            final String[] stats = nodeService.getSubjectStatistics();
+            assertEquals(1, stats.length);
+            assertTrue(stats[0], stats[0].contains("sentBatches=1, sentItems=3, coalesced=7"));
+            assertTrue(stats[0], stats[0].contains("receivedBatches=1, receivedItems=3"));
+
+        } finally {
+            scheduler.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testMaxBatchSizeFlushesImmediately() throws Exception {
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+
+            final LoopbackNodeService cluster = new LoopbackNodeService();
+            final BatchingNodeServiceImpl nodeService = new BatchingNodeServiceImpl(
+                    cluster, new ConcurrentTaskScheduler(scheduler), new SyncTaskExecutor());
+            nodeService.setBatchedSubjects(Collections.singleton("BackdoorService.reindexProduct"));
+            nodeService.setBatchWindowMs(60000L);
+            nodeService.setMaxBatchSize(2);
+
+            nodeService.broadcast(new RspMessageImpl("YUM", null, "BackdoorService.reindexProduct", 1L));
+            nodeService.broadcast(new RspMessageImpl("YUM", null, "BackdoorService.reindexProduct", 2L));
+
+            Thread.sleep(200L);
+
+            assertEquals(1, cluster.sent.size());
+            assertNull(cluster.sent.get(0).getTargets());
+
+            nodeService.broadcast(new RspMessageImpl("YUM", null, "BackdoorService.reindexProduct", 3L));
+            assertEquals(1, nodeService.getPendingCount());
+
+        } finally {
+            scheduler.shutdown();
+        }
+
+    }
+
+    @Test
+    public void testNotBatchedSubjectIsPassedThrough() throws Exception {
+
+        final LoopbackNodeService cluster = new LoopbackNodeService();
+        final BatchingNodeServiceImpl nodeService = new BatchingNodeServiceImpl(
+                cluster, new ConcurrentTaskScheduler(), new SyncTaskExecutor());
+        nodeService.setBatchedSubjects(Collections.singleton("CacheDirector.onCacheableChange"));
+
+        nodeService.subscribe("BackdoorService.ping", new MessageListener() {
+            @Override
+            public Serializable onMessageReceived(final Message message) {
+                return "OK";
+            }
+        });
+
+        final RspMessage ping = new RspMessageImpl("YUM", null, "BackdoorService.ping", null);
+        nodeService.broadcast(ping);
+
+        assertEquals(1, cluster.sent.size());
+        assertSame(ping, cluster.sent.get(0));
+        assertEquals(1, ping.getResponses().size());
+        assertFalse(cluster.listeners.containsKey("BackdoorService.ping.batch"));
+
+    }
+
+    @Test
+    public void testPrecedingSubjectsAreSentFirst() throws Exception {
+
+        final LoopbackNodeService cluster = new LoopbackNodeService();
+        final BatchingNodeServiceImpl nodeService = new BatchingNodeServiceImpl(
+                cluster, new ConcurrentTaskScheduler(), new SyncTaskExecutor());
+        nodeService.setBatchedSubjects(new LinkedHashSet<String>(Arrays.asList("BackdoorService.reindexProduct", "CacheDirector.onCacheableChange")));
+        nodeService.setBatchWindowMs(60000L);
+
+        nodeService.broadcast(new RspMessageImpl("YUM", null, "BackdoorService.reindexProduct", 1L));
+        nodeService.broadcast(new RspMessageImpl("YUM", null, "CacheDirector.onCacheableChange", 1L));
+
+        nodeService.flush(nodeService.pending.get("CacheDirector.onCacheableChange"));
+
+        assertEquals(2, cluster.sent.size());
+        assertEquals("BackdoorService.reindexProduct.batch", cluster.sent.get(0).getSubject());
+        assertEquals("CacheDirector.onCacheableChange.batch", cluster.sent.get(1).getSubject());
+        assertEquals(0, nodeService.getPendingCount());
+
+    }
+
+    @Test
+    public void testFailedBatchIsSentOneByOne() throws Exception {
+
+        final LoopbackNodeService cluster = new LoopbackNodeService();
+        cluster.failing.add("CacheDirector.onCacheableChange.batch");
+        final BatchingNodeServiceImpl nodeService = new BatchingNodeServiceImpl(
+                cluster, new ConcurrentTaskScheduler(), new SyncTaskExecutor());
+        nodeService.setBatchedSubjects(Collections.singleton("CacheDirector.onCacheableChange"));
+        nodeService.setBatchWindowMs(60000L);
+
+        final List<Serializable> received = new CopyOnWriteArrayList<Serializable>();
+        nodeService.subscribe("CacheDirector.onCacheableChange", new MessageListener() {
+            @Override
+            public Serializable onMessageReceived(final Message message) {
+                received.add(message.getPayload());
+                return 1;
+            }
+        });
+
+        nodeService.broadcast(new RspMessageImpl("YUM", null, "CacheDirector.onCacheableChange", 1L));
+        nodeService.broadcast(new RspMessageImpl("YUM", null, "CacheDirector.onCacheableChange", 2L));
+
+        nodeService.flush(nodeService.pending.get("CacheDirector.onCacheableChange"));
+
+        assertEquals(Arrays.<Serializable>asList(1L, 2L), received);
+        assertEquals(2, cluster.sent.size());
+        assertEquals("CacheDirector.onCacheableChange", cluster.sent.get(0).getSubject());
+
+        final String[] stats = nodeService.getSubjectStatistics();
+        assertTrue(stats[0], stats[0].contains("fallbackBatches=1, failedItems=0"));
+
+    }
+
+    @Test
+    public void testBatchesAreKeptPerContextUser() throws Exception {
+
+        final LoopbackNodeService cluster = new LoopbackNodeService();
+        final BatchingNodeServiceImpl nodeService = new BatchingNodeServiceImpl(
+                cluster, new ConcurrentTaskScheduler(), new SyncTaskExecutor());
+        nodeService.setBatchedSubjects(Collections.singleton("CacheDirector.onCacheableChange"));
+        nodeService.setBatchWindowMs(60000L);
+
+        final AsyncContext admin = createContext("admin");
+        final AsyncContext editor = createContext("editor");
+
+        nodeService.broadcast(new ContextRspMessageImpl("YUM", null, "CacheDirector.onCacheableChange", 1L, admin));
+        nodeService.broadcast(new ContextRspMessageImpl("YUM", null, "CacheDirector.onCacheableChange", 2L, editor));
+        nodeService.broadcast(new ContextRspMessageImpl("YUM", null, "CacheDirector.onCacheableChange", 3L, admin));
+
+        assertEquals(2, nodeService.pending.size());
+
+        nodeService.flush(nodeService.pending.get("CacheDirector.onCacheableChange|admin"));
+
+        assertEquals(1, cluster.sent.size());
+        assertSame(admin, ((ContextRspMessage) cluster.sent.get(0)).getAsyncContext());
+        assertEquals(1, nodeService.getPendingCount());
+
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+
+        final List<Serializable> items = new ArrayList<Serializable>();
+        for (long i = 0; i < 1000; i++) {
+            final HashMap<String, Object> payload = new HashMap<String, Object>();
+            payload.put("entityOperation", "UPDATE");
+            payload.put("entityName", "ProductEntity");
+            payload.put("pkValue", i);
+            items.add(payload);
+        }
+
+        final byte[] data = BatchingNodeServiceImpl.compress(items);
+        assertEquals(items, BatchingNodeServiceImpl.decompress(data));
+
+    }
+
+    private AsyncContext createContext(final String username) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(AsyncContext.USERNAME, username);
+        return new AsyncContext() {
+            public <T> T getAttribute(final String name) {
+                return (T) attributes.get(name);
+            }
+
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+        };
+    }
+
+
+    /**
+     * Delivers all messages to local listeners.
+     */
+    private static class LoopbackNodeService implements NodeService {
+
+        private final List<Message> sent = new CopyOnWriteArrayList<Message>();
+        private final Set<String> failing = new HashSet<String>();
+        private final Map<String, List<MessageListener>> listeners = new HashMap<String, List<MessageListener>>();
+
+        public String getCurrentNodeId() {
+            return "YES0";
+        }
+
+        public Map<String, String> getConfiguration() {
+            return Collections.emptyMap();
+        }
+
+        public List<Node> getCluster() {
+            return Collections.emptyList();
+        }
+
+        public Node getCurrentNode() {
+            return null;
+        }
+
+        public Node getYumNode() {
+            return null;
+        }
+
+        public List<Node> getYesNodes() {
+            return Collections.emptyList();
+        }
+
+        public List<Node> getOtherYesNodes() {
+            return Collections.emptyList();
+        }
+
+        public void broadcast(final Message message) {
+            if (failing.contains(message.getSubject())) {
+                throw new IllegalStateException("Unable to send " + message.getSubject());
+            }
+            sent.add(message);
+            final List<MessageListener> subjectListeners = listeners.get(message.getSubject());
+            if (subjectListeners != null) {
+                for (final MessageListener listener : subjectListeners) {
+                    final Serializable rsp = listener.onMessageReceived(message);
+                    if (message instanceof RspMessage) {
+                        ((RspMessage) message).addResponse(new BasicMessageImpl("YES0", message.getSubject(), rsp));
+                    }
+                }
+            }
+        }
+
+        public void subscribe(final String subject, final MessageListener listener) {
+            List<MessageListener> subjectListeners = listeners.get(subject);
+            if (subjectListeners == null) {
+                subjectListeners = new ArrayList<MessageListener>();
+                listeners.put(subject, subjectListeners);
+            }
+            subjectListeners.add(listener);
+        }
+    }
+
+}
@@ -799,6 +799,52 @@ public class FullTextSearchConfigurationTest extends AbstractTestDAO {
 
     }
 
+    @Test
+    public void testCombinedSearchAndFaceting() throws InterruptedException {
+
+        getTx().execute(new TransactionCallbackWithoutResult() {
+            public void doInTransactionWithoutResult(TransactionStatus status) {
+
+                productDao.fullTextSearchReindex(false);
+
+                final List<FilteredNavigationRecordRequest> requests = Arrays.<FilteredNavigationRecordRequest>asList(
+                        new FilteredNavigationRecordRequestImpl("brandFacet", ProductSearchQueryBuilder.BRAND_FIELD),
+                        new FilteredNavigationRecordRequestImpl("MATERIAL", "facet_MATERIAL"),
+                        new FilteredNavigationRecordRequestImpl("MATERIAL_MV", "facet_MATERIAL", true),
+                        new FilteredNavigationRecordRequestImpl("SIZE", "facet_SIZE", true)
+                );
+
+                final NavigationContext context = luceneQueryFactory.getFilteredNavigationQueryChain(10L, null, false, null);
+
+                final ProductSearchResultPageDTO expectedPage = productService.getProductSearchResultDTOByQuery(context.getProductQuery(), 0, 5, null, false);
+                final Map<String, List<Pair<String, Integer>>> expectedFacets = productDao.fullTextSearchNavigation(context.getProductQuery(), requests);
+
+                final Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> combined =
+                        productService.getProductSearchResultDTOAndNavigationByQuery(context.getProductQuery(), 0, 5, null, false, requests);
+
+                assertEquals(expectedPage.getTotalHits(), combined.getFirst().getTotalHits());
+                assertEquals(expectedPage.getResults().size(), combined.getFirst().getResults().size());
+                for (int i = 0; i < expectedPage.getResults().size(); i++) {
+                    assertEquals(expectedPage.getResults().get(i).getId(), combined.getFirst().getResults().get(i).getId());
+                }
+
+                assertEquals(4, combined.getSecond().size());
+                for (final FilteredNavigationRecordRequest request : requests) {
+                    final List<Pair<String, Integer>> expected = expectedFacets.get(request.getFacetName());
+                    final List<Pair<String, Integer>> actual = combined.getSecond().get(request.getFacetName());
+                    assertNotNull(request.getFacetName(), actual);
+                    assertEquals(request.getFacetName(), new HashSet<Pair<String, Integer>>(expected), new HashSet<Pair<String, Integer>>(actual));
+                }
+                assertEquals(new HashSet<Pair<String, Integer>>(combined.getSecond().get("MATERIAL")),
+                        new HashSet<Pair<String, Integer>>(combined.getSecond().get("MATERIAL_MV")));
+
+                status.setRollbackOnly();
+
+            }
+        });
+
+    }
+
 
     @Test
     public void testMultiValueSpecificFieldSearch() throws InterruptedException {
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion.impl;
+
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yes.cart.domain.entity.Promotion;
+import org.yes.cart.domain.entity.impl.PromotionEntity;
+import org.yes.cart.promotion.PromoTriplet;
+import org.yes.cart.promotion.PromotionAction;
+import org.yes.cart.promotion.PromotionCondition;
+import org.yes.cart.service.domain.PromotionCouponService;
+import org.yes.cart.shoppingcart.CartItem;
+import org.yes.cart.shoppingcart.MutableShoppingCart;
+import org.yes.cart.shoppingcart.impl.ShoppingCartImpl;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:20
+ */
+public class PromotionCandidateIndexTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private final PromotionCouponService couponService = context.mock(PromotionCouponService.class, "couponService");
+
+    @Test
+    public void testCandidatesPreserveBucketOrder() throws Exception {
+
+        final PromotionCandidateIndex index = new PromotionCandidateIndex();
+
+        final PromoTriplet p1 = triplet("P1");
+        final PromoTriplet p2 = triplet("P2");
+        final PromoTriplet p3 = triplet("P3");
+        final PromoTriplet p4 = triplet("P4");
+        final PromoTriplet p5 = triplet("P5");
+
+        index.add(p1, false, PromotionConditionTargets.derive("['A'].contains(shoppingCartItem.productSkuCode)"));
+        index.add(p2, true, PromotionConditionTargets.ANY);
+        index.add(p3, false, PromotionConditionTargets.ANY);
+        index.add(p4, true, PromotionConditionTargets.derive("['A', 'B'].contains(shoppingCartItem.productSkuCode)"));
+        index.add(p5, true, PromotionConditionTargets.derive("customerTags.contains('VIP')"));
+
+        assertEquals(3, index.getBuckets().size());
+
+        final boolean[] anonymous = index.matchCustomer(null, Collections.<String>emptyList());
+
+        final List<List<PromoTriplet>> forA = index.getCandidates(anonymous, "A");
+        assertEquals(3, forA.size());
+        assertEquals(Arrays.asList(p2, p4), forA.get(0));
+        assertEquals(Arrays.asList(p1), forA.get(1));
+        assertEquals(Arrays.asList(p3), forA.get(2));
+
+        final List<List<PromoTriplet>> forC = index.getCandidates(anonymous, "C");
+        assertEquals(2, forC.size());
+        assertEquals(Arrays.asList(p2), forC.get(0));
+        assertEquals(Arrays.asList(p3), forC.get(1));
+
+        final boolean[] vip = index.matchCustomer(null, Arrays.asList("VIP"));
+
+        final List<List<PromoTriplet>> forCVip = index.getCandidates(vip, "C");
+        assertEquals(2, forCVip.size());
+        assertEquals(Arrays.asList(p2, p5), forCVip.get(0));
+        assertEquals(Arrays.asList(p3), forCVip.get(1));
+
+    }
+
+    @Test
+    public void testCandidatesNotTargeted() throws Exception {
+
+        final PromotionCandidateIndex index = new PromotionCandidateIndex();
+
+        index.add(triplet("P1"), true, PromotionConditionTargets.ANY);
+        index.add(triplet("P2"), false, PromotionConditionTargets.ANY);
+
+        assertNull(index.matchCustomer(null, null));
+        assertSame(index.getBuckets(), index.getCandidates(null, "A"));
+
+    }
+
+    @Test
+    public void testApplyItemPromoEvaluatesCandidatesOnly() throws Exception {
+
+        final EvaluationCounter counter = new EvaluationCounter();
+        final PromotionContextImpl ctx = createContext(counter, 300, true);
+        final MutableShoppingCart cart = createCart(10);
+
+        ctx.applyItemPromo(null, cart);
+
+        // each item SKU is targeted by 3 promotions
+        assertEquals(30, counter.count);
+        for (final CartItem item : cart.getCartItemList()) {
+            assertTrue(item.isPromoApplied());
+        }
+
+    }
+
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testApplyItemPromoPerformance() throws Exception {
+
+        final int promotions = 300;
+        final int runs = 200;
+
+        for (final int items : new int[] { 1, 10, 50, 100, 200 }) {
+
+            for (final boolean indexed : new boolean[] { false, true }) {
+
+                final EvaluationCounter counter = new EvaluationCounter();
+                final PromotionContextImpl ctx = createContext(counter, promotions, indexed);
+                final MutableShoppingCart cart = createCart(items);
+
+                for (int i = 0; i < runs; i++) {
+                    ctx.applyItemPromo(null, cart); // warm up
+                }
+                counter.count = 0;
+
+                final long start = System.nanoTime();
+                for (int i = 0; i < runs; i++) {
+                    ctx.applyItemPromo(null, cart);
+                }
+                final long finish = System.nanoTime();
+
+                System.out.println((indexed ? "Indexed  " : "Full scan") + ": " + items + " items, " + promotions + " promotions took ~"
+                        + ((finish - start) / runs / 1000L) + "us per cart, " + (counter.count / runs) + " evaluations per cart");
+
+            }
+
+        }
+
+    }
+
+    private PromotionContextImpl createContext(final EvaluationCounter counter, final int promotions, final boolean indexed) {
+
+        final PromotionContextImpl ctx = new PromotionContextImpl("SHOP10", new BestValuePromotionApplicationStrategyImpl(couponService));
+
+        for (int i = 0; i < promotions; i++) {
+            final String sku = "SKU-" + (i % 100);
+            final PromotionEntity promotion = new PromotionEntity();
+            promotion.setPromotionId(i);
+            promotion.setCode("PROMO-" + i);
+            promotion.setPromoType(Promotion.TYPE_ITEM);
+            promotion.setCanBeCombined(i % 2 == 0);
+            promotion.setEligibilityCondition("['" + sku + "'].contains(shoppingCartItem.productSkuCode)");
+            final PromotionCondition condition = new SkuCondition(i, promotion.getCode(), sku, counter);
+            ctx.addPromotion(promotion, condition, new NoopAction(),
+                    indexed ? PromotionConditionTargets.of(promotion, condition) : PromotionConditionTargets.ANY);
+        }
+        return ctx;
+
+    }
+
+    private MutableShoppingCart createCart(final int items) {
+
+        final MutableShoppingCart cart = new ShoppingCartImpl();
+        for (int i = 0; i < items; i++) {
+            final String sku = "SKU-" + i;
+            cart.addProductSkuToCart(sku, BigDecimal.ONE);
+            cart.setProductSkuPrice(sku, new BigDecimal("100.00"), new BigDecimal("100.00"));
+        }
+        return cart;
+
+    }
+
+    private PromoTriplet triplet(final String code) {
+        final PromotionEntity promotion = new PromotionEntity();
+        promotion.setCode(code);
+        return new PromoTripletImpl(promotion, null, null);
+    }
+
+    private static class EvaluationCounter {
+
+        private int count;
+
+    }
+
+    private static class SkuCondition implements PromotionCondition {
+
+        private final long id;
+        private final String code;
+        private final String sku;
+        private final EvaluationCounter counter;
+
+        private SkuCondition(final long id, final String code, final String sku, final EvaluationCounter counter) {
+            this.id = id;
+            this.code = code;
+            this.sku = sku;
+            this.counter = counter;
+        }
+
+        public long getPromotionId() {
+            return id;
+        }
+
+        public String getPromotionCode() {
+            return code;
+        }
+
+        public boolean isEligible(final Map<String, Object> context) {
+            counter.count++;
+            return sku.equals(((CartItem) context.get(VAR_CART_ITEM)).getProductSkuCode());
+        }
+    }
+
+    private static class NoopAction implements PromotionAction {
+
+        public BigDecimal testDiscountValue(final Map<String, Object> context) {
+            return new BigDecimal("0.1");
+        }
+
+        public void perform(final Map<String, Object> context) {
+            final MutableShoppingCart cart = (MutableShoppingCart) context.get(PromotionCondition.VAR_CART);
+            final CartItem item = (CartItem) context.get(PromotionCondition.VAR_CART_ITEM);
+            cart.setProductSkuPromotion(item.getProductSkuCode(), new BigDecimal("90.00"), (String) context.get(PromotionCondition.VAR_PROMOTION_CODE));
+        }
+    }
+
+}
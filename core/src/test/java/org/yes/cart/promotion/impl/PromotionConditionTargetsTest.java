@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion.impl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:05
+ */
+public class PromotionConditionTargetsTest {
+
+    @Test
+    public void testDeriveBlank() throws Exception {
+
+        assertSame(PromotionConditionTargets.ANY, PromotionConditionTargets.derive(null));
+        assertSame(PromotionConditionTargets.ANY, PromotionConditionTargets.derive("  "));
+
+    }
+
+    @Test
+    public void testDeriveSkuList() throws Exception {
+
+        final PromotionConditionTargets targets =
+                PromotionConditionTargets.derive("['CC_TEST4', \"CC_TEST5\"].contains(shoppingCartItem.productSkuCode)");
+
+        assertEquals(new HashSet<String>(Arrays.asList("CC_TEST4", "CC_TEST5")), targets.getSkuCodes());
+        assertTrue(targets.matchesSku("CC_TEST4"));
+        assertFalse(targets.matchesSku("CC_TEST6"));
+        assertTrue(targets.matchesCustomer(null, Collections.<String>emptyList()));
+
+    }
+
+    @Test
+    public void testDeriveConjunction() throws Exception {
+
+        final PromotionConditionTargets targets = PromotionConditionTargets.derive(
+                "shoppingCartItem.productSkuCode == 'CC_TEST4' && shoppingCartItem.qty > 5 " +
+                        "&& customerTags.contains('VIP') && customer?.customerType == 'B2B'");
+
+        assertEquals(Collections.singleton("CC_TEST4"), targets.getSkuCodes());
+        assertTrue(targets.matchesCustomer("B2B", Arrays.asList("VIP", "OTHER")));
+        assertFalse(targets.matchesCustomer("B2C", Arrays.asList("VIP", "OTHER")));
+        assertFalse(targets.matchesCustomer("B2B", Arrays.asList("OTHER")));
+        assertFalse(targets.matchesCustomer(null, Collections.<String>emptyList()));
+
+    }
+
+    @Test
+    public void testDeriveIntersection() throws Exception {
+
+        final PromotionConditionTargets targets = PromotionConditionTargets.derive(
+                "['A', 'B'].contains(shoppingCartItem.productSkuCode) && ['B', 'C'].contains(shoppingCartItem.productSkuCode)");
+
+        assertEquals(Collections.singleton("B"), targets.getSkuCodes());
+
+    }
+
+    @Test
+    public void testDeriveUnsafe() throws Exception {
+
+        assertTrue(PromotionConditionTargets.derive("shoppingCartItem.qty > 5").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "['A'].contains(shoppingCartItem.productSkuCode) || shoppingCartItem.qty > 5").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "!['A'].contains(shoppingCartItem.productSkuCode)").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "registered ? ['A'].contains(shoppingCartItem.productSkuCode) : true").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "shoppingCart.cartItemList.every { ['A'].contains(shoppingCartItem.productSkuCode) }").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "if (registered) { return true; }\nreturn ['A'].contains(shoppingCartItem.productSkuCode);").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "shoppingCartItem.productSkuCode == \"${customer.tag}\"").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "shoppingCartItem.qty > 5\n['A'].contains(shoppingCartItem.productSkuCode)").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "(shoppingCartItem.qty > 5 && shoppingCartItem.productSkuCode == 'A'").isAny());
+
+    }
+
+    @Test
+    public void testDeriveNegation() throws Exception {
+
+        assertTrue(PromotionConditionTargets.derive(
+                "!(shoppingCartItem.qty > 1 && shoppingCartItem.productSkuCode == 'A' && registered)").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "!(customerTags.contains('VIP') && customer?.customerType == 'B2B')").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "registered && !(shoppingCartItem.productSkuCode == 'A' && shoppingCartItem.qty > 1)").isAny());
+        assertTrue(PromotionConditionTargets.derive(
+                "registered && (shoppingCartItem.productSkuCode == 'A' && shoppingCartItem.qty > 1) == false").isAny());
+
+        // negated group does not hide top level conjuncts
+        final PromotionConditionTargets targets = PromotionConditionTargets.derive(
+                "shoppingCartItem.productSkuCode == 'B' && !(shoppingCartItem.productSkuCode == 'A' && registered)");
+        assertEquals(Collections.singleton("B"), targets.getSkuCodes());
+
+    }
+
+}
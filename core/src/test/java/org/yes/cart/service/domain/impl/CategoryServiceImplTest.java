@@ -217,6 +217,44 @@ public class CategoryServiceImplTest extends BaseCoreDBTestCase {
 
     }
 
+    @Test
+    public void testGetChildCategoriesAfterCategoryChange() throws Exception {
+
+        // warm up snapshot and child categories cache
+        final List<Category> before = categoryService.getChildCategories(101L);
+        for (final Category child : before) {
+            assertFalse("TEST-TREE-CHANGE".equals(child.getGuid()));
+        }
+
+        final Category newCategory = categoryService.getGenericDao().getEntityFactory().getByIface(Category.class);
+        newCategory.setGuid("TEST-TREE-CHANGE");
+        newCategory.setName("TEST-TREE-CHANGE");
+        newCategory.setParentId(101L);
+        final Category saved = categoryService.create(newCategory);
+
+        try {
+
+            // snapshot is rebuilt in background, child categories must not stay stale after swap
+            boolean found = false;
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (!found && System.currentTimeMillis() < deadline) {
+                for (final Category child : categoryService.getChildCategories(101L)) {
+                    if (child.getCategoryId() == saved.getCategoryId()) {
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    Thread.sleep(50L);
+                }
+            }
+            assertTrue("New category must be visible once snapshot is rebuilt", found);
+
+        } finally {
+            categoryService.delete(saved);
+        }
+
+    }
+
     @Test
     public void testIsCategoryHasSubcategory() {
         CategoryService categoryService = (CategoryService) ctx().getBean(ServiceSpringKeys.CATEGORY_SERVICE);
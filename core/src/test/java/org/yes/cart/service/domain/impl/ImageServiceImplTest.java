@@ -16,6 +16,7 @@
 
 package org.yes.cart.service.domain.impl;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.yes.cart.BaseCoreDBTestCase;
@@ -27,12 +28,20 @@ import org.yes.cart.exception.UnableToCreateInstanceException;
 import org.yes.cart.exception.UnmappedInterfaceException;
 import org.yes.cart.service.domain.ImageService;
 import org.yes.cart.service.dto.DtoImageService;
+import org.yes.cart.stream.io.IOProvider;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.assertNull;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 /**
@@ -221,6 +230,60 @@ public class ImageServiceImplTest  extends BaseCoreDBTestCase {
 
     }
 
+    @Test
+    public void testResizeImageToPathConcurrent() throws Exception {
+
+        final byte[] original = FileUtils.readFileToByteArray(new File("src/test/resources/imgresize/resize-200x200.jpg"));
+        final AtomicInteger reads = new AtomicInteger(0);
+        final AtomicInteger writes = new AtomicInteger(0);
+
+        final ImageServiceImpl srv = new ImageServiceImpl(null, null, "", 0, 0, 0, true, 0, true, new IOProvider() {
+            public boolean supports(final String uri) {
+                return true;
+            }
+            public boolean exists(final String uri, final Map<String, Object> context) {
+                return true;
+            }
+            public boolean isNewerThan(final String uriToCheck, final String uriToCheckAgainst, final Map<String, Object> context) {
+                return writes.get() > 0;
+            }
+            public byte[] read(final String uri, final Map<String, Object> context) throws IOException {
+                reads.incrementAndGet();
+                try {
+                    Thread.sleep(200L); // slow disk
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return original;
+            }
+            public void write(final String uri, final byte[] content, final Map<String, Object> context) throws IOException {
+                writes.incrementAndGet();
+            }
+            public void delete(final String uri, final Map<String, Object> context) throws IOException {
+            }
+        });
+
+        final ExecutorService exec = Executors.newFixedThreadPool(8);
+        final List<Future<String>> requests = new ArrayList<Future<String>>();
+        for (int i = 0; i < 8; i++) {
+            requests.add(exec.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return srv.resizeImageToPath("original.jpg", "resized.jpg", "80", "80");
+                }
+            }));
+        }
+        for (final Future<String> request : requests) {
+            assertEquals("resized.jpg", request.get(10, TimeUnit.SECONDS));
+        }
+        exec.shutdown();
+
+        assertEquals(1, reads.get());
+        assertEquals(1, writes.get());
+
+        assertEquals("original.jpg", srv.resizeImageToPath("original.jpg", null, "80", "80"));
+
+    }
+
     @Test
     public void testDeleteImage() throws Exception {
         imageService.deleteImage(imageName,
@@ -481,7 +481,7 @@ public class PriceServiceImplTest extends BaseCoreDBTestCase {
     @Test
     public void testCreatePriceTierNodes() {
 
-        PriceServiceImpl priceService1 = new PriceServiceImpl(null, null);
+        PriceServiceImpl priceService1 = new PriceServiceImpl(null, null, null);
 
         assertEquals( new BigDecimal("3000").intValue(), priceService1.niceBigDecimal(new BigDecimal("3000")).intValue());
         assertEquals( new BigDecimal("30").intValue(), priceService1.niceBigDecimal(new BigDecimal("30")).intValue());
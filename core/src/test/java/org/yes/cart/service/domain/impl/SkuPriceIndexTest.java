@@ -0,0 +1,293 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.service.domain.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.jmock.lib.action.CustomAction;
+import org.junit.runner.RunWith;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.yes.cart.dao.EntityFactory;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.Shop;
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.domain.entity.impl.SkuPriceEntity;
+import org.yes.cart.domain.misc.Pair;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 12:45
+ */
+@RunWith(JMock.class)
+public class SkuPriceIndexTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private static final long NOW = 1000000L;
+
+    @Test
+    public void testLookupFiltersByTimeAndPolicy() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = mockSkuPriceDao();
+
+        final SkuPrice p1 = createPrice(1L, "SKU-1", null, null, null);
+        final SkuPrice p2 = createPrice(2L, "SKU-1", NOW + 1L, null, null);       // not started
+        final SkuPrice p3 = createPrice(3L, "SKU-1", null, NOW - 1L, null);       // expired
+        final SkuPrice p4 = createPrice(4L, "SKU-1", NOW - 10L, NOW + 10L, "B2B");
+        final SkuPrice p5 = createPrice(5L, "SKU-2", null, null, "");
+
+        context.checking(new Expectations() {{
+            oneOf(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CURRENCY.AND.SHOP.ALL", "EUR", 10L);
+            will(returnValue(Arrays.asList(p5, p4, p3, p2, p1)));
+            oneOf(skuPriceDao).findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.CODE.BY.PRICE.CURRENCY.AND.SHOP", "EUR", 10L);
+            will(returnValue(Arrays.<Object>asList(new Object[] { 100L, "SKU-1" }, new Object[] { 100L, "SKU-2" })));
+        }});
+
+        final SkuPriceIndex index = new SkuPriceIndex(skuPriceDao, 0);
+
+        final List<Pair<String, SkuPrice>> skuDefault = index.getSkuPrices("SKU-1", 10L, "EUR", null, NOW);
+        assertEquals(1, skuDefault.size());
+        assertEquals(1L, skuDefault.get(0).getSecond().getSkuPriceId());
+
+        final List<Pair<String, SkuPrice>> skuB2B = index.getSkuPrices("SKU-1", 10L, "EUR", "B2B", NOW);
+        assertEquals(2, skuB2B.size());
+        assertEquals(1L, skuB2B.get(0).getSecond().getSkuPriceId());
+        assertEquals(4L, skuB2B.get(1).getSecond().getSkuPriceId());
+
+        final List<Pair<String, SkuPrice>> product = index.getProductPrices(100L, 10L, "EUR", "B2B", NOW);
+        assertEquals(3, product.size());
+        assertEquals(1L, product.get(0).getSecond().getSkuPriceId());
+        assertEquals(4L, product.get(1).getSecond().getSkuPriceId());
+        assertEquals(5L, product.get(2).getSecond().getSkuPriceId());
+        assertEquals("SKU-2", product.get(2).getFirst());
+
+        assertTrue(index.getSkuPrices("SKU-3", 10L, "EUR", null, NOW).isEmpty());
+        assertTrue(index.getProductPrices(200L, 10L, "EUR", null, NOW).isEmpty());
+
+        assertEquals(1, index.getPartitionCount());
+        assertEquals(1L, index.getPartitionLoadCount());
+        assertEquals(5L, index.getLookupCount());
+
+    }
+
+    @Test
+    public void testBulkLookup() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = mockSkuPriceDao();
+
+        final SkuPrice p1 = createPrice(1L, "SKU-1", null, null, null);
+        final SkuPrice p2 = createPrice(2L, "SKU-2", null, null, "B2B");
+        final SkuPrice p3 = createPrice(3L, "SKU-3", null, null, null);
+
+        context.checking(new Expectations() {{
+            oneOf(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CURRENCY.AND.SHOP.ALL", "EUR", 10L);
+            will(returnValue(Arrays.asList(p1, p2, p3)));
+            oneOf(skuPriceDao).findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.CODE.BY.PRICE.CURRENCY.AND.SHOP", "EUR", 10L);
+            will(returnValue(Arrays.<Object>asList(new Object[] { 100L, "SKU-1" }, new Object[] { 200L, "SKU-2" }, new Object[] { 300L, "SKU-3" })));
+        }});
+
+        final SkuPriceIndex index = new SkuPriceIndex(skuPriceDao, 0);
+
+        final Map<String, List<Pair<String, SkuPrice>>> prices =
+                index.getSkuPrices(Arrays.asList("SKU-1", "SKU-2", "SKU-4", "SKU-1"), 10L, "EUR", null, NOW);
+
+        assertEquals(2, prices.size());
+        assertEquals(1L, prices.get("SKU-1").get(0).getSecond().getSkuPriceId());
+        assertTrue(prices.get("SKU-2").isEmpty()); // B2B price only
+        assertFalse(prices.containsKey("SKU-4"));
+
+        assertEquals(1L, index.getPartitionLoadCount());
+        assertEquals(1L, index.getLookupCount());
+
+    }
+
+    @Test
+    public void testChangeReloadsOnlyAffectedSku() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = mockSkuPriceDao();
+
+        final SkuPrice p1 = createPrice(1L, "SKU-1", null, null, null);
+        final SkuPrice p2 = createPrice(2L, "SKU-2", null, null, null);
+        final SkuPrice p1updated = createPrice(3L, "SKU-1", null, null, null);
+        final SkuPrice p4 = createPrice(4L, "SKU-4", null, null, null);
+
+        context.checking(new Expectations() {{
+            oneOf(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CURRENCY.AND.SHOP.ALL", "EUR", 10L);
+            will(returnValue(Arrays.asList(p1, p2)));
+            oneOf(skuPriceDao).findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.CODE.BY.PRICE.CURRENCY.AND.SHOP", "EUR", 10L);
+            will(returnValue(Arrays.<Object>asList(new Object[] { 100L, "SKU-1" }, new Object[] { 200L, "SKU-2" })));
+            // price 1 is deleted, price 3 is created for SKU-1, price 4 is created for new SKU-4
+            oneOf(skuPriceDao).findQueryObjectByNamedQuery("SKUPRICE.CODE.CURRENCY.SHOP.BY.IDS", new HashSet<Long>(Arrays.asList(1L, 3L, 4L)));
+            will(returnValue(Arrays.<Object>asList(new Object[] { "SKU-1", "EUR", 10L }, new Object[] { "SKU-4", "EUR", 10L })));
+            oneOf(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CODE.AND.CURRENCY.AND.SHOP.ALL", "SKU-1", "EUR", 10L);
+            will(returnValue(Arrays.asList(p1updated)));
+            oneOf(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CODE.AND.CURRENCY.AND.SHOP.ALL", "SKU-4", "EUR", 10L);
+            will(returnValue(Arrays.asList(p4)));
+            oneOf(skuPriceDao).findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.BY.CODE", "SKU-4");
+            will(returnValue(Arrays.<Object>asList(200L)));
+        }});
+
+        final SkuPriceIndex index = new SkuPriceIndex(skuPriceDao, 0);
+
+        assertEquals(1L, index.getSkuPrices("SKU-1", 10L, "EUR", null, NOW).get(0).getSecond().getSkuPriceId());
+
+        index.onCacheableChange("Delete", "SkuPriceEntity", 1L);
+        index.onPriceChange(3L);
+        index.onPriceChange(4L);
+        assertEquals(3, index.getPendingCount());
+
+        final List<Pair<String, SkuPrice>> sku1 = index.getSkuPrices("SKU-1", 10L, "EUR", null, NOW);
+        assertEquals(1, sku1.size());
+        assertEquals(3L, sku1.get(0).getSecond().getSkuPriceId());
+        assertEquals(0, index.getPendingCount());
+        assertEquals(2L, index.getSkuReloadCount());
+
+        final List<Pair<String, SkuPrice>> product = index.getProductPrices(200L, 10L, "EUR", null, NOW);
+        assertEquals(2, product.size());
+        assertEquals(2L, product.get(0).getSecond().getSkuPriceId());
+        assertEquals(4L, product.get(1).getSecond().getSkuPriceId());
+
+        assertEquals(1L, index.getPartitionLoadCount());
+
+    }
+
+    @Test
+    public void testIndexHoldsDetachedCopies() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = mockSkuPriceDao();
+
+        final SkuPrice p1 = createPrice(1L, "SKU-1", null, null, null);
+        p1.setShop(context.mock(Shop.class, "shop"));
+        p1.setRegularPrice(new BigDecimal("9.99"));
+        p1.setSalePrice(new BigDecimal("8.99"));
+        p1.setQuantity(BigDecimal.ONE);
+
+        context.checking(new Expectations() {{
+            oneOf(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CURRENCY.AND.SHOP.ALL", "EUR", 10L);
+            will(returnValue(Arrays.asList(p1)));
+            oneOf(skuPriceDao).findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.CODE.BY.PRICE.CURRENCY.AND.SHOP", "EUR", 10L);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        final SkuPriceIndex index = new SkuPriceIndex(skuPriceDao, 0);
+
+        final SkuPrice indexed = index.getSkuPrices("SKU-1", 10L, "EUR", null, NOW).get(0).getSecond();
+        assertNotSame(p1, indexed);
+        assertNull(indexed.getShop());
+        assertEquals(1L, indexed.getSkuPriceId());
+        assertEquals("SKU-1", indexed.getSkuCode());
+        assertEquals("EUR", indexed.getCurrency());
+        assertEquals(new BigDecimal("9.99"), indexed.getRegularPrice());
+        assertEquals(new BigDecimal("8.99"), indexed.getSalePrice());
+        assertEquals(BigDecimal.ONE, indexed.getQuantity());
+
+    }
+
+    @Test
+    public void testCacheEvictionIsVisibleImmediately() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = mockSkuPriceDao();
+
+        final SkuPrice p1 = createPrice(1L, "SKU-1", null, null, null);
+        final SkuPrice p2 = createPrice(2L, "SKU-1", null, null, null); // e.g. bulk import replaced price
+
+        context.checking(new Expectations() {{
+            exactly(2).of(skuPriceDao).findByNamedQuery("SKUPRICE.BY.CURRENCY.AND.SHOP.ALL", "EUR", 10L);
+            will(onConsecutiveCalls(returnValue(Arrays.asList(p1)), returnValue(Arrays.asList(p2))));
+            exactly(2).of(skuPriceDao).findQueryObjectByNamedQuery("PRODUCTSKU.PRODUCTID.CODE.BY.PRICE.CURRENCY.AND.SHOP", "EUR", 10L);
+            will(returnValue(Arrays.<Object>asList(new Object[] { 100L, "SKU-1" })));
+        }});
+
+        // max age is large, so only eviction can make new price visible
+        final SkuPriceIndex index = new SkuPriceIndex(skuPriceDao, 600);
+
+        assertEquals(1L, index.getSkuPrices("SKU-1", 10L, "EUR", null, NOW).get(0).getSecond().getSkuPriceId());
+
+        index.onCacheEvicted("priceService-minimalPrice");
+
+        assertEquals(2L, index.getSkuPrices("SKU-1", 10L, "EUR", null, NOW).get(0).getSecond().getSkuPriceId());
+        assertEquals(2L, index.getPartitionLoadCount());
+
+    }
+
+    @Test
+    public void testLocalChangeIsQueuedAfterCommit() throws Exception {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = mockSkuPriceDao();
+
+        final SkuPriceIndex index = new SkuPriceIndex(skuPriceDao, 0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.onPriceChange(1L);
+            assertEquals(0, index.getPendingCount());
+            for (final TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(1, index.getPendingCount());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+    }
+
+    private GenericDAO<SkuPrice, Long> mockSkuPriceDao() {
+
+        final GenericDAO<SkuPrice, Long> skuPriceDao = context.mock(GenericDAO.class, "skuPriceDao");
+        final EntityFactory entityFactory = context.mock(EntityFactory.class, "entityFactory");
+        context.checking(new Expectations() {{
+            allowing(skuPriceDao).getEntityFactory(); will(returnValue(entityFactory));
+            allowing(entityFactory).getByIface(SkuPrice.class); will(new CustomAction("new price") {
+                @Override
+                public Object invoke(final Invocation invocation) throws Throwable {
+                    return new SkuPriceEntity();
+                }
+            });
+        }});
+        return skuPriceDao;
+
+    }
+
+    private SkuPrice createPrice(final long pk, final String sku, final Long from, final Long to, final String policy) {
+
+        final SkuPrice price = new SkuPriceEntity();
+        price.setSkuPriceId(pk);
+        price.setSkuCode(sku);
+        price.setCurrency("EUR");
+        price.setSalefrom(from != null ? new Date(from) : null);
+        price.setSaleto(to != null ? new Date(to) : null);
+        price.setPricingPolicy(policy);
+        return price;
+
+    }
+
+}
@@ -17,7 +17,14 @@
 package org.yes.cart.service.domain.impl;
 
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.yes.cart.BaseCoreDBTestCase;
 import org.yes.cart.constants.Constants;
 import org.yes.cart.constants.ServiceSpringKeys;
@@ -31,8 +38,10 @@ import org.yes.cart.service.domain.WarehouseService;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 import static org.junit.Assert.*;
 
@@ -259,6 +268,141 @@ public class TestSkuWarehouseServiceImpl extends BaseCoreDBTestCase {
         assertEquals(new BigDecimal("0.00"), rez.getSecond());
     }
 
+    @Test
+    public void testReserveQuantityConcurrent() throws Exception {
+        final Warehouse warehouse = warehouseService.findById(1L);
+        final ProductSku productSku = productSkuService.findById(10004L); // 4 items on 1 warehouse
+
+        final int threads = 8;
+        final int attempts = 40;
+        final ExecutorService exec = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<BigDecimal>> results = new ArrayList<Future<BigDecimal>>();
+        for (int i = 0; i < attempts; i++) {
+            results.add(exec.submit(new Callable<BigDecimal>() {
+                @Override
+                public BigDecimal call() throws Exception {
+                    start.await();
+                    return skuWarehouseService.reservation(warehouse, productSku.getCode(), BigDecimal.ONE);
+                }
+            }));
+        }
+
+        start.countDown();
+        int reserved = 0;
+        for (final Future<BigDecimal> result : results) {
+            final BigDecimal rest = result.get(30, TimeUnit.SECONDS);
+            if (BigDecimal.ZERO.compareTo(rest) == 0) {
+                reserved++;
+            } else {
+                assertEquals(new BigDecimal("1.00"), rest);
+            }
+        }
+        exec.shutdown();
+
+        assertEquals(4, reserved); // no oversell
+        final Pair<BigDecimal, BigDecimal> rez = skuWarehouseService.findQuantity(new ArrayList<Warehouse>() {{
+            add(warehouse);
+        }}, productSku.getCode());
+        assertEquals(new BigDecimal("4.00"), rez.getFirst());
+        assertEquals(new BigDecimal("4.00"), rez.getSecond());
+    }
+
+    @Test
+    public void testReserveQuantityRolledBackWithOrder() throws Exception {
+        final Warehouse warehouse = warehouseService.findById(1L);
+        final ProductSku productSku = productSkuService.findById(10004L); // 4 items on 1 warehouse
+
+        final TransactionTemplate orderTx = new TransactionTemplate(ctx().getBean("transactionManager", PlatformTransactionManager.class));
+        orderTx.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                assertEquals(BigDecimal.ZERO.setScale(Constants.DEFAULT_SCALE),
+                        skuWarehouseService.reservation(warehouse, productSku.getCode(), new BigDecimal("3.00")));
+                final Pair<BigDecimal, BigDecimal> inFlight = skuWarehouseService.findQuantity(Collections.singletonList(warehouse), productSku.getCode());
+                assertEquals(new BigDecimal("3.00"), inFlight.getSecond());
+                status.setRollbackOnly();
+            }
+        });
+
+        final Pair<BigDecimal, BigDecimal> rez = skuWarehouseService.findQuantity(new ArrayList<Warehouse>() {{
+            add(warehouse);
+        }}, productSku.getCode());
+        assertEquals(new BigDecimal("4.00"), rez.getFirst());
+        assertEquals(new BigDecimal("0.00"), rez.getSecond()); // reservation is part of order transaction
+    }
+
+    @Ignore("This is performance test for manual checks only")
+    @Test
+    public void testReserveQuantityContentionBenchmark() throws Exception {
+        final Warehouse warehouse = warehouseService.findById(1L);
+        final ProductSku productSku = productSkuService.findById(10004L);
+
+        final PlatformTransactionManager transactionManager = ctx().getBean("transactionManager", PlatformTransactionManager.class);
+        final SkuWarehouseServiceImpl target = (SkuWarehouseServiceImpl) ((Advised) skuWarehouseService).getTargetSource().getTarget();
+
+        final int threads = 8;
+        final int orders = 200;
+        final long orderWorkMs = 5L; // time order transaction runs after reservation (other items, payment, persist)
+
+        try {
+
+            for (final boolean conditionalUpdate : new boolean[] { false, true, false, true }) {
+
+                target.setConditionalUpdate(conditionalUpdate);
+
+                skuWarehouseService.credit(warehouse, productSku.getCode(), new BigDecimal(orders));
+
+                final TransactionTemplate orderTx = new TransactionTemplate(transactionManager);
+                final ExecutorService exec = Executors.newFixedThreadPool(threads);
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<BigDecimal>> results = new ArrayList<Future<BigDecimal>>();
+                for (int i = 0; i < orders; i++) {
+                    results.add(exec.submit(new Callable<BigDecimal>() {
+                        @Override
+                        public BigDecimal call() throws Exception {
+                            start.await();
+                            return orderTx.execute(new TransactionCallback<BigDecimal>() {
+                                @Override
+                                public BigDecimal doInTransaction(final TransactionStatus status) {
+                                    final BigDecimal rest = skuWarehouseService.reservation(warehouse, productSku.getCode(), BigDecimal.ONE);
+                                    try {
+                                        Thread.sleep(orderWorkMs);
+                                    } catch (InterruptedException e) {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                    return rest;
+                                }
+                            });
+                        }
+                    }));
+                }
+
+                final long started = System.nanoTime();
+                start.countDown();
+                int reserved = 0;
+                for (final Future<BigDecimal> result : results) {
+                    if (BigDecimal.ZERO.compareTo(result.get(120, TimeUnit.SECONDS)) == 0) {
+                        reserved++;
+                    }
+                }
+                final long finished = System.nanoTime();
+                exec.shutdown();
+
+                assertEquals(orders, reserved);
+                skuWarehouseService.voidReservation(warehouse, productSku.getCode(), new BigDecimal(orders));
+                skuWarehouseService.debit(warehouse, productSku.getCode(), new BigDecimal(orders));
+
+                System.out.println((conditionalUpdate ? "Conditional update" : "Row lock          ") + ": "
+                        + orders + " orders on " + threads + " threads took " + ((finished - started) / 1000000L) + "ms");
+
+            }
+
+        } finally {
+            target.setConditionalUpdate(true);
+        }
+    }
+
     @Test
     public void testDebitCredit() {
         final Warehouse warehouse = warehouseService.findById(1L);
@@ -18,17 +18,21 @@ package org.yes.cart.shoppingcart.impl;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.Sequence;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
+import org.yes.cart.shoppingcart.MutableShoppingCart;
 import org.yes.cart.shoppingcart.ShoppingCartCommand;
+import org.yes.cart.shoppingcart.ShoppingCartCommandRegistry;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.yes.cart.shoppingcart.ShoppingCartCommand.CMD_RECALCULATEPRICE;
 
 /**
  * User: denispavlov
@@ -126,4 +130,264 @@ public class ShoppingCartCommandFactoryImplTest {
 
 
     }
+
+    @Test
+    public void testExecuteOnlyMatchingCommandsInPriorityOrder() throws Exception {
+
+        final ShoppingCartCommand cmd1 = mockery.mock(ShoppingCartCommand.class, "cmd1");
+        final ShoppingCartCommand cmd2 = mockery.mock(ShoppingCartCommand.class, "cmd2");
+        final ShoppingCartCommand cmd3 = mockery.mock(ShoppingCartCommand.class, "cmd3");
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+        allowPricingInputs(cart, new ShoppingContextImpl());
+
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("c3", "v");
+        params.put("c1", "v");
+        params.put("other", "v");
+
+        final Sequence order = mockery.sequence("order");
+
+        mockery.checking(new Expectations() {{
+            allowing(cmd1).getCmdKey(); will(returnValue("c1"));
+            allowing(cmd2).getCmdKey(); will(returnValue("c2"));
+            allowing(cmd3).getCmdKey(); will(returnValue("c3"));
+            allowing(cmd1).getPriority(); will(returnValue(0));
+            allowing(cmd2).getPriority(); will(returnValue(1));
+            allowing(cmd3).getPriority(); will(returnValue(2));
+            oneOf(cmd1).execute(cart, params); inSequence(order);
+            oneOf(cmd3).execute(cart, params); inSequence(order);
+        }});
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl();
+        factory.registerCommand(cmd3);
+        factory.registerCommand(cmd2);
+        factory.registerCommand(cmd1);
+
+        factory.execute(cart, params);
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testExecuteRecalculatesOnce() throws Exception {
+
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+        allowPricingInputs(cart, new ShoppingContextImpl());
+
+        mockery.checking(new Expectations() {{
+            oneOf(cart).recalculate();
+        }});
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl();
+        new RecalculateStub(factory, "c1", 0);
+        new RecalculateStub(factory, "c2", 1);
+
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("c1", "v");
+        params.put("c2", "v");
+
+        factory.execute(cart, params);
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testExecuteFailedStillRecalculates() throws Exception {
+
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+        allowPricingInputs(cart, new ShoppingContextImpl());
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl();
+        new RecalculateStub(factory, "c1", 0);
+        new AbstractCartCommandImpl(factory) {
+            @Override
+            public void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters) {
+                throw new IllegalStateException("failed");
+            }
+
+            @Override
+            public String getCmdKey() {
+                return "c2";
+            }
+        };
+
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("c1", "v");
+        params.put("c2", "v");
+
+        // c1 has already changed the cart, so totals must not be left stale
+        mockery.checking(new Expectations() {{
+            oneOf(cart).recalculate();
+        }});
+
+        try {
+            factory.execute(cart, params);
+            fail();
+        } catch (IllegalStateException ise) {
+            // expected
+        }
+
+        mockery.assertIsSatisfied();
+
+        mockery.checking(new Expectations() {{
+            oneOf(cart).recalculate();
+        }});
+
+        factory.execute("c1", cart, params);
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testExecuteRepricesOnlyChangedSkus() throws Exception {
+
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+        allowPricingInputs(cart, new ShoppingContextImpl());
+
+        mockery.checking(new Expectations() {{
+            oneOf(cart).recalculate();
+        }});
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl();
+        final RepriceStub full = new RepriceStub(factory, CMD_RECALCULATEPRICE, null, 0);
+        final RepriceStub sku1 = new RepriceStub(factory, "c1", "SKU-1", 1);
+        final RepriceStub sku2 = new RepriceStub(factory, "c2", "SKU-2", 2);
+
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("c1", "v");
+        params.put("c2", "v");
+
+        factory.execute(cart, params);
+
+        final List<Set<String>> repriced = new ArrayList<Set<String>>();
+        repriced.addAll(full.repriced);
+        repriced.addAll(sku1.repriced);
+        repriced.addAll(sku2.repriced);
+        assertEquals(1, repriced.size());
+        assertEquals(new HashSet<String>(Arrays.asList("SKU-1", "SKU-2")), repriced.get(0));
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testExecuteRepricesAllWhenPricingInputsChange() throws Exception {
+
+        final MutableShoppingCart cart = mockery.mock(MutableShoppingCart.class, "cart");
+        final ShoppingContextImpl shoppingContext = new ShoppingContextImpl();
+        allowPricingInputs(cart, shoppingContext);
+
+        mockery.checking(new Expectations() {{
+            exactly(2).of(cart).recalculate();
+        }});
+
+        final ShoppingCartCommandFactoryImpl factory = new ShoppingCartCommandFactoryImpl();
+        final RepriceStub full = new RepriceStub(factory, CMD_RECALCULATEPRICE, null, 0);
+        final RepriceStub sku1 = new RepriceStub(factory, "c1", "SKU-1", 1);
+        new AbstractCartCommandImpl(factory) {
+            @Override
+            public void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters) {
+                if (parameters.containsKey(getCmdKey())) {
+                    shoppingContext.setCustomerEmail("bob@doe.com"); // e.g. login changes pricing policy
+                    recalculate(shoppingCart);
+                }
+            }
+
+            @Override
+            public String getCmdKey() {
+                return "login";
+            }
+        };
+
+        // SKU change in the same request as login
+        final Map<String, Object> params = new HashMap<String, Object>();
+        params.put("c1", "v");
+        params.put("login", "v");
+
+        factory.execute(cart, params);
+
+        assertEquals(1, sku1.repriced.size());
+        assertNull(sku1.repriced.get(0));
+
+        // login without SKU changes
+        shoppingContext.setCustomerEmail(null);
+        factory.execute(cart, Collections.<String, Object>singletonMap("login", "v"));
+
+        assertEquals(1, full.repriced.size());
+        assertNull(full.repriced.get(0));
+
+        mockery.assertIsSatisfied();
+
+    }
+
+    private void allowPricingInputs(final MutableShoppingCart cart, final ShoppingContextImpl shoppingContext) {
+        mockery.checking(new Expectations() {{
+            allowing(cart).getShoppingContext(); will(returnValue(shoppingContext));
+            allowing(cart).getCurrencyCode(); will(returnValue("EUR"));
+            allowing(cart).getCartItemList(); will(returnValue(Collections.singletonList(new CartItemImpl())));
+        }});
+    }
+
+    private static class RepriceStub extends AbstractRecalculatePriceCartCommandImpl {
+
+        private final String key;
+        private final String skuCode;
+        private final List<Set<String>> repriced = new ArrayList<Set<String>>();
+
+        private RepriceStub(final ShoppingCartCommandRegistry registry, final String key, final String skuCode, final int priority) {
+            super(registry, null, null, null, null);
+            this.key = key;
+            this.skuCode = skuCode;
+            setPriority(priority);
+        }
+
+        @Override
+        public void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters) {
+            if (parameters.containsKey(getCmdKey())) {
+                if (skuCode == null) {
+                    recalculatePricesInCart(shoppingCart);
+                } else {
+                    recalculatePricesInCart(shoppingCart, skuCode);
+                }
+            }
+        }
+
+        @Override
+        void repriceCart(final MutableShoppingCart shoppingCart, final Set<String> skuCodes) {
+            repriced.add(skuCodes == null ? null : new HashSet<String>(skuCodes));
+        }
+
+        @Override
+        public String getCmdKey() {
+            return key;
+        }
+    }
+
+    private static class RecalculateStub extends AbstractCartCommandImpl {
+
+        private final String key;
+
+        private RecalculateStub(final ShoppingCartCommandRegistry registry, final String key, final int priority) {
+            super(registry);
+            this.key = key;
+            setPriority(priority);
+        }
+
+        @Override
+        public void execute(final MutableShoppingCart shoppingCart, final Map<String, Object> parameters) {
+            if (parameters.containsKey(getCmdKey())) {
+                recalculate(shoppingCart);
+                recalculate(shoppingCart);
+            }
+        }
+
+        @Override
+        public String getCmdKey() {
+            return key;
+        }
+    }
+
 }
@@ -22,6 +22,7 @@ import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.domain.queryobject.FilteredNavigationRecordRequest;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -420,6 +421,16 @@ public interface GenericDAO<T, PK extends Serializable> {
      */
     int fullTextSearchReindex(PK primaryKey, boolean purgeOnly);
 
+    /**
+     * Force reindex given entities as a single batch. All entities are loaded with
+     * one query and changes are flushed to index once for the whole batch.
+     *
+     * @param primaryKeys to reindex.
+     *
+     * @return document quantity in index
+     */
+    int fullTextSearchReindex(Collection<PK> primaryKeys);
+
 
     /**
      * Get the full text search result.
@@ -480,6 +491,30 @@ public interface GenericDAO<T, PK extends Serializable> {
     Map<String, List<Pair<String, Integer>>> fullTextSearchNavigation(org.apache.lucene.search.Query query,
                                                                       List<FilteredNavigationRecordRequest> facetingRequest);
 
+    /**
+     * Get the full text search result page together with facet counts for the same query. Query is
+     * executed once, discrete and range facets are collected in the same pass as the result page and
+     * facets that are counted over base query bit set share single bit set. Same rules apply to the facets
+     * map as in {@link #fullTextSearchNavigation(org.apache.lucene.search.Query, java.util.List)}.
+     *
+     * @param query           lucene search query
+     * @param firstResult     first row of result
+     * @param maxResults      size of result set
+     * @param sortFieldName   optional  sort field name
+     * @param reverse         reverse the search result
+     * @param facetingRequest faceting request context
+     * @param fields          list of fields for projections
+     *
+     * @return pair of result page (projections and total count) and facets with values and their counts
+     */
+    Pair<Pair<List<Object[]>, Integer>, Map<String, List<Pair<String, Integer>>>> fullTextSearch(org.apache.lucene.search.Query query,
+                                                                                                 int firstResult,
+                                                                                                 int maxResults,
+                                                                                                 String sortFieldName,
+                                                                                                 boolean reverse,
+                                                                                                 List<FilteredNavigationRecordRequest> facetingRequest,
+                                                                                                 String ... fields);
+
 
     /**
      * Get the full text search result.
@@ -16,6 +16,7 @@
 
 package org.yes.cart.domain.entity;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.SortedSet;
 
@@ -24,7 +25,7 @@ import java.util.SortedSet;
  * Date: 13-04-06
  * Time: 1:08 PM
  */
-public interface ProductAvailabilityModel {
+public interface ProductAvailabilityModel extends Serializable {
 
     /**
      * @return true if this product is purchasable at minimum quantity.
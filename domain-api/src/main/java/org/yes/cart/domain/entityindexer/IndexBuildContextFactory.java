@@ -0,0 +1,47 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entityindexer;
+
+import java.util.Collection;
+
+/**
+ * Prepares data needed by field bridges to build index documents for a batch of entities.
+ * Full and batch reindex open context for each batch before documents are built and close
+ * it once batch is flushed to index, so that bridges read prefetched data instead of querying
+ * related entities for every single document.
+ *
+ * Context is bound to the current thread, so partitions of reindex can run in parallel.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:20
+ */
+public interface IndexBuildContextFactory<T> {
+
+    /**
+     * Prefetch data for given batch and bind it to current thread.
+     *
+     * @param batch entities that are about to be indexed
+     */
+    void open(Collection<T> batch);
+
+    /**
+     * Release context bound to current thread.
+     */
+    void close();
+
+}
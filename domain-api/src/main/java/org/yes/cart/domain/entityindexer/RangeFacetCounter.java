@@ -0,0 +1,57 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.yes.cart.domain.entityindexer;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.util.FixedBitSet;
+import org.yes.cart.domain.misc.Pair;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Strategy for counting range facets on numeric fields (e.g. price facets). Count of a range
+ * is the number of documents matched by base query which value falls into this range.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:10
+ */
+public interface RangeFacetCounter {
+
+    /**
+     * @param field facet field
+     *
+     * @return true if this counter can count ranges on given field
+     */
+    boolean isSupported(String field);
+
+    /**
+     * Count all ranges of given field within base query result.
+     *
+     * @param indexReader index reader used to create base bit set
+     * @param baseBitSet  documents matched by base query
+     * @param field       numeric field
+     * @param ranges      ranges (from inclusive, to exclusive except for the last range which is inclusive)
+     *
+     * @return pairs of range and count for each range in the same order as ranges
+     *
+     * @throws IOException in case of index reading errors
+     */
+    List<Pair<String, Integer>> countFacets(IndexReader indexReader, FixedBitSet baseBitSet,
+                                            String field, List<Pair<String, String>> ranges) throws IOException;
+
+}
@@ -127,6 +127,32 @@ public class FilteredNavigationRecordRequestImpl implements FilteredNavigationRe
         return rangeValues;
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final FilteredNavigationRecordRequestImpl that = (FilteredNavigationRecordRequestImpl) o;
+
+        if (multiValue != that.multiValue) return false;
+        if (rangeValue != that.rangeValue) return false;
+        if (!facetName.equals(that.facetName)) return false;
+        if (!field.equals(that.field)) return false;
+        if (rangeValues != null ? !rangeValues.equals(that.rangeValues) : that.rangeValues != null) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = facetName.hashCode();
+        result = 31 * result + field.hashCode();
+        result = 31 * result + (multiValue ? 1 : 0);
+        result = 31 * result + (rangeValue ? 1 : 0);
+        result = 31 * result + (rangeValues != null ? rangeValues.hashCode() : 0);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "FilteredNavigationRecordRequestImpl{" +
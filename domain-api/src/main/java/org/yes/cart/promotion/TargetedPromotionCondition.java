@@ -0,0 +1,47 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.promotion;
+
+import java.util.Set;
+
+/**
+ * Promotion condition that declares which cart items and customers it can possibly match,
+ * so that it is only evaluated against candidates. Eligibility is still decided by
+ * {@link #isEligible(java.util.Map)}, targets only narrow down the set of items to test.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:20
+ */
+public interface TargetedPromotionCondition extends PromotionCondition {
+
+    /**
+     * @return SKU codes one of which cart item must have, null for any SKU
+     */
+    Set<String> getTargetSkuCodes();
+
+    /**
+     * @return customer types one of which customer must have, null for any customer
+     */
+    Set<String> getTargetCustomerTypes();
+
+    /**
+     * @return customer tags all of which customer must have, null for any customer
+     */
+    Set<String> getTargetCustomerTags();
+
+}
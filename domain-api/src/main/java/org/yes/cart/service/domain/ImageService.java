@@ -20,6 +20,7 @@ import org.yes.cart.domain.entity.SeoImage;
 import org.yes.cart.service.image.ImageNameStrategy;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * User: Igor Azarny iazarny@yahoo.com
@@ -73,6 +74,20 @@ public interface ImageService extends GenericService<SeoImage> {
     byte[] resizeImage(String original, String resized, String width, String height, boolean cropToFit);
 
 
+    /**
+     * Resize given file (if necessary) to requested width and height. Concurrent requests
+     * for the same resized image are processed only once, all other requests wait for result.
+     *
+     * @param original path to original image
+     * @param resized  path to resized image
+     * @param width    requested width
+     * @param height   requested height
+     *
+     * @return  path to image that should be served (original is returned if resized is null or resize failed)
+     */
+    String resizeImageToPath(String original, String resized, String width, String height);
+
+
     /**
      * Resize given file to requested width and height
      *
@@ -108,6 +123,13 @@ public interface ImageService extends GenericService<SeoImage> {
      */
     boolean isSizeAllowed(String width, String height);
 
+    /**
+     * Get all sizes allowed for resizing.
+     *
+     * @return list of sizes, each size is array of width and height, e.g. { "50", "60" }
+     */
+    List<String[]> getAllowedSizes();
+
     /**
      * Get the image name strategy.
      *
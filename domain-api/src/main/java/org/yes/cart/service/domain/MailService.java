@@ -18,6 +18,9 @@ package org.yes.cart.service.domain;
 
 import org.yes.cart.domain.entity.Mail;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * User: denispavlov
  * Date: 10/11/2013
@@ -32,4 +35,23 @@ public interface MailService extends GenericService<Mail> {
      */
     Mail findOldestMail(Long lastFailedMailId);
 
+    /**
+     * Page through mail queue in order of creation.
+     *
+     * @param lastMailId last processed email PK (null for first page).
+     * @param max        max number of emails in page
+     *
+     * @return emails with PK greater than last processed PK
+     */
+    List<Mail> findOldestMails(Long lastMailId, int max);
+
+    /**
+     * Delete emails (e.g. after they were successfully sent).
+     *
+     * @param mailIds email PKs
+     *
+     * @return number of deleted emails
+     */
+    int deleteMails(Collection<Long> mailIds);
+
 }
@@ -22,7 +22,9 @@ import org.yes.cart.domain.misc.navigation.price.PriceTierTree;
 import org.yes.cart.domain.queryobject.FilteredNavigationRecord;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Price service.
@@ -57,6 +59,26 @@ public interface PriceService extends GenericService<SkuPrice> {
                              final boolean enforceTier,
                              final String pricingPolicy);
 
+    /**
+     * Get minimal prices for given skus, shop, currency and quantity in bulk (e.g. for all items
+     * on search result page), which avoids lookup per SKU.
+     *
+     * @param skuCodes      SKU codes
+     * @param shopId        shop
+     * @param currencyCode  desirable currency
+     * @param quantity      quantity tier
+     * @param enforceTier   force to pick closest tier price rather than cheapest
+     * @param pricingPolicy optional pricing policy
+     *
+     * @return lowest available sku price by SKU code (blank price object if SKU has no price)
+     */
+    Map<String, SkuPrice> getMinimalPrices(final Collection<String> skuCodes,
+                                           final long shopId,
+                                           final String currencyCode,
+                                           final BigDecimal quantity,
+                                           final boolean enforceTier,
+                                           final String pricingPolicy);
+
     /**
      * Get all prices for given product skus (all), shop, currency and quantity.
      *
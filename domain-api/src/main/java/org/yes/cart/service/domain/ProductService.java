@@ -264,6 +264,26 @@ public interface ProductService extends GenericService<Product> {
     Map<String, List<Pair<String, Integer>>> findFilteredNavigationRecords(Query baseQuery,
                                                                            List<FilteredNavigationRecordRequest> request);
 
+    /**
+     * Get the all products that match the given query together with filter navigation records counts
+     * for the same query. Query is executed only once for the result page and all facets.
+     *
+     * @param query         lucene query
+     * @param firstResult   index of first result
+     * @param maxResults    quantity results to return
+     * @param sortFieldName sort field name
+     * @param reverse       reverse the search result if true
+     * @param request       request for filtered navigation
+     *
+     * @return pair of result page and facets with values and their counts (facets must not be modified)
+     */
+    Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> getProductSearchResultDTOAndNavigationByQuery(Query query,
+                                                                                                                             int firstResult,
+                                                                                                                             int maxResults,
+                                                                                                                             String sortFieldName,
+                                                                                                                             boolean reverse,
+                                                                                                                             List<FilteredNavigationRecordRequest> request);
+
     /**
      * Get the quantity of products in particular category.
      *
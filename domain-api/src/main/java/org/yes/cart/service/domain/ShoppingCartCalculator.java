@@ -3,6 +3,7 @@ package org.yes.cart.service.domain;
 import org.yes.cart.shoppingcart.ShoppingCart;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 /**
  * Calculator allows to perform complex calculation that are usually done in cart calculation
@@ -61,4 +62,15 @@ public interface ShoppingCartCalculator {
                               String skuCode,
                               BigDecimal minimalPrice);
 
+    /**
+     * Calculate price models for many SKU in one go (e.g. all items on search result page).
+     *
+     * @param currentCart current cart (to provide additional data such as location)
+     * @param minimalPrices SKU code to price determined by price service
+     *
+     * @return price models by SKU code
+     */
+    Map<String, PriceModel> calculatePrices(ShoppingCart currentCart,
+                                            Map<String, BigDecimal> minimalPrices);
+
 }
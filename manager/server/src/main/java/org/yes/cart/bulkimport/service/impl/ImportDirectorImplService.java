@@ -19,7 +19,10 @@ package org.yes.cart.bulkimport.service.impl;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.yes.cart.bulkcommon.service.DataDescriptorResolver;
 import org.yes.cart.bulkcommon.service.ImportDirectorService;
 import org.yes.cart.bulkcommon.service.ImportService;
@@ -35,6 +38,7 @@ import org.yes.cart.domain.i18n.impl.FailoverStringI18NModel;
 import org.yes.cart.service.async.JobStatusListener;
 import org.yes.cart.service.async.SingletonJobRunner;
 import org.yes.cart.service.async.impl.JobStatusListenerImpl;
+import org.yes.cart.service.async.impl.JobStatusListenerTaskWrapperImpl;
 import org.yes.cart.service.async.impl.JobStatusListenerWithLoggerImpl;
 import org.yes.cart.service.async.model.AsyncContext;
 import org.yes.cart.service.async.model.JobContext;
@@ -53,11 +57,20 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Import Director class to perform import via {@link ImportService}
  * collect imported files and move it to archive folder.
  * <p/>
+ * Descriptors of the group are imported in dependency order (see {@link DataDescriptorResolver#getDependenciesByGroup(String)}),
+ * descriptors that do not depend on each other and multiple files of the same descriptor are imported
+ * concurrently using worker executor. Import stops on first failed file and remaining descriptors are skipped.
+ * <p/>
  * User: Igor Azarny iazarny@yahoo.com
  * Date: 09-May-2011
  * Time: 14:12:54
@@ -78,6 +91,7 @@ public class ImportDirectorImplService extends SingletonJobRunner implements Imp
 
     private final FederationFacade federationFacade;
 
+    private TaskExecutor workerExecutor = new SyncTaskExecutor();
 
     /**
      * Construct the import director
@@ -142,7 +156,7 @@ public class ImportDirectorImplService extends SingletonJobRunner implements Imp
                 new HashMap<String, Object>() {{
                     put(JobContextKeys.IMPORT_DESCRIPTOR_GROUP, descriptorGroup);
                     put(JobContextKeys.IMPORT_FILE, fileName);
-                    put(JobContextKeys.IMPORT_FILE_SET, new HashSet<String>());
+                    put(JobContextKeys.IMPORT_FILE_SET, Collections.synchronizedSet(new HashSet<String>()));
                     put(JobContextKeys.IMAGE_VAULT_PATH, imgVault);
                     put(JobContextKeys.IMPORT_DIRECTORY_ROOT, rootPath);
                     putAll(ctx.getAttributes());
@@ -212,30 +226,206 @@ public class ImportDirectorImplService extends SingletonJobRunner implements Imp
         };
     }
 
-    private void doDataImport(final JobContext context) throws IOException {
+    private void doDataImport(final JobContext context) {
+
+        final String descriptorGroup = context.getAttribute(JobContextKeys.IMPORT_DESCRIPTOR_GROUP);
+        final String fileName = context.getAttribute(JobContextKeys.IMPORT_FILE);
+        final String pathToImportRootDirectory = context.getAttribute(JobContextKeys.IMPORT_DIRECTORY_ROOT);
+
+        final Map<String, ImportDescriptor> descriptorObjects = dataDescriptorResolver.getByGroup(descriptorGroup);
+        final Map<String, Set<String>> dependencies = dataDescriptorResolver.getDependenciesByGroup(descriptorGroup);
+
+        final JobStatusListener listener = context.getListener();
+        final Map<String, String> pings = new LinkedHashMap<String, String>();
+        final AtomicBoolean failed = new AtomicBoolean(false);
 
-        final Map<String, ImportDescriptor> descriptorObjects = dataDescriptorResolver.getByGroup((String) context.getAttribute(JobContextKeys.IMPORT_DESCRIPTOR_GROUP));
+        final Map<String, List<ImportJob>> jobsByDescriptor = new LinkedHashMap<String, List<ImportJob>>();
 
         for (final Map.Entry<String, ImportDescriptor> descriptorObjectEntry : descriptorObjects.entrySet()) {
 
             final String descriptor = descriptorObjectEntry.getKey();
             final ImportDescriptor descriptorObject = descriptorObjectEntry.getValue();
 
-            final String pathToImportRootDirectory = context.getAttribute(JobContextKeys.IMPORT_DIRECTORY_ROOT);
             if (StringUtils.isNotBlank(pathToImportRootDirectory)) {
                 descriptorObject.setImportDirectory(pathToImportRootDirectory);
             }
 
-            final JobContext dataJob = new JobContextDecoratorImpl(context, new HashMap<String, Object>() {{
+            final boolean images = "IMAGE".equals(descriptorObject.getEntityType());
+
+            final List<String> files = new ArrayList<String>();
+            if (!images) {
+                final File[] filesToImport = AbstractImportService.getFilesToImport(
+                        descriptorObject.getImportDirectory(),
+                        descriptorObject.getImportFileDescriptor().getFileNameMask(),
+                        fileName);
+                if (filesToImport != null && filesToImport.length > 1) {
+                    // each file is a separate job, so that they are imported concurrently
+                    for (final File fileToImport : filesToImport) {
+                        files.add(fileToImport.getPath());
+                    }
+                }
+            }
+
+            final List<ImportJob> jobs = new ArrayList<ImportJob>();
+            if (files.isEmpty()) {
+                jobs.add(new ImportJob(context, descriptor, descriptorObject, images, fileName, descriptor, pings, failed));
+            } else {
+                for (final String file : files) {
+                    final String task = descriptor + ":" + new File(file).getName();
+                    jobs.add(new ImportJob(context, descriptor, descriptorObject, false, file, task, pings, failed));
+                }
+            }
+            jobsByDescriptor.put(descriptor, jobs);
+
+        }
+
+        final CompletionService<String> completionService = new ExecutorCompletionService<String>(workerExecutor);
+
+        final Set<String> submitted = new HashSet<String>();
+        final Set<String> completed = new HashSet<String>();
+        final Map<String, Integer> remaining = new HashMap<String, Integer>();
+        int inFlight = 0;
+
+        while (true) {
+
+            if (!failed.get()) {
+                for (final Map.Entry<String, List<ImportJob>> descriptorJobs : jobsByDescriptor.entrySet()) {
+                    final String descriptor = descriptorJobs.getKey();
+                    if (!submitted.contains(descriptor) && completed.containsAll(dependencies.get(descriptor))) {
+                        submitted.add(descriptor);
+                        remaining.put(descriptor, descriptorJobs.getValue().size());
+                        for (final ImportJob job : descriptorJobs.getValue()) {
+                            completionService.submit(job);
+                            inFlight++;
+                        }
+                    }
+                }
+            }
+
+            if (inFlight == 0) {
+                break;
+            }
+
+            try {
+                final String descriptor = completionService.take().get();
+                inFlight--;
+                final int left = remaining.get(descriptor) - 1;
+                remaining.put(descriptor, left);
+                if (left == 0) {
+                    completed.add(descriptor);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                listener.notifyError("Import was interrupted");
+                break;
+            } catch (ExecutionException ee) {
+                // jobs handle their own errors, so this should never happen
+                inFlight--;
+                failed.set(true);
+                listener.notifyError(ee.getMessage());
+            }
+
+        }
+
+        if (failed.get()) {
+            final List<String> skipped = new ArrayList<String>();
+            for (final String descriptor : jobsByDescriptor.keySet()) {
+                if (!submitted.contains(descriptor)) {
+                    skipped.add(descriptor);
+                }
+            }
+            if (!skipped.isEmpty()) {
+                listener.notifyError(MessageFormat.format(
+                        "Import of group {0} failed, skipped descriptors: {1}",
+                        descriptorGroup, skipped));
+            }
+        }
+
+    }
+
+    /**
+     * Import of single descriptor (and file).
+     */
+    private class ImportJob implements Callable<String> {
+
+        private final JobContext context;
+        private final String descriptor;
+        private final ImportDescriptor descriptorObject;
+        private final boolean images;
+        private final String file;
+        private final String task;
+        private final Map<String, String> pings;
+        private final AtomicBoolean failed;
+
+        private final Thread coordinator = Thread.currentThread();
+        private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        private ImportJob(final JobContext context,
+                          final String descriptor,
+                          final ImportDescriptor descriptorObject,
+                          final boolean images,
+                          final String file,
+                          final String task,
+                          final Map<String, String> pings,
+                          final AtomicBoolean failed) {
+            this.context = context;
+            this.descriptor = descriptor;
+            this.descriptorObject = descriptorObject;
+            this.images = images;
+            this.file = file;
+            this.task = task;
+            this.pings = pings;
+            this.failed = failed;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String call() throws Exception {
+
+            final JobStatusListener taskListener = new JobStatusListenerTaskWrapperImpl(context.getListener(), task, pings);
+
+            if (failed.get()) {
+                taskListener.notifyWarning("skipped due to previous errors");
+                return descriptor;
+            }
+
+            final boolean worker = Thread.currentThread() != coordinator;
+
+            final JobContext dataJob = new JobContextDecoratorImpl(context, taskListener, new HashMap<String, Object>() {{
                 put(JobContextKeys.IMPORT_DESCRIPTOR, descriptorObject);
                 put(JobContextKeys.IMPORT_DESCRIPTOR_NAME, descriptor);
+                put(JobContextKeys.IMPORT_FILE, file);
             }});
 
-            if ("IMAGE".equals(descriptorObject.getEntityType())) {
-                getNewBulkImportImagesService().doImport(dataJob);
-            } else {
-                getNewBulkImportService().doImport(dataJob);
+            try {
+                if (worker) {
+                    SecurityContextHolder.setContext(securityContext);
+                    ThreadLocalAsyncContextUtils.init(dataJob);
+                }
+
+                final ImportService.BulkImportResult result;
+                if (images) {
+                    result = getNewBulkImportImagesService().doImport(dataJob);
+                } else {
+                    result = getNewBulkImportService().doImport(dataJob);
+                }
+                if (result != ImportService.BulkImportResult.OK) {
+                    failed.set(true);
+                }
+
+            } catch (Exception exp) {
+                failed.set(true);
+                taskListener.notifyError(exp.getMessage(), exp);
+            } finally {
+                taskListener.notifyCompleted();
+                if (worker) {
+                    ThreadLocalAsyncContextUtils.clear();
+                    SecurityContextHolder.clearContext();
+                }
             }
+            return descriptor;
+
         }
     }
 
@@ -326,6 +516,15 @@ public class ImportDirectorImplService extends SingletonJobRunner implements Imp
         return pathToArchiveDirectory;
     }
 
+    /**
+     * IoC. Executor for concurrent import of independent descriptors and files (default is synchronous import).
+     *
+     * @param workerExecutor executor
+     */
+    public void setWorkerExecutor(final TaskExecutor workerExecutor) {
+        this.workerExecutor = workerExecutor;
+    }
+
     /**
      * @return IoC prototype instance
      */
@@ -97,7 +97,7 @@ public class AdminInterceptor extends AuditInterceptor implements ApplicationCon
         if (nodeService == null) {
             synchronized (this) {
                 if (nodeService == null) {
-                    nodeService = applicationContext.getBean("nodeService", NodeService.class);
+                    nodeService = applicationContext.getBean("batchingNodeService", NodeService.class);
                 }
             }
         }
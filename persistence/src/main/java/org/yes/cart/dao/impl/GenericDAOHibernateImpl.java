@@ -17,16 +17,18 @@
 package org.yes.cart.dao.impl;
 
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 import org.apache.lucene.util.FixedBitSet;
 import org.hibernate.*;
 import org.hibernate.Query;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Example;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.search.FullTextQuery;
 import org.hibernate.search.FullTextSession;
+import org.hibernate.search.ProjectionConstants;
 import org.hibernate.search.Search;
 import org.hibernate.search.annotations.Indexed;
 import org.hibernate.search.indexes.interceptor.EntityIndexingInterceptor;
@@ -41,14 +43,21 @@ import org.hibernate.search.util.impl.ClassLoaderHelper;
 import org.hibernate.search.util.impl.HibernateHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.yes.cart.dao.CriteriaTuner;
 import org.yes.cart.dao.EntityFactory;
 import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.dao.ResultsIterator;
 import org.yes.cart.domain.entity.Identifiable;
 import org.yes.cart.domain.entity.Product;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildStatistics;
+import org.yes.cart.domain.entityindexer.IndexBuildContextFactory;
 import org.yes.cart.domain.entityindexer.IndexFilter;
+import org.yes.cart.domain.entityindexer.MultiValueFacetCounter;
+import org.yes.cart.domain.entityindexer.RangeFacetCounter;
+import org.yes.cart.domain.entityindexer.impl.MultiValueFacetCounterFilterImpl;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.domain.queryobject.FilteredNavigationRecordRequest;
 import org.yes.cart.util.ShopCodeContext;
@@ -56,6 +65,8 @@ import org.yes.cart.util.ShopCodeContext;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -79,6 +90,15 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
 
     private TaskExecutor indexExecutor;
 
+    private MultiValueFacetCounter multiValueFacetCounter = new MultiValueFacetCounterFilterImpl();
+    private RangeFacetCounter rangeFacetCounter = null;
+    private AsyncTaskExecutor facetExecutor = null;
+
+    private int indexBatchSize = 100;
+    private int indexFetchSize = 100;
+    private int indexPartitions = 1;
+    private IndexBuildContextFactory<T> indexBuildContextFactory = null;
+
 
     /**
      * Set the Hibernate SessionFactory to be used by this DAO.
@@ -98,6 +118,75 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
         this.indexExecutor = indexExecutor;
     }
 
+    /**
+     * Strategy for counting multi value facets in {@link #fullTextSearchNavigation(org.apache.lucene.search.Query, java.util.List)}.
+     *
+     * @param multiValueFacetCounter counter
+     */
+    public void setMultiValueFacetCounter(final MultiValueFacetCounter multiValueFacetCounter) {
+        this.multiValueFacetCounter = multiValueFacetCounter;
+    }
+
+    /**
+     * Strategy for counting range facets in {@link #fullTextSearchNavigation(org.apache.lucene.search.Query, java.util.List)}.
+     * Ranges on fields that are not supported by this counter are counted by Hibernate Search range faceting.
+     *
+     * @param rangeFacetCounter counter (optional)
+     */
+    public void setRangeFacetCounter(final RangeFacetCounter rangeFacetCounter) {
+        this.rangeFacetCounter = rangeFacetCounter;
+    }
+
+    /**
+     * Executor for counting independent facet groups in parallel over shared base query bit set.
+     * Pool size should reflect CPU budget for faceting, when all threads are busy facets are counted
+     * on the calling thread.
+     *
+     * @param facetExecutor facet executor (optional, facets are counted sequentially if not set)
+     */
+    public void setFacetExecutor(final AsyncTaskExecutor facetExecutor) {
+        this.facetExecutor = facetExecutor;
+    }
+
+    /**
+     * Number of entities to index before changes are flushed to index during full reindex.
+     *
+     * @param indexBatchSize batch size (default 100)
+     */
+    public void setIndexBatchSize(final int indexBatchSize) {
+        this.indexBatchSize = indexBatchSize;
+    }
+
+    /**
+     * JDBC fetch size used to scroll entities during full reindex.
+     *
+     * @param indexFetchSize fetch size (default 100)
+     */
+    public void setIndexFetchSize(final int indexFetchSize) {
+        this.indexFetchSize = indexFetchSize;
+    }
+
+    /**
+     * Number of PK range partitions for full reindex. Each partition is indexed on its own
+     * thread with its own session. Value of 1 (default) means sequential reindex. Partitioning
+     * is only supported for entities with numeric identifiers.
+     *
+     * @param indexPartitions number of partitions
+     */
+    public void setIndexPartitions(final int indexPartitions) {
+        this.indexPartitions = indexPartitions;
+    }
+
+    /**
+     * Factory for context that prefetches data needed by field bridges for each batch of entities
+     * during full and batch reindex.
+     *
+     * @param indexBuildContextFactory context factory (optional, bridges load data per document if not set)
+     */
+    public void setIndexBuildContextFactory(final IndexBuildContextFactory<T> indexBuildContextFactory) {
+        this.indexBuildContextFactory = indexBuildContextFactory;
+    }
+
     /**
      * Default constructor.
      *
@@ -591,6 +680,39 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
         return  fullTextSearchReindex(primaryKey, false);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public int fullTextSearchReindex(final Collection<PK> primaryKeys) {
+        int result = 0;
+        if (persistentClassIndexble && primaryKeys != null && !primaryKeys.isEmpty()) {
+
+            FullTextSession fullTextSession = Search.getFullTextSession(sessionFactory.getCurrentSession());
+            fullTextSession.setFlushMode(FlushMode.MANUAL);
+            fullTextSession.setCacheMode(CacheMode.IGNORE);
+            for (final PK primaryKey : primaryKeys) {
+                sessionFactory.getCache().evictEntity(getPersistentClass(), primaryKey);
+                fullTextSession.purge(getPersistentClass(), primaryKey);
+            }
+
+            final String idProperty = sessionFactory.getClassMetadata(getPersistentClass()).getIdentifierPropertyName();
+            final List<T> entities = fullTextSession.createCriteria(getPersistentClass())
+                    .add(Restrictions.in(idProperty, primaryKeys))
+                    .list();
+
+            final List<T> batch = new ArrayList<T>(entities.size());
+            for (final T entity : entities) {
+                batch.add((T) HibernateHelper.unproxy(entity));
+            }
+
+            result = primaryKeys.size();
+            indexBatch(fullTextSession, batch, null); //apply changes to indexes once for whole batch
+
+        }
+        return result;
+    }
+
     private final int IDLE = -3;
     private final int COMPLETED = -1;
     private final int LASTUPDATE = -2;
@@ -647,14 +769,16 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
     }
 
     private Runnable createIndexingRunnable(final boolean async, final int[] count, final IndexFilter<T> filter) {
-        final int BATCH_SIZE = 100;
+        final int BATCH_SIZE = indexBatchSize;
         return new Runnable() {
             @Override
             public void run() {
                 int index = 0;
                 try {
 
-                    if (persistentClassIndexble) {
+                    if (persistentClassIndexble && indexPartitions > 1 && isNumericIdentifier()) {
+                        index = indexPartitioned(async, filter);
+                    } else if (persistentClassIndexble) {
                         FullTextSession fullTextSession = Search.getFullTextSession(async ? sessionFactory.openSession() : sessionFactory.getCurrentSession());
                         fullTextSession.setFlushMode(FlushMode.MANUAL);
                         fullTextSession.setCacheMode(CacheMode.IGNORE);
@@ -662,10 +786,12 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
                             fullTextSession.purgeAll(getPersistentClass());
                         }
                         ScrollableResults results = fullTextSession.createCriteria(persistentClass)
-                                .setFetchSize(BATCH_SIZE)
+                                .setFetchSize(indexFetchSize)
                                 .scroll(ScrollMode.FORWARD_ONLY);
 
                         final Logger log = LOGFTQ;
+                        IndexBuildStatistics.reset();
+                        final List<T> batch = new ArrayList<T>(BATCH_SIZE);
                         while (results.next()) {
 
                             final T entity = (T) HibernateHelper.unproxy(results.get(0));
@@ -674,18 +800,11 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
                                 continue; // skip this object
                             }
 
-                            if (entityIndexingInterceptor != null) {
-                                if (IndexingOverride.APPLY_DEFAULT == entityIndexingInterceptor.onUpdate(entity)) {
-                                    fullTextSession.index(entity);
-                                }
-                            } else {
-                                fullTextSession.index(entity);
-                            }
+                            batch.add(entity);
                             index++;
 
                             if (index % BATCH_SIZE == 0) {
-                                fullTextSession.flushToIndexes(); //apply changes to indexes
-                                fullTextSession.clear(); //clear since the queue is processed
+                                indexBatch(fullTextSession, batch, null);
                                 if (log.isInfoEnabled()) {
                                     log.info("Indexed " + index + " items of " + persistentClass + " class");
                                 }
@@ -694,10 +813,10 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
                                 currentIndexingCount.compareAndSet(index - 1, index);
                             }
                         }
-                        fullTextSession.flushToIndexes(); //apply changes to indexes
-                        fullTextSession.clear(); //clear since the queue is processed
+                        indexBatch(fullTextSession, batch, null);
                         if (log.isInfoEnabled()) {
                             log.info("Indexed " + index + " items of " + persistentClass + " class");
+                            log.info("Bridge timings for " + persistentClass + " class: " + IndexBuildStatistics.toLogString());
                         }
                         fullTextSession.getSearchFactory().optimize(getPersistentClass());
                     }
@@ -719,6 +838,223 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
         };
     }
 
+    private boolean isNumericIdentifier() {
+        final Class idClass = sessionFactory.getClassMetadata(getPersistentClass()).getIdentifierType().getReturnedClass();
+        return Long.class.equals(idClass) || Long.TYPE.equals(idClass);
+    }
+
+    /**
+     * Full reindex that splits PK range into {@link #indexPartitions} partitions and indexes each in parallel.
+     * Index is not purged upfront, instead each entity document is replaced in place and once all partitions
+     * are done documents that were not reindexed (i.e. stale entities) are purged. This way search never sees
+     * partially built index. Purge is bound by max PK at the start of rebuild, so that entities created (and
+     * indexed by regular index updates) while rebuild was running are not purged.
+     *
+     * @param async  true if running asynchronously (updates current indexing count)
+     * @param filter optional filter
+     *
+     * @return number of indexed entities
+     *
+     * @throws Exception on indexing failure in any of the partitions
+     */
+    private int indexPartitioned(final boolean async, final IndexFilter<T> filter) throws Exception {
+
+        final String idProperty = sessionFactory.getClassMetadata(getPersistentClass()).getIdentifierPropertyName();
+
+        final Object[] minMax;
+        final Session rangeSession = sessionFactory.openSession();
+        try {
+            minMax = (Object[]) rangeSession.createCriteria(getPersistentClass())
+                    .setProjection(Projections.projectionList()
+                            .add(Projections.min(idProperty))
+                            .add(Projections.max(idProperty)))
+                    .uniqueResult();
+        } finally {
+            rangeSession.close();
+        }
+
+        if (minMax == null || minMax[0] == null) {
+            return 0;
+        }
+
+        final long min = ((Number) minMax[0]).longValue();
+        final long max = ((Number) minMax[1]).longValue();
+        final long step = (max - min) / indexPartitions + 1L;
+
+        // only purge stale on global full reindex, filtered reindex never purged
+        final Set<Long> indexedIds = filter == null ? Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>()) : null;
+
+        IndexBuildStatistics.reset();
+
+        final ExecutorService partitionExecutor = Executors.newFixedThreadPool(indexPartitions);
+        final List<Future<Integer>> partitions = new ArrayList<Future<Integer>>(indexPartitions);
+        int index = 0;
+        try {
+            for (int i = 0; i < indexPartitions; i++) {
+                final long from = min + step * i;
+                if (from > max) {
+                    break;
+                }
+                partitions.add(partitionExecutor.submit(
+                        createPartitionIndexingCallable(async, idProperty, from, from + step, filter, indexedIds)));
+            }
+            for (final Future<Integer> partition : partitions) {
+                index += partition.get();
+            }
+        } finally {
+            partitionExecutor.shutdownNow();
+        }
+
+        if (LOGFTQ.isInfoEnabled()) {
+            LOGFTQ.info("Bridge timings for " + persistentClass + " class: " + IndexBuildStatistics.toLogString());
+        }
+
+        if (indexedIds != null) {
+            final int purged = purgeNotIndexed(indexedIds, max);
+            if (LOGFTQ.isInfoEnabled()) {
+                LOGFTQ.info("Purged " + purged + " stale items of " + persistentClass + " class");
+            }
+        }
+
+        final Session optimizeSession = sessionFactory.openSession();
+        try {
+            Search.getFullTextSession(optimizeSession).getSearchFactory().optimize(getPersistentClass());
+        } finally {
+            optimizeSession.close();
+        }
+
+        return index;
+    }
+
+    private Callable<Integer> createPartitionIndexingCallable(final boolean async,
+                                                              final String idProperty,
+                                                              final long fromInclusive,
+                                                              final long toExclusive,
+                                                              final IndexFilter<T> filter,
+                                                              final Set<Long> indexedIds) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                int index = 0;
+                final Session session = sessionFactory.openSession();
+                try {
+                    final FullTextSession fullTextSession = Search.getFullTextSession(session);
+                    fullTextSession.setFlushMode(FlushMode.MANUAL);
+                    fullTextSession.setCacheMode(CacheMode.IGNORE);
+
+                    final ScrollableResults results = fullTextSession.createCriteria(persistentClass)
+                            .add(Restrictions.ge(idProperty, fromInclusive))
+                            .add(Restrictions.lt(idProperty, toExclusive))
+                            .setFetchSize(indexFetchSize)
+                            .scroll(ScrollMode.FORWARD_ONLY);
+
+                    final Logger log = LOGFTQ;
+                    final List<T> batch = new ArrayList<T>(indexBatchSize);
+                    while (results.next()) {
+
+                        final T entity = (T) HibernateHelper.unproxy(results.get(0));
+
+                        if (filter != null && filter.skipIndexing(entity)) {
+                            continue; // skip this object
+                        }
+
+                        batch.add(entity);
+                        index++;
+
+                        if (index % indexBatchSize == 0) {
+                            indexBatch(fullTextSession, batch, indexedIds);
+                            if (log.isInfoEnabled()) {
+                                log.info("Indexed " + index + " items of " + persistentClass + " class in partition ["
+                                        + fromInclusive + "," + toExclusive + ")");
+                            }
+                        }
+                        if (async) {
+                            currentIndexingCount.incrementAndGet();
+                        }
+                    }
+                    indexBatch(fullTextSession, batch, indexedIds);
+                    if (log.isInfoEnabled()) {
+                        log.info("Indexed " + index + " items of " + persistentClass + " class in partition ["
+                                + fromInclusive + "," + toExclusive + ")");
+                    }
+                } finally {
+                    session.close();
+                }
+                return index;
+            }
+        };
+    }
+
+    /**
+     * Index batch of entities and flush it to index. Index build context (if configured) is open while
+     * documents are built, so that bridges use data prefetched for the whole batch.
+     *
+     * @param fullTextSession session
+     * @param batch           entities to index, this list is cleared once batch is flushed
+     * @param indexedIds      optional set to collect PKs of indexed entities
+     */
+    private void indexBatch(final FullTextSession fullTextSession, final List<T> batch, final Set<Long> indexedIds) {
+
+        final List<T> toIndex = new ArrayList<T>(batch.size());
+        for (final T entity : batch) {
+            if (entityIndexingInterceptor == null
+                    || IndexingOverride.APPLY_DEFAULT == entityIndexingInterceptor.onUpdate(entity)) {
+                toIndex.add(entity);
+            }
+        }
+
+        final boolean withContext = indexBuildContextFactory != null && !toIndex.isEmpty();
+        if (withContext) {
+            indexBuildContextFactory.open(toIndex);
+        }
+        try {
+            for (final T entity : toIndex) {
+                fullTextSession.index(entity);
+                if (indexedIds != null) {
+                    indexedIds.add(((Number) fullTextSession.getIdentifier(entity)).longValue());
+                }
+            }
+            fullTextSession.flushToIndexes(); //apply changes to indexes
+        } finally {
+            if (withContext) {
+                indexBuildContextFactory.close();
+            }
+        }
+        fullTextSession.clear(); //clear since the queue is processed
+        batch.clear();
+
+    }
+
+    /**
+     * Purge documents of entities that were not reindexed during full rebuild.
+     *
+     * @param indexedIds PKs of reindexed entities
+     * @param maxId      max PK at the start of rebuild, documents with greater PK were created during rebuild
+     *
+     * @return number of purged documents
+     */
+    private int purgeNotIndexed(final Set<Long> indexedIds, final long maxId) {
+        int purged = 0;
+        final Session session = sessionFactory.openSession();
+        try {
+            final FullTextSession fullTextSession = Search.getFullTextSession(session);
+            final FullTextQuery allDocs = fullTextSession.createFullTextQuery(new MatchAllDocsQuery(), getPersistentClass());
+            allDocs.setProjection(ProjectionConstants.ID);
+            final List<Object[]> ids = allDocs.list();
+            for (final Object[] id : ids) {
+                final long pk = ((Number) id[0]).longValue();
+                if (pk <= maxId && !indexedIds.contains(pk)) {
+                    fullTextSession.purge(getPersistentClass(), (Serializable) id[0]);
+                    purged++;
+                }
+            }
+            fullTextSession.flushToIndexes();
+        } finally {
+            session.close();
+        }
+        return purged;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -846,109 +1182,305 @@ public class GenericDAOHibernateImpl<T, PK extends Serializable>
             }
 
             FullTextSession fullTextSession = Search.getFullTextSession(sessionFactory.getCurrentSession());
-            QueryBuilder qb = fullTextSession.getSearchFactory().buildQueryBuilder().forEntity(getPersistentClass()).get();
 
             FullTextQuery fullTextQuery = fullTextSession.createFullTextQuery(query, getPersistentClass());
             fullTextQuery.setMaxResults(1);
             final FacetManager facetManager = fullTextQuery.getFacetManager();
-            boolean hasMultivalue = false;
-            for (final FilteredNavigationRecordRequest facetingRequestItem : facetingRequest) {
-                if (facetingRequestItem.isRangeValue()) {
-                    final FacetRangeAboveBelowContext facetCtx = qb.facet().name(facetingRequestItem.getFacetName())
-                            .onField(facetingRequestItem.getField()).range();
-                    final Iterator<Pair<String, String>> rageIt = facetingRequestItem.getRangeValues().iterator();
-                    while (rageIt.hasNext()) {
-                        final Pair<String, String> range = rageIt.next();
-                        if (rageIt.hasNext()) {
-                            facetCtx.from(range.getFirst()).to(range.getSecond()).excludeLimit();
-                        } else {
-                            facetManager.enableFaceting(facetCtx.from(range.getFirst()).to(range.getSecond())
-                                    .orderedBy(FacetSortOrder.RANGE_DEFINITION_ODER).createFacetingRequest());
-                        }
-                    }
-                } else {
-                    final DiscreteFacetContext facetCtx = qb.facet().name(facetingRequestItem.getFacetName())
-                            .onField(facetingRequestItem.getField()).discrete();
-                    facetManager.enableFaceting(facetCtx
-                            .includeZeroCounts(facetingRequestItem.isMultiValue())
-                            .createFacetingRequest());
-                    if (facetingRequestItem.isMultiValue()) {
-                        hasMultivalue = true;
+            final boolean needsBaseBitSet = enableFaceting(fullTextSession, facetManager, facetingRequest);
+
+            return collectFacets(fullTextSession, query, facetManager, facetingRequest, needsBaseBitSet);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public Pair<Pair<List<Object[]>, Integer>, Map<String, List<Pair<String, Integer>>>> fullTextSearch(final org.apache.lucene.search.Query query,
+                                                                                                        final int firstResult,
+                                                                                                        final int maxResults,
+                                                                                                        final String sortFieldName,
+                                                                                                        final boolean reverse,
+                                                                                                        final List<FilteredNavigationRecordRequest> facetingRequest,
+                                                                                                        final String ... fields) {
+        if (persistentClassIndexble) {
+            if (LOGFTQ.isDebugEnabled()) {
+                LOGFTQ.debug("Run {}x{} {}@{} {} with facet request {}", new Object[] { firstResult, maxResults, sortFieldName, reverse, query, facetingRequest });
+            }
+
+            final boolean faceted = facetingRequest != null && !facetingRequest.isEmpty();
+
+            FullTextSession fullTextSession = Search.getFullTextSession(sessionFactory.getCurrentSession());
+
+            final FullTextQuery fullTextQuery = createFullTextQuery(query, firstResult, maxResults, sortFieldName, reverse);
+            fullTextQuery.setProjection(fields);
+            final FacetManager facetManager = fullTextQuery.getFacetManager();
+            final boolean needsBaseBitSet = faceted && enableFaceting(fullTextSession, facetManager, facetingRequest);
+
+            // discrete and range facets are collected while executing query for the result page
+            final List<Object[]> list = fullTextQuery.list();
+            final Pair<List<Object[]>, Integer> page = list != null ?
+                    new Pair<List<Object[]>, Integer>(list, fullTextQuery.getResultSize()) : EMPTY;
+
+            final Map<String, List<Pair<String, Integer>>> facets;
+            if (faceted) {
+                facets = collectFacets(fullTextSession, query, facetManager, facetingRequest, needsBaseBitSet);
+            } else {
+                facets = Collections.emptyMap();
+            }
+            return new Pair<Pair<List<Object[]>, Integer>, Map<String, List<Pair<String, Integer>>>>(page, facets);
+
+        }
+        return new Pair<Pair<List<Object[]>, Integer>, Map<String, List<Pair<String, Integer>>>>(EMPTY, Collections.<String, List<Pair<String, Integer>>>emptyMap());
+    }
+
+    /*
+     * Enable Hibernate Search faceting for discrete and range requests.
+     *
+     * @return true if some of the requests are counted over base query bit set
+     */
+    private boolean enableFaceting(final FullTextSession fullTextSession,
+                                   final FacetManager facetManager,
+                                   final List<FilteredNavigationRecordRequest> facetingRequest) {
+
+        QueryBuilder qb = fullTextSession.getSearchFactory().buildQueryBuilder().forEntity(getPersistentClass()).get();
+
+        boolean needsBaseBitSet = false;
+        for (final FilteredNavigationRecordRequest facetingRequestItem : facetingRequest) {
+            if (isCountedOverBaseBitSet(facetingRequestItem)) {
+                needsBaseBitSet = true; // counted by rangeFacetCounter or multiValueFacetCounter over base query bit set
+            } else if (facetingRequestItem.isRangeValue()) {
+                final FacetRangeAboveBelowContext facetCtx = qb.facet().name(facetingRequestItem.getFacetName())
+                        .onField(facetingRequestItem.getField()).range();
+                final Iterator<Pair<String, String>> rageIt = facetingRequestItem.getRangeValues().iterator();
+                while (rageIt.hasNext()) {
+                    final Pair<String, String> range = rageIt.next();
+                    if (rageIt.hasNext()) {
+                        facetCtx.from(range.getFirst()).to(range.getSecond()).excludeLimit();
+                    } else {
+                        facetManager.enableFaceting(facetCtx.from(range.getFirst()).to(range.getSecond())
+                                .orderedBy(FacetSortOrder.RANGE_DEFINITION_ODER).createFacetingRequest());
                     }
                 }
+            } else {
+                final DiscreteFacetContext facetCtx = qb.facet().name(facetingRequestItem.getFacetName())
+                        .onField(facetingRequestItem.getField()).discrete();
+                facetManager.enableFaceting(facetCtx
+                        .includeZeroCounts(false)
+                        .createFacetingRequest());
             }
+        }
+        return needsBaseBitSet;
 
-            final Map<String, List<Pair<String, Integer>>> out = new HashMap<String, List<Pair<String, Integer>>>();
-            IndexReader indexReader = null;
-            FixedBitSet baseBitSet = null;
-            try {
+    }
 
-                if (hasMultivalue) {
-                    indexReader = fullTextSession.getSearchFactory().getIndexReaderAccessor().open(getPersistentClass());
-                    CachingWrapperFilter baseQueryFilter = new CachingWrapperFilter(new QueryWrapperFilter(query));
-                    try {
-                        DocIdSet docIdSet = baseQueryFilter.getDocIdSet(indexReader);
-                        if (docIdSet instanceof FixedBitSet) {
-                            baseBitSet = (FixedBitSet) docIdSet;
-                        } else {
-                            baseBitSet = new FixedBitSet(1);
-                        }
-                    } catch (IOException e) {
-                        LOGFTQ.error("Unable to create base query bit set for query {} and faceting request {}", query, facetingRequest);
-                        LOGFTQ.error("Stacktrace:", e);
+    /*
+     * Collect facet counts. Facets enabled on facet manager are taken from query result, all other facets are
+     * counted over single base query bit set. If facet executor is configured and there is more than one such
+     * facet then they are counted in parallel. Reader is closed only after all submitted counters have either
+     * completed or been prevented from starting.
+     */
+    private Map<String, List<Pair<String, Integer>>> collectFacets(final FullTextSession fullTextSession,
+                                                                   final org.apache.lucene.search.Query query,
+                                                                   final FacetManager facetManager,
+                                                                   final List<FilteredNavigationRecordRequest> facetingRequest,
+                                                                   final boolean needsBaseBitSet) {
+
+        final Map<String, List<Pair<String, Integer>>> out = new HashMap<String, List<Pair<String, Integer>>>();
+        final Map<String, Future<List<Pair<String, Integer>>>> counting = new HashMap<String, Future<List<Pair<String, Integer>>>>();
+        final List<FacetCountingCallable> submitted = new ArrayList<FacetCountingCallable>();
+        IndexReader indexReader = null;
+        FixedBitSet baseBitSet = null;
+        try {
+
+            boolean parallel = false;
+            if (needsBaseBitSet) {
+                indexReader = fullTextSession.getSearchFactory().getIndexReaderAccessor().open(getPersistentClass());
+                CachingWrapperFilter baseQueryFilter = new CachingWrapperFilter(new QueryWrapperFilter(query));
+                try {
+                    DocIdSet docIdSet = baseQueryFilter.getDocIdSet(indexReader);
+                    if (docIdSet instanceof FixedBitSet) {
+                        baseBitSet = (FixedBitSet) docIdSet;
+                    } else {
                         baseBitSet = new FixedBitSet(1);
                     }
+                } catch (IOException e) {
+                    LOGFTQ.error("Unable to create base query bit set for query {} and faceting request {}", query, facetingRequest);
+                    LOGFTQ.error("Stacktrace:", e);
+                    baseBitSet = new FixedBitSet(1);
                 }
+                if (facetExecutor != null) {
+                    int bitSetCounted = 0;
+                    for (final FilteredNavigationRecordRequest facetingRequestItem : facetingRequest) {
+                        if (isCountedOverBaseBitSet(facetingRequestItem)) {
+                            bitSetCounted++;
+                        }
+                    }
+                    parallel = bitSetCounted > 1;
+                }
+            }
 
-                for (final FilteredNavigationRecordRequest facetingRequestItem : facetingRequest) {
-
-                    final List<Pair<String, Integer>> facetsPairs =
-                            new ArrayList<Pair<String, Integer>>();
+            for (final FilteredNavigationRecordRequest facetingRequestItem : facetingRequest) {
 
-                    final List<Facet> facets =  facetManager.getFacets(facetingRequestItem.getFacetName());
+                LOGFTQ.debug("Faceting request request: {}", facetingRequestItem);
 
-                    LOGFTQ.debug("Faceting request request: {}", facetingRequestItem);
-
-                    if (facetingRequestItem.isMultiValue() && !facetingRequestItem.isRangeValue()) {
-                        // Multivalue black magic
-                        for (final Facet facet : facets) {
-
-                            final org.apache.lucene.search.Query facetQuery = new TermQuery(new Term(facet.getFieldName(), facet.getValue()));
-                            try {
-                                CachingWrapperFilter filter = new CachingWrapperFilter(new QueryWrapperFilter(facetQuery));
-                                DocIdSet docIdSet = filter.getDocIdSet(indexReader);
-                                if (docIdSet instanceof FixedBitSet) {
-                                    FixedBitSet filterBitSet = (FixedBitSet) docIdSet;
-                                    filterBitSet.and(baseBitSet);
-                                    long count = filterBitSet.cardinality();
-                                    if (count > 0L) {
-                                        LOGFTQ.debug("Has facet: {}", facet);
-                                        facetsPairs.add(new Pair<String, Integer>(facet.getValue(), (int) count));
-                                    }
-                                }
-                            } catch (IOException e) {
-                                LOGFTQ.error("Unable to create filter query bit set for query {} and faceting query {}", query, facetQuery);
-                                LOGFTQ.error("Stacktrace:", e);
-                            }
+                if (isCountedOverBaseBitSet(facetingRequestItem)) {
 
-                        }
-                    } else {
-                        // Standard discrete values and ranges
-                        for (final Facet facet : facets) {
-                            LOGFTQ.debug("Has facet: {}", facet);
-                            facetsPairs.add(new Pair<String, Integer>(facet.getValue(), facet.getCount()));
+                    final FacetCountingCallable facetCounter =
+                            new FacetCountingCallable(indexReader, baseBitSet, query, facetingRequestItem);
+                    if (parallel) {
+                        try {
+                            counting.put(facetingRequestItem.getFacetName(), facetExecutor.submit(facetCounter));
+                            submitted.add(facetCounter);
+                            continue;
+                        } catch (TaskRejectedException tre) {
+                            // all facet threads are busy, count on this thread
                         }
                     }
+                    out.put(facetingRequestItem.getFacetName(), facetCounter.call());
+
+                } else {
+                    // Standard discrete values and ranges
+                    final List<Pair<String, Integer>> facetsPairs =
+                            new ArrayList<Pair<String, Integer>>();
+                    final List<Facet> facets =  facetManager.getFacets(facetingRequestItem.getFacetName());
+                    for (final Facet facet : facets) {
+                        LOGFTQ.debug("Has facet: {}", facet);
+                        facetsPairs.add(new Pair<String, Integer>(facet.getValue(), facet.getCount()));
+                    }
                     out.put(facetingRequestItem.getFacetName(), facetsPairs);
                 }
+            }
+
+            for (final Map.Entry<String, Future<List<Pair<String, Integer>>>> facet : counting.entrySet()) {
+                try {
+                    out.put(facet.getKey(), facet.getValue().get());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    LOGFTQ.error("Interrupted while counting facet {} for query {}", facet.getKey(), query);
+                    out.put(facet.getKey(), new ArrayList<Pair<String, Integer>>());
+                } catch (ExecutionException ee) {
+                    LOGFTQ.error("Unable to count facet {} for query {}", facet.getKey(), query);
+                    LOGFTQ.error("Stacktrace:", ee.getCause());
+                    out.put(facet.getKey(), new ArrayList<Pair<String, Integer>>());
+                }
+            }
+
+        } finally {
+            for (final FacetCountingCallable facetCounter : submitted) {
+                // cancel() does not stop counters that are already running, so wait for them before closing reader
+                facetCounter.release();
+            }
+            if (needsBaseBitSet) {
+                fullTextSession.getSearchFactory().getIndexReaderAccessor().close(indexReader);
+            }
+        }
+        return out;
+
+    }
+
+    private boolean isCountedOverBaseBitSet(final FilteredNavigationRecordRequest facetingRequestItem) {
+        return isCountedByRangeFacetCounter(facetingRequestItem)
+                || (facetingRequestItem.isMultiValue() && !facetingRequestItem.isRangeValue());
+    }
+
+    /**
+     * Counts single facet over base query bit set.
+     */
+    private final class FacetCountingCallable implements Callable<List<Pair<String, Integer>>> {
+
+        private final IndexReader indexReader;
+        private final FixedBitSet baseBitSet;
+        private final org.apache.lucene.search.Query query;
+        private final FilteredNavigationRecordRequest facetingRequestItem;
+
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private FacetCountingCallable(final IndexReader indexReader,
+                                      final FixedBitSet baseBitSet,
+                                      final org.apache.lucene.search.Query query,
+                                      final FilteredNavigationRecordRequest facetingRequestItem) {
+            this.indexReader = indexReader;
+            this.baseBitSet = baseBitSet;
+            this.query = query;
+            this.facetingRequestItem = facetingRequestItem;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public List<Pair<String, Integer>> call() {
+
+            final List<Pair<String, Integer>> facetsPairs =
+                    new ArrayList<Pair<String, Integer>>();
+
+            if (!started.compareAndSet(false, true)) {
+                return facetsPairs; // released before it started, reader may be closed
+            }
+
+            try {
+                count(facetsPairs);
             } finally {
-                if (hasMultivalue) {
-                    fullTextSession.getSearchFactory().getIndexReaderAccessor().close(indexReader);
+                done.countDown();
+            }
+            return facetsPairs;
+
+        }
+
+        /**
+         * Prevent counting if it has not started yet, otherwise wait until it completes.
+         */
+        private void release() {
+
+            if (started.compareAndSet(false, true)) {
+                return;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException ie) {
+                    interrupted = true;
                 }
             }
-            return out;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
         }
-        return Collections.emptyMap();
+
+        private void count(final List<Pair<String, Integer>> facetsPairs) {
+
+            if (isCountedByRangeFacetCounter(facetingRequestItem)) {
+                // Numeric ranges over cached values
+                try {
+                    facetsPairs.addAll(rangeFacetCounter.countFacets(indexReader, baseBitSet,
+                            facetingRequestItem.getField(), facetingRequestItem.getRangeValues()));
+                    LOGFTQ.debug("Has facets: {}", facetsPairs);
+                } catch (IOException e) {
+                    LOGFTQ.error("Unable to count range facets for query {} and faceting request {}", query, facetingRequestItem);
+                    LOGFTQ.error("Stacktrace:", e);
+                }
+            } else {
+                // Multivalue black magic
+                try {
+                    facetsPairs.addAll(multiValueFacetCounter.countFacets(indexReader, baseBitSet, facetingRequestItem.getField()));
+                    LOGFTQ.debug("Has facets: {}", facetsPairs);
+                } catch (IOException e) {
+                    LOGFTQ.error("Unable to count multi value facets for query {} and faceting request {}", query, facetingRequestItem);
+                    LOGFTQ.error("Stacktrace:", e);
+                }
+            }
+
+        }
+    }
+
+    private boolean isCountedByRangeFacetCounter(final FilteredNavigationRecordRequest facetingRequestItem) {
+        return rangeFacetCounter != null
+                && facetingRequestItem.isRangeValue()
+                && rangeFacetCounter.isSupported(facetingRequestItem.getField());
     }
 
     /**
@@ -22,6 +22,7 @@ import org.apache.lucene.document.Field;
 import org.hibernate.search.bridge.FieldBridge;
 import org.hibernate.search.bridge.LuceneOptions;
 import org.yes.cart.domain.entity.AttrValue;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildStatistics;
 import org.yes.cart.domain.entity.bridge.support.NavigatableAttributesSupport;
 import org.yes.cart.domain.entityindexer.StoredAttributes;
 import org.yes.cart.domain.entityindexer.impl.StoredAttributesImpl;
@@ -46,108 +47,119 @@ public class AttributeValueBridge implements FieldBridge {
 
         if (value instanceof Collection) {
 
-            final NavigatableAttributesSupport support = getNavigatableAttributesSupport();
-            final Set<String> navAttrs = support.getAllNavigatableAttributeCodes();
-            final Set<String> searchAttrs = support.getAllSearchableAttributeCodes();
-            final Set<String> searchPrimaryAttrs = support.getAllSearchablePrimaryAttributeCodes();
-            final Set<String> storeAttrs = support.getAllStorableAttributeCodes();
-
-            StoredAttributes storedAttributes = null;
+            final long start = System.nanoTime();
+            try {
+                addAttributes((Collection) value, document, luceneOptions);
+            } finally {
+                IndexBuildStatistics.record("AttributeValueBridge", start);
+            }
 
-            for (Object obj : (Collection) value) {
-                final AttrValue attrValue = (AttrValue) obj;
+        }
 
-                if (attrValue.getAttribute() == null) {
-                    continue; // skip invalid ones
-                }
+    }
 
-                final String code = attrValue.getAttribute().getCode();
+    private void addAttributes(final Collection value, final Document document, final LuceneOptions luceneOptions) {
 
-                final boolean navigation = navAttrs.contains(code);
-                final boolean search = navigation || searchAttrs.contains(code);
-                final boolean searchPrimary = searchPrimaryAttrs.contains(code);
+        final NavigatableAttributesSupport support = getNavigatableAttributesSupport();
+        final Set<String> navAttrs = support.getAllNavigatableAttributeCodes();
+        final Set<String> searchAttrs = support.getAllSearchableAttributeCodes();
+        final Set<String> searchPrimaryAttrs = support.getAllSearchablePrimaryAttributeCodes();
+        final Set<String> storeAttrs = support.getAllStorableAttributeCodes();
 
-                // Only keep searcheable and navigatable attributes in index
-                if (search) {
-                    if (StringUtils.isNotBlank(attrValue.getVal())) {
+        StoredAttributes storedAttributes = null;
 
-                        if (searchPrimary) {
+        for (Object obj : value) {
+            final AttrValue attrValue = (AttrValue) obj;
 
-                            final List<String> searchValues = getSearchValue(attrValue);
+            if (attrValue.getAttribute() == null) {
+                continue; // skip invalid ones
+            }
 
-                            // primary search should only exist in primary search exact match
-                            for (final String searchValue : searchValues) {
-                                document.add(new Field(
-                                        ProductSearchQueryBuilder.ATTRIBUTE_VALUE_SEARCHPRIMARY_FIELD,
-                                        searchValue,
-                                        Field.Store.NO,
-                                        Field.Index.NOT_ANALYZED,
-                                        luceneOptions.getTermVector()
-                                ));
-                            }
+            final String code = attrValue.getAttribute().getCode();
 
-                        } else {
+            final boolean navigation = navAttrs.contains(code);
+            final boolean search = navigation || searchAttrs.contains(code);
+            final boolean searchPrimary = searchPrimaryAttrs.contains(code);
 
-                            final List<String> searchValues = getSearchValue(attrValue);
+            // Only keep searcheable and navigatable attributes in index
+            if (search) {
+                if (StringUtils.isNotBlank(attrValue.getVal())) {
 
-                            for (final String searchValue : searchValues) {
+                    if (searchPrimary) {
 
-                                // searchable and navigatable terms for global search tokenised
-                                document.add(new Field(
-                                        ProductSearchQueryBuilder.ATTRIBUTE_VALUE_SEARCH_FIELD,
-                                        searchValue,
-                                        Field.Store.NO,
-                                        Field.Index.ANALYZED,
-                                        luceneOptions.getTermVector()
-                                ));
+                        final List<String> searchValues = getSearchValue(attrValue);
 
-                                // searchable and navigatable terms for global search full phrase
-                                document.add(new Field(
-                                        ProductSearchQueryBuilder.ATTRIBUTE_VALUE_SEARCHPHRASE_FIELD,
-                                        searchValue,
-                                        Field.Store.NO,
-                                        Field.Index.NOT_ANALYZED,
-                                        luceneOptions.getTermVector()
-                                ));
-                            }
+                        // primary search should only exist in primary search exact match
+                        for (final String searchValue : searchValues) {
+                            document.add(new Field(
+                                    ProductSearchQueryBuilder.ATTRIBUTE_VALUE_SEARCHPRIMARY_FIELD,
+                                    searchValue,
+                                    Field.Store.NO,
+                                    Field.Index.NOT_ANALYZED,
+                                    luceneOptions.getTermVector()
+                            ));
+                        }
 
+                    } else {
+
+                        final List<String> searchValues = getSearchValue(attrValue);
+
+                        for (final String searchValue : searchValues) {
+
+                            // searchable and navigatable terms for global search tokenised
+                            document.add(new Field(
+                                    ProductSearchQueryBuilder.ATTRIBUTE_VALUE_SEARCH_FIELD,
+                                    searchValue,
+                                    Field.Store.NO,
+                                    Field.Index.ANALYZED,
+                                    luceneOptions.getTermVector()
+                            ));
+
+                            // searchable and navigatable terms for global search full phrase
+                            document.add(new Field(
+                                    ProductSearchQueryBuilder.ATTRIBUTE_VALUE_SEARCHPHRASE_FIELD,
+                                    searchValue,
+                                    Field.Store.NO,
+                                    Field.Index.NOT_ANALYZED,
+                                    luceneOptions.getTermVector()
+                            ));
                         }
 
                     }
-                }
 
-                if (navigation) {
-                    // strict attribute navigation only for filtered navigation
-                    document.add(new Field(
-                            "facet_" + code,
-                            cleanFacetValue(attrValue.getVal()),
-                            Field.Store.NO,
-                            Field.Index.NOT_ANALYZED,
-                            luceneOptions.getTermVector()
-                    ));
                 }
-
-                final boolean stored = storeAttrs.contains(code);
-
-                if (stored) {
-                    if (storedAttributes == null) {
-                        storedAttributes = new StoredAttributesImpl();
-                    }
-                    storedAttributes.putValue(code, attrValue.getVal(), attrValue.getDisplayVal());
-                }
-
             }
 
-            if (storedAttributes != null && !storedAttributes.getAllValues().isEmpty()) {
+            if (navigation) {
+                // strict attribute navigation only for filtered navigation
                 document.add(new Field(
-                        ProductSearchQueryBuilder.ATTRIBUTE_VALUE_STORE_FIELD,
-                        storedAttributes.toString(),
-                        Field.Store.YES,
+                        "facet_" + code,
+                        cleanFacetValue(attrValue.getVal()),
+                        Field.Store.NO,
                         Field.Index.NOT_ANALYZED,
-                        Field.TermVector.NO
+                        luceneOptions.getTermVector()
                 ));
             }
 
+            final boolean stored = storeAttrs.contains(code);
+
+            if (stored) {
+                if (storedAttributes == null) {
+                    storedAttributes = new StoredAttributesImpl();
+                }
+                storedAttributes.putValue(code, attrValue.getVal(), attrValue.getDisplayVal());
+            }
+
+        }
+
+        if (storedAttributes != null && !storedAttributes.getAllValues().isEmpty()) {
+            document.add(new Field(
+                    ProductSearchQueryBuilder.ATTRIBUTE_VALUE_STORE_FIELD,
+                    storedAttributes.toString(),
+                    Field.Store.YES,
+                    Field.Index.NOT_ANALYZED,
+                    Field.TermVector.NO
+            ));
         }
 
     }
@@ -33,6 +33,8 @@ public class HibernateSearchBridgeStaticLocator implements ApplicationContextAwa
     private static SkuPriceRelationshipSupport SKU_PRICE_SUPPORT;
     private static NavigatableAttributesSupport NAVIGATABLE_ATTRIBUTES_SUPPORT;
 
+    private static final ThreadLocal<IndexBuildContext> INDEX_BUILD_CONTEXT = new ThreadLocal<IndexBuildContext>();
+
     public static ShopCategoryRelationshipSupport getShopCategoryRelationshipSupport() {
         return SHOP_CATEGORY_SUPPORT;
     }
@@ -53,6 +55,29 @@ public class HibernateSearchBridgeStaticLocator implements ApplicationContextAwa
         return NAVIGATABLE_ATTRIBUTES_SUPPORT;
     }
 
+    /**
+     * @return context prefetched for current batch of documents or null if documents are built one by one
+     */
+    public static IndexBuildContext getIndexBuildContext() {
+        return INDEX_BUILD_CONTEXT.get();
+    }
+
+    /**
+     * Bind context to current thread.
+     *
+     * @param context context for current batch of documents
+     */
+    public static void bindIndexBuildContext(final IndexBuildContext context) {
+        INDEX_BUILD_CONTEXT.set(context);
+    }
+
+    /**
+     * Remove context from current thread.
+     */
+    public static void unbindIndexBuildContext() {
+        INDEX_BUILD_CONTEXT.remove();
+    }
+
     /** {@inheritDoc} */
     @Override
     public void setApplicationContext(final ApplicationContext applicationContext) throws BeansException {
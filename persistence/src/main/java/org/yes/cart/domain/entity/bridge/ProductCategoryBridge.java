@@ -23,11 +23,12 @@ import org.hibernate.search.bridge.LuceneOptions;
 import org.yes.cart.domain.entity.Category;
 import org.yes.cart.domain.entity.ProductCategory;
 import org.yes.cart.domain.entity.Shop;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildContext;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildStatistics;
 import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
 import org.yes.cart.domain.query.ProductSearchQueryBuilder;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -52,40 +53,55 @@ public class ProductCategoryBridge implements FieldBridge {
 
         if (value instanceof Collection) {
 
+            final long start = System.nanoTime();
+            try {
+                addCategories((Collection) value, document, luceneOptions);
+            } finally {
+                IndexBuildStatistics.record("ProductCategoryBridge", start);
+            }
+
+        }
+
+    }
 
-            /*
-             * We use service here as this is a heavy DB operation to scan all categories.
-             * We cannot run it on every indexing of product, which happens every time we
-             * update the product (including when it's inventory updates during ordering).
-             * This is the result of performance testing and unless we find a smarter way
-             * to flush/use cache we need this here.
-             *
-             * This should not cause any issues as product indexing should happen after
-             * all categories updates took place, so it is highly unlikely that the cache
-             * on getShopCategoriesIds(shop) will be out of sync.
-             */
+    private void addCategories(final Collection value, final Document document, final LuceneOptions luceneOptions) {
 
-            final ShopCategoryRelationshipSupport support = getShopCategoryRelationshipSupport();
-            final List<Shop> shops = support.getAll();
+        /*
+         * We use service here as this is a heavy DB operation to scan all categories.
+         * We cannot run it on every indexing of product, which happens every time we
+         * update the product (including when it's inventory updates during ordering).
+         * This is the result of performance testing and unless we find a smarter way
+         * to flush/use cache we need this here.
+         *
+         * This should not cause any issues as product indexing should happen after
+         * all categories updates took place, so it is highly unlikely that the cache
+         * on getShopCategoriesIds(shop) will be out of sync.
+         */
 
-            for (Object obj : (Collection) value) {
+        final ShopCategoryRelationshipSupport support = getShopCategoryRelationshipSupport();
+        final IndexBuildContext context = HibernateSearchBridgeStaticLocator.getIndexBuildContext();
 
-                ProductCategory productCategory = (ProductCategory) obj;
+        for (Object obj : value) {
 
-                final Category category = support.getCategoryById(productCategory.getCategory().getCategoryId());
+            ProductCategory productCategory = (ProductCategory) obj;
+
+            final Category category = support.getCategoryById(productCategory.getCategory().getCategoryId());
+
+            addCategory(document, luceneOptions, category, support);
+
+            if (context != null) {
+
+                // batch reindex has shops of all categories resolved upfront
+                for (final Long shopId : context.getCategoryShopIds(category.getCategoryId())) {
+                    addShop(document, luceneOptions, shopId);
+                }
 
-                addCategory(document, luceneOptions, category, support);
+            } else {
 
-                for (final Shop shop : shops) {
+                for (final Shop shop : support.getAll()) {
 
                     if (support.getShopCategoriesIds(shop.getShopId()).contains(category.getCategoryId())) {
-                        document.add(new Field(
-                                ProductSearchQueryBuilder.PRODUCT_SHOP_FIELD,
-                                String.valueOf(shop.getShopId()),
-                                Field.Store.NO,
-                                Field.Index.NOT_ANALYZED,
-                                luceneOptions.getTermVector()
-                        ));
+                        addShop(document, luceneOptions, shop.getShopId());
                     }
 
                 }
@@ -96,6 +112,20 @@ public class ProductCategoryBridge implements FieldBridge {
 
     }
 
+    private void addShop(final Document document,
+                         final LuceneOptions luceneOptions,
+                         final long shopId) {
+
+        document.add(new Field(
+                ProductSearchQueryBuilder.PRODUCT_SHOP_FIELD,
+                String.valueOf(shopId),
+                Field.Store.NO,
+                Field.Index.NOT_ANALYZED,
+                luceneOptions.getTermVector()
+        ));
+
+    }
+
     private void addCategory(final Document document,
                              final LuceneOptions luceneOptions,
                              final Category category,
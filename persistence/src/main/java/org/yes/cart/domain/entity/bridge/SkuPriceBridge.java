@@ -26,6 +26,8 @@ import org.yes.cart.domain.entity.Product;
 import org.yes.cart.domain.entity.ProductSku;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildContext;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildStatistics;
 import org.yes.cart.domain.entity.bridge.support.SkuPriceRelationshipSupport;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.domain.query.ProductSearchQueryBuilder;
@@ -53,10 +55,25 @@ public class SkuPriceBridge implements FieldBridge {
             return;
         }
 
-        final boolean isShowRoom = ((ProductSku) value).getProduct().getAvailability() == Product.AVAILABILITY_SHOWROOM;
+        final long start = System.nanoTime();
+        try {
+            addPrices((ProductSku) value, document, luceneOptions);
+        } finally {
+            IndexBuildStatistics.record("SkuPriceBridge", start);
+        }
+
+    }
+
+    private void addPrices(final ProductSku value, final Document document, final LuceneOptions luceneOptions) {
+
+        final boolean isShowRoom = value.getProduct().getAvailability() == Product.AVAILABILITY_SHOWROOM;
 
         final SkuPriceRelationshipSupport support = getSkuPriceRelationshipSupport();
-        final List<SkuPrice> allPrices = support.getSkuPrices(((ProductSku) value).getCode());
+        final IndexBuildContext context = HibernateSearchBridgeStaticLocator.getIndexBuildContext();
+        List<SkuPrice> allPrices = context != null ? context.getSkuPrices(value.getCode()) : null;
+        if (allPrices == null) {
+            allPrices = support.getSkuPrices(value.getCode());
+        }
 
         List<Long> availableIn = null;
         if (!allPrices.isEmpty()) {
@@ -23,6 +23,8 @@ import org.hibernate.search.bridge.LuceneOptions;
 import org.hibernate.search.bridge.TwoWayFieldBridge;
 import org.yes.cart.constants.Constants;
 import org.yes.cart.domain.entity.*;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildContext;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildStatistics;
 import org.yes.cart.domain.entity.bridge.support.ShopWarehouseRelationshipSupport;
 import org.yes.cart.domain.entity.bridge.support.SkuWarehouseRelationshipSupport;
 import org.yes.cart.domain.query.ProductSearchQueryBuilder;
@@ -47,68 +49,94 @@ public class SkuWarehouseBridge implements TwoWayFieldBridge {
     /** {@inheritDoc} */
     public void set(final String proposedFiledName, final Object value, final Document document, final LuceneOptions luceneOptions) {
 
+        if (value instanceof Collection) {
+
+            final long start = System.nanoTime();
+            try {
+                addInventory(proposedFiledName, (Collection) value, document, luceneOptions);
+            } finally {
+                IndexBuildStatistics.record("SkuWarehouseBridge", start);
+            }
+
+        }
+    }
+
+    private void addInventory(final String proposedFiledName,
+                              final Collection value,
+                              final Document document,
+                              final LuceneOptions luceneOptions) {
+
         final ShopWarehouseRelationshipSupport shopSupport = getShopWarehouseRelationshipSupport();
         final SkuWarehouseRelationshipSupport skuSupport = getSkuWarehouseRelationshipSupport();
+        final IndexBuildContext context = HibernateSearchBridgeStaticLocator.getIndexBuildContext();
 
-        if (value instanceof Collection) {
+        final Set<Shop> availableIn = new HashSet<Shop>();
 
-            final Set<Shop> availableIn = new HashSet<Shop>();
+        for (Object obj : value) {
 
-            for (Object obj : (Collection) value) {
+            final ProductSku sku = (ProductSku) obj;
 
-                final ProductSku sku = (ProductSku) obj;
+            final List<Shop> shops = shopSupport.getAll();
 
-                final List<Shop> shops = shopSupport.getAll();
+            final List<SkuWarehouse> skuInventory = context != null ? context.getQuantityOnWarehouse(sku.getCode()) : null;
 
-                for (final Shop shop : shops) {
+            for (final Shop shop : shops) {
 
+                BigDecimal qtyForShop = BigDecimal.ZERO;
+                if (skuInventory != null) {
+                    final Set<Long> warehouseIds = context.getShopWarehouseIds(shop.getShopId());
+                    for (final SkuWarehouse stock : skuInventory) {
+                        if (warehouseIds.contains(stock.getWarehouse().getWarehouseId())) {
+                            qtyForShop = qtyForShop.add(stock.getAvailableToSell());
+                        }
+                    }
+                } else {
                     final Set<Warehouse> warehouses = shopSupport.getShopWarehouses(shop);
 
                     final List<SkuWarehouse> inventory = skuSupport.getQuantityOnWarehouses(sku.getCode(), warehouses);
-                    BigDecimal qtyForShop = BigDecimal.ZERO;
                     for (final SkuWarehouse stock : inventory) {
                         qtyForShop = qtyForShop.add(stock.getAvailableToSell());
                     }
+                }
 
-                    if (MoneyUtils.isFirstBiggerThanSecond(qtyForShop, BigDecimal.ZERO)) {
-                        String rez = objectToString(shop.getShopId(), sku.getCode(), qtyForShop);
+                if (MoneyUtils.isFirstBiggerThanSecond(qtyForShop, BigDecimal.ZERO)) {
+                    String rez = objectToString(shop.getShopId(), sku.getCode(), qtyForShop);
 
-                        // Compacted
-                        document.add(new Field(
-                                proposedFiledName,
-                                rez,
-                                Field.Store.YES,
-                                Field.Index.NOT_ANALYZED,
-                                luceneOptions.getTermVector()
-                        ));
+                    // Compacted
+                    document.add(new Field(
+                            proposedFiledName,
+                            rez,
+                            Field.Store.YES,
+                            Field.Index.NOT_ANALYZED,
+                            luceneOptions.getTermVector()
+                    ));
 
-                        // Available in stock
-                        availableIn.add(shop);
+                    // Available in stock
+                    availableIn.add(shop);
 
-                    } else if (sku.getProduct().getAvailability() != Product.AVAILABILITY_STANDARD) {
+                } else if (sku.getProduct().getAvailability() != Product.AVAILABILITY_STANDARD) {
 
-                        // Available as perpetual (dates are verified by the index interceptor)
-                        availableIn.add(shop);
-
-                    }
+                    // Available as perpetual (dates are verified by the index interceptor)
+                    availableIn.add(shop);
 
                 }
-            }
 
-            for (final Shop shop : availableIn) {
+            }
+        }
 
-                // Fill in PK's of shops where we have this in stock.
-                document.add(new Field(
-                        ProductSearchQueryBuilder.PRODUCT_SHOP_INSTOCK_FIELD,
-                        String.valueOf(shop.getShopId()),
-                        Field.Store.NO,
-                        Field.Index.NOT_ANALYZED,
-                        luceneOptions.getTermVector()
-                ));
+        for (final Shop shop : availableIn) {
 
-            }
+            // Fill in PK's of shops where we have this in stock.
+            document.add(new Field(
+                    ProductSearchQueryBuilder.PRODUCT_SHOP_INSTOCK_FIELD,
+                    String.valueOf(shop.getShopId()),
+                    Field.Store.NO,
+                    Field.Index.NOT_ANALYZED,
+                    luceneOptions.getTermVector()
+            ));
 
         }
+
     }
 
     /** {@inheritDoc} */
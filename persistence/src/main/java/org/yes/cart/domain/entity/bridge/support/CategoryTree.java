@@ -0,0 +1,339 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support;
+
+import org.apache.commons.lang.StringUtils;
+import org.yes.cart.domain.entity.AttrValue;
+import org.yes.cart.domain.entity.Category;
+import org.yes.cart.domain.i18n.impl.FailoverStringI18NModel;
+import org.yes.cart.util.DomainApiUtils;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of category (and content) tree built from all categories in one go.
+ *
+ * Structure is held in primitive index arrays: parent index, link index and children in compressed form
+ * (children of node i are childIndex[childOffset[i]] ... childIndex[childOffset[i + 1] - 1]). For each node
+ * we also keep index of nearest category in hierarchy that defines given attribute, so that attribute
+ * inheritance does not require walking up the tree category by category.
+ *
+ * Snapshot is never modified, on category changes a new snapshot is built and replaces this one.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 19:40
+ */
+public final class CategoryTree {
+
+    private static final int NONE = -1;
+
+    private final Map<Long, Integer> indexById;
+    private final Category[] categories;
+    private final int[] parent;
+    private final int[] link;
+    private final int[] childOffset;
+    private final int[] childIndex;
+    private final Map<String, Integer>[] attributeOwner;
+
+    /**
+     * Build snapshot.
+     *
+     * @param all all categories (with attributes initialised)
+     */
+    @SuppressWarnings("unchecked")
+    public CategoryTree(final Collection<Category> all) {
+
+        final List<Category> sorted = new ArrayList<Category>(all);
+        Collections.sort(sorted, new Comparator<Category>() {
+            @Override
+            public int compare(final Category c1, final Category c2) {
+                return c1.getCategoryId() < c2.getCategoryId() ? -1 : (c1.getCategoryId() == c2.getCategoryId() ? 0 : 1);
+            }
+        });
+
+        final int size = sorted.size();
+
+        this.indexById = new HashMap<Long, Integer>(size * 2);
+        this.categories = sorted.toArray(new Category[size]);
+        for (int i = 0; i < size; i++) {
+            this.indexById.put(this.categories[i].getCategoryId(), i);
+        }
+
+        this.parent = new int[size];
+        this.link = new int[size];
+        final int[] childCount = new int[size];
+        for (int i = 0; i < size; i++) {
+            final Category category = this.categories[i];
+            this.parent[i] = category.isRoot() ? NONE : index(category.getParentId());
+            this.link[i] = category.getLinkToId() != null ? index(category.getLinkToId()) : NONE;
+            if (this.parent[i] != NONE) {
+                childCount[this.parent[i]]++;
+            }
+        }
+
+        this.childOffset = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            this.childOffset[i + 1] = this.childOffset[i] + childCount[i];
+        }
+        this.childIndex = new int[this.childOffset[size]];
+        final int[] fill = new int[size];
+        for (int i = 0; i < size; i++) { // ordered by PK since categories are sorted
+            final int p = this.parent[i];
+            if (p != NONE) {
+                this.childIndex[this.childOffset[p] + fill[p]++] = i;
+            }
+        }
+
+        this.attributeOwner = new Map[size];
+        final boolean[] visiting = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            resolveAttributeOwners(i, visiting);
+        }
+
+    }
+
+    private Map<String, Integer> resolveAttributeOwners(final int node, final boolean[] visiting) {
+
+        if (this.attributeOwner[node] != null) {
+            return this.attributeOwner[node];
+        }
+
+        final Category category = this.categories[node];
+        if (category.isRoot() || visiting[node]) {
+            // root values are never inherited, cycles in broken data are cut off
+            this.attributeOwner[node] = Collections.emptyMap();
+            return this.attributeOwner[node];
+        }
+        visiting[node] = true;
+
+        final Map<String, Integer> inherited = this.parent[node] != NONE ?
+                resolveAttributeOwners(this.parent[node], visiting) : Collections.<String, Integer>emptyMap();
+
+        final Map<String, Integer> owners = new HashMap<String, Integer>(inherited);
+        if (category.getAttributes() != null) {
+            for (final AttrValue av : category.getAttributes()) {
+                if (av.getAttribute() != null &&
+                        (StringUtils.isNotBlank(av.getVal()) || StringUtils.isNotBlank(av.getDisplayVal()))) {
+                    owners.put(av.getAttribute().getCode(), node);
+                }
+            }
+        }
+
+        this.attributeOwner[node] = owners.isEmpty() ? Collections.<String, Integer>emptyMap() : owners;
+        return this.attributeOwner[node];
+
+    }
+
+    private int index(final long categoryId) {
+        final Integer idx = this.indexById.get(categoryId);
+        return idx == null ? NONE : idx;
+    }
+
+    /**
+     * @return number of categories in this snapshot
+     */
+    public int size() {
+        return this.categories.length;
+    }
+
+    /**
+     * @param categoryId category PK
+     *
+     * @return category or null
+     */
+    public Category getCategory(final long categoryId) {
+        final int idx = index(categoryId);
+        return idx == NONE ? null : this.categories[idx];
+    }
+
+    /**
+     * @param categoryId category PK
+     * @param followLink if category is a link then children of linked category are checked
+     *
+     * @return true if category has child categories
+     */
+    public boolean hasChildren(final long categoryId, final boolean followLink) {
+        final int idx = target(index(categoryId), followLink);
+        return idx != NONE && this.childOffset[idx + 1] > this.childOffset[idx];
+    }
+
+    /**
+     * @param categoryId  category PK
+     * @param followLink  if category is a link then children of linked category are returned
+     * @param availableOn date for availability check, or null for all children
+     *
+     * @return immediate children
+     */
+    public List<Category> getChildren(final long categoryId, final boolean followLink, final Date availableOn) {
+        final int idx = target(index(categoryId), followLink);
+        if (idx == NONE) {
+            return new ArrayList<Category>(0);
+        }
+        final List<Category> children = new ArrayList<Category>(this.childOffset[idx + 1] - this.childOffset[idx]);
+        for (int i = this.childOffset[idx]; i < this.childOffset[idx + 1]; i++) {
+            final Category child = this.categories[this.childIndex[i]];
+            if (availableOn == null ||
+                    DomainApiUtils.isObjectAvailableNow(true, child.getAvailablefrom(), child.getAvailableto(), availableOn)) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @param categoryId  category PK
+     * @param followLink  if category is a link then children of linked category are returned
+     * @param availableOn date for availability check, or null for all children
+     *
+     * @return category itself and all its sub categories, or empty set if category does not exist
+     */
+    public Set<Category> getChildrenRecursive(final long categoryId, final boolean followLink, final Date availableOn) {
+        final int idx = index(categoryId);
+        if (idx == NONE) {
+            return Collections.emptySet();
+        }
+        final Set<Category> all = new HashSet<Category>();
+        final boolean[] visited = new boolean[this.categories.length];
+        all.add(this.categories[idx]);
+        final Deque<Integer> stack = new ArrayDeque<Integer>();
+        stack.push(idx);
+        while (!stack.isEmpty()) {
+            final int node = target(stack.pop(), followLink);
+            if (node == NONE || visited[node]) {
+                continue;
+            }
+            visited[node] = true;
+            for (int i = this.childOffset[node]; i < this.childOffset[node + 1]; i++) {
+                final Category child = this.categories[this.childIndex[i]];
+                if (availableOn == null ||
+                        DomainApiUtils.isObjectAvailableNow(true, child.getAvailablefrom(), child.getAvailableto(), availableOn)) {
+                    all.add(child);
+                    stack.push(this.childIndex[i]);
+                }
+            }
+        }
+        return all;
+    }
+
+    /**
+     * All categories that belong to given top category including linked categories and their sub trees.
+     * No availability check is done.
+     *
+     * @param categoryId top category PK
+     *
+     * @return category PKs
+     */
+    public Set<Long> getSubTreeIdsWithLinks(final long categoryId) {
+        final int idx = index(categoryId);
+        if (idx == NONE) {
+            return Collections.emptySet();
+        }
+        final Set<Long> ids = new HashSet<Long>();
+        final boolean[] visited = new boolean[this.categories.length];
+        final Deque<Integer> stack = new ArrayDeque<Integer>();
+        stack.push(idx);
+        while (!stack.isEmpty()) {
+            final int node = stack.pop();
+            ids.add(this.categories[node].getCategoryId());
+            if (this.categories[node].getLinkToId() != null && this.link[node] == NONE) {
+                continue; // broken link
+            }
+            final int expand = target(node, true);
+            if (visited[expand]) {
+                continue;
+            }
+            visited[expand] = true;
+            ids.add(this.categories[expand].getCategoryId());
+            for (int i = this.childOffset[expand]; i < this.childOffset[expand + 1]; i++) {
+                stack.push(this.childIndex[i]);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @param topCategoryId top category PK
+     * @param subCategoryId sub category PK
+     *
+     * @return true if sub category is top category or one of its descendants (links are not followed)
+     */
+    public boolean isSubCategory(final long topCategoryId, final long subCategoryId) {
+        int node = index(subCategoryId);
+        if (node == NONE) {
+            return false;
+        }
+        int depth = 0;
+        while (node != NONE && depth++ <= this.categories.length) {
+            if (this.categories[node].getCategoryId() == topCategoryId) {
+                return true;
+            }
+            node = this.parent[node];
+        }
+        return false;
+    }
+
+    /**
+     * Resolve attribute value from category or nearest parent that has non blank value. Root category
+     * values are not considered.
+     *
+     * @param locale        locale for localisable value (or null for raw)
+     * @param categoryId    category PK
+     * @param attributeName attribute code
+     *
+     * @return value or null
+     */
+    public String getAttributeValueRecursive(final String locale, final long categoryId, final String attributeName) {
+        if (attributeName == null) {
+            return null;
+        }
+        int node = index(categoryId);
+        int depth = 0;
+        while (node != NONE && depth++ <= this.categories.length) {
+            final Integer owner = this.attributeOwner[node].get(attributeName);
+            if (owner == null) {
+                return null;
+            }
+            final AttrValue attrValue = this.categories[owner].getAttributeByCode(attributeName);
+            if (attrValue != null) {
+                final String val;
+                if (locale == null) {
+                    val = attrValue.getVal();
+                } else {
+                    val = new FailoverStringI18NModel(attrValue.getDisplayVal(), attrValue.getVal()).getValue(locale);
+                }
+                if (StringUtils.isNotBlank(val)) {
+                    return val;
+                }
+            }
+            // value is blank in this locale, carry on from parent of owner
+            node = this.parent[owner];
+        }
+        return null;
+    }
+
+    private int target(final int idx, final boolean followLink) {
+        if (idx == NONE) {
+            return NONE;
+        }
+        if (followLink && this.categories[idx].getLinkToId() != null) {
+            return this.link[idx];
+        }
+        return idx;
+    }
+
+}
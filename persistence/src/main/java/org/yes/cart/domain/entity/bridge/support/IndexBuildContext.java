@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support;
+
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.domain.entity.SkuWarehouse;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Data prefetched for a batch of documents during reindex. Bridges use context when it is bound
+ * to current thread (see {@link org.yes.cart.domain.entity.bridge.HibernateSearchBridgeStaticLocator#getIndexBuildContext()})
+ * and fall back to relationship support services otherwise.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:25
+ */
+public interface IndexBuildContext {
+
+    /**
+     * Get prices for given sku on all shops.
+     *
+     * @param sku sku code
+     *
+     * @return all prices for given sku or null if this sku was not prefetched
+     */
+    List<SkuPrice> getSkuPrices(String sku);
+
+    /**
+     * Get quantities for given sku on all warehouses.
+     *
+     * @param sku sku code
+     *
+     * @return all inventory for given sku or null if this sku was not prefetched
+     */
+    List<SkuWarehouse> getQuantityOnWarehouse(String sku);
+
+    /**
+     * Get warehouses that belong to given shop.
+     *
+     * @param shopId shop PK
+     *
+     * @return warehouse PKs
+     */
+    Set<Long> getShopWarehouseIds(long shopId);
+
+    /**
+     * Get shops that have given category in their category tree.
+     *
+     * @param categoryId category PK
+     *
+     * @return shop PKs
+     */
+    Set<Long> getCategoryShopIds(long categoryId);
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per bridge timing counters that show where document building time goes during indexing.
+ * Counters are cumulative since last {@link #reset()}, full reindex resets them at the start
+ * and logs them once it is finished.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:30
+ */
+public final class IndexBuildStatistics {
+
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<String, Counter>();
+
+    private IndexBuildStatistics() {
+        // no instance
+    }
+
+    /**
+     * Record single bridge invocation.
+     *
+     * @param bridge      bridge name
+     * @param startNanos  {@link System#nanoTime()} at the start of invocation
+     */
+    public static void record(final String bridge, final long startNanos) {
+        Counter counter = COUNTERS.get(bridge);
+        if (counter == null) {
+            final Counter created = new Counter();
+            counter = COUNTERS.putIfAbsent(bridge, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.count.incrementAndGet();
+        counter.nanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return bridge name to pair of invocations count and total time in milliseconds
+     */
+    public static Map<String, long[]> getTimings() {
+        final Map<String, long[]> timings = new TreeMap<String, long[]>();
+        for (final Map.Entry<String, Counter> counter : COUNTERS.entrySet()) {
+            timings.put(counter.getKey(), new long[] {
+                    counter.getValue().count.get(),
+                    TimeUnit.NANOSECONDS.toMillis(counter.getValue().nanos.get())
+            });
+        }
+        return timings;
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public static void reset() {
+        COUNTERS.clear();
+    }
+
+    /**
+     * @return human readable timings
+     */
+    public static String toLogString() {
+        final StringBuilder out = new StringBuilder();
+        for (final Map.Entry<String, long[]> timing : getTimings().entrySet()) {
+            if (out.length() > 0) {
+                out.append(", ");
+            }
+            out.append(timing.getKey()).append(": ")
+                    .append(timing.getValue()[0]).append(" calls in ")
+                    .append(timing.getValue()[1]).append("ms");
+        }
+        return out.toString();
+    }
+
+    private static final class Counter {
+
+        private final AtomicLong count = new AtomicLong(0L);
+        private final AtomicLong nanos = new AtomicLong(0L);
+
+    }
+
+}
@@ -62,4 +62,38 @@ public interface ShopCategoryRelationshipSupport {
      */
     Set<Long> getCategoryParentsIds(long categoryId);
 
+    /**
+     * Get snapshot of the whole category tree (categories and content). Snapshot is built with
+     * single query and is replaced as a whole on category changes. While replacement is being built
+     * previous snapshot is returned.
+     *
+     * @return category tree
+     */
+    CategoryTree getCategoryTree();
+
+    /**
+     * Generation of category tree snapshot. Generation is held in "categoryService-categoryTree" cache,
+     * so that eviction of this cache region causes new generation to be requested, which triggers single
+     * rebuild of snapshot.
+     *
+     * @return requested snapshot generation
+     */
+    Long getCategoryTreeGeneration();
+
+    /**
+     * Version of category tree snapshot that is currently served. Version changes after new snapshot is
+     * in place and caches derived from it are evicted, so it can be used as part of keys for data (e.g.
+     * rendered markup) that is built from category tree and is not evicted together with it.
+     *
+     * @return current snapshot version
+     */
+    long getCategoryTreeVersion();
+
+    /**
+     * Evict caches with values derived from category tree snapshot. These caches are evicted on category
+     * changes together with snapshot, but may be re-populated from previous snapshot while new one is being
+     * built, so they are evicted again as soon as new snapshot is in place.
+     */
+    void evictCategoryTreeDependentCaches();
+
 }
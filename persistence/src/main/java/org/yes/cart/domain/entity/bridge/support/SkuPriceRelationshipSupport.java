@@ -19,6 +19,7 @@ package org.yes.cart.domain.entity.bridge.support;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.SkuPrice;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -44,4 +45,13 @@ public interface SkuPriceRelationshipSupport {
      */
     List<SkuPrice> getSkuPrices(String sku);
 
+    /**
+     * Get prices for given skus on all shops.
+     *
+     * @param skus sku codes
+     *
+     * @return all prices for given skus on the system
+     */
+    List<SkuPrice> getSkuPrices(Collection<String> skus);
+
 }
@@ -38,6 +38,15 @@ public interface SkuWarehouseRelationshipSupport {
      */
     List<SkuWarehouse> getQuantityOnWarehouse(String sku);
 
+    /**
+     * Get quantities for given skus on all warehouses.
+     *
+     * @param skus sku codes
+     *
+     * @return all inventory for given skus on the system
+     */
+    List<SkuWarehouse> getQuantityOnWarehouse(Collection<String> skus);
+
     /**
      * Get quantities for given sku on given warehouse.
      *
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support.impl;
+
+import org.yes.cart.domain.entity.Shop;
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.domain.entity.SkuWarehouse;
+import org.yes.cart.domain.entity.bridge.HibernateSearchBridgeStaticLocator;
+import org.yes.cart.domain.entity.bridge.support.*;
+import org.yes.cart.domain.entityindexer.IndexBuildContextFactory;
+
+import java.util.*;
+
+/**
+ * Base factory for context of entities that are indexed with SKU level data (prices and inventory).
+ * Prices and inventory of the whole batch are loaded with set based queries, shop links come from
+ * relationship support services (which are cached).
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:40
+ */
+public abstract class AbstractSkuIndexBuildContextFactoryImpl<T> implements IndexBuildContextFactory<T> {
+
+    private final ShopWarehouseRelationshipSupport shopWarehouseSupport;
+    private final ShopCategoryRelationshipSupport shopCategorySupport;
+    private final SkuPriceRelationshipSupport skuPriceSupport;
+    private final SkuWarehouseRelationshipSupport skuWarehouseSupport;
+
+    private int maxInListSize = 500;
+
+    protected AbstractSkuIndexBuildContextFactoryImpl(final ShopWarehouseRelationshipSupport shopWarehouseSupport,
+                                                      final ShopCategoryRelationshipSupport shopCategorySupport,
+                                                      final SkuPriceRelationshipSupport skuPriceSupport,
+                                                      final SkuWarehouseRelationshipSupport skuWarehouseSupport) {
+        this.shopWarehouseSupport = shopWarehouseSupport;
+        this.shopCategorySupport = shopCategorySupport;
+        this.skuPriceSupport = skuPriceSupport;
+        this.skuWarehouseSupport = skuWarehouseSupport;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void open(final Collection<T> batch) {
+
+        final Set<String> skuCodes = new HashSet<String>();
+        for (final T entity : batch) {
+            collectSkuCodes(entity, skuCodes);
+        }
+
+        final List<SkuPrice> prices = new ArrayList<SkuPrice>();
+        final List<SkuWarehouse> inventory = new ArrayList<SkuWarehouse>();
+        final List<String> chunk = new ArrayList<String>(maxInListSize);
+        final Iterator<String> codes = skuCodes.iterator();
+        while (codes.hasNext()) {
+            chunk.add(codes.next());
+            if (chunk.size() == maxInListSize || !codes.hasNext()) {
+                prices.addAll(skuPriceSupport.getSkuPrices(chunk));
+                inventory.addAll(skuWarehouseSupport.getQuantityOnWarehouse(chunk));
+                chunk.clear();
+            }
+        }
+
+        final Map<Long, Set<Long>> shopWarehouseIds = new HashMap<Long, Set<Long>>();
+        final Map<Long, Set<Long>> shopCategoryIds = new HashMap<Long, Set<Long>>();
+        for (final Shop shop : shopWarehouseSupport.getAll()) {
+            shopWarehouseIds.put(shop.getShopId(), shopWarehouseSupport.getShopWarehouseIds(shop));
+            shopCategoryIds.put(shop.getShopId(), shopCategorySupport.getShopCategoriesIds(shop.getShopId()));
+        }
+
+        HibernateSearchBridgeStaticLocator.bindIndexBuildContext(
+                new IndexBuildContextImpl(skuCodes, prices, inventory, shopWarehouseIds, shopCategoryIds));
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        HibernateSearchBridgeStaticLocator.unbindIndexBuildContext();
+    }
+
+    /**
+     * Collect codes of all SKU that are indexed as part of given entity.
+     *
+     * @param entity   entity
+     * @param skuCodes codes
+     */
+    protected abstract void collectSkuCodes(T entity, Set<String> skuCodes);
+
+    /**
+     * IoC. Max number of SKU codes in single "in" query.
+     *
+     * @param maxInListSize max number of parameters (default 500)
+     */
+    public void setMaxInListSize(final int maxInListSize) {
+        this.maxInListSize = maxInListSize;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support.impl;
+
+import org.yes.cart.domain.entity.SkuPrice;
+import org.yes.cart.domain.entity.SkuWarehouse;
+import org.yes.cart.domain.entity.bridge.support.IndexBuildContext;
+
+import java.util.*;
+
+/**
+ * Immutable context for single batch of documents.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:35
+ */
+public class IndexBuildContextImpl implements IndexBuildContext {
+
+    private final Map<String, List<SkuPrice>> prices;
+    private final Map<String, List<SkuWarehouse>> inventory;
+    private final Map<Long, Set<Long>> shopWarehouseIds;
+    private final Map<Long, Set<Long>> categoryShopIds;
+
+    /**
+     * @param skuCodes         SKU codes in this batch
+     * @param prices           all prices for SKU in this batch
+     * @param inventory        all inventory for SKU in this batch
+     * @param shopWarehouseIds shop PK to warehouse PKs
+     * @param shopCategoryIds  shop PK to category PKs in shop's category tree
+     */
+    public IndexBuildContextImpl(final Collection<String> skuCodes,
+                                 final List<SkuPrice> prices,
+                                 final List<SkuWarehouse> inventory,
+                                 final Map<Long, Set<Long>> shopWarehouseIds,
+                                 final Map<Long, Set<Long>> shopCategoryIds) {
+
+        this.prices = new HashMap<String, List<SkuPrice>>(skuCodes.size() * 2);
+        this.inventory = new HashMap<String, List<SkuWarehouse>>(skuCodes.size() * 2);
+        for (final String skuCode : skuCodes) {
+            this.prices.put(skuCode, new ArrayList<SkuPrice>(2));
+            this.inventory.put(skuCode, new ArrayList<SkuWarehouse>(2));
+        }
+        for (final SkuPrice price : prices) {
+            final List<SkuPrice> skuPrices = this.prices.get(price.getSkuCode());
+            if (skuPrices != null) {
+                skuPrices.add(price);
+            }
+        }
+        for (final SkuWarehouse stock : inventory) {
+            final List<SkuWarehouse> skuInventory = this.inventory.get(stock.getSkuCode());
+            if (skuInventory != null) {
+                skuInventory.add(stock);
+            }
+        }
+
+        this.shopWarehouseIds = shopWarehouseIds;
+
+        this.categoryShopIds = new HashMap<Long, Set<Long>>();
+        for (final Map.Entry<Long, Set<Long>> shop : shopCategoryIds.entrySet()) {
+            for (final Long categoryId : shop.getValue()) {
+                Set<Long> shops = this.categoryShopIds.get(categoryId);
+                if (shops == null) {
+                    shops = new HashSet<Long>();
+                    this.categoryShopIds.put(categoryId, shops);
+                }
+                shops.add(shop.getKey());
+            }
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<SkuPrice> getSkuPrices(final String sku) {
+        return prices.get(sku);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<SkuWarehouse> getQuantityOnWarehouse(final String sku) {
+        return inventory.get(sku);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Long> getShopWarehouseIds(final long shopId) {
+        final Set<Long> warehouses = shopWarehouseIds.get(shopId);
+        if (warehouses == null) {
+            return Collections.emptySet();
+        }
+        return warehouses;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Long> getCategoryShopIds(final long categoryId) {
+        final Set<Long> shops = categoryShopIds.get(categoryId);
+        if (shops == null) {
+            return Collections.emptySet();
+        }
+        return shops;
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support.impl;
+
+import org.yes.cart.domain.entity.ProductSku;
+import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
+import org.yes.cart.domain.entity.bridge.support.ShopWarehouseRelationshipSupport;
+import org.yes.cart.domain.entity.bridge.support.SkuPriceRelationshipSupport;
+import org.yes.cart.domain.entity.bridge.support.SkuWarehouseRelationshipSupport;
+
+import java.util.Set;
+
+/**
+ * Context factory for product SKU index, which contains prices of SKU.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:50
+ */
+public class ProductSkuIndexBuildContextFactoryImpl extends AbstractSkuIndexBuildContextFactoryImpl<ProductSku> {
+
+    public ProductSkuIndexBuildContextFactoryImpl(final ShopWarehouseRelationshipSupport shopWarehouseSupport,
+                                                  final ShopCategoryRelationshipSupport shopCategorySupport,
+                                                  final SkuPriceRelationshipSupport skuPriceSupport,
+                                                  final SkuWarehouseRelationshipSupport skuWarehouseSupport) {
+        super(shopWarehouseSupport, shopCategorySupport, skuPriceSupport, skuWarehouseSupport);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void collectSkuCodes(final ProductSku entity, final Set<String> skuCodes) {
+        skuCodes.add(entity.getCode());
+    }
+
+}
@@ -17,21 +17,37 @@
 package org.yes.cart.domain.entity.bridge.support.impl;
 
 import org.hibernate.Hibernate;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.yes.cart.dao.GenericDAO;
 import org.yes.cart.domain.entity.Category;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.ShopCategory;
+import org.yes.cart.domain.entity.bridge.support.CategoryTree;
 import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
+import org.yes.cart.util.ShopCodeContext;
 
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Extra logic to determine relationship between categories and shops.
  *
+ * Category tree snapshot is held in memory and is never evicted. Eviction of "categoryService-categoryTree"
+ * cache region only requests new generation, which is built once by rebuild executor (or by requesting thread if
+ * there is no executor) while all other threads are served previous snapshot, after which snapshots are swapped
+ * and caches derived from snapshot (which could have been re-populated from previous snapshot) are evicted.
+ *
  * User: denispavlov
  * Date: 13-10-01
  * Time: 1:55 PM
@@ -41,6 +57,15 @@ public class ShopCategoryRelationshipSupportImpl implements ShopCategoryRelation
     private final GenericDAO<Shop, Long> shopDao;
     private final GenericDAO<Category, Long> categoryDao;
 
+    private final AtomicReference<CategoryTree> categoryTree = new AtomicReference<CategoryTree>();
+    private final AtomicLong requestedGeneration = new AtomicLong(0L);
+    private final AtomicLong categoryTreeVersion = new AtomicLong(0L);
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final Object initLock = new Object();
+
+    private TaskExecutor rebuildExecutor;
+    private TransactionTemplate rebuildTransaction;
+
     public ShopCategoryRelationshipSupportImpl(final GenericDAO<Shop, Long> shopDao,
                                                final GenericDAO<Category, Long> categoryDao) {
         this.shopDao = shopDao;
@@ -53,59 +78,147 @@ public class ShopCategoryRelationshipSupportImpl implements ShopCategoryRelation
         return this.shopDao.findAll();
     }
 
-    private Set<Category> getShopCategories(final long shopId) {
-
-        final Set<Category> result = new HashSet<Category>();
-
-        for (ShopCategory shopCategory : shopDao.findById(shopId).getShopCategory()) {
+    /**
+     * {@inheritDoc}
+     */
+    public CategoryTree getCategoryTree() {
+
+        // cache miss (i.e. eviction) requests new generation
+        proxy().getCategoryTreeGeneration();
+
+        CategoryTree tree = categoryTree.get();
+        if (tree == null) {
+            synchronized (initLock) {
+                // first snapshot is built while callers wait, there is nothing to serve yet
+                tree = categoryTree.get();
+                if (tree == null) {
+                    tree = buildCategoryTree();
+                    categoryTree.set(tree);
+                    categoryTreeVersion.incrementAndGet();
+                }
+            }
+        }
+        return tree;
+    }
 
-            loadChildCategoriesRecursiveInternal(result, shopCategory.getCategory().getCategoryId());
+    /**
+     * {@inheritDoc}
+     */
+    @Cacheable(value = "categoryService-categoryTree")
+    public Long getCategoryTreeGeneration() {
 
+        final long generation = requestedGeneration.incrementAndGet();
+        if (categoryTree.get() != null) {
+            scheduleRebuild();
         }
+        return generation;
 
-        return result;
     }
 
-    private void loadChildCategoriesRecursiveInternal(final Set<Category> result, final Long categoryId) {
+    /**
+     * {@inheritDoc}
+     */
+    public long getCategoryTreeVersion() {
+        return categoryTreeVersion.get();
+    }
+
+    private void scheduleRebuild() {
 
-        final Category cat = categoryDao.findById(categoryId);
-        if (cat == null) {
-            return;
+        if (!rebuilding.compareAndSet(false, true)) {
+            return; // rebuild in progress will pick up requested generation
         }
 
-        Hibernate.initialize(cat);
-        result.add(cat);
+        final Runnable rebuild = new Runnable() {
+            @Override
+            public void run() {
+                long built = -1L;
+                try {
+                    long requested;
+                    do {
+                        requested = requestedGeneration.get();
+                        categoryTree.set(buildCategoryTreeInTransaction());
+                        built = requested;
+                        proxy().evictCategoryTreeDependentCaches();
+                        // only after derived caches are evicted, so that new version is never built from stale data
+                        categoryTreeVersion.incrementAndGet();
+                    } while (requestedGeneration.get() != requested); // changed while we were building
+                } catch (Exception exp) {
+                    ShopCodeContext.getLog(ShopCategoryRelationshipSupportImpl.this).error(
+                            "Unable to rebuild category tree snapshot, previous snapshot is used, cause: " + exp.getMessage(), exp);
+                } finally {
+                    rebuilding.set(false);
+                }
+                if (built != -1L && requestedGeneration.get() != built) {
+                    scheduleRebuild(); // requested after last check
+                }
+            }
+        };
 
-        final long parentId;
-        if (cat.getLinkToId() != null) {
-            // linked
-            final Category linked = categoryDao.findById(cat.getLinkToId());
-            if (linked == null) {
+        if (rebuildExecutor != null) {
+            try {
+                rebuildExecutor.execute(rebuild);
                 return;
+            } catch (Exception exp) {
+                ShopCodeContext.getLog(this).warn("Unable to rebuild category tree in background, rebuilding on request thread");
             }
-
-            Hibernate.initialize(linked);
-            result.add(linked);
-            parentId = cat.getLinkToId();
-        } else {
-            parentId = categoryId;
         }
+        rebuild.run();
 
-        final List<Category> categories = categoryDao.findByNamedQueryCached(
-                "CATEGORIES.BY.PARENTID.WITHOUT.DATE.FILTERING",
-                parentId
-        );
+    }
 
-        result.addAll(categories);
+    /**
+     * {@inheritDoc}
+     */
+    @CacheEvict(value = {
+            "categoryService-topLevelCategories",
+            "categoryService-currentCategoryMenu",
+            "breadCrumbBuilder-breadCrumbs",
+            "categoryService-categoryAttributeRecursive",
+            "categoryService-categoryAttributesRecursive",
+            "categoryService-categoryHasChildren",
+            "categoryService-childCategories",
+            "categoryService-childCategoriesRecursive",
+            "categoryService-childCategoriesRecursiveIds",
+            "categoryService-childCategoriesRecursiveIdsWithLinks",
+            "categoryService-categoryIdsWithLinks",
+            "categoryService-categoryHasSubcategory",
+            "contentService-contentAttributeRecursive",
+            "contentService-contentAttributesRecursive",
+            "contentService-childContent",
+            "contentService-childContentRecursive",
+            "contentService-contentHasSubcontent",
+            "shopService-shopCategoriesIds",
+            "shopService-shopContentIds",
+            "shopService-shopAllCategoriesIds"
+    }, allEntries = true)
+    public void evictCategoryTreeDependentCaches() {
+        ShopCodeContext.getLog(this).debug("Evicted caches derived from category tree snapshot");
+    }
 
-        for (Category subCategory : categories) {
+    private CategoryTree buildCategoryTreeInTransaction() {
+        if (rebuildTransaction == null) {
+            return buildCategoryTree();
+        }
+        return rebuildTransaction.execute(new TransactionCallback<CategoryTree>() {
+            @Override
+            public CategoryTree doInTransaction(final TransactionStatus status) {
+                return buildCategoryTree();
+            }
+        });
+    }
 
-            loadChildCategoriesRecursiveInternal(result, subCategory.getCategoryId());
+    private CategoryTree buildCategoryTree() {
 
-        }
+        final long start = System.currentTimeMillis();
 
-    }
+        final List<Category> all = categoryDao.findByNamedQuery("ALL.CATEGORIES.WITH.ATTRIBUTES");
+        final CategoryTree tree = new CategoryTree(all);
+
+        ShopCodeContext.getLog(this).info("Built category tree snapshot of {} categories in {}ms",
+                tree.size(), System.currentTimeMillis() - start);
 
+        return tree;
+    }
 
     /**
      * {@inheritDoc} Just to cache
@@ -141,7 +254,17 @@ public class ShopCategoryRelationshipSupportImpl implements ShopCategoryRelation
      */
     @Cacheable(value = "shopService-shopCategoriesIds"/*, key ="shop.getShopId()"*/)
     public Set<Long> getShopCategoriesIds(final long shopId) {
-        return transform(getShopCategories(shopId));
+
+        final CategoryTree tree = proxy().getCategoryTree();
+        final Set<Long> result = new HashSet<Long>();
+
+        for (ShopCategory shopCategory : shopDao.findById(shopId).getShopCategory()) {
+
+            result.addAll(tree.getSubTreeIdsWithLinks(shopCategory.getCategory().getCategoryId()));
+
+        }
+
+        return result;
     }
 
     public Set<Long> transform(final Collection<Category> categories) {
@@ -152,6 +275,29 @@ public class ShopCategoryRelationshipSupportImpl implements ShopCategoryRelation
         return result;
     }
 
+    /**
+     * IoC. Executor that rebuilds category tree snapshot in background.
+     *
+     * @param rebuildExecutor executor
+     */
+    public void setRebuildExecutor(final TaskExecutor rebuildExecutor) {
+        this.rebuildExecutor = rebuildExecutor;
+    }
+
+    /**
+     * IoC. Transaction manager for background rebuild of category tree snapshot.
+     *
+     * @param transactionManager transaction manager
+     */
+    public void setTransactionManager(final PlatformTransactionManager transactionManager) {
+        if (transactionManager != null) {
+            this.rebuildTransaction = new TransactionTemplate(transactionManager);
+            this.rebuildTransaction.setReadOnly(true);
+        } else {
+            this.rebuildTransaction = null;
+        }
+    }
+
     private ShopCategoryRelationshipSupport proxy;
 
     private ShopCategoryRelationshipSupport proxy() {
@@ -22,6 +22,8 @@ import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.entity.SkuPrice;
 import org.yes.cart.domain.entity.bridge.support.SkuPriceRelationshipSupport;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -50,4 +52,12 @@ public class SkuPriceRelationshipSupportImpl implements SkuPriceRelationshipSupp
     public List<SkuPrice> getSkuPrices(final String sku) {
         return skuPriceDao.findByNamedQuery("SKUPRICE.BY.SKUCODE.ALL", sku);
     }
+
+    /** {@inheritDoc} */
+    public List<SkuPrice> getSkuPrices(final Collection<String> skus) {
+        if (skus.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return skuPriceDao.findByNamedQuery("SKUPRICE.BY.SKUCODES.ALL", skus);
+    }
 }
@@ -48,6 +48,16 @@ public class SkuWarehouseRelationshipSupportImpl implements SkuWarehouseRelation
         return skuWarehouseDao.findByNamedQuery("SKUS.ON.WAREHOUSES.BY.SKUCODE.ALL", sku);
     }
 
+    /** {@inheritDoc} */
+    public List<SkuWarehouse> getQuantityOnWarehouse(final Collection<String> skus) {
+
+        if (CollectionUtils.isEmpty(skus)) {
+            return Collections.emptyList();
+        }
+
+        return skuWarehouseDao.findByNamedQuery("SKUS.ON.WAREHOUSES.BY.SKUCODES.ALL", skus);
+    }
+
     /** {@inheritDoc} */
     public List<SkuWarehouse> getQuantityOnWarehouse(final String sku, final Warehouse warehouse) {
 
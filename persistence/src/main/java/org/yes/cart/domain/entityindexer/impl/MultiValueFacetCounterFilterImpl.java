@@ -0,0 +1,80 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.yes.cart.domain.entityindexer.impl;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.FixedBitSet;
+import org.yes.cart.domain.entityindexer.MultiValueFacetCounter;
+import org.yes.cart.domain.misc.Pair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Basic counter that creates term filter bit set for each value of the field and intersects
+ * it with base bit set. Nothing is cached between requests, so this is only suitable for
+ * fields with small number of values.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 11:12
+ */
+public class MultiValueFacetCounterFilterImpl implements MultiValueFacetCounter {
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Pair<String, Integer>> countFacets(final IndexReader indexReader,
+                                                   final FixedBitSet baseBitSet,
+                                                   final String field) throws IOException {
+
+        final List<Pair<String, Integer>> facetsPairs = new ArrayList<Pair<String, Integer>>();
+
+        final TermEnum terms = indexReader.terms(new Term(field, ""));
+        try {
+            do {
+                final Term term = terms.term();
+                if (term == null || !field.equals(term.field())) {
+                    break;
+                }
+
+                final CachingWrapperFilter filter = new CachingWrapperFilter(new QueryWrapperFilter(new TermQuery(term)));
+                final DocIdSet docIdSet = filter.getDocIdSet(indexReader);
+                if (docIdSet instanceof FixedBitSet) {
+                    final FixedBitSet filterBitSet = (FixedBitSet) docIdSet;
+                    filterBitSet.and(baseBitSet);
+                    final long count = filterBitSet.cardinality();
+                    if (count > 0L) {
+                        facetsPairs.add(new Pair<String, Integer>(term.text(), (int) count));
+                    }
+                }
+
+            } while (terms.next());
+        } finally {
+            terms.close();
+        }
+
+        return facetsPairs;
+    }
+
+}
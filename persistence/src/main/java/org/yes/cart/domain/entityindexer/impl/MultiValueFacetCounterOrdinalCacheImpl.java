@@ -0,0 +1,214 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.yes.cart.domain.entityindexer.impl;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ReaderUtil;
+import org.yes.cart.domain.entityindexer.MultiValueFacetCounter;
+import org.yes.cart.domain.misc.Pair;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter that keeps document to value ordinal map per segment reader and per field. Ordinal map
+ * is built once when field is requested for the first time on given segment and is reused until
+ * the segment is merged away (cache is keyed by segment core cache key, so it is released together
+ * with segment reader). All values of the field are then counted in a single pass over the base
+ * bit set.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 11:20
+ */
+public class MultiValueFacetCounterOrdinalCacheImpl implements MultiValueFacetCounter {
+
+    private final Map<Object, Map<String, FieldOrdinals>> cache = new WeakHashMap<Object, Map<String, FieldOrdinals>>();
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Pair<String, Integer>> countFacets(final IndexReader indexReader,
+                                                   final FixedBitSet baseBitSet,
+                                                   final String field) throws IOException {
+
+        final List<IndexReader> segments = new ArrayList<IndexReader>();
+        ReaderUtil.gatherSubReaders(segments, indexReader);
+
+        final int baseLength = baseBitSet.length();
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        int docBase = 0;
+        for (final IndexReader segment : segments) {
+
+            final int maxDoc = segment.maxDoc();
+            if (docBase >= baseLength) {
+                break;
+            }
+
+            final FieldOrdinals ordinals = getOrdinals(segment, field);
+            if (ordinals.values.length > 0) {
+
+                final int[] segmentCounts = new int[ordinals.values.length];
+                final int docEnd = Math.min(docBase + maxDoc, baseLength);
+
+                int doc = baseBitSet.nextSetBit(docBase);
+                while (doc != -1 && doc < docEnd) {
+                    final int[] docOrds = ordinals.docOrdinals[doc - docBase];
+                    if (docOrds != null) {
+                        for (final int ord : docOrds) {
+                            segmentCounts[ord]++;
+                        }
+                    }
+                    doc = doc + 1 < baseLength ? baseBitSet.nextSetBit(doc + 1) : -1;
+                }
+
+                for (int ord = 0; ord < segmentCounts.length; ord++) {
+                    if (segmentCounts[ord] > 0) {
+                        final Integer current = counts.get(ordinals.values[ord]);
+                        counts.put(ordinals.values[ord], current == null ? segmentCounts[ord] : current + segmentCounts[ord]);
+                    }
+                }
+            }
+
+            docBase += maxDoc;
+        }
+
+        final List<Pair<String, Integer>> facetsPairs = new ArrayList<Pair<String, Integer>>(counts.size());
+        for (final Map.Entry<String, Integer> count : counts.entrySet()) {
+            facetsPairs.add(new Pair<String, Integer>(count.getKey(), count.getValue()));
+        }
+        Collections.sort(facetsPairs, new Comparator<Pair<String, Integer>>() {
+            public int compare(final Pair<String, Integer> p1, final Pair<String, Integer> p2) {
+                final int byCount = p2.getSecond().compareTo(p1.getSecond());
+                return byCount != 0 ? byCount : p1.getFirst().compareTo(p2.getFirst());
+            }
+        });
+        return facetsPairs;
+    }
+
+    private FieldOrdinals getOrdinals(final IndexReader segment, final String field) throws IOException {
+
+        final Object key = segment.getCoreCacheKey();
+        Map<String, FieldOrdinals> segmentCache;
+        synchronized (cache) {
+            segmentCache = cache.get(key);
+            if (segmentCache == null) {
+                segmentCache = new ConcurrentHashMap<String, FieldOrdinals>();
+                cache.put(key, segmentCache);
+            }
+        }
+
+        FieldOrdinals ordinals = segmentCache.get(field);
+        if (ordinals == null) {
+            // Concurrent requests may build same ordinals twice, which is cheaper than locking the whole segment
+            misses.incrementAndGet();
+            ordinals = buildOrdinals(segment, field);
+            segmentCache.put(field, ordinals);
+        } else {
+            hits.incrementAndGet();
+        }
+        return ordinals;
+
+    }
+
+    private FieldOrdinals buildOrdinals(final IndexReader segment, final String field) throws IOException {
+
+        final List<String> values = new ArrayList<String>();
+        final int[][] docOrdinals = new int[segment.maxDoc()][];
+
+        final TermEnum terms = segment.terms(new Term(field, ""));
+        final TermDocs termDocs = segment.termDocs();
+        try {
+            do {
+                final Term term = terms.term();
+                if (term == null || !field.equals(term.field())) {
+                    break;
+                }
+
+                final int ord = values.size();
+                values.add(term.text());
+
+                termDocs.seek(terms);
+                while (termDocs.next()) {
+                    final int doc = termDocs.doc();
+                    final int[] current = docOrdinals[doc];
+                    if (current == null) {
+                        docOrdinals[doc] = new int[] { ord };
+                    } else {
+                        final int[] extended = Arrays.copyOf(current, current.length + 1);
+                        extended[current.length] = ord;
+                        docOrdinals[doc] = extended;
+                    }
+                }
+
+            } while (terms.next());
+        } finally {
+            termDocs.close();
+            terms.close();
+        }
+
+        return new FieldOrdinals(values.toArray(new String[values.size()]), docOrdinals);
+
+    }
+
+    /**
+     * @return number of times ordinals were reused from cache
+     */
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of times ordinals had to be built
+     */
+    public long getCacheMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of segments for which ordinals are cached
+     */
+    public int getCachedSegments() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Value ordinals for all documents in a segment.
+     */
+    private static class FieldOrdinals {
+
+        private final String[] values;
+        private final int[][] docOrdinals;
+
+        private FieldOrdinals(final String[] values, final int[][] docOrdinals) {
+            this.values = values;
+            this.docOrdinals = docOrdinals;
+        }
+    }
+
+}
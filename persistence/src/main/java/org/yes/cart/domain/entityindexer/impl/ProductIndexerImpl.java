@@ -22,66 +22,234 @@ import org.yes.cart.domain.entity.Product;
 import org.yes.cart.domain.entityindexer.ProductIndexer;
 import org.yes.cart.util.ShopCodeContext;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Coalescing product indexer. Submitted PK's are kept in a concurrent set, so that
+ * several submissions of the same product before it is picked up result in a single
+ * reindex. Pending PK's are drained in batches either every max latency window or
+ * as soon as there is enough of them to fill a batch. Each batch is loaded with one
+ * query and flushed to the index once.
+ *
  * User: Igor Azarny iazarny@yahoo.com
  * Date: 5/5/12
  * Time: 1:34 PM
  */
 public class ProductIndexerImpl implements ProductIndexer {
 
-    private final ExecutorService threadPool;
+    private final GenericDAO<Product, Long> productDao;
 
-    private final ArrayBlockingQueue<Long> reindexQueue;
+    private final Set<Long> pending = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
 
-    private final GenericDAO<Product, Long> productDao;
+    private final int batchSize;
+
+    private final ScheduledExecutorService drainer;
+
+    private final ExecutorService threadPool;
+
+    private final AtomicBoolean drainRequested = new AtomicBoolean(false);
+
+    private final AtomicLong submittedCount = new AtomicLong(0L);
+    private final AtomicLong coalescedCount = new AtomicLong(0L);
+    private final AtomicLong indexedCount = new AtomicLong(0L);
+    private final AtomicLong batchCount = new AtomicLong(0L);
+    private final AtomicLong batchLatencyTotal = new AtomicLong(0L);
+    private volatile long batchLatencyLast = 0L;
+    private volatile long batchLatencyMax = 0L;
+
+    private final Runnable drainTask = new Runnable() {
+        public void run() {
+            drainRequested.set(false);
+            for (final List<Long> batch : drainPending()) {
+                threadPool.submit(new Runnable() {
+                    public void run() {
+                        reindexBatch(batch);
+                    }
+                });
+            }
+        }
+    };
 
     /**
      * Construct indexer.
      *
      * @param productDao     dao to perform reindex
-     * @param queueLength    queue length to reindex product
+     * @param batchSize      max number of products to reindex in single batch
+     * @param maxLatencyMs   max time in milliseconds a product pk waits before it is picked up
      * @param threadPoolSize quantity of executors.
      */
-    public ProductIndexerImpl(final GenericDAO<Product, Long> productDao, final int queueLength, final int threadPoolSize) {
+    public ProductIndexerImpl(final GenericDAO<Product, Long> productDao,
+                              final int batchSize,
+                              final long maxLatencyMs,
+                              final int threadPoolSize) {
 
         this.productDao = productDao;
 
-        reindexQueue = new ArrayBlockingQueue<Long>(queueLength);
+        this.batchSize = batchSize;
 
         threadPool = Executors.newFixedThreadPool(threadPoolSize);
 
+        drainer = Executors.newSingleThreadScheduledExecutor();
+        drainer.scheduleWithFixedDelay(drainTask, maxLatencyMs, maxLatencyMs, TimeUnit.MILLISECONDS);
+
     }
 
     /**
-     * Push pk value to indexer set for reindex.
+     * Push pk value to indexer set for reindex. If this pk is already pending it is
+     * coalesced with previous submission.
      *
      * @param productPkValue product primary key value.
      */
     public void submitIndexTask(final Long productPkValue) {
 
-        final Logger log = ShopCodeContext.getLog(this);
+        if (productPkValue == null) {
+            return;
+        }
+
+        submittedCount.incrementAndGet();
+        if (!pending.add(productPkValue)) {
+            coalescedCount.incrementAndGet();
+        } else if (pending.size() >= batchSize && drainRequested.compareAndSet(false, true)) {
+            try {
+                drainer.execute(drainTask);
+            } catch (RejectedExecutionException ree) {
+                ShopCodeContext.getLog(this).warn("Indexer is shutdown, product {} will not be reindexed", productPkValue);
+            }
+        }
+
+    }
+
+    /**
+     * Remove all currently pending pk's and split them into batches.
+     *
+     * @return batches to reindex
+     */
+    List<List<Long>> drainPending() {
+
+        final List<List<Long>> batches = new ArrayList<List<Long>>();
+        List<Long> batch = new ArrayList<Long>(batchSize);
+        final Iterator<Long> it = pending.iterator();
+        while (it.hasNext()) {
+            batch.add(it.next());
+            it.remove();
+            if (batch.size() == batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<Long>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+
+    }
+
+    /**
+     * Reindex single batch of products.
+     *
+     * @param batch product pk's
+     */
+    void reindexBatch(final List<Long> batch) {
+
+        final long start = System.currentTimeMillis();
         try {
-            reindexQueue.put(productPkValue);
-            threadPool.submit(
-                    new Runnable() {
-
-                        public void run() {
-                            try {
-                                productDao.fullTextSearchReindex(reindexQueue.take());
-                            } catch (InterruptedException e) {
-                                log.error("Cant get product pk from queue to reindex", e);
-                            }
-                        }
-                    }
-            );
-        } catch (InterruptedException e) {
-            log.error("Cant put product pk from queue to reindex", e);
+            productDao.fullTextSearchReindex(batch);
+            indexedCount.addAndGet(batch.size());
+        } catch (Exception exp) {
+            final Logger log = ShopCodeContext.getLog(this);
+            log.error("Cant reindex batch of " + batch.size() + " products: " + batch, exp);
+        } finally {
+            final long latency = System.currentTimeMillis() - start;
+            batchCount.incrementAndGet();
+            batchLatencyTotal.addAndGet(latency);
+            batchLatencyLast = latency;
+            if (latency > batchLatencyMax) {
+                batchLatencyMax = latency;
+            }
+        }
+
+    }
+
+    /**
+     * Stop accepting new batches. Already submitted batches will be completed.
+     */
+    public void destroy() {
+        drainer.shutdown();
+        threadPool.shutdown();
+    }
+
+    /**
+     * @return number of product pk's waiting to be picked up
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return total number of submitted pk's
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return number of submissions that were coalesced with already pending pk's
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return ratio of coalesced submissions to all submissions (0 - no duplicates, close to 1 - mostly duplicates)
+     */
+    public double getCoalesceRatio() {
+        final long submitted = submittedCount.get();
+        if (submitted == 0L) {
+            return 0d;
+        }
+        return ((double) coalescedCount.get()) / submitted;
+    }
+
+    /**
+     * @return number of product pk's that were reindexed
+     */
+    public long getIndexedCount() {
+        return indexedCount.get();
+    }
+
+    /**
+     * @return number of batches processed
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return average batch latency in milliseconds
+     */
+    public long getBatchLatencyAverageMs() {
+        final long batches = batchCount.get();
+        if (batches == 0L) {
+            return 0L;
         }
+        return batchLatencyTotal.get() / batches;
+    }
 
+    /**
+     * @return last batch latency in milliseconds
+     */
+    public long getBatchLatencyLastMs() {
+        return batchLatencyLast;
+    }
+
+    /**
+     * @return max batch latency in milliseconds
+     */
+    public long getBatchLatencyMaxMs() {
+        return batchLatencyMax;
     }
 
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.yes.cart.domain.entityindexer.impl;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ReaderUtil;
+import org.yes.cart.domain.entityindexer.RangeFacetCounter;
+import org.yes.cart.domain.misc.Pair;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter for price range facets that keeps all prices of each document (product with many SKU has many
+ * prices) as primitive arrays per segment reader and per price field (i.e. per shop and currency, see
+ * SkuPriceBridge): document offsets into a single array of prices. Prices are indexed as zero padded minor
+ * units, so they are parsed once when field is requested for the first time on given segment. Arrays are
+ * reused until the segment is merged away (cache is keyed by segment core cache key), so after product
+ * index changes only new segments are loaded. All ranges are then counted in a single pass over the base
+ * bit set, each document is counted once per range that any of its prices falls into (same as range query).
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:20
+ */
+public class RangeFacetCounterPriceCacheImpl implements RangeFacetCounter {
+
+    private static final long NO_PRICE = Long.MAX_VALUE;
+
+    private static final SegmentPrices NO_PRICES = new SegmentPrices(new int[0], new long[0]);
+
+    private final String fieldPrefix;
+
+    private final Map<Object, Map<String, SegmentPrices>> cache = new WeakHashMap<Object, Map<String, SegmentPrices>>();
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+
+    public RangeFacetCounterPriceCacheImpl() {
+        this("facet_price_");
+    }
+
+    /**
+     * @param fieldPrefix prefix of price fields supported by this counter
+     */
+    public RangeFacetCounterPriceCacheImpl(final String fieldPrefix) {
+        this.fieldPrefix = fieldPrefix;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isSupported(final String field) {
+        return field != null && field.startsWith(fieldPrefix);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Pair<String, Integer>> countFacets(final IndexReader indexReader,
+                                                   final FixedBitSet baseBitSet,
+                                                   final String field,
+                                                   final List<Pair<String, String>> ranges) throws IOException {
+
+        final int rangeCount = ranges.size();
+        final long[] from = new long[rangeCount];
+        final long[] to = new long[rangeCount];
+        for (int i = 0; i < rangeCount; i++) {
+            final Pair<String, String> range = ranges.get(i);
+            from[i] = toLong(range.getFirst(), Long.MIN_VALUE);
+            to[i] = toLong(range.getSecond(), Long.MAX_VALUE);
+        }
+        final int last = rangeCount - 1;
+        final int[] counts = new int[rangeCount];
+
+        final List<IndexReader> segments = new ArrayList<IndexReader>();
+        ReaderUtil.gatherSubReaders(segments, indexReader);
+
+        final int baseLength = baseBitSet.length();
+
+        int docBase = 0;
+        for (final IndexReader segment : segments) {
+
+            final int maxDoc = segment.maxDoc();
+            if (docBase >= baseLength) {
+                break;
+            }
+
+            final SegmentPrices segmentPrices = getPrices(segment, field);
+            if (segmentPrices != null) {
+
+                final int[] offsets = segmentPrices.offsets;
+                final long[] prices = segmentPrices.prices;
+                final int docEnd = Math.min(docBase + maxDoc, baseLength);
+
+                int doc = baseBitSet.nextSetBit(docBase);
+                while (doc != -1 && doc < docEnd) {
+                    final int start = offsets[doc - docBase];
+                    final int end = offsets[doc - docBase + 1];
+                    if (start < end) {
+                        for (int i = 0; i < rangeCount; i++) {
+                            for (int p = start; p < end; p++) {
+                                final long price = prices[p];
+                                if (price >= from[i] && (price < to[i] || (i == last && price == to[i]))) {
+                                    counts[i]++;
+                                    break; // document is counted once per range
+                                }
+                            }
+                        }
+                    }
+                    doc = doc + 1 < baseLength ? baseBitSet.nextSetBit(doc + 1) : -1;
+                }
+            }
+
+            docBase += maxDoc;
+        }
+
+        final List<Pair<String, Integer>> facetsPairs = new ArrayList<Pair<String, Integer>>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            final Pair<String, String> range = ranges.get(i);
+            facetsPairs.add(new Pair<String, Integer>(
+                    "[" + range.getFirst() + ", " + range.getSecond() + (i == last ? "]" : ")"), counts[i]));
+        }
+        return facetsPairs;
+    }
+
+    private long toLong(final String value, final long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
+
+    private SegmentPrices getPrices(final IndexReader segment, final String field) throws IOException {
+
+        final Object key = segment.getCoreCacheKey();
+        Map<String, SegmentPrices> segmentCache;
+        synchronized (cache) {
+            segmentCache = cache.get(key);
+            if (segmentCache == null) {
+                segmentCache = new ConcurrentHashMap<String, SegmentPrices>();
+                cache.put(key, segmentCache);
+            }
+        }
+
+        SegmentPrices prices = segmentCache.get(field);
+        if (prices == null) {
+            // Concurrent requests may load same prices twice, which is cheaper than locking the whole segment
+            misses.incrementAndGet();
+            prices = loadPrices(segment, field);
+            segmentCache.put(field, prices);
+        } else {
+            hits.incrementAndGet();
+        }
+        return prices.prices.length > 0 ? prices : null;
+
+    }
+
+    private SegmentPrices loadPrices(final IndexReader segment, final String field) throws IOException {
+
+        final int maxDoc = segment.maxDoc();
+
+        // first pass: number of prices per document
+        final int[] offsets = new int[maxDoc + 1];
+        final int total = scanPrices(segment, field, offsets, null);
+        if (total == 0) {
+            return NO_PRICES;
+        }
+
+        // convert counts to start offsets, offsets[doc + 1] is end of doc's prices
+        int start = 0;
+        for (int doc = 0; doc < maxDoc; doc++) {
+            final int count = offsets[doc];
+            offsets[doc] = start;
+            start += count;
+        }
+        offsets[maxDoc] = start;
+
+        // second pass: fill prices using moving insert positions
+        final int[] positions = Arrays.copyOf(offsets, maxDoc);
+        final long[] prices = new long[total];
+        scanPrices(segment, field, positions, prices);
+
+        return new SegmentPrices(offsets, prices);
+
+    }
+
+    private int scanPrices(final IndexReader segment, final String field, final int[] positions, final long[] prices) throws IOException {
+
+        int total = 0;
+
+        final TermEnum terms = segment.terms(new Term(field, ""));
+        final TermDocs termDocs = segment.termDocs();
+        try {
+            do {
+                final Term term = terms.term();
+                if (term == null || !field.equals(term.field())) {
+                    break;
+                }
+
+                final long price = toLong(term.text(), NO_PRICE);
+                if (price == NO_PRICE) {
+                    continue;
+                }
+
+                termDocs.seek(terms);
+                while (termDocs.next()) {
+                    final int doc = termDocs.doc();
+                    if (prices == null) {
+                        positions[doc]++;
+                    } else {
+                        prices[positions[doc]++] = price;
+                    }
+                    total++;
+                }
+
+            } while (terms.next());
+        } finally {
+            termDocs.close();
+            terms.close();
+        }
+
+        return total;
+
+    }
+
+    /**
+     * @return number of times prices were reused from cache
+     */
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of times prices had to be loaded
+     */
+    public long getCacheMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of segments for which prices are cached
+     */
+    public int getCachedSegments() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * All prices of documents in segment: prices of document N are prices[offsets[N]] to prices[offsets[N + 1] - 1].
+     */
+    private static final class SegmentPrices {
+
+        private final int[] offsets;
+        private final long[] prices;
+
+        private SegmentPrices(final int[] offsets, final long[] prices) {
+            this.offsets = offsets;
+            this.prices = prices;
+        }
+
+    }
+
+}
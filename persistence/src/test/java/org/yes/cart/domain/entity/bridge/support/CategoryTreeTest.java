@@ -0,0 +1,157 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support;
+
+import org.junit.Test;
+import org.yes.cart.domain.entity.AttrValueCategory;
+import org.yes.cart.domain.entity.Category;
+import org.yes.cart.domain.entity.impl.AttrValueEntityCategory;
+import org.yes.cart.domain.entity.impl.AttributeEntity;
+import org.yes.cart.domain.entity.impl.CategoryEntity;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 20:15
+ */
+public class CategoryTreeTest {
+
+    /*
+        100 (root)
+         +- 101 [CAT_ATTR=A]
+         |   +- 103 [CAT_ATTR=, en: B]
+         |   |   +- 105
+         |   +- 104 (not available)
+         +- 102
+             +- 106 -> link to 101
+     */
+    private CategoryTree createTree() {
+
+        final List<Category> all = new ArrayList<Category>();
+        all.add(createCategory(100L, 100L, null, null));
+        all.add(createCategory(101L, 100L, null, null, createAttrValue("CAT_ATTR", "A", null)));
+        all.add(createCategory(102L, 100L, null, null));
+        all.add(createCategory(103L, 101L, null, null, createAttrValue("CAT_ATTR", "", "en#~#B#~#")));
+        final Calendar future = Calendar.getInstance();
+        future.add(Calendar.YEAR, 1);
+        all.add(createCategory(104L, 101L, null, future.getTime()));
+        all.add(createCategory(105L, 103L, null, null));
+        all.add(createCategory(106L, 102L, 101L, null));
+        Collections.shuffle(all);
+
+        return new CategoryTree(all);
+
+    }
+
+    @Test
+    public void testChildren() throws Exception {
+
+        final CategoryTree tree = createTree();
+
+        assertEquals(7, tree.size());
+        assertTrue(tree.hasChildren(101L, true));
+        assertFalse(tree.hasChildren(105L, true));
+        assertTrue(tree.hasChildren(106L, true));
+        assertFalse(tree.hasChildren(106L, false));
+        assertFalse(tree.hasChildren(999L, true));
+
+        assertEquals(Arrays.asList(103L, 104L), ids(tree.getChildren(101L, true, null)));
+        assertEquals(Arrays.asList(103L), ids(tree.getChildren(101L, true, new Date())));
+        assertEquals(Arrays.asList(103L), ids(tree.getChildren(106L, true, new Date())));
+        assertTrue(tree.getChildren(106L, false, new Date()).isEmpty());
+
+    }
+
+    @Test
+    public void testChildrenRecursive() throws Exception {
+
+        final CategoryTree tree = createTree();
+
+        assertEquals(new HashSet<Long>(Arrays.asList(102L, 106L, 103L, 105L)),
+                new HashSet<Long>(ids(tree.getChildrenRecursive(102L, true, new Date()))));
+        assertEquals(new HashSet<Long>(Arrays.asList(102L, 106L)),
+                new HashSet<Long>(ids(tree.getChildrenRecursive(102L, false, new Date()))));
+        assertTrue(tree.getChildrenRecursive(999L, true, new Date()).isEmpty());
+
+        assertEquals(new HashSet<Long>(Arrays.asList(102L, 106L, 101L, 103L, 104L, 105L)),
+                tree.getSubTreeIdsWithLinks(102L));
+
+    }
+
+    @Test
+    public void testSubCategory() throws Exception {
+
+        final CategoryTree tree = createTree();
+
+        assertTrue(tree.isSubCategory(101L, 105L));
+        assertTrue(tree.isSubCategory(100L, 105L));
+        assertTrue(tree.isSubCategory(105L, 105L));
+        assertFalse(tree.isSubCategory(102L, 105L));
+        assertFalse(tree.isSubCategory(101L, 106L)); // links are not followed
+
+    }
+
+    @Test
+    public void testAttributeRecursive() throws Exception {
+
+        final CategoryTree tree = createTree();
+
+        assertEquals("A", tree.getAttributeValueRecursive(null, 101L, "CAT_ATTR"));
+        assertEquals("A", tree.getAttributeValueRecursive(null, 103L, "CAT_ATTR")); // blank raw value
+        assertEquals("A", tree.getAttributeValueRecursive(null, 105L, "CAT_ATTR"));
+        assertEquals("B", tree.getAttributeValueRecursive("en", 105L, "CAT_ATTR"));
+        assertEquals("A", tree.getAttributeValueRecursive("de", 105L, "CAT_ATTR"));
+        assertNull(tree.getAttributeValueRecursive(null, 102L, "CAT_ATTR"));
+        assertNull(tree.getAttributeValueRecursive(null, 106L, "CAT_ATTR")); // links are not followed
+        assertNull(tree.getAttributeValueRecursive(null, 105L, "OTHER"));
+
+    }
+
+    private List<Long> ids(final Collection<Category> categories) {
+        final List<Long> ids = new ArrayList<Long>();
+        for (final Category category : categories) {
+            ids.add(category.getCategoryId());
+        }
+        return ids;
+    }
+
+    private Category createCategory(final long id, final long parentId, final Long linkToId, final Date availableFrom,
+                                    final AttrValueCategory... attributes) {
+        final CategoryEntity category = new CategoryEntity();
+        category.setCategoryId(id);
+        category.setParentId(parentId);
+        category.setLinkToId(linkToId);
+        category.setAvailablefrom(availableFrom);
+        category.setAttributes(new ArrayList<AttrValueCategory>(Arrays.asList(attributes)));
+        return category;
+    }
+
+    private AttrValueCategory createAttrValue(final String code, final String val, final String displayVal) {
+        final AttributeEntity attribute = new AttributeEntity();
+        attribute.setCode(code);
+        final AttrValueEntityCategory attrValue = new AttrValueEntityCategory();
+        attrValue.setAttribute(attribute);
+        attrValue.setVal(val);
+        attrValue.setDisplayVal(displayVal);
+        return attrValue;
+    }
+
+}
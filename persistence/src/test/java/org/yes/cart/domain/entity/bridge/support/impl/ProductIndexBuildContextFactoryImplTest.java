@@ -0,0 +1,126 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.After;
+import org.junit.Test;
+import org.yes.cart.domain.entity.*;
+import org.yes.cart.domain.entity.bridge.HibernateSearchBridgeStaticLocator;
+import org.yes.cart.domain.entity.bridge.support.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:05
+ */
+public class ProductIndexBuildContextFactoryImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @After
+    public void tearDown() throws Exception {
+        HibernateSearchBridgeStaticLocator.unbindIndexBuildContext();
+    }
+
+    @Test
+    public void testOpenClose() throws Exception {
+
+        final ShopWarehouseRelationshipSupport shopWarehouseSupport = context.mock(ShopWarehouseRelationshipSupport.class);
+        final ShopCategoryRelationshipSupport shopCategorySupport = context.mock(ShopCategoryRelationshipSupport.class);
+        final SkuPriceRelationshipSupport skuPriceSupport = context.mock(SkuPriceRelationshipSupport.class);
+        final SkuWarehouseRelationshipSupport skuWarehouseSupport = context.mock(SkuWarehouseRelationshipSupport.class);
+
+        final Product product1 = context.mock(Product.class, "product1");
+        final Product product2 = context.mock(Product.class, "product2");
+        final ProductSku sku1 = context.mock(ProductSku.class, "sku1");
+        final ProductSku sku2 = context.mock(ProductSku.class, "sku2");
+        final ProductSku sku3 = context.mock(ProductSku.class, "sku3");
+
+        final SkuPrice price1 = context.mock(SkuPrice.class, "price1");
+        final SkuPrice price3 = context.mock(SkuPrice.class, "price3");
+        final SkuWarehouse stock2 = context.mock(SkuWarehouse.class, "stock2");
+
+        final Shop shop10 = context.mock(Shop.class, "shop10");
+        final Shop shop20 = context.mock(Shop.class, "shop20");
+
+        context.checking(new Expectations() {{
+            allowing(product1).getSku(); will(returnValue(Arrays.asList(sku1, sku2)));
+            allowing(product2).getSku(); will(returnValue(Arrays.asList(sku3)));
+            allowing(sku1).getCode(); will(returnValue("SKU-1"));
+            allowing(sku2).getCode(); will(returnValue("SKU-2"));
+            allowing(sku3).getCode(); will(returnValue("SKU-3"));
+            allowing(price1).getSkuCode(); will(returnValue("SKU-1"));
+            allowing(price3).getSkuCode(); will(returnValue("SKU-3"));
+            allowing(stock2).getSkuCode(); will(returnValue("SKU-2"));
+            allowing(shop10).getShopId(); will(returnValue(10L));
+            allowing(shop20).getShopId(); will(returnValue(20L));
+            // 3 codes in chunks of 2
+            exactly(2).of(skuPriceSupport).getSkuPrices(with(any(Collection.class)));
+            will(onConsecutiveCalls(returnValue(Arrays.asList(price1)), returnValue(Arrays.asList(price3))));
+            exactly(2).of(skuWarehouseSupport).getQuantityOnWarehouse(with(any(Collection.class)));
+            will(onConsecutiveCalls(returnValue(Arrays.asList(stock2)), returnValue(Collections.emptyList())));
+            one(shopWarehouseSupport).getAll(); will(returnValue(Arrays.asList(shop10, shop20)));
+            one(shopWarehouseSupport).getShopWarehouseIds(shop10); will(returnValue(Collections.singleton(1L)));
+            one(shopWarehouseSupport).getShopWarehouseIds(shop20); will(returnValue(Collections.singleton(2L)));
+            one(shopCategorySupport).getShopCategoriesIds(10L); will(returnValue(new HashSet<Long>(Arrays.asList(100L, 101L))));
+            one(shopCategorySupport).getShopCategoriesIds(20L); will(returnValue(Collections.singleton(101L)));
+        }});
+
+        final ProductIndexBuildContextFactoryImpl factory = new ProductIndexBuildContextFactoryImpl(
+                shopWarehouseSupport, shopCategorySupport, skuPriceSupport, skuWarehouseSupport);
+        factory.setMaxInListSize(2);
+
+        assertNull(HibernateSearchBridgeStaticLocator.getIndexBuildContext());
+
+        factory.open(Arrays.asList(product1, product2));
+
+        final IndexBuildContext ctx = HibernateSearchBridgeStaticLocator.getIndexBuildContext();
+        assertNotNull(ctx);
+
+        assertEquals(Arrays.asList(price1), ctx.getSkuPrices("SKU-1"));
+        assertTrue(ctx.getSkuPrices("SKU-2").isEmpty());
+        assertEquals(Arrays.asList(price3), ctx.getSkuPrices("SKU-3"));
+        assertNull(ctx.getSkuPrices("SKU-4")); // not in this batch
+
+        assertTrue(ctx.getQuantityOnWarehouse("SKU-1").isEmpty());
+        assertEquals(Arrays.asList(stock2), ctx.getQuantityOnWarehouse("SKU-2"));
+        assertNull(ctx.getQuantityOnWarehouse("SKU-4"));
+
+        assertEquals(Collections.singleton(1L), ctx.getShopWarehouseIds(10L));
+        assertEquals(Collections.singleton(2L), ctx.getShopWarehouseIds(20L));
+        assertTrue(ctx.getShopWarehouseIds(30L).isEmpty());
+
+        assertEquals(Collections.singleton(10L), ctx.getCategoryShopIds(100L));
+        assertEquals(new HashSet<Long>(Arrays.asList(10L, 20L)), ctx.getCategoryShopIds(101L));
+        assertTrue(ctx.getCategoryShopIds(102L).isEmpty());
+
+        factory.close();
+
+        assertNull(HibernateSearchBridgeStaticLocator.getIndexBuildContext());
+
+        context.assertIsSatisfied();
+
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entity.bridge.support.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.AttrValueCategory;
+import org.yes.cart.domain.entity.Category;
+import org.yes.cart.domain.entity.Shop;
+import org.yes.cart.domain.entity.bridge.support.CategoryTree;
+import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
+import org.yes.cart.domain.entity.impl.CategoryEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 21:40
+ */
+public class ShopCategoryRelationshipSupportImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testCategoryTreeIsRebuiltOnceAndSwapped() throws Exception {
+
+        final GenericDAO<Shop, Long> shopDao = context.mock(GenericDAO.class, "shopDao");
+        final GenericDAO<Category, Long> categoryDao = context.mock(GenericDAO.class, "categoryDao");
+
+        final List<Category> before = Arrays.asList(createCategory(100L, 100L), createCategory(101L, 100L));
+        final List<Category> after = Arrays.asList(createCategory(100L, 100L), createCategory(101L, 100L), createCategory(102L, 100L));
+
+        context.checking(new Expectations() {{
+            exactly(2).of(categoryDao).findByNamedQuery(with(equal("ALL.CATEGORIES.WITH.ATTRIBUTES")), with(any(Object[].class)));
+            will(onConsecutiveCalls(returnValue(before), returnValue(after)));
+        }});
+
+        final List<Runnable> queued = new ArrayList<Runnable>();
+
+        // no cache, so every call requests new generation as if region was just evicted
+        final ShopCategoryRelationshipSupportImpl support = new ShopCategoryRelationshipSupportImpl(shopDao, categoryDao) {
+            @Override
+            public ShopCategoryRelationshipSupport getSelf() {
+                return this;
+            }
+        };
+        support.setRebuildExecutor(new TaskExecutor() {
+            @Override
+            public void execute(final Runnable task) {
+                queued.add(task);
+            }
+        });
+
+        final CategoryTree first = support.getCategoryTree();
+        assertEquals(2, first.size());
+        assertTrue(queued.isEmpty());
+        final long firstVersion = support.getCategoryTreeVersion();
+
+        // rebuild requested, old snapshot is served until it is complete
+        assertSame(first, support.getCategoryTree());
+        assertSame(first, support.getCategoryTree());
+        assertEquals(1, queued.size());
+        assertEquals(firstVersion, support.getCategoryTreeVersion());
+
+        queued.get(0).run();
+        assertTrue(support.getCategoryTreeVersion() > firstVersion);
+
+        final CategoryTree second = support.getCategoryTree();
+        assertNotSame(first, second);
+        assertEquals(3, second.size());
+
+        context.assertIsSatisfied();
+
+    }
+
+    private Category createCategory(final long id, final long parentId) {
+        final CategoryEntity category = new CategoryEntity();
+        category.setCategoryId(id);
+        category.setParentId(parentId);
+        category.setAttributes(new ArrayList<AttrValueCategory>());
+        return category;
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.yes.cart.domain.entityindexer.impl;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+import org.yes.cart.domain.misc.Pair;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 11:40
+ */
+public class MultiValueFacetCounterOrdinalCacheImplTest {
+
+    private Directory createIndex() throws Exception {
+
+        final Directory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+
+        writer.addDocument(createDocument("red", "blue"));
+        writer.addDocument(createDocument("red"));
+        writer.commit(); // force second segment
+        writer.addDocument(createDocument("green", "blue"));
+        writer.addDocument(createDocument("blue"));
+        writer.addDocument(createDocument());
+        writer.close();
+
+        return directory;
+    }
+
+    private Document createDocument(final String ... colors) {
+        final Document document = new Document();
+        document.add(new Field("name", "product", Field.Store.NO, Field.Index.NOT_ANALYZED));
+        for (final String color : colors) {
+            document.add(new Field("color", color, Field.Store.NO, Field.Index.NOT_ANALYZED));
+        }
+        return document;
+    }
+
+    private Map<String, Integer> toMap(final List<Pair<String, Integer>> facets) {
+        final Map<String, Integer> map = new HashMap<String, Integer>();
+        for (final Pair<String, Integer> facet : facets) {
+            map.put(facet.getFirst(), facet.getSecond());
+        }
+        return map;
+    }
+
+    @Test
+    public void testCountFacetsMatchesFilterImplementation() throws Exception {
+
+        final Directory directory = createIndex();
+        final IndexReader reader = IndexReader.open(directory);
+
+        try {
+
+            final FixedBitSet base = new FixedBitSet(reader.maxDoc());
+            base.set(0);
+            base.set(2);
+            base.set(3);
+
+            final MultiValueFacetCounterOrdinalCacheImpl counter = new MultiValueFacetCounterOrdinalCacheImpl();
+
+            final List<Pair<String, Integer>> facets = counter.countFacets(reader, base, "color");
+
+            assertEquals(3, facets.size());
+            assertEquals("blue", facets.get(0).getFirst());
+            assertEquals(Integer.valueOf(3), facets.get(0).getSecond());
+
+            final Map<String, Integer> counts = toMap(facets);
+            assertEquals(Integer.valueOf(1), counts.get("red"));
+            assertEquals(Integer.valueOf(1), counts.get("green"));
+
+            final FixedBitSet filterBase = new FixedBitSet(reader.maxDoc());
+            filterBase.or(base);
+            assertEquals(counts, toMap(new MultiValueFacetCounterFilterImpl().countFacets(reader, filterBase, "color")));
+
+            assertEquals(0L, counter.getCacheHits());
+            assertEquals(2L, counter.getCacheMisses());
+
+            // second request is served from cached ordinals
+            final FixedBitSet all = new FixedBitSet(reader.maxDoc());
+            all.set(0, reader.maxDoc());
+            final Map<String, Integer> allCounts = toMap(counter.countFacets(reader, all, "color"));
+            assertEquals(Integer.valueOf(2), allCounts.get("red"));
+            assertEquals(Integer.valueOf(3), allCounts.get("blue"));
+            assertEquals(Integer.valueOf(1), allCounts.get("green"));
+            assertEquals(2L, counter.getCacheHits());
+            assertEquals(2, counter.getCachedSegments());
+
+            // unknown field
+            assertEquals(0, counter.countFacets(reader, all, "size").size());
+
+        } finally {
+            reader.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.domain.entityindexer.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.yes.cart.dao.GenericDAO;
+import org.yes.cart.domain.entity.Product;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 10:12
+ */
+public class ProductIndexerImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testSubmitCoalescesDuplicates() throws Exception {
+
+        final GenericDAO<Product, Long> productDao = context.mock(GenericDAO.class, "productDao");
+
+        final ProductIndexerImpl indexer = new ProductIndexerImpl(productDao, 10, 60000L, 1);
+
+        try {
+            indexer.submitIndexTask(1L);
+            indexer.submitIndexTask(2L);
+            indexer.submitIndexTask(1L);
+            indexer.submitIndexTask(3L);
+            indexer.submitIndexTask(2L);
+            indexer.submitIndexTask(null);
+
+            assertEquals(3, indexer.getQueueDepth());
+            assertEquals(5L, indexer.getSubmittedCount());
+            assertEquals(2L, indexer.getCoalescedCount());
+            assertEquals(0.4d, indexer.getCoalesceRatio(), 0.0001d);
+
+            final List<List<Long>> batches = indexer.drainPending();
+            assertEquals(1, batches.size());
+            assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L, 3L)), new HashSet<Long>(batches.get(0)));
+            assertEquals(0, indexer.getQueueDepth());
+
+            indexer.submitIndexTask(1L);
+            assertEquals(1, indexer.getQueueDepth());
+            assertEquals(2L, indexer.getCoalescedCount());
+        } finally {
+            indexer.destroy();
+        }
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testReindexBatchUsesSingleDaoCall() throws Exception {
+
+        final GenericDAO<Product, Long> productDao = context.mock(GenericDAO.class, "productDao");
+
+        final List<Long> batch = Arrays.asList(1L, 2L, 3L);
+
+        context.checking(new Expectations() {{
+            one(productDao).fullTextSearchReindex(batch); will(returnValue(3));
+        }});
+
+        final ProductIndexerImpl indexer = new ProductIndexerImpl(productDao, 10, 60000L, 1);
+
+        try {
+            indexer.reindexBatch(batch);
+
+            assertEquals(1L, indexer.getBatchCount());
+            assertEquals(3L, indexer.getIndexedCount());
+            assertTrue(indexer.getBatchLatencyMaxMs() >= indexer.getBatchLatencyLastMs());
+        } finally {
+            indexer.destroy();
+        }
+
+        context.assertIsSatisfied();
+
+    }
+
+}
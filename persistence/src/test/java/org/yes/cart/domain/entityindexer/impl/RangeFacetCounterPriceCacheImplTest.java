@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.yes.cart.domain.entityindexer.impl;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+import org.yes.cart.domain.misc.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:40
+ */
+public class RangeFacetCounterPriceCacheImplTest {
+
+    private Directory createIndex() throws Exception {
+
+        final Directory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+
+        writer.addDocument(createDocument("00001500", "00020000"));
+        writer.addDocument(createDocument("00003000"));
+        writer.commit(); // force second segment
+        writer.addDocument(createDocument("00025000"));
+        writer.addDocument(createDocument("00040000", "00030000"));
+        writer.addDocument(createDocument());
+        writer.close();
+
+        return directory;
+    }
+
+    private Document createDocument(final String ... prices) {
+        final Document document = new Document();
+        document.add(new Field("name", "product", Field.Store.NO, Field.Index.NOT_ANALYZED));
+        for (final String price : prices) {
+            document.add(new Field("facet_price_10_EUR", price, Field.Store.NO, Field.Index.NOT_ANALYZED));
+        }
+        return document;
+    }
+
+    private List<Pair<String, String>> createRanges() {
+        final List<Pair<String, String>> ranges = new ArrayList<Pair<String, String>>();
+        ranges.add(new Pair<String, String>("00000000", "00001500"));
+        ranges.add(new Pair<String, String>("00001500", "00003000"));
+        ranges.add(new Pair<String, String>("00003000", "00025000"));
+        ranges.add(new Pair<String, String>("00025000", "00030000"));
+        return ranges;
+    }
+
+    @Test
+    public void testCountFacets() throws Exception {
+
+        final Directory directory = createIndex();
+        final IndexReader reader = IndexReader.open(directory);
+
+        try {
+
+            final RangeFacetCounterPriceCacheImpl counter = new RangeFacetCounterPriceCacheImpl();
+
+            assertTrue(counter.isSupported("facet_price_10_EUR"));
+            assertFalse(counter.isSupported("brand"));
+
+            final FixedBitSet all = new FixedBitSet(reader.maxDoc());
+            all.set(0, reader.maxDoc());
+
+            final List<Pair<String, Integer>> facets = counter.countFacets(reader, all, "facet_price_10_EUR", createRanges());
+
+            assertEquals(4, facets.size());
+            assertEquals("[00000000, 00001500)", facets.get(0).getFirst());
+            assertEquals(Integer.valueOf(0), facets.get(0).getSecond());
+            assertEquals("[00001500, 00003000)", facets.get(1).getFirst());
+            assertEquals(Integer.valueOf(1), facets.get(1).getSecond()); // 15.00
+            assertEquals("[00003000, 00025000)", facets.get(2).getFirst());
+            assertEquals(Integer.valueOf(2), facets.get(2).getSecond()); // 30.00 and 200.00 of first product
+            assertEquals("[00025000, 00030000]", facets.get(3).getFirst());
+            assertEquals(Integer.valueOf(2), facets.get(3).getSecond()); // last range is inclusive
+
+            assertEquals(0L, counter.getCacheHits());
+            assertEquals(2L, counter.getCacheMisses());
+
+            // second request is served from cached prices
+            final FixedBitSet base = new FixedBitSet(reader.maxDoc());
+            base.set(1);
+            base.set(3);
+
+            final List<Pair<String, Integer>> baseFacets = counter.countFacets(reader, base, "facet_price_10_EUR", createRanges());
+            assertEquals(Integer.valueOf(0), baseFacets.get(0).getSecond());
+            assertEquals(Integer.valueOf(0), baseFacets.get(1).getSecond());
+            assertEquals(Integer.valueOf(1), baseFacets.get(2).getSecond());
+            assertEquals(Integer.valueOf(1), baseFacets.get(3).getSecond());
+            assertEquals(2L, counter.getCacheHits());
+            assertEquals(2, counter.getCachedSegments());
+
+            // unknown field
+            final List<Pair<String, Integer>> noFacets = counter.countFacets(reader, all, "facet_price_10_USD", createRanges());
+            assertEquals(4, noFacets.size());
+            for (final Pair<String, Integer> facet : noFacets) {
+                assertEquals(Integer.valueOf(0), facet.getSecond());
+            }
+
+        } finally {
+            reader.close();
+        }
+
+    }
+
+    @Test
+    public void testCountFacetsMultiSkuProductInTwoRanges() throws Exception {
+
+        final Directory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+        writer.addDocument(createDocument("00001000", "00001200", "00026000")); // two SKU in first range, one in last
+        writer.addDocument(createDocument("00002000"));
+        writer.close();
+
+        final IndexReader reader = IndexReader.open(directory);
+
+        try {
+
+            final RangeFacetCounterPriceCacheImpl counter = new RangeFacetCounterPriceCacheImpl();
+
+            final FixedBitSet all = new FixedBitSet(reader.maxDoc());
+            all.set(0, reader.maxDoc());
+
+            final List<Pair<String, Integer>> facets = counter.countFacets(reader, all, "facet_price_10_EUR", createRanges());
+
+            assertEquals(Integer.valueOf(1), facets.get(0).getSecond()); // multi SKU product is counted once
+            assertEquals(Integer.valueOf(1), facets.get(1).getSecond());
+            assertEquals(Integer.valueOf(0), facets.get(2).getSecond());
+            assertEquals(Integer.valueOf(1), facets.get(3).getSecond()); // and also in range of its most expensive SKU
+
+        } finally {
+            reader.close();
+        }
+
+    }
+
+}
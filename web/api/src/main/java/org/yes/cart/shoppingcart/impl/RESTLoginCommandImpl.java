@@ -66,8 +66,8 @@ public class RESTLoginCommandImpl extends LoginCommandImpl {
     @Override
     protected void recalculate(final MutableShoppingCart shoppingCart) {
 
-        // This call will merge the cart
-        cartRepository.storeShoppingCart(shoppingCart);
+        // This call will merge the cart, so it must not be deferred
+        cartRepository.flushShoppingCart(shoppingCart);
 
         super.recalculate(shoppingCart);
 
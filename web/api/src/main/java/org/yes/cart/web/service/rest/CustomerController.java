@@ -1630,20 +1630,22 @@ public class CustomerController {
 
         final Pair<String, Boolean> symbol = currencySymbolService.getCurrencySymbol(cart.getCurrencyCode());
 
+        final Map<Long, ProductAvailabilityModel> skuPams = productServiceFacade.getProductAvailability(viewedProducts, shopId);
+        final List<String> skuCodes = new ArrayList<String>(skuPams.size());
+        for (final ProductAvailabilityModel skuPam : skuPams.values()) {
+            skuCodes.add(skuPam.getFirstAvailableSkuCode());
+        }
+        final Map<String, ProductPriceModel> prices = productServiceFacade.getSkuPrices(cart, skuCodes);
+
         for (final ProductSearchResultDTO viewedProduct : viewedProducts) {
 
             final ProductSearchResultRO rv = mappingMixin.map(viewedProduct, ProductSearchResultRO.class, ProductSearchResultDTO.class);
 
-            final ProductAvailabilityModel skuPam = productServiceFacade.getProductAvailability(viewedProduct, shopId);
+            final ProductAvailabilityModel skuPam = skuPams.get(viewedProduct.getId());
             final ProductAvailabilityModelRO amRo = mappingMixin.map(skuPam, ProductAvailabilityModelRO.class, ProductAvailabilityModel.class);
             rv.setProductAvailabilityModel(amRo);
 
-            final ProductPriceModel price = productServiceFacade.getSkuPrice(
-                    cart,
-                    null,
-                    skuPam.getFirstAvailableSkuCode(),
-                    BigDecimal.ONE
-            );
+            final ProductPriceModel price = prices.get(skuPam.getFirstAvailableSkuCode());
 
             final SkuPriceRO priceRo = mappingMixin.map(price, SkuPriceRO.class, ProductPriceModel.class);
             priceRo.setSymbol(symbol.getFirst());
@@ -893,21 +893,23 @@ public class ProductController {
 
             final Pair<String, Boolean> symbol = currencySymbolService.getCurrencySymbol(cart.getCurrencyCode());
 
+            final Map<Long, ProductAvailabilityModel> skuPams = productServiceFacade.getProductAvailability(productAssociations, cart.getShoppingContext().getShopId());
+            final List<String> skuCodes = new ArrayList<String>(skuPams.size());
+            for (final ProductAvailabilityModel skuPam : skuPams.values()) {
+                skuCodes.add(skuPam.getFirstAvailableSkuCode());
+            }
+            final Map<String, ProductPriceModel> prices = productServiceFacade.getSkuPrices(cart, skuCodes);
+
             for (final ProductSearchResultDTO hit : productAssociations) {
 
-                final ProductAvailabilityModel skuPam = productServiceFacade.getProductAvailability(hit, cart.getShoppingContext().getShopId());
+                final ProductAvailabilityModel skuPam = skuPams.get(hit.getId());
 
                 final ProductSearchResultRO ro = mappingMixin.map(hit, ProductSearchResultRO.class, ProductSearchResultDTO.class);
 
                 final ProductAvailabilityModelRO amRo = mappingMixin.map(skuPam, ProductAvailabilityModelRO.class, ProductAvailabilityModel.class);
                 ro.setProductAvailabilityModel(amRo);
 
-                final ProductPriceModel price = productServiceFacade.getSkuPrice(
-                        cart,
-                        null,
-                        skuPam.getFirstAvailableSkuCode(),
-                        BigDecimal.ONE
-                );
+                final ProductPriceModel price = prices.get(skuPam.getFirstAvailableSkuCode());
 
                 final SkuPriceRO priceRo = mappingMixin.map(price, SkuPriceRO.class, ProductPriceModel.class);
                 priceRo.setSymbol(symbol.getFirst());
@@ -35,6 +35,7 @@ import org.yes.cart.domain.query.LuceneQueryFactory;
 import org.yes.cart.domain.query.PriceNavigation;
 import org.yes.cart.domain.query.ProductSearchQueryBuilder;
 import org.yes.cart.domain.queryobject.FilteredNavigationRecord;
+import org.yes.cart.domain.queryobject.FilteredNavigationRecordRequest;
 import org.yes.cart.domain.queryobject.NavigationContext;
 import org.yes.cart.domain.ro.*;
 import org.yes.cart.shoppingcart.ShoppingCart;
@@ -497,19 +498,34 @@ public class SearchController {
 
         configureResultViewOptions(categoryId, shop.getShopId(), cart.getCurrentLocale(), cart.getCurrencyCode(), result);
 
-        populateSearchResults(context, result, cart);
-
         if (!context.isGlobal() && search.getIncludeNavigation()) {
 
+            final Category category = categoryServiceFacade.getCategory(categoryId, shop.getShopId());
+
+            // products and all facets are resolved with single query execution
+            final List<FilteredNavigationRecordRequest> facetingRequest = getFilteredNavigationRequests(
+                    category,
+                    shop.getShopId(),
+                    cart.getCurrencyCode(),
+                    context
+            );
+
+            final Map<String, List<Pair<String, Integer>>> facets = populateSearchResults(context, result, cart, facetingRequest);
+
             populateFilteredNavigation(
-                    categoryId,
+                    category,
                     shop.getShopId(),
                     cart.getCurrentLocale(),
                     cart.getCurrencyCode(),
                     context,
+                    facets,
                     result
             );
 
+        } else {
+
+            populateSearchResults(context, result, cart);
+
         }
 
         return result;
@@ -527,15 +543,53 @@ public class SearchController {
     }
 
 
-    private void populateFilteredNavigation(final long categoryId,
+    private List<FilteredNavigationRecordRequest> getFilteredNavigationRequests(final Category category,
+                                                                                final long shopId,
+                                                                                final String currencyCode,
+                                                                                final NavigationContext context) {
+
+        if (category == null) {
+            return Collections.emptyList();
+        }
+
+        final List<FilteredNavigationRecordRequest> facetingRequest = new ArrayList<FilteredNavigationRecordRequest>();
+
+        final boolean byBrand = category.getNavigationByBrand() == null ? false : category.getNavigationByBrand();
+
+        if (byBrand && !context.isFilteredBy(ProductSearchQueryBuilder.BRAND_FIELD)) {
+
+            facetingRequest.addAll(brandsFilteredNavigationSupport.getFilteredNavigationRecordRequests(context));
+
+        }
+
+        if (!context.isFilteredBy(ProductSearchQueryBuilder.PRODUCT_PRICE)) {
+
+            facetingRequest.addAll(priceFilteredNavigationSupport.getFilteredNavigationRecordRequests(context, category.getCategoryId(), currencyCode));
+
+        }
+
+        final boolean byAttr = category.getNavigationByAttributes() == null ? false : category.getNavigationByAttributes();
+        final Long productType = categoryServiceFacade.getCategoryProductTypeId(category.getCategoryId(), shopId);
+
+        if (byAttr && productType != null) {
+
+            facetingRequest.addAll(attributeFilteredNavigationSupport.getFilteredNavigationRecordRequests(context, productType));
+
+        }
+
+        return facetingRequest;
+
+    }
+
+
+    private void populateFilteredNavigation(final Category category,
                                             final long shopId,
                                             final String locale,
                                             final String currencyCode,
                                             final NavigationContext context,
+                                            final Map<String, List<Pair<String, Integer>>> facets,
                                             final SearchResultRO result) {
 
-        final Category category = categoryServiceFacade.getCategory(categoryId, shopId);
-
         if (category != null) {
 
 
@@ -546,7 +600,7 @@ public class SearchController {
             if (byBrand && !context.isFilteredBy(ProductSearchQueryBuilder.BRAND_FIELD)) {
 
                 populateFilteredNavigationRecords(navigationRo,
-                        brandsFilteredNavigationSupport.getFilteredNavigationRecords(context, locale, ProductSearchQueryBuilder.BRAND_FIELD));
+                        brandsFilteredNavigationSupport.getFilteredNavigationRecords(context, locale, ProductSearchQueryBuilder.BRAND_FIELD, facets));
 
                 enhanceFilteredNavigationByBrand(navigationRo);
 
@@ -555,7 +609,7 @@ public class SearchController {
             if (!context.isFilteredBy(ProductSearchQueryBuilder.PRODUCT_PRICE)) {
 
                 populateFilteredNavigationRecords(navigationRo,
-                        priceFilteredNavigationSupport.getFilteredNavigationRecords(context, categoryId, currencyCode, locale, ProductSearchQueryBuilder.PRODUCT_PRICE));
+                        priceFilteredNavigationSupport.getFilteredNavigationRecords(context, category.getCategoryId(), currencyCode, locale, ProductSearchQueryBuilder.PRODUCT_PRICE, facets));
 
                 enhanceFilteredNavigationByPrice(navigationRo);
 
@@ -567,7 +621,7 @@ public class SearchController {
             if (byAttr && productType != null) {
 
                 populateFilteredNavigationRecords(navigationRo,
-                        attributeFilteredNavigationSupport.getFilteredNavigationRecords(context, locale, productType));
+                        attributeFilteredNavigationSupport.getFilteredNavigationRecords(context, locale, productType, facets));
 
             }
 
@@ -708,6 +762,31 @@ public class SearchController {
                 context, result.getSearch().getPageNumber() * result.getSearch().getPageSize(), result.getSearch().getPageSize(),
                 result.getSearch().getSortField(), result.getSearch().getSortDescending());
 
+        populateSearchResultsPage(context, result, cart, products);
+
+    }
+
+    private Map<String, List<Pair<String, Integer>>> populateSearchResults(final NavigationContext context,
+                                                                           final SearchResultRO result,
+                                                                           final ShoppingCart cart,
+                                                                           final List<FilteredNavigationRecordRequest> facetingRequest) {
+
+        final Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> productsAndFacets =
+                productServiceFacade.getListProductsAndNavigation(
+                        context, result.getSearch().getPageNumber() * result.getSearch().getPageSize(), result.getSearch().getPageSize(),
+                        result.getSearch().getSortField(), result.getSearch().getSortDescending(), facetingRequest);
+
+        populateSearchResultsPage(context, result, cart, productsAndFacets.getFirst());
+
+        return productsAndFacets.getSecond();
+
+    }
+
+    private void populateSearchResultsPage(final NavigationContext context,
+                                           final SearchResultRO result,
+                                           final ShoppingCart cart,
+                                           final ProductSearchResultPageDTO products) {
+
         result.setTotalResults(products.getTotalHits());
 
         final List<ProductSearchResultRO> ros = new ArrayList<ProductSearchResultRO>();
@@ -715,21 +794,23 @@ public class SearchController {
 
             final Pair<String, Boolean> symbol = currencySymbolService.getCurrencySymbol(cart.getCurrencyCode());
 
+            final Map<Long, ProductAvailabilityModel> skuPams = productServiceFacade.getProductAvailability(products.getResults(), context.getShopId());
+            final List<String> skuCodes = new ArrayList<String>(skuPams.size());
+            for (final ProductAvailabilityModel skuPam : skuPams.values()) {
+                skuCodes.add(skuPam.getFirstAvailableSkuCode());
+            }
+            final Map<String, ProductPriceModel> prices = productServiceFacade.getSkuPrices(cart, skuCodes);
+
             for (final ProductSearchResultDTO hit : products.getResults()) {
 
-                final ProductAvailabilityModel skuPam = productServiceFacade.getProductAvailability(hit, context.getShopId());
+                final ProductAvailabilityModel skuPam = skuPams.get(hit.getId());
 
                 final ProductSearchResultRO ro = mappingMixin.map(hit, ProductSearchResultRO.class, ProductSearchResultDTO.class);
 
                 final ProductAvailabilityModelRO amRo = mappingMixin.map(skuPam, ProductAvailabilityModelRO.class, ProductAvailabilityModel.class);
                 ro.setProductAvailabilityModel(amRo);
 
-                final ProductPriceModel price = productServiceFacade.getSkuPrice(
-                        cart,
-                        null,
-                        skuPam.getFirstAvailableSkuCode(),
-                        BigDecimal.ONE
-                );
+                final ProductPriceModel price = prices.get(skuPam.getFirstAvailableSkuCode());
 
                 final SkuPriceRO priceRo = mappingMixin.map(price, SkuPriceRO.class, ProductPriceModel.class);
                 priceRo.setSymbol(symbol.getFirst());
@@ -91,8 +91,8 @@ public class WicketLoginCommandImpl extends LoginCommandImpl {
     @Override
     protected void recalculate(final MutableShoppingCart shoppingCart) {
 
-        // This call will merge the cart
-        cartRepository.storeShoppingCart(shoppingCart);
+        // This call will merge the cart, so it must not be deferred
+        cartRepository.flushShoppingCart(shoppingCart);
 
         super.recalculate(shoppingCart);
 
@@ -19,7 +19,12 @@ package org.yes.cart.web.page.component;
 
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.spring.injection.annot.SpringBean;
+import org.yes.cart.util.ShopCodeContext;
+import org.yes.cart.web.application.ApplicationDirector;
+import org.yes.cart.web.service.wicketsupport.FragmentCacheSupport;
 import org.yes.cart.web.service.wicketsupport.WicketSupportFacade;
 import org.yes.cart.web.support.constants.StorefrontServiceSpringKeys;
 import org.yes.cart.web.support.constants.WicketServiceSpringKeys;
@@ -53,6 +58,9 @@ public class BaseComponent extends Panel {
 
     private boolean panelVisible = true;
 
+    private String fragmentCacheKey;
+    private String cachedMarkup;
+
 
     /**
      * Construct panel.
@@ -100,4 +108,100 @@ public class BaseComponent extends Panel {
     public WicketUtil getWicketUtil() {
         return wicketUtil;
     }
+
+    /**
+     * Extension of fragment cache key for components which output depends on more than shop,
+     * locale and currency (e.g. current category). Only components that return non null value
+     * can have their output cached (if enabled in fragment cache configuration). Such components
+     * must only render bookmarkable links and must not contribute to page header.
+     *
+     * @return key extension or null if output of this component must not be cached
+     */
+    protected String getFragmentCacheKey() {
+        return null;
+    }
+
+    /**
+     * Check if markup of this component is in fragment cache, in which case component should
+     * skip building its children as cached markup is rendered instead. Any children added by
+     * previous render of this instance are removed, since they are not rendered (which would
+     * fail component use check and skip their header contributions). Cacheable components
+     * call this at the start of {@link #onBeforeRender()}.
+     *
+     * @return true if this component will be rendered from fragment cache
+     */
+    protected boolean isRenderedFromCache() {
+
+        if (fragmentCacheKey == null) {
+
+            final String extension = getFragmentCacheKey();
+            final FragmentCacheSupport fragments = getWicketSupportFacade().fragments();
+            if (extension == null || !fragments.isCacheable(getClass())) {
+                return false;
+            }
+
+            final StringBuilder key = new StringBuilder(getClass().getName())
+                    .append('|').append(fragments.getCatalogVersion())
+                    .append('|').append(ShopCodeContext.getShopId())
+                    .append('|').append(getLocale().getLanguage())
+                    .append('|').append(ApplicationDirector.getShoppingCart().getCurrencyCode())
+                    .append('|');
+            // links are rendered relative to current URL
+            for (final String segment : getRequestCycle().getUrlRenderer().getBaseUrl().getSegments()) {
+                key.append('/').append(segment);
+            }
+            key.append('|').append(extension);
+
+            fragmentCacheKey = key.toString();
+            cachedMarkup = fragments.getMarkup(getClass(), fragmentCacheKey);
+
+            if (cachedMarkup != null && size() > 0) {
+                // children of previous render are stale and will not be rendered
+                removeAll();
+            }
+
+        }
+
+        return cachedMarkup != null;
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onRender() {
+
+        if (cachedMarkup != null) {
+
+            getResponse().write(cachedMarkup);
+
+        } else if (fragmentCacheKey != null) {
+
+            final Response original = getRequestCycle().getResponse();
+            final StringResponse buffer = new StringResponse();
+            getRequestCycle().setResponse(buffer);
+            try {
+                super.onRender();
+            } finally {
+                getRequestCycle().setResponse(original);
+            }
+
+            final String markup = buffer.getBuffer().toString();
+            original.write(markup);
+            getWicketSupportFacade().fragments().putMarkup(getClass(), fragmentCacheKey, markup);
+
+        } else {
+
+            super.onRender();
+
+        }
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void onAfterRender() {
+        fragmentCacheKey = null;
+        cachedMarkup = null;
+        super.onAfterRender();
+    }
 }
\ No newline at end of file
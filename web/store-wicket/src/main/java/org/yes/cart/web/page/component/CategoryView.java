@@ -53,9 +53,23 @@ public class CategoryView extends  BaseComponent {
         this.imageSize = imageSize;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getFragmentCacheKey() {
+        final CategoryDecorator category = (CategoryDecorator) this.getParent().getDefaultModel().getObject();
+        return category.getCategoryId() + "|" + imageSize.getFirst() + "x" + imageSize.getSecond();
+    }
+
     @Override
     protected void onBeforeRender() {
 
+        if (isRenderedFromCache()) {
+            super.onBeforeRender();
+            return;
+        }
+
         final String selectedLocale = getLocale().getLanguage();
 
         final CategoryDecorator category = (CategoryDecorator) this.getParent().getDefaultModel().getObject();
@@ -24,9 +24,12 @@ import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.yes.cart.domain.dto.ProductSearchResultDTO;
 import org.yes.cart.domain.dto.ProductSearchResultPageDTO;
+import org.yes.cart.domain.entity.ProductAvailabilityModel;
+import org.yes.cart.domain.entity.ProductPriceModel;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.domain.queryobject.NavigationContext;
 import org.yes.cart.util.ShopCodeContext;
+import org.yes.cart.web.application.ApplicationDirector;
 import org.yes.cart.web.page.component.data.SortableProductDataProvider;
 import org.yes.cart.web.page.component.filterednavigation.AttributeProductFilter;
 import org.yes.cart.web.page.component.filterednavigation.BrandProductFilter;
@@ -40,7 +43,10 @@ import org.yes.cart.web.support.constants.StorefrontServiceSpringKeys;
 import org.yes.cart.web.support.constants.WebParametersKeys;
 import org.yes.cart.web.support.service.ProductServiceFacade;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * User: Igor Azarny iazarny@yahoo.com
@@ -141,11 +147,23 @@ public class ProductsCentralView extends AbstractCentralView {
 
         final SortableProductDataProvider dataProvider = new SortableProductDataProvider(products);
 
+        // resolve availability and prices for the whole page in bulk rather than per product
+        final List<ProductSearchResultDTO> pageProducts = products.getResults() != null ?
+                products.getResults() : Collections.<ProductSearchResultDTO>emptyList();
+        final Map<Long, ProductAvailabilityModel> skuPams = productServiceFacade.getProductAvailability(pageProducts, shopId);
+        final List<String> skuCodes = new ArrayList<String>(skuPams.size());
+        for (final ProductAvailabilityModel skuPam : skuPams.values()) {
+            skuCodes.add(skuPam.getDefaultSkuCode());
+        }
+        final Map<String, ProductPriceModel> prices = productServiceFacade.getSkuPrices(ApplicationDirector.getShoppingCart(), skuCodes);
+
         final GridView<ProductSearchResultDTO> productDataView = new GridView<ProductSearchResultDTO>(PRODUCT_LIST, dataProvider) {
 
             protected void populateItem(Item<ProductSearchResultDTO> productItem) {
+                final ProductSearchResultDTO product = productItem.getModelObject();
+                final ProductAvailabilityModel skuPam = skuPams.get(product.getId());
                 productItem.add(
-                        new ProductInListView(PRODUCT, productItem.getModelObject(), widthHeight)
+                        new ProductInListView(PRODUCT, product, widthHeight, skuPam, prices.get(skuPam.getDefaultSkuCode()))
                 );
             }
 
@@ -22,6 +22,7 @@ import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.markup.html.list.ListItem;
 import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.spring.injection.annot.SpringBean;
 import org.springframework.util.CollectionUtils;
 import org.yes.cart.domain.entity.Category;
@@ -62,12 +63,31 @@ public class TopCategories extends BaseComponent {
         super(id);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected String getFragmentCacheKey() {
+        final PageParameters params = getPage().getPageParameters();
+        if (params == null) {
+            return "0|0";
+        }
+        // same normalisation as in onBeforeRender, so that invalid values do not create new keys
+        return NumberUtils.toLong(params.get(WebParametersKeys.CATEGORY_ID).toString()) + "|"
+                + NumberUtils.toLong(params.get(WebParametersKeys.CONTENT_ID).toString());
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected void onBeforeRender() {
 
+        if (isRenderedFromCache()) {
+            super.onBeforeRender();
+            return;
+        }
+
         final long categoryId = NumberUtils.toLong(getPage().getPageParameters().get(WebParametersKeys.CATEGORY_ID).toString());
         final long contentId = NumberUtils.toLong(getPage().getPageParameters().get(WebParametersKeys.CONTENT_ID).toString());
         final long shopId = ShopCodeContext.getShopId();
@@ -32,7 +32,6 @@ import org.yes.cart.domain.entity.ProductAvailabilityModel;
 import org.yes.cart.domain.entity.ProductPriceModel;
 import org.yes.cart.domain.entity.Shop;
 import org.yes.cart.domain.misc.Pair;
-import org.yes.cart.shoppingcart.ShoppingCart;
 import org.yes.cart.util.ShopCodeContext;
 import org.yes.cart.web.application.ApplicationDirector;
 import org.yes.cart.web.page.component.BaseComponent;
@@ -41,9 +40,6 @@ import org.yes.cart.web.service.wicketsupport.LinksSupport;
 import org.yes.cart.web.support.constants.StorefrontServiceSpringKeys;
 import org.yes.cart.web.support.constants.WebParametersKeys;
 import org.yes.cart.web.support.service.AttributableImageService;
-import org.yes.cart.web.support.service.ProductServiceFacade;
-
-import java.math.BigDecimal;
 
 /**
  * User: Igor Azarny iazarny@yahoo.com
@@ -69,13 +65,12 @@ public class ProductInListView extends BaseComponent {
 
     private final ProductSearchResultDTO product;
     private final ProductSkuSearchResultDTO sku;
+    private final ProductAvailabilityModel skuPam;
+    private final ProductPriceModel price;
 
     @SpringBean(name = StorefrontServiceSpringKeys.PRODUCT_IMAGE_SERVICE)
     private AttributableImageService attributableImageService;
 
-    @SpringBean(name = StorefrontServiceSpringKeys.PRODUCT_SERVICE_FACADE)
-    private ProductServiceFacade productServiceFacade;
-
     private final Pair<String, String> defImgSize;
 
 
@@ -85,12 +80,20 @@ public class ProductInListView extends BaseComponent {
      * @param id         view id
      * @param product    product model
      * @param defImgSize image size in given category
+     * @param skuPam     product availability (resolved in bulk for whole page)
+     * @param price      default SKU price (resolved in bulk for whole page)
      */
-    public ProductInListView(final String id, final ProductSearchResultDTO product, final Pair<String, String> defImgSize) {
+    public ProductInListView(final String id,
+                             final ProductSearchResultDTO product,
+                             final Pair<String, String> defImgSize,
+                             final ProductAvailabilityModel skuPam,
+                             final ProductPriceModel price) {
         super(id);
         this.product = product;
         this.sku = resolveDefaultSku(product);
         this.defImgSize = defImgSize;
+        this.skuPam = skuPam;
+        this.price = price;
     }
 
     private ProductSkuSearchResultDTO resolveDefaultSku(final ProductSearchResultDTO product) {
@@ -152,8 +155,6 @@ public class ProductInListView extends BaseComponent {
         );
 
 
-        final ProductAvailabilityModel skuPam = productServiceFacade.getProductAvailability(product, ShopCodeContext.getShopId());
-
         final boolean ableToAddDefault = skuPam.isAvailable() && skuPam.getDefaultSkuCode().equals(skuPam.getFirstAvailableSkuCode());
 
         add(links.newAddToCartLink(ADD_TO_CART_LINK, skuPam.getDefaultSkuCode(), null, getPage().getPageParameters())
@@ -168,18 +169,14 @@ public class ProductInListView extends BaseComponent {
                         .setVisible(!ableToAddDefault)
         );
 
-        add(getPriceView(skuPam));
+        add(getPriceView());
 
         super.onBeforeRender();
     }
 
-    private PriceView getPriceView(final ProductAvailabilityModel skuPam) {
-
-        final ShoppingCart cart = ApplicationDirector.getShoppingCart();
-
-        final ProductPriceModel model = productServiceFacade.getSkuPrice(cart, null, skuPam.getDefaultSkuCode(), BigDecimal.ONE);
+    private PriceView getPriceView() {
 
-        return new PriceView(PRICE_VIEW, model, null, true, true, model.isTaxInfoEnabled(), model.isTaxInfoUseNet(), model.isTaxInfoShowAmount());
+        return new PriceView(PRICE_VIEW, price, null, true, true, price.isTaxInfoEnabled(), price.isTaxInfoUseNet(), price.isTaxInfoShowAmount());
     }
 
 
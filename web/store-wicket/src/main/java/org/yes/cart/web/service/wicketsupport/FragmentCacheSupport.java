@@ -0,0 +1,66 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.web.service.wicketsupport;
+
+/**
+ * Output cache for rendered markup of components that only depend on shop wide data
+ * (shop, locale, currency, category tree and content). Cached markup is written directly
+ * to response, so that component does not need to build its children.
+ *
+ * Cache entries are invalidated through cache eviction configuration of cache director. Since
+ * category tree is rebuilt in background after eviction, cache keys also include version of
+ * category tree snapshot, so that markup rendered from previous snapshot is not served after swap.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:50
+ */
+public interface FragmentCacheSupport {
+
+    /**
+     * @param componentClass component class
+     *
+     * @return true if output of this component class should be cached
+     */
+    boolean isCacheable(Class<?> componentClass);
+
+    /**
+     * @return version of catalog data (category and content tree) that markup is rendered from,
+     *         to be used as part of cache key
+     */
+    long getCatalogVersion();
+
+    /**
+     * Get cached markup.
+     *
+     * @param componentClass component class (for metrics)
+     * @param key            cache key
+     *
+     * @return markup or null if not cached
+     */
+    String getMarkup(Class<?> componentClass, String key);
+
+    /**
+     * Cache rendered markup.
+     *
+     * @param componentClass component class
+     * @param key            cache key
+     * @param markup         rendered markup
+     */
+    void putMarkup(Class<?> componentClass, String key, String markup);
+
+}
@@ -36,4 +36,9 @@ public interface WicketSupportFacade {
      */
     PaginationSupport pagination();
 
+    /**
+     * @return fragment cache support
+     */
+    FragmentCacheSupport fragments();
+
 }
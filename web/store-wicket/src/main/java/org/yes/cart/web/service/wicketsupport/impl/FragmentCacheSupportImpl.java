@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.web.service.wicketsupport.impl;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
+import org.yes.cart.util.ShopCodeContext;
+import org.yes.cart.web.service.wicketsupport.FragmentCacheSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fragment cache backed by cache region, so that it is evicted by cache director
+ * together with regions for the same entities. Hit/miss counters are exported through JMX.
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:55
+ */
+public class FragmentCacheSupportImpl implements FragmentCacheSupport {
+
+    private static final String SESSION_ID = ";jsessionid=";
+
+    private final Cache cache;
+
+    private Set<String> cacheableComponents = Collections.emptySet();
+
+    private ShopCategoryRelationshipSupport shopCategoryRelationshipSupport;
+
+    private final ConcurrentMap<String, AtomicLong> hits = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> misses = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * @param cacheManager cache manager
+     * @param cacheName    fragment cache region
+     */
+    public FragmentCacheSupportImpl(final CacheManager cacheManager,
+                                    final String cacheName) {
+        this.cache = cacheManager.getCache(cacheName);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCacheable(final Class<?> componentClass) {
+        return cache != null && cacheableComponents.contains(componentClass.getName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCatalogVersion() {
+        return shopCategoryRelationshipSupport != null ? shopCategoryRelationshipSupport.getCategoryTreeVersion() : 0L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMarkup(final Class<?> componentClass, final String key) {
+
+        final Cache.ValueWrapper wrapper = cache.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            increment(hits, componentClass);
+            return (String) wrapper.get();
+        }
+        increment(misses, componentClass);
+        return null;
+
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void putMarkup(final Class<?> componentClass, final String key, final String markup) {
+
+        if (markup.contains(SESSION_ID)) {
+            // URL rewriting is specific to this session, so this markup must not be shared
+            ShopCodeContext.getLog(this).debug("Not caching {} as it contains session id in URLs", componentClass.getName());
+            return;
+        }
+        cache.put(key, markup);
+
+    }
+
+    /**
+     * @param componentClass component class name
+     *
+     * @return number of times markup was served from cache
+     */
+    public long getHitCount(final String componentClass) {
+        final AtomicLong count = hits.get(componentClass);
+        return count != null ? count.get() : 0L;
+    }
+
+    /**
+     * @param componentClass component class name
+     *
+     * @return number of times markup had to be rendered
+     */
+    public long getMissCount(final String componentClass) {
+        final AtomicLong count = misses.get(componentClass);
+        return count != null ? count.get() : 0L;
+    }
+
+    /**
+     * @return statistics per cacheable component: hits, misses and hit ratio
+     */
+    public String[] getStatistics() {
+
+        final List<String> names = new ArrayList<String>(cacheableComponents);
+        Collections.sort(names);
+        final String[] stats = new String[names.size()];
+        int i = 0;
+        for (final String name : names) {
+            final long hits = getHitCount(name);
+            final long misses = getMissCount(name);
+            final long total = hits + misses;
+            stats[i++] = name
+                    + ": hits=" + hits
+                    + ", misses=" + misses
+                    + ", hitRatio=" + (total > 0L ? (hits * 100L / total) : 0L) + "%";
+        }
+        return stats;
+
+    }
+
+    /**
+     * @return component classes which output is cached
+     */
+    public Set<String> getCacheableComponents() {
+        return cacheableComponents;
+    }
+
+    /**
+     * IoC. Component classes which output is cached.
+     *
+     * @param cacheableComponents fully qualified class names
+     */
+    public void setCacheableComponents(final Set<String> cacheableComponents) {
+        this.cacheableComponents = cacheableComponents;
+    }
+
+    /**
+     * IoC. Category tree support which snapshot version is part of cache key.
+     *
+     * @param shopCategoryRelationshipSupport category tree support
+     */
+    public void setShopCategoryRelationshipSupport(final ShopCategoryRelationshipSupport shopCategoryRelationshipSupport) {
+        this.shopCategoryRelationshipSupport = shopCategoryRelationshipSupport;
+    }
+
+    private void increment(final ConcurrentMap<String, AtomicLong> counters, final Class<?> componentClass) {
+        AtomicLong count = counters.get(componentClass.getName());
+        if (count == null) {
+            final AtomicLong created = new AtomicLong(0L);
+            count = counters.putIfAbsent(componentClass.getName(), created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+}
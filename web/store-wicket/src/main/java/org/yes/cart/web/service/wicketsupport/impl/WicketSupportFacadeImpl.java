@@ -17,6 +17,7 @@
 package org.yes.cart.web.service.wicketsupport.impl;
 
 import org.yes.cart.service.domain.ContentServiceTemplateSupport;
+import org.yes.cart.web.service.wicketsupport.FragmentCacheSupport;
 import org.yes.cart.web.service.wicketsupport.LinksSupport;
 import org.yes.cart.web.service.wicketsupport.PaginationSupport;
 import org.yes.cart.web.service.wicketsupport.WicketSupportFacade;
@@ -34,15 +35,18 @@ public class WicketSupportFacadeImpl implements WicketSupportFacade {
     private final PaginationSupport paginationSupport;
     private final ContentServiceTemplateSupport templateSupport;
     private final WicketUtil wicketUtil;
+    private final FragmentCacheSupport fragmentCacheSupport;
 
     public WicketSupportFacadeImpl(final LinksSupport linksSupport,
                                    final PaginationSupport paginationSupport,
                                    final ContentServiceTemplateSupport templateSupport,
-                                   final WicketUtil wicketUtil) {
+                                   final WicketUtil wicketUtil,
+                                   final FragmentCacheSupport fragmentCacheSupport) {
         this.linksSupport = linksSupport;
         this.paginationSupport = paginationSupport;
         this.templateSupport = templateSupport;
         this.wicketUtil = wicketUtil;
+        this.fragmentCacheSupport = fragmentCacheSupport;
 
         this.templateSupport.registerFunction("contentURL", new WicketUrlTemplateFunctionProviderImpl(this.wicketUtil, WebParametersKeys.CONTENT_ID));
         this.templateSupport.registerFunction("categoryURL", new WicketUrlTemplateFunctionProviderImpl(this.wicketUtil, WebParametersKeys.CATEGORY_ID));
@@ -63,4 +67,10 @@ public class WicketSupportFacadeImpl implements WicketSupportFacade {
     public PaginationSupport pagination() {
         return paginationSupport;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public FragmentCacheSupport fragments() {
+        return fragmentCacheSupport;
+    }
 }
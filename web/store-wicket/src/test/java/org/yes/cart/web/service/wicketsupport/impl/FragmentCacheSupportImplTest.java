@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.web.service.wicketsupport.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.yes.cart.domain.entity.bridge.support.ShopCategoryRelationshipSupport;
+import org.yes.cart.web.page.component.CategoryView;
+import org.yes.cart.web.page.component.TopCategories;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 18:20
+ */
+public class FragmentCacheSupportImplTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test
+    public void testCacheableComponents() throws Exception {
+
+        final FragmentCacheSupportImpl fragments = new FragmentCacheSupportImpl(new ConcurrentMapCacheManager(), "fragments");
+        fragments.setCacheableComponents(Collections.singleton(TopCategories.class.getName()));
+
+        assertTrue(fragments.isCacheable(TopCategories.class));
+        assertFalse(fragments.isCacheable(CategoryView.class));
+
+    }
+
+    @Test
+    public void testHitMiss() throws Exception {
+
+        final FragmentCacheSupportImpl fragments = new FragmentCacheSupportImpl(new ConcurrentMapCacheManager(), "fragments");
+
+        assertNull(fragments.getMarkup(TopCategories.class, "key"));
+        fragments.putMarkup(TopCategories.class, "key", "<ul></ul>");
+        assertEquals("<ul></ul>", fragments.getMarkup(TopCategories.class, "key"));
+        assertEquals("<ul></ul>", fragments.getMarkup(TopCategories.class, "key"));
+
+        assertEquals(2L, fragments.getHitCount(TopCategories.class.getName()));
+        assertEquals(1L, fragments.getMissCount(TopCategories.class.getName()));
+        assertEquals(0L, fragments.getHitCount(CategoryView.class.getName()));
+
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+
+        final FragmentCacheSupportImpl fragments = new FragmentCacheSupportImpl(new ConcurrentMapCacheManager(), "fragments");
+        fragments.setCacheableComponents(new HashSet<String>(Arrays.asList(TopCategories.class.getName(), CategoryView.class.getName())));
+
+        fragments.getMarkup(TopCategories.class, "key");
+        fragments.putMarkup(TopCategories.class, "key", "<ul></ul>");
+        fragments.getMarkup(TopCategories.class, "key");
+
+        final String[] stats = fragments.getStatistics();
+        assertEquals(2, stats.length);
+        assertEquals(CategoryView.class.getName() + ": hits=0, misses=0, hitRatio=0%", stats[0]);
+        assertEquals(TopCategories.class.getName() + ": hits=1, misses=1, hitRatio=50%", stats[1]);
+
+    }
+
+    @Test
+    public void testCatalogVersion() throws Exception {
+
+        final FragmentCacheSupportImpl fragments = new FragmentCacheSupportImpl(new ConcurrentMapCacheManager(), "fragments");
+        assertEquals(0L, fragments.getCatalogVersion());
+
+        final ShopCategoryRelationshipSupport support = context.mock(ShopCategoryRelationshipSupport.class);
+        context.checking(new Expectations() {{
+            allowing(support).getCategoryTreeVersion(); will(returnValue(5L));
+        }});
+        fragments.setShopCategoryRelationshipSupport(support);
+        assertEquals(5L, fragments.getCatalogVersion());
+
+        context.assertIsSatisfied();
+
+    }
+
+    @Test
+    public void testSessionSpecificMarkupNotCached() throws Exception {
+
+        final FragmentCacheSupportImpl fragments = new FragmentCacheSupportImpl(new ConcurrentMapCacheManager(), "fragments");
+
+        fragments.putMarkup(TopCategories.class, "key", "<a href=\"category/1;jsessionid=ABC\">1</a>");
+        assertNull(fragments.getMarkup(TopCategories.class, "key"));
+
+    }
+
+}
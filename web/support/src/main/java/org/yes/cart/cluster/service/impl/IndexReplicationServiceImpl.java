@@ -0,0 +1,471 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.yes.cart.cluster.node.Message;
+import org.yes.cart.cluster.node.MessageListener;
+import org.yes.cart.cluster.node.Node;
+import org.yes.cart.cluster.node.NodeService;
+import org.yes.cart.cluster.node.RspMessage;
+import org.yes.cart.cluster.node.impl.BasicMessageImpl;
+import org.yes.cart.cluster.node.impl.RspMessageImpl;
+import org.yes.cart.cluster.service.IndexReplicationService;
+import org.yes.cart.util.ShopCodeContext;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Replicates index snapshots published by Hibernate Search master directory provider over cluster channel.
+ *
+ * Master directory provider keeps two copies of each index in source directory (sub directories "1" and "2")
+ * and marks consistent copy by empty marker file "current1" or "current2". Master node publishes a manifest
+ * of the current copies and serves file chunks. Replica node copies manifest files into its own copy that is
+ * not current, reusing unchanged segments from current copy, and then moves the marker so that slave directory
+ * provider picks up new snapshot on next refresh and swaps readers.
+ *
+ * Manifest carries CRC32 checksum of every file (computed once per file version on master), every transferred
+ * or locally reused file is verified against it before marker is moved, so that snapshot never mixes files from
+ * different master copies (e.g. if master re-publishes copy while replica is transferring it).
+ *
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 16:15
+ */
+public class IndexReplicationServiceImpl implements IndexReplicationService {
+
+    static final String MANIFEST = "IndexReplicationService.manifest";
+    static final String CHUNK = "IndexReplicationService.chunk";
+
+    private static final String[] COPIES = new String[] { "1", "2" };
+    private static final String MARKER = "current";
+    private static final String PARTIAL = ".part";
+
+    private final boolean master;
+    private final boolean replica;
+    private final File sourceBase;
+
+    private NodeService nodeService;
+    private int chunkSize = 1024 * 1024;
+
+    private volatile Map<String, long[]> checksums = new HashMap<String, long[]>();
+
+    /**
+     * @param directoryProvider Hibernate Search directory provider of this node
+     * @param sourceBase        Hibernate Search source base for master/slave directory providers
+     */
+    public IndexReplicationServiceImpl(final String directoryProvider,
+                                       final String sourceBase) {
+        this.master = "filesystem-master".equals(directoryProvider)
+                || "org.hibernate.search.store.impl.FSMasterDirectoryProvider".equals(directoryProvider);
+        this.replica = "filesystem-slave".equals(directoryProvider)
+                || "org.hibernate.search.store.impl.FSSlaveDirectoryProvider".equals(directoryProvider);
+        this.sourceBase = StringUtils.isNotBlank(sourceBase) ? new File(sourceBase) : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isReplica() {
+        return replica && sourceBase != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int replicate() {
+
+        if (!isReplica()) {
+            return 0;
+        }
+
+        final Message manifest = requestManifest();
+        if (manifest == null) {
+            return -1;
+        }
+
+        int updated = 0;
+        for (final Snapshot snapshot : (List<Snapshot>) manifest.getPayload()) {
+            if (replicateSnapshot(manifest.getSource(), snapshot)) {
+                updated++;
+            }
+        }
+        return updated;
+
+    }
+
+    private Message requestManifest() {
+
+        final List<String> targets = new ArrayList<String>();
+        for (final Node node : nodeService.getOtherYesNodes()) {
+            targets.add(node.getNodeId());
+        }
+        if (targets.isEmpty()) {
+            return null;
+        }
+
+        final RspMessage request = new RspMessageImpl(nodeService.getCurrentNodeId(), targets, MANIFEST, null);
+        nodeService.broadcast(request);
+
+        for (final Message response : request.getResponses()) {
+            if (response != null && response.getPayload() instanceof ArrayList) {
+                return response;
+            }
+        }
+        return null;
+
+    }
+
+    private boolean replicateSnapshot(final String masterNodeId, final Snapshot snapshot) {
+
+        final Logger log = ShopCodeContext.getLog(this);
+
+        final File indexDir = new File(sourceBase, snapshot.index);
+        final String current = getCurrentCopy(indexDir);
+        if (current != null && isSameSnapshot(new File(indexDir, current), snapshot.files)) {
+            return false; // up to date
+        }
+
+        final String next = COPIES[0].equals(current) ? COPIES[1] : COPIES[0];
+        final File nextDir = new File(indexDir, next);
+        if (!nextDir.exists() && !nextDir.mkdirs()) {
+            log.error("Unable to create index replica directory {}", nextDir.getAbsolutePath());
+            return false;
+        }
+
+        final File[] existing = nextDir.listFiles();
+        if (existing != null) {
+            for (final File file : existing) {
+                if (!isSameFile(file, snapshot.files.get(file.getName()))) {
+                    file.delete();
+                }
+            }
+        }
+
+        int transferred = 0;
+        try {
+            for (final Map.Entry<String, long[]> file : snapshot.files.entrySet()) {
+
+                final File target = new File(nextDir, file.getKey());
+                if (isSameFile(target, file.getValue())) {
+                    continue;
+                }
+
+                final File local = current != null ? new File(new File(indexDir, current), file.getKey()) : null;
+                if (local != null && isSameFile(local, file.getValue())) {
+                    copyLocal(local, target, file.getValue());
+                } else {
+                    transferFile(masterNodeId, snapshot, file.getKey(), target, file.getValue());
+                    transferred++;
+                }
+
+            }
+        } catch (IOException ioe) {
+            log.error("Unable to replicate index " + snapshot.index + " from " + masterNodeId + ", cause: " + ioe.getMessage(), ioe);
+            return false;
+        }
+
+        // only switch when complete copy is in place
+        try {
+            new File(indexDir, MARKER + next).createNewFile();
+        } catch (IOException ioe) {
+            log.error("Unable to mark index replica " + nextDir.getAbsolutePath() + ", cause: " + ioe.getMessage(), ioe);
+            return false;
+        }
+        if (current != null) {
+            new File(indexDir, MARKER + current).delete();
+        }
+
+        log.info("Replicated index {} from {}, transferred {} of {} files",
+                new Object[] { snapshot.index, masterNodeId, transferred, snapshot.files.size() });
+        return true;
+
+    }
+
+    private void transferFile(final String masterNodeId,
+                              final Snapshot snapshot,
+                              final String name,
+                              final File target,
+                              final long[] meta) throws IOException {
+
+        final File partial = new File(target.getParentFile(), target.getName() + PARTIAL);
+        final CheckedOutputStream os = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(partial)), new CRC32());
+        try {
+            long offset = 0L;
+            while (offset < meta[0]) {
+
+                final RspMessage request = new RspMessageImpl(
+                        nodeService.getCurrentNodeId(),
+                        Collections.singletonList(masterNodeId),
+                        CHUNK,
+                        new String[] { snapshot.index, snapshot.copy, name, String.valueOf(offset), String.valueOf(chunkSize) });
+                nodeService.broadcast(request);
+
+                final byte[] chunk = getChunk(request);
+                if (chunk == null || chunk.length == 0) {
+                    throw new IOException("No data for " + name + " at offset " + offset);
+                }
+                os.write(chunk);
+                offset += chunk.length;
+
+            }
+        } finally {
+            os.close();
+        }
+
+        if (os.getChecksum().getValue() != meta[2]) {
+            partial.delete();
+            throw new IOException("Checksum mismatch for " + name + ", file changed on master during transfer");
+        }
+        if (partial.length() != meta[0] || !partial.renameTo(target)) {
+            partial.delete();
+            throw new IOException("Unable to complete transfer of " + name);
+        }
+        target.setLastModified(meta[1]);
+
+    }
+
+    private byte[] getChunk(final RspMessage request) {
+        for (final Message response : request.getResponses()) {
+            if (response != null && response.getPayload() instanceof byte[]) {
+                return (byte[]) response.getPayload();
+            }
+        }
+        return null;
+    }
+
+    private void copyLocal(final File source, final File target, final long[] meta) throws IOException {
+
+        final CheckedInputStream is = new CheckedInputStream(new BufferedInputStream(new FileInputStream(source)), new CRC32());
+        try {
+            final OutputStream os = new BufferedOutputStream(new FileOutputStream(target));
+            try {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, read);
+                }
+            } finally {
+                os.close();
+            }
+        } finally {
+            is.close();
+        }
+        if (is.getChecksum().getValue() != meta[2]) {
+            target.delete();
+            throw new IOException("Checksum mismatch for local copy of " + source.getName());
+        }
+        target.setLastModified(meta[1]);
+
+    }
+
+    private boolean isSameSnapshot(final File copyDir, final Map<String, long[]> files) {
+
+        final File[] existing = copyDir.listFiles();
+        if (existing == null || existing.length != files.size()) {
+            return false;
+        }
+        for (final File file : existing) {
+            if (!isSameFile(file, files.get(file.getName()))) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+    private boolean isSameFile(final File file, final long[] meta) {
+        // segment files are immutable, mutable files (e.g. segments.gen) change timestamp
+        return meta != null && file.isFile() && file.length() == meta[0] && file.lastModified() == meta[1];
+    }
+
+    /*
+     * Master side: manifest of current copies of all indexes.
+     */
+    ArrayList<Snapshot> getManifest() {
+
+        final ArrayList<Snapshot> manifest = new ArrayList<Snapshot>();
+        final File[] indexDirs = sourceBase != null ? sourceBase.listFiles() : null;
+        if (indexDirs == null) {
+            return manifest;
+        }
+        final Map<String, long[]> known = checksums;
+        final Map<String, long[]> current = new HashMap<String, long[]>();
+        for (final File indexDir : indexDirs) {
+            final String copy = indexDir.isDirectory() ? getCurrentCopy(indexDir) : null;
+            if (copy == null) {
+                continue; // not yet published
+            }
+            final File[] files = new File(indexDir, copy).listFiles();
+            if (files == null) {
+                continue;
+            }
+            final HashMap<String, long[]> meta = new HashMap<String, long[]>();
+            for (final File file : files) {
+                if (file.isFile()) {
+                    final long[] fileMeta = getFileMeta(file, known);
+                    if (fileMeta != null) {
+                        meta.put(file.getName(), fileMeta);
+                        current.put(file.getAbsolutePath(), fileMeta);
+                    }
+                }
+            }
+            manifest.add(new Snapshot(indexDir.getName(), copy, meta));
+        }
+        checksums = current;
+        return manifest;
+
+    }
+
+    /*
+     * Master side: length, timestamp and checksum of file. Checksum is only calculated for new file versions.
+     */
+    private long[] getFileMeta(final File file, final Map<String, long[]> known) {
+
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final long[] cached = known.get(file.getAbsolutePath());
+        if (cached != null && cached[0] == length && cached[1] == lastModified) {
+            return cached;
+        }
+
+        try {
+            final CheckedInputStream is = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), new CRC32());
+            try {
+                final byte[] buffer = new byte[8192];
+                while (is.read(buffer) != -1) {
+                    // checksum only
+                }
+            } finally {
+                is.close();
+            }
+            return new long[] { length, lastModified, is.getChecksum().getValue() };
+        } catch (IOException ioe) {
+            // file removed by master while we build manifest, it will not be part of next snapshot
+            ShopCodeContext.getLog(this).warn("Unable to read index file {}, cause: {}", file.getAbsolutePath(), ioe.getMessage());
+            return null;
+        }
+
+    }
+
+    /*
+     * Master side: chunk of file from current copy.
+     */
+    byte[] getChunk(final String index, final String copy, final String name, final long offset, final int length) throws IOException {
+
+        if (!isSafeName(index) || !isSafeName(name) || !Arrays.asList(COPIES).contains(copy)) {
+            throw new IOException("Invalid index file: " + index + "/" + copy + "/" + name);
+        }
+
+        final File file = new File(new File(new File(sourceBase, index), copy), name);
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final long remaining = raf.length() - offset;
+            if (remaining <= 0L) {
+                return new byte[0];
+            }
+            final byte[] chunk = new byte[(int) Math.min(remaining, (long) length)];
+            raf.seek(offset);
+            raf.readFully(chunk);
+            return chunk;
+        } finally {
+            raf.close();
+        }
+
+    }
+
+    private boolean isSafeName(final String name) {
+        return StringUtils.isNotBlank(name) && !name.contains("/") && !name.contains("\\") && !name.startsWith(".");
+    }
+
+    private String getCurrentCopy(final File indexDir) {
+        for (final String copy : COPIES) {
+            if (new File(indexDir, MARKER + copy).exists()) {
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * IoC. Max size of file chunk transferred in single message.
+     *
+     * @param chunkSize chunk size in bytes
+     */
+    public void setChunkSize(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Spring IoC.
+     *
+     * @param nodeService node service
+     */
+    public void setNodeService(final NodeService nodeService) {
+
+        this.nodeService = nodeService;
+
+        nodeService.subscribe(MANIFEST, new MessageListener() {
+            @Override
+            public Serializable onMessageReceived(final Message message) {
+                final ArrayList<Snapshot> manifest = master && sourceBase != null ? getManifest() : null;
+                return new BasicMessageImpl(nodeService.getCurrentNodeId(), Arrays.asList(message.getSource()), MANIFEST, manifest);
+            }
+        });
+
+        nodeService.subscribe(CHUNK, new MessageListener() {
+            @Override
+            public Serializable onMessageReceived(final Message message) {
+                byte[] chunk = null;
+                if (master && sourceBase != null) {
+                    final String[] request = (String[]) message.getPayload();
+                    try {
+                        chunk = getChunk(request[0], request[1], request[2], Long.valueOf(request[3]), Integer.valueOf(request[4]));
+                    } catch (IOException ioe) {
+                        ShopCodeContext.getLog(IndexReplicationServiceImpl.this).error(
+                                "Unable to read index chunk for " + message.getSource() + ", cause: " + ioe.getMessage(), ioe);
+                    }
+                }
+                return new BasicMessageImpl(nodeService.getCurrentNodeId(), Arrays.asList(message.getSource()), CHUNK, chunk);
+            }
+        });
+
+    }
+
+
+    /**
+     * Current copy of single index.
+     */
+    static final class Snapshot implements Serializable {
+
+        private static final long serialVersionUID = 20161018L;
+
+        private final String index;
+        private final String copy;
+        private final HashMap<String, long[]> files;
+
+        Snapshot(final String index, final String copy, final HashMap<String, long[]> files) {
+            this.index = index;
+            this.copy = copy;
+            this.files = files;
+        }
+    }
+
+}
@@ -22,6 +22,8 @@ import org.yes.cart.constants.Constants;
 import org.yes.cart.service.domain.ImageService;
 import org.yes.cart.service.domain.SystemService;
 import org.yes.cart.service.image.ImageNameStrategy;
+import org.yes.cart.stream.io.FileSystemIOProvider;
+import org.yes.cart.stream.io.IOProvider;
 import org.yes.cart.util.ShopCodeContext;
 import org.yes.cart.web.support.util.HttpUtil;
 
@@ -32,9 +34,16 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
 /**
  * ImageServlet responsible for get product or brand images
@@ -48,8 +57,8 @@ import java.util.Date;
  * resized
  * repository_folder/widthxheight/c/code/seo_name_code_[a-z]
  * <p/>
- * No need to use nio, becuse images will be cached
- * on apache or ngnix
+ * Images from file system are streamed to response using file channel,
+ * so that image is never loaded into memory as a whole.
  * <p/>
  * User: Igor Azarny iazarny@yahoo.com
  * Date: 2011-May-17
@@ -71,12 +80,16 @@ public class ImageFilter extends AbstractFilter implements Filter {
 
     private final SystemService systemService;
 
+    private final IOProvider ioProvider;
+
     private Integer etagExpiration = null;
 
     public ImageFilter(final ImageService imageService,
-                       final SystemService systemService) {
+                       final SystemService systemService,
+                       final IOProvider ioProvider) {
         this.imageService = imageService;
         this.systemService = systemService;
+        this.ioProvider = ioProvider;
         fileTypeMap = new MimetypesFileTypeMap();
         fileTypeMap.addMimeTypes("image/bmp bmp");
         fileTypeMap.addMimeTypes("application/x-shockwave-flash swf");
@@ -173,8 +186,8 @@ public class ImageFilter extends AbstractFilter implements Filter {
                                 imageNameStrategy.resolveRelativeInternalFileNamePath(originalFileName, code, locale, width, height);
             }
 
-            final byte[] imageFile = getImageFile(absolutePathToOriginal, absolutePathToResized, width, height);
-            IOUtils.write(imageFile, httpServletResponse.getOutputStream());
+            final String imageFile = imageService.resizeImageToPath(absolutePathToOriginal, absolutePathToResized, width, height);
+            writeImageFile(imageFile, httpServletResponse);
 
         }
     }
@@ -221,12 +234,56 @@ public class ImageFilter extends AbstractFilter implements Filter {
         //do nothing
     }
 
-    byte[] getImageFile(final String absolutePathToOriginal,
-                        final String absolutePathToResized,
-                        final String width,
-                        final String height) throws IOException {
+    /**
+     * Write image to response. Files are transferred directly from file channel, all other
+     * resources are read into memory.
+     *
+     * @param imageFile path to image
+     * @param httpServletResponse response
+     *
+     * @throws IOException in case of IO errors
+     */
+    void writeImageFile(final String imageFile,
+                        final HttpServletResponse httpServletResponse) throws IOException {
+
+        final Map<String, Object> ctx = Collections.emptyMap();
+
+        final File file = ioProvider instanceof FileSystemIOProvider ?
+                ((FileSystemIOProvider) ioProvider).resolveFileFromUri(imageFile, ctx) : null;
+
+        if (file != null && file.isFile()) {
+
+            final FileInputStream fis = new FileInputStream(file);
+            try {
+                final FileChannel channel = fis.getChannel();
+                final long size = channel.size();
+                httpServletResponse.setContentLength((int) size);
+                final WritableByteChannel out = Channels.newChannel(httpServletResponse.getOutputStream());
+                long position = 0L;
+                while (position < size) {
+                    final long transferred = channel.transferTo(position, size - position, out);
+                    if (transferred <= 0L) {
+                        break; // file was truncated
+                    }
+                    position += transferred;
+                }
+            } finally {
+                IOUtils.closeQuietly(fis);
+            }
 
-        return imageService.resizeImage(absolutePathToOriginal, absolutePathToResized, width, height);
+        } else {
+
+            byte[] content;
+            try {
+                content = ioProvider.read(imageFile, ctx);
+            } catch (IOException ioe) {
+                ShopCodeContext.getLog(this).error("Unable to read image {}", imageFile);
+                content = new byte[0];
+            }
+            httpServletResponse.setContentLength(content.length);
+            IOUtils.write(content, httpServletResponse.getOutputStream());
+
+        }
 
     }
 
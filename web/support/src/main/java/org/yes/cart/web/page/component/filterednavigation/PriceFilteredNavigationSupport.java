@@ -16,10 +16,13 @@
 
 package org.yes.cart.web.page.component.filterednavigation;
 
+import org.yes.cart.domain.misc.Pair;
+import org.yes.cart.domain.queryobject.FilteredNavigationRecordRequest;
 import org.yes.cart.domain.queryobject.NavigationContext;
 import org.yes.cart.domain.queryobject.FilteredNavigationRecord;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * User: denispavlov
@@ -45,4 +48,37 @@ public interface PriceFilteredNavigationSupport {
                                                                 final String locale,
                                                                 final String recordName);
 
+    /**
+     * Get faceting requests for this filter, so that counts can be obtained together with search results.
+     *
+     * @param navigationContext navigation context.
+     * @param categoryId current category
+     * @param currency currency
+     *
+     * @return faceting requests (empty if filter is not applicable)
+     */
+    List<FilteredNavigationRecordRequest> getFilteredNavigationRecordRequests(final NavigationContext navigationContext,
+                                                                              final Long categoryId,
+                                                                              final String currency);
+
+    /**
+     * Get navigation records for specific filter from counts obtained for requests from
+     * {@link #getFilteredNavigationRecordRequests(NavigationContext, Long, String)}.
+     *
+     * @param navigationContext navigation context.
+     * @param categoryId current category
+     * @param currency currency
+     * @param locale selected locale
+     * @param recordName record localisable name
+     * @param counts facets with values and their counts
+     *
+     * @return distinct filter navigation records
+     */
+    List<FilteredNavigationRecord> getFilteredNavigationRecords(final NavigationContext navigationContext,
+                                                                final Long categoryId,
+                                                                final String currency,
+                                                                final String locale,
+                                                                final String recordName,
+                                                                final Map<String, List<Pair<String, Integer>>> counts);
+
 }
\ No newline at end of file
@@ -62,61 +62,101 @@ public class AttributeFilteredNavigationSupportImpl extends AbstractFilteredNavi
                                                                        final String locale,
                                                                        final long productTypeId) {
 
-        final List<FilteredNavigationRecord> navigationList = new ArrayList<FilteredNavigationRecord>();
+        final List<FilteredNavigationRecordRequest> requests = getFilteredNavigationRecordRequests(navigationContext, productTypeId);
 
-        if (!navigationContext.isGlobal()) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            final List<ProductTypeAttr> ptas = productTypeAttrService.getNavigatableByProductTypeId(productTypeId);
+        final Map<String, List<Pair<String, Integer>>> facets =
+                getProductService().findFilteredNavigationRecords(navigationContext.getProductQuery(), requests);
 
-            if (ptas.isEmpty()) {
-                return Collections.emptyList();
-            }
+        return getFilteredNavigationRecords(navigationContext, locale, productTypeId, facets);
 
-            final List<FilteredNavigationRecordRequest> requests = new ArrayList<FilteredNavigationRecordRequest>();
-            final Map<String, FilteredNavigationRecordRequest> requestsMap = new HashMap<String, FilteredNavigationRecordRequest>();
-            for (final ProductTypeAttr pta : ptas) {
+    }
 
-                final String facetName = pta.getAttribute().getCode();
-                final String fieldName = "facet_" + facetName;
+    /**
+     * {@inheritDoc}
+     */
+    public List<FilteredNavigationRecordRequest> getFilteredNavigationRecordRequests(final NavigationContext navigationContext,
+                                                                                     final long productTypeId) {
 
-                if (ProductTypeAttr.NAVIGATION_TYPE_SINGLE.equals(pta.getNavigationType())) {
+        if (navigationContext.isGlobal()) {
+            return Collections.emptyList();
+        }
 
-                    final FilteredNavigationRecordRequest singleMultiValue = new FilteredNavigationRecordRequestImpl(facetName, fieldName, true);
-                    requests.add(singleMultiValue);
-                    requestsMap.put(facetName, singleMultiValue);
+        final List<ProductTypeAttr> ptas = productTypeAttrService.getNavigatableByProductTypeId(productTypeId);
 
-                } else {
+        if (ptas.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-                    final List<Pair<String, String>> rangeValues = new ArrayList<Pair<String, String>>();
-                    final RangeList rangeList = pta.getRangeList();
-                    if (rangeList != null && rangeList.getRanges() != null) {
-                        for (RangeNode node : rangeList.getRanges()) {
+        final List<FilteredNavigationRecordRequest> requests = new ArrayList<FilteredNavigationRecordRequest>();
+        for (final ProductTypeAttr pta : ptas) {
 
-                            rangeValues.add(new Pair<String, String>(node.getFrom(), node.getTo()));
+            final String facetName = pta.getAttribute().getCode();
+            final String fieldName = "facet_" + facetName;
 
-                        }
-                    }
+            if (ProductTypeAttr.NAVIGATION_TYPE_SINGLE.equals(pta.getNavigationType())) {
+
+                requests.add(new FilteredNavigationRecordRequestImpl(facetName, fieldName, true));
 
-                    if (!rangeValues.isEmpty()) {
+            } else {
 
-                        final FilteredNavigationRecordRequest rangeSingleValue = new FilteredNavigationRecordRequestImpl(facetName, fieldName, rangeValues);
-                        requests.add(rangeSingleValue);
-                        requestsMap.put(facetName, rangeSingleValue);
+                final List<Pair<String, String>> rangeValues = new ArrayList<Pair<String, String>>();
+                final RangeList rangeList = pta.getRangeList();
+                if (rangeList != null && rangeList.getRanges() != null) {
+                    for (RangeNode node : rangeList.getRanges()) {
+
+                        rangeValues.add(new Pair<String, String>(node.getFrom(), node.getTo()));
 
                     }
+                }
+
+                if (!rangeValues.isEmpty()) {
+
+                    requests.add(new FilteredNavigationRecordRequestImpl(facetName, fieldName, rangeValues));
 
                 }
+
             }
+        }
+
+        return requests;
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<FilteredNavigationRecord> getFilteredNavigationRecords(final NavigationContext navigationContext,
+                                                                       final String locale,
+                                                                       final long productTypeId,
+                                                                       final Map<String, List<Pair<String, Integer>>> facets) {
+
+        final List<FilteredNavigationRecord> navigationList = new ArrayList<FilteredNavigationRecord>();
+
+        if (!navigationContext.isGlobal()) {
+
+            final List<FilteredNavigationRecordRequest> requests = getFilteredNavigationRecordRequests(navigationContext, productTypeId);
 
             if (requests.isEmpty()) {
                 return Collections.emptyList();
             }
 
+            final Map<String, FilteredNavigationRecordRequest> requestsMap = new HashMap<String, FilteredNavigationRecordRequest>();
+            final Map<String, List<Pair<String, Integer>>> remainingCounts = new HashMap<String, List<Pair<String, Integer>>>();
+            for (final FilteredNavigationRecordRequest request : requests) {
+                requestsMap.put(request.getFacetName(), request);
+                final List<Pair<String, Integer>> counts = facets.get(request.getFacetName());
+                if (counts != null) {
+                    // copy, since matched counts are removed and facets may be shared
+                    remainingCounts.put(request.getFacetName(), new ArrayList<Pair<String, Integer>>(counts));
+                }
+            }
 
             final List<FilteredNavigationRecord> allNavigationRecordsTemplates =
                     getProductService().getDistinctAttributeValues(locale, productTypeId);
-            final Map<String, List<Pair<String, Integer>>> facets =
-                    getProductService().findFilteredNavigationRecords(navigationContext.getProductQuery(), requests);
 
             for (final FilteredNavigationRecord recordTemplate : allNavigationRecordsTemplates) {
 
@@ -129,7 +169,7 @@ public class AttributeFilteredNavigationSupportImpl extends AbstractFilteredNavi
                     LOGFTQ.warn("Unable to get filtered navigation request for record: {}", recordTemplate);
                     continue;
                 }
-                final List<Pair<String, Integer>> counts = facets.get(recordTemplate.getCode());
+                final List<Pair<String, Integer>> counts = remainingCounts.get(recordTemplate.getCode());
                 if (counts == null) {
                     LOGFTQ.warn("Unable to get filtered navigation counts for record: {}, request: {}", recordTemplate, request);
                     continue;
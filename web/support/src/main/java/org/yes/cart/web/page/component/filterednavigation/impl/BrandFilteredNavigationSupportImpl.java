@@ -38,6 +38,8 @@ import java.util.*;
  */
 public class BrandFilteredNavigationSupportImpl extends AbstractFilteredNavigationSupportImpl implements BrandFilteredNavigationSupport {
 
+    private static final String BRAND_FACET = "brandFacet";
+
     private final Logger LOGFTQ = LoggerFactory.getLogger("FTQ");
 
     public BrandFilteredNavigationSupportImpl(final LuceneQueryFactory luceneQueryFactory,
@@ -53,25 +55,55 @@ public class BrandFilteredNavigationSupportImpl extends AbstractFilteredNavigati
                                                                        final String locale,
                                                                        final String recordName) {
 
-        final List<FilteredNavigationRecord> navigationList = new ArrayList<FilteredNavigationRecord>();
+        final List<FilteredNavigationRecordRequest> requests = getFilteredNavigationRecordRequests(navigationContext);
+
+        if (requests.isEmpty()) {
+            return new ArrayList<FilteredNavigationRecord>();
+        }
+
+        final Map<String, List<Pair<String, Integer>>> counts =
+                getProductService().findFilteredNavigationRecords(navigationContext.getProductQuery(), requests);
+
+        return getFilteredNavigationRecords(navigationContext, locale, recordName, counts);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<FilteredNavigationRecordRequest> getFilteredNavigationRecordRequests(final NavigationContext navigationContext) {
 
         if (!navigationContext.isGlobal() && !navigationContext.isFilteredBy(ProductSearchQueryBuilder.BRAND_FIELD)) {
 
-            final List<FilteredNavigationRecord> allNavigationRecordsTemplates = getProductService().getDistinctBrands(locale);
+            return Collections.<FilteredNavigationRecordRequest>singletonList(
+                    new FilteredNavigationRecordRequestImpl(BRAND_FACET, ProductSearchQueryBuilder.BRAND_FIELD));
 
-            final FilteredNavigationRecordRequest request = new FilteredNavigationRecordRequestImpl("brandFacet", ProductSearchQueryBuilder.BRAND_FIELD);
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<FilteredNavigationRecord> getFilteredNavigationRecords(final NavigationContext navigationContext,
+                                                                       final String locale,
+                                                                       final String recordName,
+                                                                       final Map<String, List<Pair<String, Integer>>> counts) {
+
+        final List<FilteredNavigationRecord> navigationList = new ArrayList<FilteredNavigationRecord>();
 
-            final Map<String, List<Pair<String, Integer>>> counts =
-                    getProductService().findFilteredNavigationRecords(navigationContext.getProductQuery(), Collections.singletonList(request));
+        if (!navigationContext.isGlobal() && !navigationContext.isFilteredBy(ProductSearchQueryBuilder.BRAND_FIELD)) {
 
+            final List<FilteredNavigationRecord> allNavigationRecordsTemplates = getProductService().getDistinctBrands(locale);
 
-            final List<Pair<String, Integer>> rangeCounts = new ArrayList<Pair<String, Integer>>(counts.get("brandFacet"));
+            final List<Pair<String, Integer>> brandCounts = counts.get(BRAND_FACET);
 
-            if (rangeCounts.isEmpty()) {
-                LOGFTQ.warn("Unable to get price filtered navigation for query: {}, request: {}", navigationContext.getProductQuery(), request);
+            if (brandCounts == null || brandCounts.isEmpty()) {
+                LOGFTQ.warn("Unable to get brand filtered navigation for query: {}", navigationContext.getProductQuery());
                 return Collections.emptyList();
             }
 
+            final List<Pair<String, Integer>> rangeCounts = new ArrayList<Pair<String, Integer>>(brandCounts);
+
             for (final FilteredNavigationRecord recordTemplate : allNavigationRecordsTemplates) {
 
                 final Iterator<Pair<String, Integer>> rangeCountsIt = rangeCounts.iterator();
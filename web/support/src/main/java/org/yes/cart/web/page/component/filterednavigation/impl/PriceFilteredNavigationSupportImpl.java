@@ -51,6 +51,8 @@ import java.util.Map;
  */
 public class PriceFilteredNavigationSupportImpl extends AbstractFilteredNavigationSupportImpl implements PriceFilteredNavigationSupport {
 
+    private static final String PRICE_FACET = "priceFacet";
+
     private final Logger LOGFTQ = LoggerFactory.getLogger("FTQ");
 
     private final CategoryService categoryService;
@@ -83,72 +85,121 @@ public class PriceFilteredNavigationSupportImpl extends AbstractFilteredNavigati
                                                                        final String locale,
                                                                        final String recordName) {
 
-        final List<FilteredNavigationRecord> navigationList = new ArrayList<FilteredNavigationRecord>();
+        final List<FilteredNavigationRecordRequest> requests = getFilteredNavigationRecordRequests(navigationContext, categoryId, currency);
 
-        if (!navigationContext.isGlobal() && !navigationContext.isFilteredBy(ProductSearchQueryBuilder.PRODUCT_PRICE)) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            final Category category = categoryService.getById(categoryId);
-            if (category == null) {
-                return Collections.emptyList();
-            }
-            final PriceTierTree priceTierTree = category.getNavigationByPriceTree();
-            final boolean filteredNavigationByPriceAllowed = (category.getNavigationByPrice() == null || priceTierTree == null)
-                    ? false : category.getNavigationByPrice();
+        final Map<String, List<Pair<String, Integer>>> counts =
+                getProductService().findFilteredNavigationRecords(navigationContext.getProductQuery(), requests);
 
-            if (!filteredNavigationByPriceAllowed) {
-                return Collections.emptyList();
-            }
+        return getFilteredNavigationRecords(navigationContext, categoryId, currency, locale, recordName, counts);
+    }
 
-            final Shop shop = shopService.getById(navigationContext.getShopId());
-            final List<FilteredNavigationRecord> allNavigationRecords = priceService.getPriceNavigationRecords(
-                    priceTierTree,
-                    currency,
-                    shop);
+    /**
+     * {@inheritDoc}
+     */
+    public List<FilteredNavigationRecordRequest> getFilteredNavigationRecordRequests(final NavigationContext navigationContext,
+                                                                                     final Long categoryId,
+                                                                                     final String currency) {
 
-            final String priceFacet = "facet_price_" + navigationContext.getShopId() + "_" + currency;
-            final List<Pair<String, String>> rangeValues = new ArrayList<Pair<String, String>>();
-            for (FilteredNavigationRecord record : allNavigationRecords) {
+        final List<FilteredNavigationRecord> allNavigationRecords = getPriceNavigationRecords(navigationContext, categoryId, currency);
 
-                final Pair<String, Pair<BigDecimal, BigDecimal>> range =
-                    priceNavigation.decomposePriceRequestParams(record.getValue());
+        if (allNavigationRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-                rangeValues.add(new Pair<String, String>(
-                        moneyBridge.objectToString(range.getSecond().getFirst()),
-                        moneyBridge.objectToString(range.getSecond().getSecond())
-                ));
-            }
-            final FilteredNavigationRecordRequest request = new FilteredNavigationRecordRequestImpl("priceFacet", priceFacet, rangeValues);
+        final String priceFacet = "facet_price_" + navigationContext.getShopId() + "_" + currency;
+        final List<Pair<String, String>> rangeValues = new ArrayList<Pair<String, String>>();
+        for (FilteredNavigationRecord record : allNavigationRecords) {
 
-            final Map<String, List<Pair<String, Integer>>> counts =
-                    getProductService().findFilteredNavigationRecords(navigationContext.getProductQuery(), Collections.singletonList(request));
+            final Pair<String, Pair<BigDecimal, BigDecimal>> range =
+                priceNavigation.decomposePriceRequestParams(record.getValue());
 
-            final List<Pair<String, Integer>> rangeCounts = counts.get("priceFacet");
+            rangeValues.add(new Pair<String, String>(
+                    moneyBridge.objectToString(range.getSecond().getFirst()),
+                    moneyBridge.objectToString(range.getSecond().getSecond())
+            ));
+        }
+        return Collections.<FilteredNavigationRecordRequest>singletonList(
+                new FilteredNavigationRecordRequestImpl(PRICE_FACET, priceFacet, rangeValues));
+    }
 
-            if (rangeCounts.isEmpty()) {
-                LOGFTQ.warn("Unable to get price filtered navigation for query: {}, request: {}", navigationContext.getProductQuery(), request);
-                return Collections.emptyList();
-            }
+    /**
+     * {@inheritDoc}
+     */
+    public List<FilteredNavigationRecord> getFilteredNavigationRecords(final NavigationContext navigationContext,
+                                                                       final Long categoryId,
+                                                                       final String currency,
+                                                                       final String locale,
+                                                                       final String recordName,
+                                                                       final Map<String, List<Pair<String, Integer>>> counts) {
 
-            if (rangeCounts.size() != allNavigationRecords.size()) {
-                LOGFTQ.warn("Price ranges do not match configuration for query: {}, request: {}", navigationContext.getProductQuery(), request);
-                return Collections.emptyList();
-            }
+        final List<FilteredNavigationRecord> allNavigationRecords = getPriceNavigationRecords(navigationContext, categoryId, currency);
 
-            for (int i = 0; i < allNavigationRecords.size(); i++) {
-                final Integer candidateResultCount = rangeCounts.get(i).getSecond();
-                if (candidateResultCount != null && candidateResultCount > 0) {
-                    FilteredNavigationRecord record = allNavigationRecords.get(i);
-                    record.setName(recordName);
-                    record.setCode(ProductSearchQueryBuilder.PRODUCT_PRICE);
-                    record.setCount(candidateResultCount);
-                    navigationList.add(record);
-                }
-            }
+        if (allNavigationRecords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<FilteredNavigationRecord> navigationList = new ArrayList<FilteredNavigationRecord>();
+
+        final List<Pair<String, Integer>> rangeCounts = counts.get(PRICE_FACET);
 
+        if (rangeCounts == null || rangeCounts.isEmpty()) {
+            LOGFTQ.warn("Unable to get price filtered navigation for query: {}", navigationContext.getProductQuery());
+            return Collections.emptyList();
+        }
 
+        if (rangeCounts.size() != allNavigationRecords.size()) {
+            LOGFTQ.warn("Price ranges do not match configuration for query: {}", navigationContext.getProductQuery());
+            return Collections.emptyList();
         }
+
+        for (int i = 0; i < allNavigationRecords.size(); i++) {
+            final Integer candidateResultCount = rangeCounts.get(i).getSecond();
+            if (candidateResultCount != null && candidateResultCount > 0) {
+                FilteredNavigationRecord record = allNavigationRecords.get(i);
+                record.setName(recordName);
+                record.setCode(ProductSearchQueryBuilder.PRODUCT_PRICE);
+                record.setCount(candidateResultCount);
+                navigationList.add(record);
+            }
+        }
+
         return navigationList;
     }
 
+    /*
+     * Price tiers configured for category, empty list if price navigation is not applicable.
+     */
+    private List<FilteredNavigationRecord> getPriceNavigationRecords(final NavigationContext navigationContext,
+                                                                     final Long categoryId,
+                                                                     final String currency) {
+
+        if (navigationContext.isGlobal() || navigationContext.isFilteredBy(ProductSearchQueryBuilder.PRODUCT_PRICE)) {
+            return Collections.emptyList();
+        }
+
+        final Category category = categoryService.getById(categoryId);
+        if (category == null) {
+            return Collections.emptyList();
+        }
+        final PriceTierTree priceTierTree = category.getNavigationByPriceTree();
+        final boolean filteredNavigationByPriceAllowed = (category.getNavigationByPrice() == null || priceTierTree == null)
+                ? false : category.getNavigationByPrice();
+
+        if (!filteredNavigationByPriceAllowed) {
+            return Collections.emptyList();
+        }
+
+        final Shop shop = shopService.getById(navigationContext.getShopId());
+        return priceService.getPriceNavigationRecords(
+                priceTierTree,
+                currency,
+                shop);
+
+    }
+
 
 }
@@ -20,6 +20,7 @@ import org.yes.cart.domain.dto.ProductSearchResultDTO;
 import org.yes.cart.domain.dto.ProductSearchResultPageDTO;
 import org.yes.cart.domain.entity.*;
 import org.yes.cart.domain.misc.Pair;
+import org.yes.cart.domain.queryobject.FilteredNavigationRecordRequest;
 import org.yes.cart.domain.queryobject.NavigationContext;
 import org.yes.cart.service.domain.ShoppingCartCalculator;
 import org.yes.cart.shoppingcart.CartItem;
@@ -206,6 +207,26 @@ public interface ProductServiceFacade {
                                                String sortFieldName,
                                                boolean descendingSort);
 
+    /**
+     * Get the all products, that match the given query together with filtered navigation counts
+     * for the same query. Query is executed once for products and all facets.
+     *
+     * @param context         navigation context
+     * @param firstResult     index of first result
+     * @param maxResults      quantity results to return
+     * @param sortFieldName   sort field name (specify null for no sorting)
+     * @param descendingSort  sort the search result in reverse if true
+     * @param facetingRequest filtered navigation requests
+     *
+     * @return list of products and facets with values and their counts (facets must not be modified)
+     */
+    Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> getListProductsAndNavigation(NavigationContext context,
+                                                                                                             int firstResult,
+                                                                                                             int maxResults,
+                                                                                                             String sortFieldName,
+                                                                                                             boolean descendingSort,
+                                                                                                             List<FilteredNavigationRecordRequest> facetingRequest);
+
     /**
      * Get product availability.
      *
@@ -216,6 +237,16 @@ public interface ProductServiceFacade {
      */
     ProductAvailabilityModel getProductAvailability(ProductSearchResultDTO product, long shopId);
 
+    /**
+     * Get product availability for all products in one go (e.g. search result page).
+     *
+     * @param products products
+     * @param shopId   current shop
+     *
+     * @return availability models by product PK
+     */
+    Map<Long, ProductAvailabilityModel> getProductAvailability(List<ProductSearchResultDTO> products, long shopId);
+
     /**
      * Get product availability.
      *
@@ -359,6 +390,19 @@ public interface ProductServiceFacade {
      */
     List<ProductPriceModel> getSkuPrices(ShoppingCart cart, Long productId, String skuCode);
 
+    /**
+     * Get currently active SKU prices for quantity one (or blank object) with respect to current shop
+     * tax display settings for all SKU in one go (e.g. search result page). This is equivalent
+     * to {@link #getSkuPrice(ShoppingCart, Long, String, BigDecimal)} for each SKU but prices and taxes
+     * are resolved in bulk.
+     *
+     * @param cart      current cart
+     * @param skuCodes  SKU codes
+     *
+     * @return active SKU prices (or blank object) by SKU code
+     */
+    Map<String, ProductPriceModel> getSkuPrices(ShoppingCart cart, List<String> skuCodes);
+
 
     /**
      * Get cart total price model (or blank object) with respect to current shop tax display settings.
@@ -39,6 +39,7 @@ import org.yes.cart.service.payment.PaymentModulesManager;
 import org.yes.cart.service.payment.PaymentProcessor;
 import org.yes.cart.service.payment.PaymentProcessorFactory;
 import org.yes.cart.shoppingcart.AmountCalculationStrategy;
+import org.yes.cart.shoppingcart.support.tokendriven.CartRepository;
 import org.yes.cart.shoppingcart.CartItem;
 import org.yes.cart.shoppingcart.ShoppingCart;
 import org.yes.cart.shoppingcart.Total;
@@ -62,6 +63,7 @@ public class CheckoutServiceFacadeImpl implements CheckoutServiceFacade {
     private final PaymentProcessorFactory paymentProcessorFactory;
     private final PaymentModulesManager paymentModulesManager;
     private final ReportGenerator reportGenerator;
+    private final CartRepository cartRepository;
 
     public CheckoutServiceFacadeImpl(final CustomerOrderService customerOrderService,
                                      final AmountCalculationStrategy amountCalculationStrategy,
@@ -69,7 +71,8 @@ public class CheckoutServiceFacadeImpl implements CheckoutServiceFacade {
                                      final CarrierSlaService carrierSlaService,
                                      final PaymentProcessorFactory paymentProcessorFactory,
                                      final PaymentModulesManager paymentModulesManager,
-                                     final ReportGenerator reportGenerator) {
+                                     final ReportGenerator reportGenerator,
+                                     final CartRepository cartRepository) {
         this.customerOrderService = customerOrderService;
         this.amountCalculationStrategy = amountCalculationStrategy;
         this.customerOrderPaymentService = customerOrderPaymentService;
@@ -77,6 +80,7 @@ public class CheckoutServiceFacadeImpl implements CheckoutServiceFacade {
         this.paymentProcessorFactory = paymentProcessorFactory;
         this.paymentModulesManager = paymentModulesManager;
         this.reportGenerator = reportGenerator;
+        this.cartRepository = cartRepository;
     }
 
     /** {@inheritDoc} */
@@ -255,6 +259,8 @@ public class CheckoutServiceFacadeImpl implements CheckoutServiceFacade {
     /** {@inheritDoc} */
     @Override
     public CustomerOrder createFromCart(final ShoppingCart shoppingCart) throws OrderAssemblyException {
+        // cart state must not be deferred when order is created
+        cartRepository.flushShoppingCart(shoppingCart);
         return customerOrderService.createFromCart(shoppingCart, !shoppingCart.getOrderInfo().isMultipleDelivery());
     }
 
@@ -31,6 +31,7 @@ import org.yes.cart.domain.i18n.impl.FailoverStringI18NModel;
 import org.yes.cart.domain.misc.Pair;
 import org.yes.cart.domain.query.LuceneQueryFactory;
 import org.yes.cart.domain.query.ProductSearchQueryBuilder;
+import org.yes.cart.domain.queryobject.FilteredNavigationRecordRequest;
 import org.yes.cart.domain.queryobject.NavigationContext;
 import org.yes.cart.service.domain.*;
 import org.yes.cart.shoppingcart.CartItem;
@@ -254,6 +255,35 @@ public class ProductServiceFacadeImpl implements ProductServiceFacade {
                 context.getProductQuery(), firstResult, maxResults, sortFieldName, descendingSort
         ).copy(); // MUST BE COPY for each search as we are setting relevant SKU list
 
+        populateSkus(context, result);
+        return result;
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> getListProductsAndNavigation(final NavigationContext context,
+                                                                                                                    final int firstResult,
+                                                                                                                    final int maxResults,
+                                                                                                                    final String sortFieldName,
+                                                                                                                    final boolean descendingSort,
+                                                                                                                    final List<FilteredNavigationRecordRequest> facetingRequest) {
+
+        final Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>> searchRez =
+                productService.getProductSearchResultDTOAndNavigationByQuery(
+                        context.getProductQuery(), firstResult, maxResults, sortFieldName, descendingSort, facetingRequest
+                );
+
+        final ProductSearchResultPageDTO result = searchRez.getFirst().copy(); // MUST BE COPY for each search as we are setting relevant SKU list
+
+        populateSkus(context, result);
+        return new Pair<ProductSearchResultPageDTO, Map<String, List<Pair<String, Integer>>>>(result, searchRez.getSecond());
+
+    }
+
+    private void populateSkus(final NavigationContext context, final ProductSearchResultPageDTO result) {
+
         if (!result.getResults().isEmpty()) {
 
             final NavigationContext skuContext = luceneQueryFactory.getSkuSnowBallQuery(context, result.getResults());
@@ -275,7 +305,6 @@ public class ProductServiceFacadeImpl implements ProductServiceFacade {
                 product.setSkus(skuMap.get(product.getId()));
             }
         }
-        return result;
 
     }
 
@@ -288,6 +317,19 @@ public class ProductServiceFacadeImpl implements ProductServiceFacade {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Map<Long, ProductAvailabilityModel> getProductAvailability(final List<ProductSearchResultDTO> products, final long shopId) {
+
+        final Map<Long, ProductAvailabilityModel> models = new HashMap<Long, ProductAvailabilityModel>(products.size() * 2);
+        for (final ProductSearchResultDTO product : products) {
+            models.put(product.getId(), productAvailabilityStrategy.getAvailabilityModel(shopId, product));
+        }
+        return models;
+
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -472,14 +514,52 @@ public class ProductServiceFacadeImpl implements ProductServiceFacade {
         final boolean showTaxNet = showTax && Boolean.valueOf(shop.getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO_SHOW_NET));
         final boolean showTaxAmount = showTax && Boolean.valueOf(shop.getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO_SHOW_AMOUNT));
 
+        final ShoppingCartCalculator.PriceModel taxModel;
+        if (showTax && (salePrice != null || listPrice != null)) {
+            // if sale price exists use it as primary target as this one will be shown, otherwise use list price
+            taxModel = shoppingCartCalculator.calculatePrice(cart, ref, salePrice != null ? salePrice : listPrice);
+        } else {
+            taxModel = null;
+        }
+
+        return getSkuPrice(currency, ref, quantity, listPrice, salePrice, showTax, showTaxNet, showTaxAmount, taxModel);
+
+    }
+
+    /**
+     * Create price model with respect to shop tax display settings.
+     *
+     * @param currency      currency
+     * @param ref           reference (selected SKU, shipping or label)
+     * @param quantity      quantity tier
+     * @param listPrice     base list price
+     * @param salePrice     base sale price
+     * @param showTax       show tax info
+     * @param showTaxNet    show net prices
+     * @param showTaxAmount show tax amount
+     * @param taxModel      price model calculated for sale price (or list price if there is no sale price),
+     *                      null if tax info is not shown
+     *
+     * @return price model
+     */
+    private ProductPriceModel getSkuPrice(final String currency,
+                                          final String ref,
+                                          final BigDecimal quantity,
+                                          final BigDecimal listPrice,
+                                          final BigDecimal salePrice,
+                                          final boolean showTax,
+                                          final boolean showTaxNet,
+                                          final boolean showTaxAmount,
+                                          final ShoppingCartCalculator.PriceModel taxModel) {
+
         final BigDecimal sale = salePrice;
         final BigDecimal list = listPrice;
 
-        if (showTax) {
+        if (showTax && taxModel != null) {
             // prices with tax
             if (sale != null) {
                 // if sale price exists use it as primary target as this one will be shown
-                ShoppingCartCalculator.PriceModel saleModel = shoppingCartCalculator.calculatePrice(cart, ref, sale);
+                final ShoppingCartCalculator.PriceModel saleModel = taxModel;
 
                 final BigDecimal saleAdjusted, listAdjusted;
 
@@ -507,7 +587,7 @@ public class ProductServiceFacadeImpl implements ProductServiceFacade {
 
             } else if (list != null) {
                 // use list price to calculate taxes
-                ShoppingCartCalculator.PriceModel listModel = shoppingCartCalculator.calculatePrice(cart, ref, list);
+                final ShoppingCartCalculator.PriceModel listModel = taxModel;
 
                 final BigDecimal listAdjusted = showTaxNet ? listModel.getNetPrice() : listModel.getGrossPrice();
 
@@ -675,6 +755,74 @@ public class ProductServiceFacadeImpl implements ProductServiceFacade {
         return Collections.emptyList();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, ProductPriceModel> getSkuPrices(final ShoppingCart cart,
+                                                       final List<String> skuCodes) {
+
+        final long shopId = cart.getShoppingContext().getShopId();
+        final String shopCode = cart.getShoppingContext().getShopCode();
+        final String currency = cart.getCurrencyCode();
+
+        final Map<String, ProductPriceModel> models = new HashMap<String, ProductPriceModel>(skuCodes.size() * 2);
+        if (skuCodes.isEmpty()) {
+            return models;
+        }
+
+        final PricingPolicyProvider.PricingPolicy policy = pricingPolicyProvider.determinePricingPolicy(
+                shopCode, currency, cart.getCustomerEmail(),
+                cart.getShoppingContext().getCountryCode(),
+                cart.getShoppingContext().getStateCode()
+        );
+
+        final Map<String, SkuPrice> resolved = priceService.getMinimalPrices(skuCodes, shopId, currency, BigDecimal.ONE, false, policy.getID());
+
+        final Shop shop = shopService.getById(shopId);
+
+        final boolean showTax = Boolean.valueOf(shop.getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO));
+        final boolean showTaxNet = showTax && Boolean.valueOf(shop.getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO_SHOW_NET));
+        final boolean showTaxAmount = showTax && Boolean.valueOf(shop.getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO_SHOW_AMOUNT));
+
+        final Map<String, ShoppingCartCalculator.PriceModel> taxModels;
+        if (showTax) {
+            final Map<String, BigDecimal> toCalculate = new HashMap<String, BigDecimal>(resolved.size() * 2);
+            for (final SkuPrice price : resolved.values()) {
+                if (price != null && price.getSkuCode() != null) {
+                    final BigDecimal sale = price.getSalePriceForCalculation();
+                    final BigDecimal list = price.getRegularPrice();
+                    if (sale != null || list != null) {
+                        toCalculate.put(price.getSkuCode(), sale != null ? sale : list);
+                    }
+                }
+            }
+            taxModels = shoppingCartCalculator.calculatePrices(cart, toCalculate);
+        } else {
+            taxModels = Collections.emptyMap();
+        }
+
+        for (final String skuCode : skuCodes) {
+
+            final SkuPrice price = resolved.get(skuCode);
+            if (price != null) {
+                models.put(skuCode, getSkuPrice(
+                        currency,
+                        price.getSkuCode(),
+                        price.getQuantity(),
+                        price.getRegularPrice(),
+                        price.getSalePriceForCalculation(),
+                        showTax, showTaxNet, showTaxAmount,
+                        price.getSkuCode() != null ? taxModels.get(price.getSkuCode()) : null
+                ));
+            } else {
+                models.put(skuCode, new ProductPriceModelImpl(null, currency, null, null, null));
+            }
+
+        }
+
+        return models;
+    }
+
     static final String CART_ITEMS_TOTAL_REF = "yc-cart-items-total";
 
     /**
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2009 Denys Pavlov, Igor Azarnyi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.yes.cart.cluster.service.impl;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.yes.cart.cluster.node.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * User: denispavlov
+ * Date: 18/10/2016
+ * Time: 17:10
+ */
+public class IndexReplicationServiceImplTest {
+
+    private static final String INDEX = "org.yes.cart.domain.entity.impl.ProductEntity";
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = new File(System.getProperty("java.io.tmpdir"), "yes-cart-replication-" + System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(root);
+    }
+
+    @Test
+    public void testReplicate() throws Exception {
+
+        final File masterBase = new File(root, "master");
+        final File replicaBase = new File(root, "replica");
+
+        final StubNodeService masterNode = new StubNodeService("YES0");
+        final StubNodeService replicaNode = new StubNodeService("YES1");
+        masterNode.peer = replicaNode;
+        replicaNode.peer = masterNode;
+
+        final IndexReplicationServiceImpl master = new IndexReplicationServiceImpl("filesystem-master", masterBase.getAbsolutePath());
+        master.setNodeService(masterNode);
+        final IndexReplicationServiceImpl replica = new IndexReplicationServiceImpl("filesystem-slave", replicaBase.getAbsolutePath());
+        replica.setChunkSize(4);
+        replica.setNodeService(replicaNode);
+
+        assertFalse(master.isReplica());
+        assertTrue(replica.isReplica());
+
+        assertEquals(0, replica.replicate()); // nothing published yet
+
+        final File masterIndex = new File(masterBase, INDEX);
+        write(new File(masterIndex, "1/_0.cfs"), "segment0");
+        write(new File(masterIndex, "1/segments_1"), "seg1");
+        write(new File(masterIndex, "current1"), "");
+
+        assertEquals(1, replica.replicate());
+        final File replicaIndex = new File(replicaBase, INDEX);
+        assertTrue(new File(replicaIndex, "current1").exists());
+        assertEquals(8L, new File(replicaIndex, "1/_0.cfs").length());
+        assertEquals(4L, new File(replicaIndex, "1/segments_1").length());
+        assertEquals(3, replicaNode.chunks); // 2 chunks for _0.cfs and 1 for segments_1
+
+        assertEquals(0, replica.replicate()); // up to date
+        assertEquals(3, replicaNode.chunks);
+
+        // master publishes new snapshot that retains _0.cfs
+        write(new File(masterIndex, "2/_1.cfs"), "seg1");
+        write(new File(masterIndex, "2/segments_2"), "seg2");
+        copy(new File(masterIndex, "1/_0.cfs"), new File(masterIndex, "2/_0.cfs"));
+        new File(masterIndex, "current1").delete();
+        write(new File(masterIndex, "current2"), "");
+
+        assertEquals(1, replica.replicate());
+        assertTrue(new File(replicaIndex, "current2").exists());
+        assertFalse(new File(replicaIndex, "current1").exists());
+        assertEquals(3, new File(replicaIndex, "2").listFiles().length);
+        assertEquals(5, replicaNode.chunks); // only new files are transferred
+
+    }
+
+    @Test
+    public void testReplicateRejectsFileChangedDuringTransfer() throws Exception {
+
+        final File masterBase = new File(root, "master");
+        final File replicaBase = new File(root, "replica");
+
+        final StubNodeService masterNode = new StubNodeService("YES0");
+        final StubNodeService replicaNode = new StubNodeService("YES1");
+        masterNode.peer = replicaNode;
+        replicaNode.peer = masterNode;
+
+        final IndexReplicationServiceImpl master = new IndexReplicationServiceImpl("filesystem-master", masterBase.getAbsolutePath());
+        master.setNodeService(masterNode);
+        final IndexReplicationServiceImpl replica = new IndexReplicationServiceImpl("filesystem-slave", replicaBase.getAbsolutePath());
+        replica.setChunkSize(4);
+        replica.setNodeService(replicaNode);
+
+        final File masterIndex = new File(masterBase, INDEX);
+        final File segment = new File(masterIndex, "1/_0.cfs");
+        write(segment, "segment0");
+        write(new File(masterIndex, "current1"), "");
+        final long lastModified = segment.lastModified();
+
+        // master re-copies file after first chunk, size is the same
+        replicaNode.afterChunk = new Runnable() {
+            public void run() {
+                try {
+                    write(segment, "SEGMENT0");
+                    segment.setLastModified(lastModified + 2000L);
+                } catch (IOException ioe) {
+                    fail(ioe.getMessage());
+                }
+                replicaNode.afterChunk = null;
+            }
+        };
+
+        assertEquals(0, replica.replicate());
+        final File replicaIndex = new File(replicaBase, INDEX);
+        assertFalse(new File(replicaIndex, "current1").exists());
+        assertFalse(new File(replicaIndex, "1/_0.cfs").exists());
+
+        // next run gets consistent manifest and file
+        assertEquals(1, replica.replicate());
+        assertTrue(new File(replicaIndex, "current1").exists());
+        assertEquals(8L, new File(replicaIndex, "1/_0.cfs").length());
+
+    }
+
+    @Test
+    public void testChunkRejectsInvalidPath() throws Exception {
+
+        final IndexReplicationServiceImpl master = new IndexReplicationServiceImpl("filesystem-master", root.getAbsolutePath());
+
+        try {
+            master.getChunk("..", "1", "secret", 0L, 10);
+            fail("Path outside source base");
+        } catch (IOException ioe) {
+            // OK
+        }
+
+        try {
+            master.getChunk(INDEX, "3", "_0.cfs", 0L, 10);
+            fail("Not a copy directory");
+        } catch (IOException ioe) {
+            // OK
+        }
+
+    }
+
+
+    private void write(final File file, final String content) throws IOException {
+        file.getParentFile().mkdirs();
+        final FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+    }
+
+    private void copy(final File source, final File target) throws IOException {
+        final byte[] content = new byte[(int) source.length()];
+        final java.io.FileInputStream is = new java.io.FileInputStream(source);
+        try {
+            is.read(content);
+        } finally {
+            is.close();
+        }
+        write(target, new String(content, "UTF-8"));
+        target.setLastModified(source.lastModified());
+    }
+
+    private void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (final File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private class StubNodeService implements NodeService {
+
+        private final String nodeId;
+        private final Map<String, MessageListener> listeners = new HashMap<String, MessageListener>();
+        private StubNodeService peer;
+        private int chunks;
+        private Runnable afterChunk;
+
+        private StubNodeService(final String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public String getCurrentNodeId() {
+            return nodeId;
+        }
+
+        public Map<String, String> getConfiguration() {
+            return Collections.emptyMap();
+        }
+
+        public List<Node> getCluster() {
+            return Collections.emptyList();
+        }
+
+        public Node getCurrentNode() {
+            return null;
+        }
+
+        public Node getYumNode() {
+            return null;
+        }
+
+        public List<Node> getYesNodes() {
+            return Collections.emptyList();
+        }
+
+        public List<Node> getOtherYesNodes() {
+            final Node node = context.mock(Node.class, "node" + System.nanoTime());
+            context.checking(new Expectations() {{
+                allowing(node).getNodeId(); will(returnValue(peer.nodeId));
+            }});
+            return Collections.singletonList(node);
+        }
+
+        public void broadcast(final Message message) {
+            if (IndexReplicationServiceImpl.CHUNK.equals(message.getSubject())) {
+                chunks++;
+            }
+            final Serializable response = peer.listeners.get(message.getSubject()).onMessageReceived(message);
+            ((RspMessage) message).addResponse((Message) response);
+            if (afterChunk != null && IndexReplicationServiceImpl.CHUNK.equals(message.getSubject())) {
+                afterChunk.run();
+            }
+        }
+
+        public void subscribe(final String subject, final MessageListener listener) {
+            listeners.put(subject, listener);
+        }
+    }
+
+}
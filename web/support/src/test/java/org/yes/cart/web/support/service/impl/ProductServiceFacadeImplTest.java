@@ -767,6 +767,97 @@ public class ProductServiceFacadeImplTest {
 
     }
 
+    @Test
+    public void testGetSkuPricesBulkPriceListAndSaleWithTaxExclInfoGross() throws Exception {
+
+        final PriceService priceService = context.mock(PriceService.class, "priceService");
+        final PricingPolicyProvider pricingPolicyProvider = context.mock(PricingPolicyProvider.class, "pricingPolicyProvider");
+        final ShopService shopService = context.mock(ShopService.class, "shopService");
+        final ShoppingCartCalculator calculator = context.mock(ShoppingCartCalculator.class, "calculator");
+
+        final ShoppingCart cart = context.mock(ShoppingCart.class, "cart");
+        final ShoppingContext cartCtx = context.mock(ShoppingContext.class, "cartCtx");
+        final PricingPolicyProvider.PricingPolicy policy = context.mock(PricingPolicyProvider.PricingPolicy.class, "policy");
+
+        final SkuPrice skuPrice = context.mock(SkuPrice.class, "skuPrice");
+        final SkuPrice noPrice = context.mock(SkuPrice.class, "noPrice");
+
+        final Shop shop = context.mock(Shop.class, "shop");
+        final ShoppingCartCalculator.PriceModel priceModel = context.mock(ShoppingCartCalculator.PriceModel.class, "priceModel");
+
+        final List<String> skuCodes = Arrays.asList("ABC", "XYZ");
+        final Map<String, SkuPrice> prices = new HashMap<String, SkuPrice>();
+        prices.put("ABC", skuPrice);
+        prices.put("XYZ", noPrice);
+
+        context.checking(new Expectations() {{
+            allowing(cart).getShoppingContext(); will(returnValue(cartCtx));
+            allowing(cartCtx).getShopId(); will(returnValue(234L));
+            allowing(cartCtx).getShopCode(); will(returnValue("SHOP10"));
+            allowing(cartCtx).getCountryCode(); will(returnValue("GB"));
+            allowing(cartCtx).getStateCode(); will(returnValue("GB-LON"));
+            allowing(cart).getCustomerEmail(); will(returnValue("bob@doe.com"));
+            allowing(cart).getCurrencyCode(); will(returnValue("EUR"));
+            oneOf(pricingPolicyProvider).determinePricingPolicy("SHOP10", "EUR", "bob@doe.com", "GB", "GB-LON"); will(returnValue(policy));
+            allowing(policy).getID(); will(returnValue("P1"));
+            oneOf(priceService).getMinimalPrices(skuCodes, 234L, "EUR", BigDecimal.ONE, false, "P1"); will(returnValue(prices));
+            allowing(skuPrice).getSkuCode(); will(returnValue("ABC"));
+            allowing(skuPrice).getQuantity(); will(returnValue(BigDecimal.ONE));
+            allowing(skuPrice).getRegularPrice(); will(returnValue(new BigDecimal("100.00")));
+            allowing(skuPrice).getSalePriceForCalculation(); will(returnValue(new BigDecimal("80.00")));
+            allowing(noPrice).getSkuCode(); will(returnValue(null));
+            allowing(noPrice).getQuantity(); will(returnValue(null));
+            allowing(noPrice).getRegularPrice(); will(returnValue(null));
+            allowing(noPrice).getSalePriceForCalculation(); will(returnValue(null));
+            oneOf(shopService).getById(234L); will(returnValue(shop));
+            allowing(shop).getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO); will(returnValue("true"));
+            allowing(shop).getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO_SHOW_NET); will(returnValue("false"));
+            allowing(shop).getAttributeValueByCode(AttributeNamesKeys.Shop.SHOP_PRODUCT_ENABLE_PRICE_TAX_INFO_SHOW_AMOUNT); will(returnValue("true"));
+            oneOf(calculator).calculatePrices(cart, Collections.singletonMap("ABC", new BigDecimal("80.00"))); will(returnValue(Collections.singletonMap("ABC", priceModel)));
+            allowing(priceModel).getGrossPrice(); will(returnValue(new BigDecimal("96.00")));
+            allowing(priceModel).getTaxCode(); will(returnValue("GROSS"));
+            allowing(priceModel).getTaxRate(); will(returnValue(new BigDecimal("20.00")));
+            allowing(priceModel).isTaxExclusive(); will(returnValue(true));
+            allowing(priceModel).getTaxAmount(); will(returnValue(new BigDecimal("16.00")));
+        }});
+
+        final ProductServiceFacade facade = new ProductServiceFacadeImpl(null, null, null, null, null, null, pricingPolicyProvider, priceService, calculator, null, null, shopService, null);
+
+
+        final Map<String, ProductPriceModel> models = facade.getSkuPrices(cart, skuCodes);
+
+        assertEquals(2, models.size());
+
+        final ProductPriceModel model = models.get("ABC");
+
+        assertEquals("ABC", model.getRef());
+
+        assertEquals("EUR", model.getCurrency());
+        assertEquals("1", model.getQuantity().toPlainString());
+
+        assertEquals("120.00", model.getRegularPrice().toPlainString());
+        assertEquals("96.00", model.getSalePrice().toPlainString());
+
+        assertTrue(model.isTaxInfoEnabled());
+        assertFalse(model.isTaxInfoUseNet());
+        assertTrue(model.isTaxInfoShowAmount());
+
+        assertEquals("GROSS", model.getPriceTaxCode());
+        assertEquals("20.00", model.getPriceTaxRate().toPlainString());
+        assertTrue(model.isPriceTaxExclusive());
+        assertEquals("16.00", model.getPriceTax().toPlainString());
+
+        final ProductPriceModel blank = models.get("XYZ");
+
+        assertNull(blank.getRef());
+        assertEquals("EUR", blank.getCurrency());
+        assertNull(blank.getRegularPrice());
+        assertNull(blank.getSalePrice());
+
+        context.assertIsSatisfied();
+
+    }
+
     @Test
     public void testGetSkuPriceSearchAndProductDetailsPriceListAndSaleWithTaxExclInfoNet() throws Exception {
 